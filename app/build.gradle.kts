@@ -12,6 +12,8 @@ val localProperties: Properties = run {
 
 val geminiApiKey: String = localProperties.getProperty("gemini.apiKey", "")
 val meteoblueApiKey: String = localProperties.getProperty("meteoblue.apiKey", "")
+// Optional {z}/{x}/{y}.png tile server in place of OpenStreetMap, e.g. a local one for testing
+val mapTileUrl: String = localProperties.getProperty("map.tileUrl", "")
 
 plugins {
     alias(libs.plugins.android.application)
@@ -47,6 +49,11 @@ android {
             "METEOBLUE_API_KEY",
             "\"${meteoblueApiKey}\""
         )
+        buildConfigField(
+            "String",
+            "MAP_TILE_URL",
+            "\"${mapTileUrl}\""
+        )
     }
 
     buildTypes {
@@ -65,6 +72,22 @@ android {
     kotlinOptions {
         jvmTarget = "11"
     }
+    testOptions {
+        // Robolectric-hosted benchmarks (src/test) need Android resources and SQLite
+        unitTests.isIncludeAndroidResources = true
+        // Benchmark numbers are only measured and printed with -Pbenchmark=true
+        unitTests.all { it.systemProperty("benchmark", project.findProperty("benchmark") ?: "false") }
+    }
+    sourceSets {
+        // Exported Room schemas, read by MigrationTestHelper
+        getByName("androidTest").assets.srcDir("$projectDir/schemas")
+    }
+}
+
+kapt {
+    arguments {
+        arg("room.schemaLocation", "$projectDir/schemas")
+    }
 }
 
 dependencies {
@@ -78,11 +101,23 @@ dependencies {
     implementation(platform("com.google.firebase:firebase-bom:33.4.0"))
     implementation("com.google.firebase:firebase-auth")
     implementation("com.google.firebase:firebase-firestore")
+    implementation("com.google.firebase:firebase-storage")
     
     // Room Database
     implementation(libs.room.runtime)
     kapt(libs.room.compiler)
     
+    // LiveData (observable Room queries)
+    implementation(libs.lifecycle.livedata)
+    
+    // Paging 3 (keyset-paginated lists)
+    implementation(libs.paging.runtime)
+    implementation(libs.paging.guava)
+    implementation(libs.guava)
+    
+    // WorkManager (deferred, network-constrained sync)
+    implementation(libs.work.runtime)
+    
     // RecyclerView
     implementation(libs.recyclerview)
     
@@ -107,6 +142,10 @@ dependencies {
     implementation("net.sf.kxml:kxml2:2.3.0")
     
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.androidx.test.core)
+    testImplementation(libs.work.testing)
     androidTestImplementation(libs.ext.junit)
+    androidTestImplementation(libs.room.testing)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.example.mobilecw.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.utils.FtsSearchHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the LIKE '%...%' search path against the hikes_fts index on a
+ * synthetic corpus and checks the FTS index tracks inserts, updates and soft deletes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HikeFtsBenchmarkTest {
+
+    private static final String TAG = "HikeFtsBenchmark";
+    private static final int HIKE_COUNT = 5000;
+    private static final int ITERATIONS = 50;
+
+    private static final String[] NAME_WORDS = {"Mountain", "Forest", "River", "Ridge", "Valley", "Lake", "Summit", "Canyon"};
+    private static final String[] PLACE_WORDS = {"Rocky", "Greenwood", "Crystal", "Snowdon", "Eagle", "Pine"};
+    private static final String[] DIFFICULTIES = {"Easy", "Medium", "Hard"};
+
+    private AppDatabase database;
+    private HikeDao hikeDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        hikeDao = database.hikeDao();
+
+        Random random = new Random(42);
+        List<Hike> hikes = new ArrayList<>();
+        for (int i = 0; i < HIKE_COUNT; i++) {
+            Hike hike = new Hike(
+                    NAME_WORDS[random.nextInt(NAME_WORDS.length)] + " " + NAME_WORDS[random.nextInt(NAME_WORDS.length)] + " Trail " + i,
+                    PLACE_WORDS[random.nextInt(PLACE_WORDS.length)] + " Park",
+                    new Date(1700000000000L + i * 86400000L),
+                    random.nextBoolean(),
+                    1 + random.nextInt(20),
+                    DIFFICULTIES[random.nextInt(DIFFICULTIES.length)],
+                    "Generated hike number " + i,
+                    "");
+            hikes.add(hike);
+        }
+        hikeDao.insertAllHikes(hikes);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void ftsCoversLikeResults() {
+        String query = "summit";
+
+        long likeStart = System.nanoTime();
+        List<Hike> likeResults = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            likeResults = hikeDao.searchHikesByName("%" + query + "%");
+        }
+        long likeNanos = (System.nanoTime() - likeStart) / ITERATIONS;
+
+        String matchQuery = FtsSearchHelper.toMatchQuery(query);
+        long ftsStart = System.nanoTime();
+        List<Hike> ftsResults = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            ftsResults = FtsSearchHelper.rankHikes(hikeDao.searchHikesFts(matchQuery));
+        }
+        long ftsNanos = (System.nanoTime() - ftsStart) / ITERATIONS;
+
+        Log.i(TAG, "LIKE avg " + likeNanos / 1000 + "us, FTS avg " + ftsNanos / 1000
+                + "us over " + HIKE_COUNT + " hikes (" + likeResults.size() + " LIKE hits, "
+                + ftsResults.size() + " FTS hits)");
+
+        // FTS also searches location/description/difficulty, so it is a superset of name LIKE hits
+        Set<Integer> ftsIds = new HashSet<>();
+        for (Hike hike : ftsResults) {
+            ftsIds.add(hike.getHikeID());
+        }
+        for (Hike hike : likeResults) {
+            assertTrue(ftsIds.contains(hike.getHikeID()));
+        }
+    }
+
+    @Test
+    public void ftsIndexFollowsUpdatesAndSoftDeletes() {
+        Hike hike = new Hike("Zephyr Crag", "Nowhere", new Date(), false, 3, "Easy", null, "");
+        int hikeId = (int) hikeDao.insertHike(hike);
+        assertEquals(1, hikeDao.searchHikesFts(FtsSearchHelper.toMatchQuery("zeph")).size());
+
+        hike.setHikeID(hikeId);
+        hike.setName("Quartz Crag");
+        hikeDao.updateHike(hike);
+        assertEquals(0, hikeDao.searchHikesFts(FtsSearchHelper.toMatchQuery("zeph")).size());
+        assertEquals(1, hikeDao.searchHikesFts(FtsSearchHelper.toMatchQuery("quartz")).size());
+
+        List<Integer> ids = new ArrayList<>();
+        ids.add(hikeId);
+        long now = System.currentTimeMillis();
+        hikeDao.softDeleteHikesByIds(ids, now, now);
+        assertEquals(0, hikeDao.searchHikesFts(FtsSearchHelper.toMatchQuery("quartz")).size());
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.mobilecw.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.utils.EmbeddingCodec;
+import com.example.mobilecw.utils.FtsSearchHelper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs every schema migration against databases created from the exported
+ * schemas in app/schemas, and checks existing rows survive.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(), AppDatabase.class);
+
+    @Test
+    public void migrate8To9IndexesExistingRowsForSearch() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 8);
+        insertVersion8Rows(db);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 9, true, AppDatabase.MIGRATION_8_9);
+
+        try (Cursor cursor = db.query("SELECT rowid FROM hikes_fts WHERE hikes_fts MATCH 'snow*'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+        }
+        try (Cursor cursor = db.query("SELECT rowid FROM observations_fts WHERE observations_fts MATCH 'marmot'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate9To10ReplacesIndexes() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 9);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 10, true, AppDatabase.MIGRATION_9_10);
+
+        assertIndex(db, "index_hikes_userId_date_deleted", true);
+        assertIndex(db, "index_hikes_synced", true);
+        assertIndex(db, "index_hikes_isActive", true);
+        assertIndex(db, "index_observations_hikeId_time_deleted", true);
+        assertIndex(db, "index_observations_synced", true);
+        assertIndex(db, "index_hikes_hikeID", false);
+        assertIndex(db, "index_observations_observationID", false);
+        db.close();
+    }
+
+    @Test
+    public void migrate10To11AddsSyncState() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 10);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 11, true, AppDatabase.MIGRATION_10_11);
+
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM sync_state")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("no cursor yet, so the first download is a full one", 0, cursor.getInt(0));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate11To12SeedsDirtyRowCounts() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 11);
+        insertVersion8Rows(db);
+        ContentValues dirtyHike = new ContentValues();
+        dirtyHike.put("hikeID", 2);
+        dirtyHike.put("name", "Tryfan");
+        dirtyHike.put("parkingAvailable", 0);
+        dirtyHike.put("length", 4.0);
+        dirtyHike.put("userId", 3);
+        dirtyHike.put("synced", 0);
+        db.insert("hikes", SQLiteDatabase.CONFLICT_FAIL, dirtyHike);
+        ContentValues dirtyObservation = new ContentValues();
+        dirtyObservation.put("observationID", 2);
+        dirtyObservation.put("observationText", "Goats");
+        dirtyObservation.put("hikeId", 2);
+        db.insert("observations", SQLiteDatabase.CONFLICT_FAIL, dirtyObservation);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 12, true, AppDatabase.MIGRATION_11_12);
+
+        assertIndex(db, "index_hikes_userId_synced", true);
+        // The synced rows from insertVersion8Rows do not count, the NULL-synced observation does
+        assertEquals(2, pendingRows(db, 3));
+
+        ContentValues synced = new ContentValues();
+        synced.put("synced", 1);
+        db.update("hikes", SQLiteDatabase.CONFLICT_FAIL, synced, "hikeID = 2", null);
+        assertEquals("the migration installs the triggers", 1, pendingRows(db, 3));
+        db.close();
+    }
+
+    @Test
+    public void migrate12To13AddsEmbeddingState() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 12);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 13, true, AppDatabase.MIGRATION_12_13);
+
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM embedding_state")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("nothing recorded, so every chunk is embedded once more", 0, cursor.getInt(0));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate13To14ClearsStateWithoutVectors() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 13);
+        db.execSQL("INSERT INTO embedding_state (chunkId, textHash, model, embeddedAt) "
+                + "VALUES ('hike_1', 'abc', 'models/text-embedding-004', 1)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 14, true, AppDatabase.MIGRATION_13_14);
+
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM embedding_state")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("rows without a vector are embedded again", 0, cursor.getInt(0));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate14To15QuantizesStoredVectors() throws IOException {
+        float[] vector = {0.5f, -0.25f, 0.125f, 1f};
+        ByteBuffer raw = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asFloatBuffer().put(vector);
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 14);
+        ContentValues state = new ContentValues();
+        state.put("chunkId", "hike_1");
+        state.put("textHash", "abc");
+        state.put("model", "models/text-embedding-004");
+        state.put("embeddedAt", 1L);
+        state.put("hikeId", 1);
+        state.put("vector", raw.array());
+        db.insert("embedding_state", SQLiteDatabase.CONFLICT_FAIL, state);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 15, true, AppDatabase.MIGRATION_14_15);
+
+        try (Cursor cursor = db.query("SELECT vector FROM embedding_state WHERE chunkId = 'hike_1'")) {
+            assertTrue(cursor.moveToFirst());
+            byte[] blob = cursor.getBlob(0);
+            assertEquals(EmbeddingCodec.Format.INT8, EmbeddingCodec.formatOf(blob));
+            assertArrayEquals(vector, EmbeddingCodec.decode(blob), 0.01f);
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate15To16AddsQueryEmbeddings() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 15);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 16, true, AppDatabase.MIGRATION_15_16);
+
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM query_embeddings")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate16To17AddsObservationThumbnails() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 16);
+        insertVersion8Rows(db);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 17, true, AppDatabase.MIGRATION_16_17);
+
+        try (Cursor cursor = db.query("SELECT observationText, thumbnail FROM observations WHERE observationID = 1")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Marmot on the scree", cursor.getString(0));
+            assertTrue("existing pictures have no thumbnail yet", cursor.isNull(1));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate17To18AddsMediaTransfers() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 17);
+        insertVersion8Rows(db);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 18, true, AppDatabase.MIGRATION_17_18);
+
+        try (Cursor cursor = db.query("SELECT pictureHash FROM observations WHERE observationID = 1")) {
+            assertTrue(cursor.moveToFirst());
+            assertTrue("existing pictures are not ingested, so they stay local", cursor.isNull(0));
+        }
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM media_transfers")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrateFrom8ToLatestKeepsData() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 8);
+        insertVersion8Rows(db);
+        db.close();
+
+        // Open through Room with the production migrations: no destructive fallback may kick in
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        AppDatabase database = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
+                .addMigrations(AppDatabase.ALL_MIGRATIONS)
+                .allowMainThreadQueries()
+                .build();
+        try {
+            Hike hike = database.hikeDao().getHikeById(1);
+            assertNotNull(hike);
+            assertEquals("Snowdon Ridge", hike.getName());
+
+            List<Observation> observations = database.observationDao().getObservationsByHikeId(1);
+            assertEquals(1, observations.size());
+
+            List<Hike> found = FtsSearchHelper.rankHikes(
+                    database.hikeDao().searchHikesFts(FtsSearchHelper.toMatchQuery("snowdon")));
+            assertEquals(1, found.size());
+        } finally {
+            database.close();
+        }
+    }
+
+    private static void insertVersion8Rows(SupportSQLiteDatabase db) {
+        ContentValues hike = new ContentValues();
+        hike.put("hikeID", 1);
+        hike.put("name", "Snowdon Ridge");
+        hike.put("location", "Eryri");
+        hike.put("date", 1700000000000L);
+        hike.put("parkingAvailable", 1);
+        hike.put("length", 9.5);
+        hike.put("difficulty", "Hard");
+        hike.put("description", "Exposed ridge walk");
+        hike.put("userId", 3);
+        hike.put("synced", 1);
+        hike.put("deleted", 0);
+        db.insert("hikes", SQLiteDatabase.CONFLICT_FAIL, hike);
+
+        ContentValues observation = new ContentValues();
+        observation.put("observationID", 1);
+        observation.put("observationText", "Marmot on the scree");
+        observation.put("time", 1700000100000L);
+        observation.put("hikeId", 1);
+        observation.put("synced", 1);
+        observation.put("deleted", 0);
+        db.insert("observations", SQLiteDatabase.CONFLICT_FAIL, observation);
+    }
+
+    private static int pendingRows(SupportSQLiteDatabase db, int userKey) {
+        try (Cursor cursor = db.query("SELECT pendingRows FROM dirty_row_counts WHERE userKey = ?",
+                new Object[]{userKey})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    private static void assertIndex(SupportSQLiteDatabase db, String name, boolean expected) {
+        try (Cursor cursor = db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?",
+                new Object[]{name})) {
+            assertEquals(name, expected, cursor.moveToFirst());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.mobilecw.sync;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.entities.MediaTransfer;
+import com.example.mobilecw.database.entities.Observation;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Photo uploads and lazy downloads against the local Firebase emulators, started
+ * from the repository root with {@code firebase emulators:start --only auth,storage}.
+ * Skipped when the emulators are not running.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MediaSyncManagerTest {
+
+    // The host machine as seen from the Android emulator
+    private static final String EMULATOR_HOST = "10.0.2.2";
+    private static final int AUTH_PORT = 9099;
+    private static final int STORAGE_PORT = 9199;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private static FirebaseStorage storage;
+    private static String uid;
+
+    private AppDatabase database;
+    private File photoDir;
+    private MediaSyncManager manager;
+    private final Random random = new Random();
+
+    @BeforeClass
+    public static void connectToEmulators() throws Exception {
+        assumeTrue("Storage emulator not running", reachable(STORAGE_PORT) && reachable(AUTH_PORT));
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FirebaseApp.initializeApp(context);
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        auth.useEmulator(EMULATOR_HOST, AUTH_PORT);
+        storage = FirebaseStorage.getInstance();
+        storage.useEmulator(EMULATOR_HOST, STORAGE_PORT);
+        uid = Tasks.await(auth.signInAnonymously(), TIMEOUT_SECONDS, TimeUnit.SECONDS).getUser().getUid();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        photoDir = Files.createTempDirectory(context.getCacheDir().toPath(), "photos").toFile();
+        manager = new MediaSyncManager(storage, database.mediaTransferDao(), photoDir);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+        for (File file : photoDir.listFiles()) {
+            file.delete();
+        }
+        photoDir.delete();
+    }
+
+    @Test
+    public void uploadsEachPhotoOnceByContentHash() throws Exception {
+        byte[] pictureBytes = randomBytes(600 * 1024);
+        String hash = sha256(pictureBytes);
+        Observation observation = new Observation();
+        observation.setPictureHash(hash);
+        observation.setPicture(write("picture.jpg", pictureBytes).getPath());
+        observation.setThumbnail(write("thumbnail.jpg", randomBytes(40 * 1024)).getPath());
+
+        manager.enqueueObservationPhotos(uid, observation);
+        manager.enqueueObservationPhotos(uid, observation);
+        assertEquals(2, database.mediaTransferDao().countPendingTransfers(uid, MediaSyncManager.MAX_ATTEMPTS));
+
+        Tasks.await(manager.uploadPending(uid), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0, database.mediaTransferDao().countPendingTransfers(uid, MediaSyncManager.MAX_ATTEMPTS));
+        StorageMetadata uploaded = Tasks.await(photo(MediaSyncManager.pictureName(hash)).getMetadata());
+        assertEquals(pictureBytes.length, uploaded.getSizeBytes());
+        assertEquals("image/jpeg", uploaded.getContentType());
+
+        // The same content queued again, e.g. from another observation, is not sent twice
+        manager.enqueueObservationPhotos(uid, observation);
+        Tasks.await(manager.uploadPending(uid), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        StorageMetadata after = Tasks.await(photo(MediaSyncManager.pictureName(hash)).getMetadata());
+        assertEquals(uploaded.getGeneration(), after.getGeneration());
+    }
+
+    @Test
+    public void resumesAnInterruptedUploadFromItsSession() throws Exception {
+        byte[] pictureBytes = randomBytes(3 * 1024 * 1024);
+        String name = MediaSyncManager.pictureName(sha256(pictureBytes));
+        File picture = write("picture.jpg", pictureBytes);
+
+        // Open a session and stop after the first chunk, as a killed process would
+        AtomicReference<UploadTask.TaskSnapshot> stoppedAt = new AtomicReference<>();
+        CountDownLatch paused = new CountDownLatch(1);
+        UploadTask interrupted = photo(name).putFile(Uri.fromFile(picture));
+        interrupted.addOnProgressListener(snapshot -> {
+            if (snapshot.getUploadSessionUri() != null && snapshot.getBytesTransferred() > 0) {
+                interrupted.pause();
+            }
+        });
+        interrupted.addOnPausedListener(snapshot -> {
+            stoppedAt.set(snapshot);
+            paused.countDown();
+        });
+        assertTrue(paused.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        MediaTransfer transfer = new MediaTransfer(uid, name, picture.getPath(), pictureBytes.length, 1);
+        transfer.setSessionUri(stoppedAt.get().getUploadSessionUri().toString());
+        transfer.setBytesTransferred(stoppedAt.get().getBytesTransferred());
+        database.mediaTransferDao().enqueue(transfer);
+
+        Tasks.await(manager.uploadPending(uid), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0, database.mediaTransferDao().countPendingTransfers(uid, MediaSyncManager.MAX_ATTEMPTS));
+        assertEquals(pictureBytes.length, Tasks.await(photo(name).getMetadata()).getSizeBytes());
+    }
+
+    @Test
+    public void fetchesMissingPhotosOnlyWhenAsked() throws Exception {
+        byte[] thumbnailBytes = randomBytes(30 * 1024);
+        String hash = sha256(thumbnailBytes);
+        Tasks.await(photo(MediaSyncManager.thumbnailName(hash)).putBytes(thumbnailBytes));
+
+        Observation pulled = new Observation();
+        pulled.setPictureHash(hash);
+        pulled.setPicture("/another/device/picture.jpg");
+        manager.resolveLocalPaths(pulled);
+        assertEquals(new File(photoDir, MediaSyncManager.pictureName(hash)).getPath(), pulled.getPicture());
+        assertFalse("nothing is downloaded while pulling", new File(pulled.getThumbnail()).exists());
+
+        assertTrue(manager.fetchIfMissing(uid, pulled.getThumbnail()));
+        assertArrayEquals(thumbnailBytes, Files.readAllBytes(new File(pulled.getThumbnail()).toPath()));
+
+        assertFalse("only the thumbnail was uploaded", manager.fetchIfMissing(uid, pulled.getPicture()));
+        assertFalse(new File(pulled.getPicture()).exists());
+        assertFalse("not a photo copy", manager.fetchIfMissing(uid, new File(photoDir, "other.jpg").getPath()));
+    }
+
+    private StorageReference photo(String name) {
+        return storage.getReference(MediaSyncManager.remotePath(uid, name));
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        File file = new File(photoDir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes);
+        }
+        return file;
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static boolean reachable(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(EMULATOR_HOST, port), 500);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -23,8 +23,7 @@ import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
 import com.example.mobilecw.database.dao.HikeDao;
 import com.example.mobilecw.database.entities.Hike;
-import com.example.mobilecw.sync.FirebaseSyncManager;
-import com.example.mobilecw.utils.NetworkUtils;
+import com.example.mobilecw.sync.SyncScheduler;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -284,8 +283,8 @@ public class EnterHikeActivity extends AppCompatActivity {
                     hikeDao.updateHike(hike);
                     runOnUiThread(() -> {
                         Toast.makeText(this, getString(R.string.hike_updated), Toast.LENGTH_SHORT).show();
-                        if (shouldSyncWithCloud && NetworkUtils.isOnline(getApplicationContext())) {
-                            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
+                        if (shouldSyncWithCloud) {
+                            SyncScheduler.requestSync(getApplicationContext());
                         }
                         finish();
                     });
@@ -299,8 +298,8 @@ public class EnterHikeActivity extends AppCompatActivity {
                     hikeDao.insertHike(hike);
                     runOnUiThread(() -> {
                         Toast.makeText(this, getString(R.string.hike_saved), Toast.LENGTH_SHORT).show();
-                        if (shouldSyncWithCloud && NetworkUtils.isOnline(getApplicationContext())) {
-                            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
+                        if (shouldSyncWithCloud) {
+                            SyncScheduler.requestSync(getApplicationContext());
                         }
                         finish();
                     });
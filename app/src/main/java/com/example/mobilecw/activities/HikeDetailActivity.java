@@ -18,8 +18,7 @@ import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
 import com.example.mobilecw.database.dao.HikeDao;
 import com.example.mobilecw.database.entities.Hike;
-import com.example.mobilecw.sync.FirebaseSyncManager;
-import com.example.mobilecw.utils.NetworkUtils;
+import com.example.mobilecw.sync.SyncScheduler;
 
 import java.text.SimpleDateFormat;
 import java.util.Locale;
@@ -216,11 +215,12 @@ public class HikeDetailActivity extends AppCompatActivity {
         if (hike == null) return;
         
         executorService.execute(() -> {
+            long currentTime = System.currentTimeMillis();
+
             // Deactivate any currently active hikes
-            hikeDao.deactivateAllHikes();
+            hikeDao.deactivateAllHikes(currentTime);
             
             // Start this hike
-            long currentTime = System.currentTimeMillis();
             hikeDao.startHike(hike.getHikeID(), currentTime, currentTime);
             
             // Reload hike
@@ -253,8 +253,8 @@ public class HikeDetailActivity extends AppCompatActivity {
     }
 
     private void syncIfLoggedIn() {
-        if (SessionManager.isLoggedIn(this) && NetworkUtils.isOnline(this)) {
-            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
+        if (SessionManager.isLoggedIn(this)) {
+            SyncScheduler.requestSync(getApplicationContext());
         }
     }
     
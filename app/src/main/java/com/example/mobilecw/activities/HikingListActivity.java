@@ -12,18 +12,24 @@ import android.widget.LinearLayout;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mobilecw.R;
 import com.example.mobilecw.adapters.HikeListAdapter;
+import com.example.mobilecw.adapters.HikePagingAdapter;
 import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.HikeRepository;
 import com.example.mobilecw.database.dao.HikeDao;
 import com.example.mobilecw.database.dao.ObservationDao;
 import com.example.mobilecw.database.entities.Hike;
-import com.example.mobilecw.sync.FirebaseSyncManager;
-import com.example.mobilecw.utils.NetworkUtils;
+import com.example.mobilecw.database.model.HikeStats;
+import com.example.mobilecw.sync.SyncScheduler;
+import com.example.mobilecw.utils.FtsSearchHelper;
 import com.google.android.material.button.MaterialButton;
 
 import java.text.ParseException;
@@ -38,7 +44,7 @@ import java.util.concurrent.Executors;
 public class HikingListActivity extends AppCompatActivity implements HikeListAdapter.OnHikeClickListener {
 
     private RecyclerView recyclerView;
-    private HikeListAdapter adapter;
+    private HikePagingAdapter adapter;
     private EditText searchInput;
     private MaterialButton deleteSelectedButton;
     private ImageButton addHikeButton, editModeButton, deleteAllButton, searchButton;
@@ -47,11 +53,21 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
     private AppDatabase database;
     private HikeDao hikeDao;
     private ObservationDao observationDao;
+    private HikeRepository repository;
     private ExecutorService executorService;
     private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
 
-    private List<Hike> currentHikes = new ArrayList<>();
     private boolean selectionMode = false;
+    
+    // Keyset-paged list of the current user's hikes; only pages near the viewport are loaded
+    private LiveData<PagingData<Hike>> hikePagesLiveData;
+    private PagingData<Hike> latestHikePage;
+    private LiveData<HikeStats> statsLiveData;
+    private int hikeCount = 0;
+    private int observedUserId = Integer.MIN_VALUE;
+    // Bumped on every change of the search text; a search only shows its results if still current
+    private int searchGeneration = 0;
+    private boolean seedingSampleData = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -61,6 +77,7 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
         database = AppDatabase.getDatabase(this);
         hikeDao = database.hikeDao();
         observationDao = database.observationDao();
+        repository = HikeRepository.getInstance(this);
         executorService = Executors.newSingleThreadExecutor();
 
         recyclerView = findViewById(R.id.hikeRecyclerView);
@@ -75,7 +92,7 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
         navUsers = findViewById(R.id.navUsers);
         navSettings = findViewById(R.id.navSettings);
 
-        adapter = new HikeListAdapter(this);
+        adapter = new HikePagingAdapter(this);
         adapter.setOnSelectionChangedListener(count -> {
             if (deleteSelectedButton != null) {
                 deleteSelectedButton.setEnabled(count > 0);
@@ -105,7 +122,7 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
             });
         }
 
-        loadHikes();
+        observeHikes();
         setupSearch();
         setupBottomNavigation();
         setupManagementButtons();
@@ -114,46 +131,58 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh data when returning from other screens
-        loadHikes();
+        // Switch to the right user's hikes if the login changed; the list itself
+        // refreshes through the observer whenever the hikes table changes
+        observeHikes();
 
-        // If user is logged in and now online, push any pending local data to Firebase
-        if (SessionManager.isLoggedIn(this) && NetworkUtils.isOnline(this)) {
-            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
+        // Push any pending local data once online; the sync job waits for a network
+        if (SessionManager.isLoggedIn(this)) {
+            SyncScheduler.requestSync(getApplicationContext());
         }
     }
 
-    private void loadHikes() {
-        executorService.execute(() -> {
-            // Backend rule: each hike belongs to a specific user (or is anonymous).
-            // If a user is logged in, only load their hikes. Otherwise, load
-            // hikes for non-registered users.
-            int currentUserId = SessionManager.getCurrentUserId(this);
-            List<Hike> hikes;
-            if (currentUserId != -1) {
-                hikes = hikeDao.getHikesByUserId(currentUserId);
-            } else {
-                hikes = hikeDao.getHikesForNonRegisteredUsers();
-            }
-            if (hikes.isEmpty() && currentUserId == -1) {
-                seedSampleData();
-                // Re-load after seeding using the same per-user rules
-                if (currentUserId != -1) {
-                    hikes = hikeDao.getHikesByUserId(currentUserId);
-                } else {
-                    hikes = hikeDao.getHikesForNonRegisteredUsers();
-                }
+    private void observeHikes() {
+        // Backend rule: each hike belongs to a specific user (or is anonymous).
+        // If a user is logged in, only show their hikes. Otherwise, show
+        // hikes for non-registered users.
+        int currentUserId = SessionManager.getCurrentUserId(this);
+        if (currentUserId == observedUserId) {
+            return;
+        }
+        if (hikePagesLiveData != null) {
+            hikePagesLiveData.removeObservers(this);
+            statsLiveData.removeObservers(this);
+        }
+        observedUserId = currentUserId;
+        latestHikePage = null;
+        
+        hikePagesLiveData = PagingLiveData.cachedIn(repository.hikePages(currentUserId), getLifecycle());
+        hikePagesLiveData.observe(this, pagingData -> {
+            latestHikePage = pagingData;
+            // While a search is shown, keep its results; the pages are restored when it is cleared
+            if (searchInput.getText().toString().trim().isEmpty()) {
+                adapter.submitData(getLifecycle(), pagingData);
             }
-            currentHikes = hikes;
+        });
+        
+        // The hike count (shared with the other screens) drives seeding and the empty checks
+        statsLiveData = repository.observeStats(currentUserId);
+        statsLiveData.observe(this, stats -> onHikeCountChanged(stats.hikeCount));
+    }
 
-            List<Hike> finalHikes = hikes;
-            runOnUiThread(() -> {
-                adapter.submitList(finalHikes);
-                if (selectionMode && finalHikes.isEmpty()) {
-                    exitSelectionMode();
-                }
+    private void onHikeCountChanged(int count) {
+        hikeCount = count;
+        if (count == 0 && observedUserId == -1 && !seedingSampleData) {
+            // The inserts invalidate the hikes table, which reloads the pages
+            seedingSampleData = true;
+            executorService.execute(() -> {
+                seedSampleData();
+                runOnUiThread(() -> seedingSampleData = false);
             });
-        });
+        }
+        if (selectionMode && count == 0) {
+            exitSelectionMode();
+        }
     }
 
     private void setupSearch() {
@@ -234,14 +263,13 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
             runOnUiThread(() -> {
                 Toast.makeText(this, R.string.delete_selected, Toast.LENGTH_SHORT).show();
                 exitSelectionMode();
-                loadHikes();
                 syncIfLoggedIn();
             });
         });
     }
     
     private void confirmDeleteAll() {
-        if (currentHikes.isEmpty()) {
+        if (hikeCount == 0) {
             Toast.makeText(this, getString(R.string.no_hikes), Toast.LENGTH_SHORT).show();
             return;
         }
@@ -256,10 +284,9 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
     private void deleteAllHikes() {
         executorService.execute(() -> {
             long now = System.currentTimeMillis();
-            List<Integer> hikeIds = new ArrayList<>();
-            for (Hike hike : currentHikes) {
-                hikeIds.add(hike.getHikeID());
-            }
+            List<Integer> hikeIds = observedUserId == -1
+                    ? hikeDao.getHikeIdsForNonRegisteredUsers()
+                    : hikeDao.getHikeIdsByUserId(observedUserId);
             if (!hikeIds.isEmpty()) {
                 hikeDao.softDeleteHikesByIds(hikeIds, now, now);
                 for (Integer hikeId : hikeIds) {
@@ -269,7 +296,6 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
             runOnUiThread(() -> {
                 Toast.makeText(this, R.string.delete_all, Toast.LENGTH_SHORT).show();
                 exitSelectionMode();
-                loadHikes();
                 syncIfLoggedIn();
             });
         });
@@ -330,22 +356,38 @@ public class HikingListActivity extends AppCompatActivity implements HikeListAda
     }
 
     private void filterHikes(String query) {
+        int generation = ++searchGeneration;
+        if (query == null || query.trim().isEmpty()) {
+            // Back to the paged list
+            if (latestHikePage != null) {
+                adapter.submitData(getLifecycle(), latestHikePage);
+            }
+            return;
+        }
+        int userId = observedUserId;
         executorService.execute(() -> {
-            List<Hike> filtered;
-            if (query == null || query.trim().isEmpty()) {
-                filtered = currentHikes;
-            } else {
-                String search = "%" + query + "%";
-                filtered = hikeDao.searchHikesByName(search);
+            // Prefix search over the FTS index instead of a LIKE table scan, over the same hikes as the list
+            String matchQuery = FtsSearchHelper.toMatchQuery(query);
+            List<Hike> filtered = new ArrayList<>();
+            if (matchQuery != null) {
+                filtered = FtsSearchHelper.rankHikes(userId == -1
+                        ? hikeDao.searchHikesFtsForNonRegisteredUsers(matchQuery)
+                        : hikeDao.searchHikesFtsByUserId(matchQuery, userId));
             }
-            List<Hike> finalFiltered = filtered;
-            runOnUiThread(() -> adapter.submitList(finalFiltered));
+            List<Hike> results = filtered;
+            runOnUiThread(() -> {
+                // The text changed (or was cleared) while this search ran
+                if (generation != searchGeneration) {
+                    return;
+                }
+                adapter.submitData(getLifecycle(), PagingData.from(results));
+            });
         });
     }
 
     private void syncIfLoggedIn() {
-        if (SessionManager.isLoggedIn(this) && NetworkUtils.isOnline(this)) {
-            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
+        if (SessionManager.isLoggedIn(this)) {
+            SyncScheduler.requestSync(getApplicationContext());
         }
     }
 
@@ -15,6 +15,7 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
+import androidx.lifecycle.LiveData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -23,13 +24,15 @@ import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
 import com.example.mobilecw.BuildConfig;
 import com.example.mobilecw.R;
 import com.example.mobilecw.adapters.NearbyTrailAdapter;
 import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.HikeRepository;
 import com.example.mobilecw.database.dao.HikeDao;
 import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.model.HikeStats;
+import com.example.mobilecw.services.SharedRequestQueue;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
@@ -47,6 +50,7 @@ public class HomeActivity extends AppCompatActivity {
     private ImageView weatherImage;
     private TextView hikesCountText, totalKmText;
     private RecyclerView nearbyTrailsRecyclerView;
+    private NearbyTrailAdapter nearbyTrailAdapter;
     private ImageButton addHikeButton, searchButton;
     
     private androidx.cardview.widget.CardView activeHikeCard;
@@ -57,6 +61,8 @@ public class HomeActivity extends AppCompatActivity {
     
     private AppDatabase database;
     private HikeDao hikeDao;
+    private LiveData<HikeStats> statsLiveData;
+    private int statsUserId = Integer.MIN_VALUE;
     private RequestQueue requestQueue;
     private ExecutorService executorService;
     private FusedLocationProviderClient fusedLocationClient;
@@ -78,8 +84,8 @@ public class HomeActivity extends AppCompatActivity {
         database = AppDatabase.getDatabase(this);
         hikeDao = database.hikeDao();
         
-        // Initialize Volley for network requests
-        requestQueue = Volley.newRequestQueue(this);
+        // Volley queue shared by the whole app
+        requestQueue = SharedRequestQueue.get(this);
         
         // Initialize executor for database operations
         executorService = Executors.newSingleThreadExecutor();
@@ -99,8 +105,8 @@ public class HomeActivity extends AppCompatActivity {
         // Load user data
         loadUserData();
         
-        // Load activity statistics
-        loadActivityStats();
+        // Observe activity statistics
+        observeActivityStats();
         
         // Load nearby trails
         loadNearbyTrails();
@@ -112,8 +118,9 @@ public class HomeActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        // Refresh data when returning from EnterHikeActivity or HikeDetailActivity
-        loadActivityStats();
+        // Refresh data when returning from EnterHikeActivity or HikeDetailActivity.
+        // Statistics update through their observer; only a login change re-subscribes.
+        observeActivityStats();
         loadNearbyTrails();
         loadActiveHike();
     }
@@ -128,6 +135,12 @@ public class HomeActivity extends AppCompatActivity {
         hikesCountText = findViewById(R.id.hikesCountText);
         totalKmText = findViewById(R.id.totalKmText);
         nearbyTrailsRecyclerView = findViewById(R.id.nearbyTrailsRecyclerView);
+        nearbyTrailAdapter = new NearbyTrailAdapter(hike -> {
+            // Handle trail click - navigate to detail page
+            Toast.makeText(this, "Viewing: " + hike.getName(), Toast.LENGTH_SHORT).show();
+        });
+        nearbyTrailsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        nearbyTrailsRecyclerView.setAdapter(nearbyTrailAdapter);
         addHikeButton = findViewById(R.id.addHikeButton);
         searchButton = findViewById(R.id.searchButton);
         
@@ -211,33 +224,21 @@ public class HomeActivity extends AppCompatActivity {
         userNameText.setText(userName);
     }
     
-    private void loadActivityStats() {
-        executorService.execute(() -> {
-            Integer userId = sharedPreferences.getInt(KEY_USER_ID, -1);
-            List<Hike> hikes;
-            
-            if (userId == -1) {
-                // Non-registered user
-                hikes = hikeDao.getHikesForNonRegisteredUsers();
-            } else {
-                // Registered user
-                hikes = hikeDao.getHikesByUserId(userId);
-            }
-            
-            int hikeCount = hikes.size();
-            double totalKm = 0.0;
-            for (Hike hike : hikes) {
-                totalKm += hike.getLength();
-            }
-            
-            final int finalHikeCount = hikeCount;
-            final double finalTotalKm = totalKm;
-            
-            runOnUiThread(() -> {
-                hikesCountText.setText(String.valueOf(finalHikeCount));
-                DecimalFormat df = new DecimalFormat("#.#");
-                totalKmText.setText(df.format(finalTotalKm));
-            });
+    private void observeActivityStats() {
+        int userId = sharedPreferences.getInt(KEY_USER_ID, -1);
+        if (userId == statsUserId) {
+            return;
+        }
+        if (statsLiveData != null) {
+            statsLiveData.removeObservers(this);
+        }
+        statsUserId = userId;
+        // Count and total distance come from one aggregate query, shared with UsersActivity
+        statsLiveData = HikeRepository.getInstance(this).observeStats(userId);
+        statsLiveData.observe(this, stats -> {
+            hikesCountText.setText(String.valueOf(stats.hikeCount));
+            DecimalFormat df = new DecimalFormat("#.#");
+            totalKmText.setText(df.format(stats.totalLength));
         });
     }
     
@@ -262,14 +263,7 @@ public class HomeActivity extends AppCompatActivity {
             
             final List<Hike> finalHikes = hikes;
             
-            runOnUiThread(() -> {
-                NearbyTrailAdapter adapter = new NearbyTrailAdapter(finalHikes, hike -> {
-                    // Handle trail click - navigate to detail page
-                    Toast.makeText(this, "Viewing: " + hike.getName(), Toast.LENGTH_SHORT).show();
-                });
-                nearbyTrailsRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-                nearbyTrailsRecyclerView.setAdapter(adapter);
-            });
+            runOnUiThread(() -> nearbyTrailAdapter.submitList(finalHikes));
         });
     }
     
@@ -345,6 +339,7 @@ public class HomeActivity extends AppCompatActivity {
                 }
         );
 
+        jsonObjectRequest.setTag(this);
         requestQueue.add(jsonObjectRequest);
     }
 
@@ -403,6 +398,9 @@ public class HomeActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (requestQueue != null) {
+            requestQueue.cancelAll(this);
+        }
         if (executorService != null) {
             executorService.shutdown();
         }
@@ -15,8 +15,16 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
+import androidx.lifecycle.LiveData;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
 import com.example.mobilecw.R;
+import com.example.mobilecw.map.MapTileSources;
+import com.example.mobilecw.map.PersistentTileCache;
+import com.example.mobilecw.map.RegionPrefetcher;
+import com.example.mobilecw.map.TilePrefetchWorker;
+import com.example.mobilecw.map.TileStore;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 
@@ -24,13 +32,16 @@ import org.mapsforge.core.graphics.Bitmap;
 import org.mapsforge.core.graphics.Color;
 import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.graphics.Style;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.map.android.graphics.AndroidGraphicFactory;
 import org.mapsforge.map.android.util.AndroidUtil;
 import org.mapsforge.map.android.view.MapView;
+import org.mapsforge.map.layer.cache.InMemoryTileCache;
 import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.cache.TwoLevelTileCache;
 import org.mapsforge.map.layer.download.TileDownloadLayer;
-import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
+import org.mapsforge.map.layer.download.tilesource.AbstractTileSource;
 import org.mapsforge.map.layer.overlay.Marker;
 
 import java.io.IOException;
@@ -40,6 +51,8 @@ import java.util.Locale;
 /**
  * Map picker activity using Mapsforge with OpenStreetMap tiles.
  * No API key required - uses free OpenStreetMap data.
+ * Tiles are kept on disk in a TileStore, and the area around a picked location
+ * can be saved for use without signal.
  */
 public class MapPickerActivity extends AppCompatActivity {
 
@@ -57,6 +70,8 @@ public class MapPickerActivity extends AppCompatActivity {
 
     private TextView tvSelectedLocation;
     private Button btnConfirmLocation;
+    private Button btnSaveOffline;
+    private LiveData<List<WorkInfo>> offlineWork;
     private FusedLocationProviderClient fusedLocationClient;
 
     private static final int LOCATION_PERMISSION_REQUEST = 1001;
@@ -66,6 +81,11 @@ public class MapPickerActivity extends AppCompatActivity {
     private static final double DEFAULT_LON = -0.1278;
     private static final byte DEFAULT_ZOOM = 12;
 
+    // Area saved for offline use around a picked location
+    private static final double OFFLINE_RADIUS_KM = 5;
+    private static final byte OFFLINE_MIN_ZOOM = 11;
+    private static final byte OFFLINE_MAX_ZOOM = 16;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -79,6 +99,7 @@ public class MapPickerActivity extends AppCompatActivity {
         tvSelectedLocation = findViewById(R.id.tvSelectedLocation);
         btnConfirmLocation = findViewById(R.id.btnConfirmLocation);
         Button btnCancel = findViewById(R.id.btnCancel);
+        btnSaveOffline = findViewById(R.id.btnSaveOffline);
         mapView = findViewById(R.id.mapView);
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
@@ -106,6 +127,8 @@ public class MapPickerActivity extends AppCompatActivity {
             finish();
         });
 
+        btnSaveOffline.setOnClickListener(v -> saveAreaOffline());
+
         // Initially disable confirm button
         btnConfirmLocation.setEnabled(false);
         
@@ -114,17 +137,20 @@ public class MapPickerActivity extends AppCompatActivity {
     }
 
     private void setupMap() {
-        // Create tile cache
-        tileCache = AndroidUtil.createTileCache(
+        // Create tile cache: tiles on screen in memory, everything downloaded on disk
+        AbstractTileSource tileSource = MapTileSources.get();
+        int memoryCapacity = AndroidUtil.getMinimumCacheSize(
                 this,
-                "mapcache",
                 mapView.getModel().displayModel.getTileSize(),
-                1f,
-                mapView.getModel().frameBufferModel.getOverdrawFactor()
+                mapView.getModel().frameBufferModel.getOverdrawFactor(),
+                1f
+        );
+        tileCache = new TwoLevelTileCache(
+                new InMemoryTileCache(memoryCapacity),
+                new PersistentTileCache(
+                        TileStore.forSource(this, MapTileSources.storeName(tileSource)),
+                        AndroidGraphicFactory.INSTANCE)
         );
-
-        OpenStreetMapMapnik tileSource = OpenStreetMapMapnik.INSTANCE;
-        tileSource.setUserAgent("MHike-Android-App");
         
         tileDownloadLayer = new TileDownloadLayer(
                 tileCache,
@@ -182,6 +208,58 @@ public class MapPickerActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Download the tiles around the picked location, or the visible area if
+     * nothing is picked, in the background.
+     */
+    private void saveAreaOffline() {
+        BoundingBox box = selectedLocation != null
+                ? RegionPrefetcher.around(selectedLocation.latitude, selectedLocation.longitude, OFFLINE_RADIUS_KM)
+                : mapView.getBoundingBox();
+        byte minZoom = (byte) Math.min(mapView.getModel().mapViewPosition.getZoomLevel(), OFFLINE_MIN_ZOOM);
+        byte maxZoom = RegionPrefetcher.fitMaxZoom(box, minZoom, OFFLINE_MAX_ZOOM);
+        long tiles = RegionPrefetcher.countTiles(box, minZoom, maxZoom);
+        Toast.makeText(this, getString(R.string.saving_map_offline, (int) tiles), Toast.LENGTH_SHORT).show();
+
+        String workName = TilePrefetchWorker.enqueue(this, box, minZoom, maxZoom);
+        btnSaveOffline.setEnabled(false);
+        if (offlineWork != null) {
+            offlineWork.removeObservers(this);
+        }
+        offlineWork = WorkManager.getInstance(this).getWorkInfosForUniqueWorkLiveData(workName);
+        offlineWork.observe(this, infos -> {
+            if (infos == null || infos.isEmpty()) {
+                return;
+            }
+            WorkInfo info = infos.get(0);
+            switch (info.getState()) {
+                case RUNNING:
+                    int total = info.getProgress().getInt(TilePrefetchWorker.PROGRESS_TOTAL, 0);
+                    if (total > 0) {
+                        btnSaveOffline.setText(getString(R.string.map_offline_progress,
+                                info.getProgress().getInt(TilePrefetchWorker.PROGRESS_DONE, 0), total));
+                    }
+                    break;
+                case SUCCEEDED:
+                    Toast.makeText(this, R.string.map_offline_saved, Toast.LENGTH_SHORT).show();
+                    resetSaveOfflineButton();
+                    break;
+                case FAILED:
+                case CANCELLED:
+                    Toast.makeText(this, R.string.map_offline_failed, Toast.LENGTH_SHORT).show();
+                    resetSaveOfflineButton();
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    private void resetSaveOfflineButton() {
+        btnSaveOffline.setText(R.string.save_map_offline);
+        btnSaveOffline.setEnabled(true);
+    }
+
     private void placeMarker(LatLong latLong) {
         // Remove existing marker
         if (currentMarker != null) {
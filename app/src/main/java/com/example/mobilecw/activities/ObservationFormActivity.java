@@ -24,13 +24,14 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.FileProvider;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.example.mobilecw.R;
 import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
 import com.example.mobilecw.database.dao.ObservationDao;
 import com.example.mobilecw.database.entities.Observation;
-import com.example.mobilecw.sync.FirebaseSyncManager;
+import com.example.mobilecw.services.ThumbnailLoader;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.material.button.MaterialButton;
@@ -69,6 +70,7 @@ public class ObservationFormActivity extends AppCompatActivity {
     private AppDatabase database;
     private ObservationDao observationDao;
     private ExecutorService executorService;
+    private ObservationSaveViewModel saveViewModel;
 
     private int hikeId;
     private String hikeName;
@@ -104,6 +106,7 @@ public class ObservationFormActivity extends AppCompatActivity {
         database = AppDatabase.getDatabase(this);
         observationDao = database.observationDao();
         executorService = Executors.newSingleThreadExecutor();
+        saveViewModel = new ViewModelProvider(this).get(ObservationSaveViewModel.class);
 
         // Initialize location client
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
@@ -120,6 +123,7 @@ public class ObservationFormActivity extends AppCompatActivity {
 
         // Setup click listeners
         setupClickListeners();
+        observeSave();
 
         // If editing, load observation data
         if (observationId != -1) {
@@ -167,7 +171,7 @@ public class ObservationFormActivity extends AppCompatActivity {
                         Uri imageUri = result.getData().getData();
                         if (imageUri != null) {
                             currentPicturePath = imageUri.toString();
-                            picturePreview.setImageURI(imageUri);
+                            ThumbnailLoader.getInstance(this).load(currentPicturePath, picturePreview);
                             pictureCard.setVisibility(View.VISIBLE);
                             uploadCard.setVisibility(View.GONE);
                         }
@@ -317,8 +321,9 @@ public class ObservationFormActivity extends AppCompatActivity {
             currentPicturePath = observation.getPicture();
             try {
                 File imageFile = new File(observation.getPicture());
-                if (imageFile.exists()) {
-                    picturePreview.setImageURI(Uri.fromFile(imageFile));
+                if (imageFile.exists() || observation.getPictureHash() != null) {
+                    ThumbnailLoader.getInstance(this)
+                            .load(imageFile.getPath(), observation.getThumbnail(), picturePreview);
                     pictureCard.setVisibility(View.VISIBLE);
                     uploadCard.setVisibility(View.GONE);
                 }
@@ -329,6 +334,10 @@ public class ObservationFormActivity extends AppCompatActivity {
     }
 
     private void saveObservation() {
+        if (saveViewModel.isSaving()) {
+            return;
+        }
+
         // Validate required fields
         if (!validateForm()) {
             return;
@@ -361,40 +370,48 @@ public class ObservationFormActivity extends AppCompatActivity {
         observation.setTime(time);
         observation.setComments(comments.isEmpty() ? null : comments);
         observation.setLocation(location.isEmpty() ? null : location);
+        String previousPicture = observation.getPicture();
+        String previousThumbnail = observation.getThumbnail();
         observation.setPicture(currentPicturePath);
+        if (currentPicturePath == null || !currentPicturePath.equals(previousPicture)) {
+            observation.setThumbnail(null);
+            observation.setPictureHash(null);
+        }
         observation.setUpdatedAt(System.currentTimeMillis());
         observation.setSynced(false);
 
         final boolean shouldSyncWithCloud = SessionManager.isLoggedIn(this);
 
-        // Save to database
-        executorService.execute(() -> {
-            try {
-                if (observationId != -1) {
-                    observationDao.updateObservation(observation);
-                    runOnUiThread(() -> {
-                        Toast.makeText(this, R.string.observation_updated, Toast.LENGTH_SHORT).show();
-                        if (shouldSyncWithCloud) {
-                            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
-                        }
-                        finish();
-                    });
-                } else {
-                    observationDao.insertObservation(observation);
-                    runOnUiThread(() -> {
-                        Toast.makeText(this, R.string.observation_saved, Toast.LENGTH_SHORT).show();
-                        if (shouldSyncWithCloud) {
-                            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
-                        }
-                        finish();
-                    });
-                }
-            } catch (Exception e) {
-                runOnUiThread(() -> {
-                    Toast.makeText(this, R.string.error_saving_observation, Toast.LENGTH_SHORT).show();
-                });
+        saveButton.setEnabled(false);
+        saveViewModel.save(this, observation, previousPicture, previousThumbnail, observationId != -1,
+                shouldSyncWithCloud);
+    }
+
+    private void observeSave() {
+        // A form recreated mid-save (rotation) picks up the running save instead of starting another
+        if (saveViewModel.isSaving()) {
+            saveButton.setEnabled(false);
+        }
+        saveViewModel.getIngestProgress().observe(this, percent -> {
+            if (percent != null && saveViewModel.isSaving()) {
+                saveButton.setText(getString(R.string.processing_photo, percent));
             }
         });
+        saveViewModel.getOutcome().observe(this, outcome -> {
+            if (outcome == null) {
+                return;
+            }
+            saveViewModel.consumeOutcome();
+            if (outcome == ObservationSaveViewModel.Outcome.FAILED) {
+                saveButton.setEnabled(true);
+                saveButton.setText(observationId != -1 ? R.string.update_observation : R.string.save_observation);
+                Toast.makeText(this, R.string.error_saving_observation, Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Toast.makeText(this, outcome == ObservationSaveViewModel.Outcome.UPDATED
+                    ? R.string.observation_updated : R.string.observation_saved, Toast.LENGTH_SHORT).show();
+            finish();
+        });
     }
 
     private boolean validateForm() {
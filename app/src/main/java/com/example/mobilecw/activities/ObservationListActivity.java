@@ -10,19 +10,20 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.paging.PagingLiveData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mobilecw.R;
 import com.example.mobilecw.adapters.ObservationListAdapter;
+import com.example.mobilecw.adapters.ObservationPagingAdapter;
 import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.HikeRepository;
 import com.example.mobilecw.database.dao.ObservationDao;
 import com.example.mobilecw.database.entities.Observation;
-import com.example.mobilecw.sync.FirebaseSyncManager;
-import com.example.mobilecw.utils.NetworkUtils;
+import com.example.mobilecw.sync.SyncScheduler;
 
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -32,7 +33,7 @@ public class ObservationListActivity extends AppCompatActivity implements Observ
     public static final String EXTRA_HIKE_NAME = "hike_name";
 
     private RecyclerView recyclerView;
-    private ObservationListAdapter adapter;
+    private ObservationPagingAdapter adapter;
     private LinearLayout emptyState;
     private TextView hikeNameText;
     private ImageButton backButton;
@@ -76,7 +77,7 @@ public class ObservationListActivity extends AppCompatActivity implements Observ
         hikeNameText.setText(hikeName);
 
         // Setup RecyclerView
-        adapter = new ObservationListAdapter(this);
+        adapter = new ObservationPagingAdapter(this);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(adapter);
 
@@ -84,31 +85,21 @@ public class ObservationListActivity extends AppCompatActivity implements Observ
         backButton.setOnClickListener(v -> finish());
         addObservationButton.setOnClickListener(v -> openAddObservation());
 
-        // Load observations
-        loadObservations();
+        // Observe keyset pages; edits made in the form invalidate and reload them automatically
+        HikeRepository repository = HikeRepository.getInstance(this);
+        PagingLiveData.cachedIn(repository.observationPages(hikeId), getLifecycle())
+                .observe(this, pagingData -> adapter.submitData(getLifecycle(), pagingData));
+        repository.observeObservationCount(hikeId).observe(this, this::updateEmptyState);
     }
 
-    @Override
-    protected void onResume() {
-        super.onResume();
-        // Refresh observations when returning from form
-        loadObservations();
-    }
-
-    private void loadObservations() {
-        executorService.execute(() -> {
-            List<Observation> observations = observationDao.getObservationsByHikeId(hikeId);
-            runOnUiThread(() -> {
-                adapter.submitList(observations);
-                if (observations.isEmpty()) {
-                    emptyState.setVisibility(View.VISIBLE);
-                    recyclerView.setVisibility(View.GONE);
-                } else {
-                    emptyState.setVisibility(View.GONE);
-                    recyclerView.setVisibility(View.VISIBLE);
-                }
-            });
-        });
+    private void updateEmptyState(int observationCount) {
+        if (observationCount == 0) {
+            emptyState.setVisibility(View.VISIBLE);
+            recyclerView.setVisibility(View.GONE);
+        } else {
+            emptyState.setVisibility(View.GONE);
+            recyclerView.setVisibility(View.VISIBLE);
+        }
     }
 
     private void openAddObservation() {
@@ -143,7 +134,6 @@ public class ObservationListActivity extends AppCompatActivity implements Observ
             observationDao.softDeleteObservationById(observation.getObservationID(), now, now);
             runOnUiThread(() -> {
                 Toast.makeText(this, R.string.observation_deleted, Toast.LENGTH_SHORT).show();
-                loadObservations();
                 syncIfLoggedIn();
             });
         });
@@ -158,8 +148,8 @@ public class ObservationListActivity extends AppCompatActivity implements Observ
     }
 
     private void syncIfLoggedIn() {
-        if (SessionManager.isLoggedIn(this) && NetworkUtils.isOnline(this)) {
-            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
+        if (SessionManager.isLoggedIn(this)) {
+            SyncScheduler.requestSync(getApplicationContext());
         }
     }
 }
@@ -0,0 +1,121 @@
+package com.example.mobilecw.activities;
+
+import android.content.Context;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModel;
+
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.services.PhotoIngestor;
+import com.example.mobilecw.sync.SyncScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The save of {@link ObservationFormActivity}, photo ingest included. It lives
+ * across configuration changes, so a form recreated mid-save shows the save in
+ * progress and ignores a second submit instead of inserting the observation
+ * twice. Leaving the screen does not cancel a confirmed save either.
+ */
+public class ObservationSaveViewModel extends ViewModel {
+
+    public enum Outcome {
+        SAVED, UPDATED, FAILED
+    }
+
+    // Not the activity's executor, which is shut down with it
+    private static final ExecutorService saveExecutor = Executors.newSingleThreadExecutor();
+
+    private final MutableLiveData<Integer> ingestProgress = new MutableLiveData<>();
+    private final MutableLiveData<Outcome> outcome = new MutableLiveData<>();
+    private volatile boolean saving;
+
+    public boolean isSaving() {
+        return saving;
+    }
+
+    /**
+     * Percent of the photo processed, while a new photo is being ingested.
+     */
+    public LiveData<Integer> getIngestProgress() {
+        return ingestProgress;
+    }
+
+    /**
+     * How the last save ended; null once {@link #consumeOutcome() consumed}.
+     */
+    public LiveData<Outcome> getOutcome() {
+        return outcome;
+    }
+
+    public void consumeOutcome() {
+        outcome.setValue(null);
+    }
+
+    /**
+     * Store a new photo's compressed copy and thumbnail, then insert or update the
+     * observation. Call on the main thread; ignored while a save is running.
+     */
+    public void save(Context context, Observation observation, String previousPicture, String previousThumbnail,
+                     boolean updating, boolean shouldSyncWithCloud) {
+        if (saving) {
+            return;
+        }
+        saving = true;
+        Context appContext = context.getApplicationContext();
+        PhotoIngestor photoIngestor = PhotoIngestor.getInstance(appContext);
+        String picture = observation.getPicture();
+        if (picture == null || photoIngestor.isIngested(picture)) {
+            persist(appContext, observation, previousPicture, previousThumbnail, updating, shouldSyncWithCloud);
+            return;
+        }
+
+        // New picture: store a compressed copy and thumbnail instead of the original
+        photoIngestor.ingest(picture, new PhotoIngestor.Callback() {
+            @Override
+            public void onProgress(int percent) {
+                ingestProgress.setValue(percent);
+            }
+
+            @Override
+            public void onComplete(PhotoIngestor.Result result) {
+                if (result != null) {
+                    observation.setPicture(result.picturePath);
+                    observation.setThumbnail(result.thumbnailPath);
+                    observation.setPictureHash(result.pictureHash);
+                }
+                persist(appContext, observation, previousPicture, previousThumbnail, updating, shouldSyncWithCloud);
+            }
+        });
+    }
+
+    private void persist(Context appContext, Observation observation, String previousPicture,
+                         String previousThumbnail, boolean updating, boolean shouldSyncWithCloud) {
+        ObservationDao observationDao = AppDatabase.getDatabase(appContext).observationDao();
+        PhotoIngestor photoIngestor = PhotoIngestor.getInstance(appContext);
+        saveExecutor.execute(() -> {
+            try {
+                if (updating) {
+                    observationDao.updateObservation(observation);
+                    if (previousPicture != null && !previousPicture.equals(observation.getPicture())) {
+                        // The replaced picture's ingested copies are no longer referenced
+                        photoIngestor.deleteIngested(previousPicture, previousThumbnail);
+                    }
+                } else {
+                    observationDao.insertObservation(observation);
+                }
+                if (shouldSyncWithCloud) {
+                    SyncScheduler.requestSync(appContext);
+                }
+                outcome.postValue(updating ? Outcome.UPDATED : Outcome.SAVED);
+            } catch (Exception e) {
+                saving = false;
+                outcome.postValue(Outcome.FAILED);
+            }
+        });
+    }
+}
@@ -22,10 +22,14 @@ import com.example.mobilecw.R;
 import com.example.mobilecw.adapters.HikeListAdapter;
 import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.HikeRepository;
 import com.example.mobilecw.database.dao.HikeDao;
 import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.services.LocalSemanticSearchService;
 import com.example.mobilecw.services.SemanticSearchService;
+import com.example.mobilecw.utils.HikeSearchIndex;
 import com.example.mobilecw.utils.SearchHelper;
+import com.example.mobilecw.utils.VectorIndex;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import android.widget.EditText;
@@ -44,6 +48,7 @@ import java.util.concurrent.Executors;
 public class SearchActivity extends AppCompatActivity implements HikeListAdapter.OnHikeClickListener {
     
     private static final String TAG = "SearchActivity";
+    private static final int SEMANTIC_TOP_K = 20;
     
     private EditText searchInput;
     private TextInputEditText locationInput, minLengthInput, maxLengthInput;
@@ -64,6 +69,7 @@ public class SearchActivity extends AppCompatActivity implements HikeListAdapter
     
     private List<Hike> allHikes = new ArrayList<>();
     private List<Hike> filteredHikes = new ArrayList<>();
+    private final HikeSearchIndex searchIndex = new HikeSearchIndex();
     
     private Calendar startDateCalendar;
     private Calendar endDateCalendar;
@@ -99,8 +105,8 @@ public class SearchActivity extends AppCompatActivity implements HikeListAdapter
         // Setup spinners
         setupSpinners();
         
-        // Load all hikes
-        loadAllHikes();
+        // Observe all hikes
+        observeAllHikes();
     }
     
     private void initializeViews() {
@@ -291,12 +297,21 @@ public class SearchActivity extends AppCompatActivity implements HikeListAdapter
         searchResultsRecyclerView.setAdapter(adapter);
     }
     
-    private void loadAllHikes() {
-        executorService.execute(() -> {
-            allHikes = hikeDao.getAllHikes();
-            runOnUiThread(() -> {
-                filteredHikes = new ArrayList<>(allHikes);
-                updateResults(filteredHikes);
+    private void observeAllHikes() {
+        // Shared snapshot: re-delivered only when the hikes table changes
+        HikeRepository.getInstance(this).observeAllHikes().observe(this, hikes -> {
+            executorService.execute(() -> {
+                // Only re-indexes hikes that were added, edited or removed since the last load
+                searchIndex.sync(hikes);
+                runOnUiThread(() -> {
+                    boolean firstLoad = allHikes.isEmpty();
+                    allHikes = hikes;
+                    // Keep the results of an active search; refresh the unfiltered list
+                    if (firstLoad || !hasActiveFilters()) {
+                        filteredHikes = new ArrayList<>(allHikes);
+                        updateResults(filteredHikes);
+                    }
+                });
             });
         });
     }
@@ -319,7 +334,7 @@ public class SearchActivity extends AppCompatActivity implements HikeListAdapter
         } else {
             // Perform fuzzy search with relevance scoring
             executorService.execute(() -> {
-                List<Hike> searchResults = SearchHelper.fuzzySearch(allHikes, query);
+                List<Hike> searchResults = searchIndex.search(query);
                 // Then apply other filters
                 final List<Hike> finalResults = applyOtherFilters(searchResults);
                 runOnUiThread(() -> {
@@ -346,12 +361,37 @@ public class SearchActivity extends AppCompatActivity implements HikeListAdapter
         searchResultsRecyclerView.setVisibility(View.GONE);
         emptyStateLayout.setVisibility(View.GONE);
 
+        // Rank against the on-device index first; the backend only if nothing is indexed yet
+        int userId = SessionManager.getCurrentUserId(this);
+        executorService.execute(() -> {
+            List<VectorIndex.Match> matches = LocalSemanticSearchService.getInstance(this)
+                    .searchHikes(userId, firebaseUid, query, SEMANTIC_TOP_K);
+            if (matches == null) {
+                runOnUiThread(() -> performRemoteSemanticSearch(query, firebaseUid));
+                return;
+            }
+            List<Hike> matchedHikes = new ArrayList<>();
+            for (VectorIndex.Match match : matches) {
+                Hike hike = hikeDao.getHikeById(match.id);
+                if (hike != null) {
+                    matchedHikes.add(hike);
+                }
+            }
+            final List<Hike> finalResults = applyOtherFilters(matchedHikes);
+            runOnUiThread(() -> {
+                filteredHikes = finalResults;
+                updateResults(filteredHikes);
+            });
+        });
+    }
+
+    private void performRemoteSemanticSearch(String query, String firebaseUid) {
         SemanticSearchService.search(
             this,
             query,
             firebaseUid,
             "hikes", // Search only hikes
-            20, // Top 20 results
+            SEMANTIC_TOP_K,
             new SemanticSearchService.SearchCallback() {
                 @Override
                 public void onSuccess(List<SemanticSearchService.SearchResult> results) {
@@ -443,7 +483,7 @@ public class SearchActivity extends AppCompatActivity implements HikeListAdapter
             // First apply fuzzy search if name query exists
             List<Hike> searchResults = allHikes;
             if (!nameQuery.isEmpty()) {
-                searchResults = SearchHelper.fuzzySearch(allHikes, nameQuery);
+                searchResults = searchIndex.search(nameQuery);
             }
             
             // Then apply advanced filters
@@ -14,7 +14,7 @@ import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
 import com.example.mobilecw.database.dao.UserDao;
 import com.example.mobilecw.database.entities.User;
-import com.example.mobilecw.sync.FirebaseSyncManager;
+import com.example.mobilecw.sync.SyncScheduler;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
@@ -156,7 +156,7 @@ public class SignupActivity extends AppCompatActivity {
                                         if (userId > 0) {
                                             SessionManager.setCurrentUserId(this, (int) userId);
                                             SessionManager.setCurrentFirebaseUid(this, firebaseUid);
-                                            FirebaseSyncManager.getInstance(getApplicationContext()).syncNow();
+                                            SyncScheduler.requestSync(getApplicationContext());
                                             Toast.makeText(this, getString(R.string.signup_successful), Toast.LENGTH_SHORT).show();
 
                                             Intent intent = new Intent(SignupActivity.this, UsersActivity.class);
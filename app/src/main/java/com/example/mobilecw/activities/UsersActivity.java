@@ -11,25 +11,22 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mobilecw.R;
 import com.example.mobilecw.adapters.HikeListAdapter;
 import com.example.mobilecw.auth.SessionManager;
-import com.example.mobilecw.database.AppDatabase;
-import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.HikeRepository;
 import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.model.HikeStats;
 
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class UsersActivity extends AppCompatActivity implements HikeListAdapter.OnHikeClickListener {
 
@@ -59,24 +56,25 @@ public class UsersActivity extends AppCompatActivity implements HikeListAdapter.
     
     private LinearLayout navHome, navHiking, navUsers, navSettings;
     
-    private AppDatabase database;
-    private HikeDao hikeDao;
-    private ExecutorService executorService;
+    private HikeRepository repository;
+    private HikeListAdapter recentActivityAdapter;
+    private LiveData<HikeStats> statsLiveData;
+    private LiveData<List<Hike>> recentHikesLiveData;
+    private int observedUserId = Integer.MIN_VALUE;
     private SharedPreferences sharedPreferences;
     
     private static final String PREFS_NAME = "mhike_prefs";
     private static final String KEY_USER_NAME = "user_name";
     private static final String KEY_USER_EMAIL = "user_email";
+    private static final int RECENT_ACTIVITY_LIMIT = 3;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_users);
         
-        // Initialize database
-        database = AppDatabase.getDatabase(this);
-        hikeDao = database.hikeDao();
-        executorService = Executors.newSingleThreadExecutor();
+        // Shared observable queries
+        repository = HikeRepository.getInstance(this);
         sharedPreferences = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
         
         // Initialize views
@@ -119,6 +117,11 @@ public class UsersActivity extends AppCompatActivity implements HikeListAdapter.
         hardTrailsPercent = findViewById(R.id.hardTrailsPercent);
         recentActivityRecyclerView = findViewById(R.id.recentActivityRecyclerView);
         
+        // Use HikeListAdapter for recent activity
+        recentActivityAdapter = new HikeListAdapter(this);
+        recentActivityRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        recentActivityRecyclerView.setAdapter(recentActivityAdapter);
+        
         navHome = findViewById(R.id.navHome);
         navHiking = findViewById(R.id.navHiking);
         navUsers = findViewById(R.id.navUsers);
@@ -173,10 +176,8 @@ public class UsersActivity extends AppCompatActivity implements HikeListAdapter.
         String memberSince = "Member since " + dateFormat.format(new Date());
         memberSinceText.setText(memberSince);
         
-        // Load statistics
-        loadStatistics();
-        loadActivityOverview();
-        loadRecentActivity();
+        // Observe statistics (also fills the activity overview) and recent activity
+        observeUserHikes();
     }
     
     private String getInitials(String name) {
@@ -192,163 +193,55 @@ public class UsersActivity extends AppCompatActivity implements HikeListAdapter.
         return "AS";
     }
     
-    private void loadStatistics() {
-        executorService.execute(() -> {
-            int userId = SessionManager.getCurrentUserId(this);
-            List<Hike> hikes;
-            
-            if (userId == -1) {
-                hikes = hikeDao.getHikesForNonRegisteredUsers();
-            } else {
-                hikes = hikeDao.getHikesByUserId(userId);
-            }
-            
-            int totalHikes = hikes.size();
-            double totalKm = 0.0;
-            int easyCount = 0;
-            int mediumCount = 0;
-            int hardCount = 0;
-            int thisMonthCount = 0;
-            
-            Calendar calendar = Calendar.getInstance();
-            int currentMonth = calendar.get(Calendar.MONTH);
-            int currentYear = calendar.get(Calendar.YEAR);
-            
-            for (Hike hike : hikes) {
-                totalKm += hike.getLength();
-                
-                // Count by difficulty
-                String difficulty = hike.getDifficulty();
-                if (difficulty != null) {
-                    if (difficulty.equalsIgnoreCase("Easy")) {
-                        easyCount++;
-                    } else if (difficulty.equalsIgnoreCase("Medium")) {
-                        mediumCount++;
-                    } else if (difficulty.equalsIgnoreCase("Hard") || difficulty.equalsIgnoreCase("Expert")) {
-                        hardCount++;
-                    }
-                }
-                
-                // Count this month's hikes
-                if (hike.getDate() != null) {
-                    calendar.setTime(hike.getDate());
-                    if (calendar.get(Calendar.MONTH) == currentMonth && 
-                        calendar.get(Calendar.YEAR) == currentYear) {
-                        thisMonthCount++;
-                    }
-                }
-            }
-            
-            double avgKm = totalHikes > 0 ? totalKm / totalHikes : 0.0;
-            
-            final int finalTotalHikes = totalHikes;
-            final double finalTotalKm = totalKm;
-            final double finalAvgKm = avgKm;
-            final int finalThisMonth = thisMonthCount;
-            final int finalEasyCount = easyCount;
-            final int finalMediumCount = mediumCount;
-            final int finalHardCount = hardCount;
-            
-            runOnUiThread(() -> {
-                totalHikesText.setText(String.valueOf(finalTotalHikes));
-                DecimalFormat df = new DecimalFormat("#.#");
-                totalKmText.setText(df.format(finalTotalKm));
-                avgKmText.setText(df.format(finalAvgKm));
-                thisMonthText.setText(String.valueOf(finalThisMonth));
-                
-                // Calculate level (simple calculation: 1 level per 5 hikes)
-                int level = Math.max(1, (finalTotalHikes / 5) + 1);
-                levelText.setText("Level " + level);
-            });
+    private void observeUserHikes() {
+        int userId = SessionManager.getCurrentUserId(this);
+        if (userId == observedUserId) {
+            // Same user: the observers already re-run their queries when hikes change
+            return;
+        }
+        if (statsLiveData != null) {
+            statsLiveData.removeObservers(this);
+            recentHikesLiveData.removeObservers(this);
+        }
+        observedUserId = userId;
+        
+        // One aggregate query instead of loading and looping over every hike
+        statsLiveData = repository.observeStats(userId);
+        statsLiveData.observe(this, stats -> {
+            bindStatistics(stats);
+            bindActivityOverview(stats);
         });
+        
+        // Most recent first, limited in SQL
+        recentHikesLiveData = repository.observeRecentHikes(userId, RECENT_ACTIVITY_LIMIT);
+        recentHikesLiveData.observe(this, recentActivityAdapter::submitList);
     }
     
-    private void loadActivityOverview() {
-        executorService.execute(() -> {
-            int userId = SessionManager.getCurrentUserId(this);
-            List<Hike> hikes;
-            
-            if (userId == -1) {
-                hikes = hikeDao.getHikesForNonRegisteredUsers();
-            } else {
-                hikes = hikeDao.getHikesByUserId(userId);
-            }
-            
-            int easyCount = 0;
-            int mediumCount = 0;
-            int hardCount = 0;
-            
-            for (Hike hike : hikes) {
-                String difficulty = hike.getDifficulty();
-                if (difficulty != null) {
-                    if (difficulty.equalsIgnoreCase("Easy")) {
-                        easyCount++;
-                    } else if (difficulty.equalsIgnoreCase("Medium")) {
-                        mediumCount++;
-                    } else if (difficulty.equalsIgnoreCase("Hard") || difficulty.equalsIgnoreCase("Expert")) {
-                        hardCount++;
-                    }
-                }
-            }
-            
-            int total = easyCount + mediumCount + hardCount;
-            int easyPercent = total > 0 ? (easyCount * 100 / total) : 0;
-            int mediumPercent = total > 0 ? (mediumCount * 100 / total) : 0;
-            int hardPercent = total > 0 ? (hardCount * 100 / total) : 0;
-            
-            final int finalEasyPercent = easyPercent;
-            final int finalMediumPercent = mediumPercent;
-            final int finalHardPercent = hardPercent;
-            
-            runOnUiThread(() -> {
-                easyTrailsProgress.setProgress(finalEasyPercent);
-                mediumTrailsProgress.setProgress(finalMediumPercent);
-                hardTrailsProgress.setProgress(finalHardPercent);
-                
-                easyTrailsPercent.setText(finalEasyPercent + "%");
-                mediumTrailsPercent.setText(finalMediumPercent + "%");
-                hardTrailsPercent.setText(finalHardPercent + "%");
-            });
-        });
+    private void bindStatistics(HikeStats stats) {
+        totalHikesText.setText(String.valueOf(stats.hikeCount));
+        DecimalFormat df = new DecimalFormat("#.#");
+        totalKmText.setText(df.format(stats.totalLength));
+        avgKmText.setText(df.format(stats.averageLength));
+        thisMonthText.setText(String.valueOf(stats.thisMonthCount));
+        
+        // Calculate level (simple calculation: 1 level per 5 hikes)
+        int level = Math.max(1, (stats.hikeCount / 5) + 1);
+        levelText.setText("Level " + level);
     }
     
-    private void loadRecentActivity() {
-        executorService.execute(() -> {
-            int userId = SessionManager.getCurrentUserId(this);
-            List<Hike> hikes;
-            
-            if (userId == -1) {
-                hikes = hikeDao.getHikesForNonRegisteredUsers();
-            } else {
-                hikes = hikeDao.getHikesByUserId(userId);
-            }
-            
-            // Sort by date descending and take first 3
-            List<Hike> recentHikes = new ArrayList<>();
-            if (!hikes.isEmpty()) {
-                // Simple sort by date (most recent first)
-                hikes.sort((h1, h2) -> {
-                    Date d1 = h1.getDate();
-                    Date d2 = h2.getDate();
-                    if (d1 == null && d2 == null) return 0;
-                    if (d1 == null) return 1;
-                    if (d2 == null) return -1;
-                    return d2.compareTo(d1);
-                });
-                
-                int limit = Math.min(3, hikes.size());
-                recentHikes = hikes.subList(0, limit);
-            }
-            
-            final List<Hike> finalRecentHikes = recentHikes;
-            runOnUiThread(() -> {
-                // Use HikeListAdapter for recent activity
-                HikeListAdapter adapter = new HikeListAdapter(this);
-                adapter.submitList(finalRecentHikes);
-                recentActivityRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-                recentActivityRecyclerView.setAdapter(adapter);
-            });
-        });
+    private void bindActivityOverview(HikeStats stats) {
+        int total = stats.easyCount + stats.mediumCount + stats.hardCount;
+        int easyPercent = total > 0 ? (stats.easyCount * 100 / total) : 0;
+        int mediumPercent = total > 0 ? (stats.mediumCount * 100 / total) : 0;
+        int hardPercent = total > 0 ? (stats.hardCount * 100 / total) : 0;
+        
+        easyTrailsProgress.setProgress(easyPercent);
+        mediumTrailsProgress.setProgress(mediumPercent);
+        hardTrailsProgress.setProgress(hardPercent);
+        
+        easyTrailsPercent.setText(easyPercent + "%");
+        mediumTrailsPercent.setText(mediumPercent + "%");
+        hardTrailsPercent.setText(hardPercent + "%");
     }
     
     private void setupBottomNavigation() {
@@ -412,13 +305,5 @@ public class UsersActivity extends AppCompatActivity implements HikeListAdapter.
         intent.putExtra(HikeDetailActivity.EXTRA_HIKE_ID, hike.getHikeID());
         startActivity(intent);
     }
-    
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (executorService != null) {
-            executorService.shutdown();
-        }
-    }
 }
 
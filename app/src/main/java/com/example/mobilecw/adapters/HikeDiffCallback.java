@@ -0,0 +1,57 @@
+package com.example.mobilecw.adapters;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.example.mobilecw.database.entities.Hike;
+
+import java.util.Objects;
+
+/**
+ * Diff rules for hike rows, shared by the hike adapters. Rows are matched by hikeID.
+ * When only the active flag changed the diff carries {@link #PAYLOAD_ACTIVE}, so the
+ * card updates its badge instead of binding every field again.
+ */
+final class HikeDiffCallback extends DiffUtil.ItemCallback<Hike> {
+
+    /** Selection mode or the row's checkbox changed; adapters post this themselves. */
+    static final Object PAYLOAD_SELECTION = "selection";
+    /** Only {@link Hike#getIsActive()} changed. */
+    static final Object PAYLOAD_ACTIVE = "active";
+
+    static final HikeDiffCallback INSTANCE = new HikeDiffCallback();
+
+    private HikeDiffCallback() {
+    }
+
+    @Override
+    public boolean areItemsTheSame(@NonNull Hike oldItem, @NonNull Hike newItem) {
+        return oldItem.getHikeID() == newItem.getHikeID();
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull Hike oldItem, @NonNull Hike newItem) {
+        return sameShownFields(oldItem, newItem) && sameActiveState(oldItem, newItem);
+    }
+
+    @Nullable
+    @Override
+    public Object getChangePayload(@NonNull Hike oldItem, @NonNull Hike newItem) {
+        // Starting or ending a hike also bumps updatedAt, which no card shows
+        return sameShownFields(oldItem, newItem) ? PAYLOAD_ACTIVE : null;
+    }
+
+    private static boolean sameShownFields(Hike oldItem, Hike newItem) {
+        return Objects.equals(oldItem.getName(), newItem.getName())
+                && Objects.equals(oldItem.getLocation(), newItem.getLocation())
+                && Objects.equals(oldItem.getDate(), newItem.getDate())
+                && oldItem.getLength() == newItem.getLength()
+                && Objects.equals(oldItem.getDifficulty(), newItem.getDifficulty())
+                && oldItem.isParkingAvailable() == newItem.isParkingAvailable();
+    }
+
+    private static boolean sameActiveState(Hike oldItem, Hike newItem) {
+        return Boolean.TRUE.equals(oldItem.getIsActive()) == Boolean.TRUE.equals(newItem.getIsActive());
+    }
+}
@@ -3,13 +3,11 @@ package com.example.mobilecw.adapters;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.CheckBox;
-import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.android.material.button.MaterialButton;
 import com.example.mobilecw.R;
 import com.example.mobilecw.database.entities.Hike;
 
@@ -20,14 +18,41 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
-public class HikeListAdapter extends RecyclerView.Adapter<HikeListAdapter.HikeViewHolder> {
+/**
+ * Hike cards for a list held in memory. New lists are diffed on a background
+ * thread, so a filter keystroke only rebinds the cards that changed.
+ */
+public class HikeListAdapter extends RecyclerView.Adapter<HikeViewHolder> {
 
-    private List<Hike> hikes = new ArrayList<>();
+    private final AsyncListDiffer<Hike> differ = new AsyncListDiffer<>(this, HikeDiffCallback.INSTANCE);
     private final OnHikeClickListener listener;
     private OnSelectionChangedListener selectionChangedListener;
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
     private boolean selectionMode = false;
     private final Set<Integer> selectedHikeIds = new HashSet<>();
+    private final HikeViewHolder.Host host = new HikeViewHolder.Host() {
+        @Override
+        public boolean isSelectionMode() {
+            return selectionMode;
+        }
+
+        @Override
+        public boolean isSelected(Hike hike) {
+            return selectedHikeIds.contains(hike.getHikeID());
+        }
+
+        @Override
+        public void onToggleSelection(Hike hike) {
+            toggleSelection(hike);
+        }
+
+        @Override
+        public void onHikeClicked(Hike hike) {
+            if (listener != null) {
+                listener.onHikeClicked(hike);
+            }
+        }
+    };
 
     public interface OnHikeClickListener {
         void onHikeClicked(Hike hike);
@@ -39,18 +64,24 @@ public class HikeListAdapter extends RecyclerView.Adapter<HikeListAdapter.HikeVi
 
     public HikeListAdapter(OnHikeClickListener listener) {
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     public void setOnSelectionChangedListener(OnSelectionChangedListener listener) {
         this.selectionChangedListener = listener;
     }
 
+    /**
+     * Show the given hikes. The list must not be modified after it is submitted.
+     */
     public void submitList(List<Hike> items) {
-        this.hikes = items != null ? items : new ArrayList<>();
-        notifyDataSetChanged();
+        differ.submitList(items);
     }
     
     public void setSelectionMode(boolean enabled) {
+        if (selectionMode == enabled) {
+            return;
+        }
         selectionMode = enabled;
         if (!selectionMode) {
             selectedHikeIds.clear();
@@ -58,7 +89,7 @@ public class HikeListAdapter extends RecyclerView.Adapter<HikeListAdapter.HikeVi
                 selectionChangedListener.onSelectionChanged(0);
             }
         }
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount(), HikeDiffCallback.PAYLOAD_SELECTION);
     }
     
     public boolean isSelectionMode() {
@@ -78,75 +109,24 @@ public class HikeListAdapter extends RecyclerView.Adapter<HikeListAdapter.HikeVi
 
     @Override
     public void onBindViewHolder(@NonNull HikeViewHolder holder, int position) {
-        Hike hike = hikes.get(position);
-        holder.bind(hike);
+        holder.bind(differ.getCurrentList().get(position), dateFormat, host);
     }
 
     @Override
-    public int getItemCount() {
-        return hikes.size();
+    public void onBindViewHolder(@NonNull HikeViewHolder holder, int position, @NonNull List<Object> payloads) {
+        holder.bind(differ.getCurrentList().get(position), dateFormat, host, payloads);
     }
 
-    class HikeViewHolder extends RecyclerView.ViewHolder {
-
-        TextView name, location, date, length, difficulty, parking;
-        MaterialButton viewButton;
-        CheckBox selectCheckbox;
-
-        HikeViewHolder(@NonNull View itemView) {
-            super(itemView);
-            name = itemView.findViewById(R.id.hikeNameText);
-            location = itemView.findViewById(R.id.hikeLocationText);
-            date = itemView.findViewById(R.id.hikeDateText);
-            length = itemView.findViewById(R.id.hikeLengthText);
-            difficulty = itemView.findViewById(R.id.hikeDifficultyText);
-            parking = itemView.findViewById(R.id.hikeParkingText);
-            viewButton = itemView.findViewById(R.id.viewButton);
-            selectCheckbox = itemView.findViewById(R.id.hikeSelectCheckbox);
-        }
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getHikeID();
+    }
 
-        void bind(Hike hike) {
-            name.setText(hike.getName());
-            location.setText(hike.getLocation());
-            if (hike.getDate() != null) {
-                date.setText(dateFormat.format(hike.getDate()));
-            } else {
-                date.setText("N/A");
-            }
-            length.setText(String.format(Locale.getDefault(), "%.1f km", hike.getLength()));
-            difficulty.setText(hike.getDifficulty());
-            parking.setText("Parking: " + (hike.isParkingAvailable() ? "Yes" : "No"));
-
-            if (selectionMode) {
-                selectCheckbox.setVisibility(View.VISIBLE);
-                boolean isSelected = selectedHikeIds.contains(hike.getHikeID());
-                selectCheckbox.setChecked(isSelected);
-                viewButton.setEnabled(false);
-                viewButton.setAlpha(0.5f);
-
-                View.OnClickListener toggleListener = v -> toggleSelection(hike);
-                itemView.setOnClickListener(toggleListener);
-                selectCheckbox.setOnClickListener(toggleListener);
-                viewButton.setOnClickListener(toggleListener);
-            } else {
-                selectCheckbox.setVisibility(View.GONE);
-                selectCheckbox.setOnClickListener(null);
-                itemView.setOnClickListener(v -> {
-                    if (listener != null) {
-                        listener.onHikeClicked(hike);
-                    }
-                });
-                viewButton.setEnabled(true);
-                viewButton.setAlpha(1f);
-                viewButton.setOnClickListener(v -> {
-                    if (listener != null) {
-                        listener.onHikeClicked(hike);
-                    }
-                });
-            }
-        }
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
     }
-    
+
     private void toggleSelection(Hike hike) {
         int id = hike.getHikeID();
         if (selectedHikeIds.contains(id)) {
@@ -157,7 +137,13 @@ public class HikeListAdapter extends RecyclerView.Adapter<HikeListAdapter.HikeVi
         if (selectionChangedListener != null) {
             selectionChangedListener.onSelectionChanged(selectedHikeIds.size());
         }
-        notifyDataSetChanged();
+        List<Hike> current = differ.getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i).getHikeID() == id) {
+                notifyItemChanged(i, HikeDiffCallback.PAYLOAD_SELECTION);
+                break;
+            }
+        }
     }
 }
 
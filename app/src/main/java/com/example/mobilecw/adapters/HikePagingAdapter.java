@@ -0,0 +1,129 @@
+package com.example.mobilecw.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+
+import com.example.mobilecw.R;
+import com.example.mobilecw.database.entities.Hike;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Paging-aware counterpart of HikeListAdapter: only the pages around the visible
+ * rows are held in memory and page updates are diffed instead of redrawn.
+ */
+public class HikePagingAdapter extends PagingDataAdapter<Hike, HikeViewHolder> {
+
+    private final HikeListAdapter.OnHikeClickListener listener;
+    private HikeListAdapter.OnSelectionChangedListener selectionChangedListener;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+    private boolean selectionMode = false;
+    private final Set<Integer> selectedHikeIds = new HashSet<>();
+    private final HikeViewHolder.Host host = new HikeViewHolder.Host() {
+        @Override
+        public boolean isSelectionMode() {
+            return selectionMode;
+        }
+
+        @Override
+        public boolean isSelected(Hike hike) {
+            return selectedHikeIds.contains(hike.getHikeID());
+        }
+
+        @Override
+        public void onToggleSelection(Hike hike) {
+            toggleSelection(hike);
+        }
+
+        @Override
+        public void onHikeClicked(Hike hike) {
+            if (listener != null) {
+                listener.onHikeClicked(hike);
+            }
+        }
+    };
+
+    public HikePagingAdapter(HikeListAdapter.OnHikeClickListener listener) {
+        super(HikeDiffCallback.INSTANCE);
+        this.listener = listener;
+    }
+
+    public void setOnSelectionChangedListener(HikeListAdapter.OnSelectionChangedListener listener) {
+        this.selectionChangedListener = listener;
+    }
+
+    public void setSelectionMode(boolean enabled) {
+        if (selectionMode == enabled) {
+            return;
+        }
+        selectionMode = enabled;
+        if (!selectionMode) {
+            selectedHikeIds.clear();
+            if (selectionChangedListener != null) {
+                selectionChangedListener.onSelectionChanged(0);
+            }
+        }
+        notifyItemRangeChanged(0, getItemCount(), HikeDiffCallback.PAYLOAD_SELECTION);
+    }
+
+    public boolean isSelectionMode() {
+        return selectionMode;
+    }
+
+    public List<Integer> getSelectedHikeIds() {
+        return new ArrayList<>(selectedHikeIds);
+    }
+
+    @NonNull
+    @Override
+    public HikeViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_hike_card, parent, false);
+        return new HikeViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HikeViewHolder holder, int position) {
+        // Null only with placeholders, which the hike pager does not use
+        Hike hike = getItem(position);
+        if (hike != null) {
+            holder.bind(hike, dateFormat, host);
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HikeViewHolder holder, int position, @NonNull List<Object> payloads) {
+        Hike hike = getItem(position);
+        if (hike != null) {
+            holder.bind(hike, dateFormat, host, payloads);
+        }
+    }
+
+    private void toggleSelection(Hike hike) {
+        int id = hike.getHikeID();
+        if (selectedHikeIds.contains(id)) {
+            selectedHikeIds.remove(id);
+        } else {
+            selectedHikeIds.add(id);
+        }
+        if (selectionChangedListener != null) {
+            selectionChangedListener.onSelectionChanged(selectedHikeIds.size());
+        }
+        // peek() reads the loaded pages without triggering a page load
+        for (int i = 0; i < getItemCount(); i++) {
+            Hike item = peek(i);
+            if (item != null && item.getHikeID() == id) {
+                notifyItemChanged(i, HikeDiffCallback.PAYLOAD_SELECTION);
+                break;
+            }
+        }
+    }
+}
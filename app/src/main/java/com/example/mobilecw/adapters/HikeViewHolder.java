@@ -0,0 +1,111 @@
+package com.example.mobilecw.adapters;
+
+import android.view.View;
+import android.widget.CheckBox;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.button.MaterialButton;
+import com.example.mobilecw.R;
+import com.example.mobilecw.database.entities.Hike;
+
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * View holder for item_hike_card, shared by HikeListAdapter and HikePagingAdapter.
+ * Selection state and clicks are delegated to the owning adapter.
+ */
+public class HikeViewHolder extends RecyclerView.ViewHolder {
+
+    /**
+     * Adapter-side state and callbacks a hike card needs when binding.
+     */
+    interface Host {
+        boolean isSelectionMode();
+        boolean isSelected(Hike hike);
+        void onToggleSelection(Hike hike);
+        void onHikeClicked(Hike hike);
+    }
+
+    TextView name, location, date, length, difficulty, parking, activeBadge;
+    MaterialButton viewButton;
+    CheckBox selectCheckbox;
+
+    HikeViewHolder(@NonNull View itemView) {
+        super(itemView);
+        name = itemView.findViewById(R.id.hikeNameText);
+        location = itemView.findViewById(R.id.hikeLocationText);
+        date = itemView.findViewById(R.id.hikeDateText);
+        length = itemView.findViewById(R.id.hikeLengthText);
+        difficulty = itemView.findViewById(R.id.hikeDifficultyText);
+        parking = itemView.findViewById(R.id.hikeParkingText);
+        activeBadge = itemView.findViewById(R.id.hikeActiveText);
+        viewButton = itemView.findViewById(R.id.viewButton);
+        selectCheckbox = itemView.findViewById(R.id.hikeSelectCheckbox);
+    }
+
+    void bind(Hike hike, SimpleDateFormat dateFormat, Host host) {
+        name.setText(hike.getName());
+        location.setText(hike.getLocation());
+        if (hike.getDate() != null) {
+            date.setText(dateFormat.format(hike.getDate()));
+        } else {
+            date.setText("N/A");
+        }
+        length.setText(String.format(Locale.getDefault(), "%.1f km", hike.getLength()));
+        difficulty.setText(hike.getDifficulty());
+        parking.setText("Parking: " + (hike.isParkingAvailable() ? "Yes" : "No"));
+        bindActive(hike);
+        bindSelection(hike, host);
+    }
+
+    /**
+     * Partial rebind for the payloads in {@link HikeDiffCallback}; no payload or an
+     * unknown one falls back to a full {@link #bind}.
+     */
+    void bind(Hike hike, SimpleDateFormat dateFormat, Host host, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            bind(hike, dateFormat, host);
+            return;
+        }
+        for (Object payload : payloads) {
+            if (payload == HikeDiffCallback.PAYLOAD_ACTIVE) {
+                bindActive(hike);
+            } else if (payload == HikeDiffCallback.PAYLOAD_SELECTION) {
+                bindSelection(hike, host);
+            } else {
+                bind(hike, dateFormat, host);
+                return;
+            }
+        }
+    }
+
+    void bindActive(Hike hike) {
+        activeBadge.setVisibility(Boolean.TRUE.equals(hike.getIsActive()) ? View.VISIBLE : View.GONE);
+    }
+
+    void bindSelection(Hike hike, Host host) {
+        if (host.isSelectionMode()) {
+            selectCheckbox.setVisibility(View.VISIBLE);
+            selectCheckbox.setChecked(host.isSelected(hike));
+            viewButton.setEnabled(false);
+            viewButton.setAlpha(0.5f);
+
+            View.OnClickListener toggleListener = v -> host.onToggleSelection(hike);
+            itemView.setOnClickListener(toggleListener);
+            selectCheckbox.setOnClickListener(toggleListener);
+            viewButton.setOnClickListener(toggleListener);
+        } else {
+            selectCheckbox.setVisibility(View.GONE);
+            selectCheckbox.setOnClickListener(null);
+            itemView.setOnClickListener(v -> host.onHikeClicked(hike));
+            viewButton.setEnabled(true);
+            viewButton.setAlpha(1f);
+            viewButton.setOnClickListener(v -> host.onHikeClicked(hike));
+        }
+    }
+}
@@ -8,28 +8,36 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mobilecw.R;
 import com.example.mobilecw.activities.HikeDetailActivity;
 import com.example.mobilecw.database.entities.Hike;
 
-import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.Locale;
 
 public class NearbyTrailAdapter extends RecyclerView.Adapter<NearbyTrailAdapter.TrailViewHolder> {
     
-    private List<Hike> trails;
+    private final AsyncListDiffer<Hike> differ = new AsyncListDiffer<>(this, HikeDiffCallback.INSTANCE);
     private OnTrailClickListener listener;
     
     public interface OnTrailClickListener {
         void onTrailClick(Hike hike);
     }
     
-    public NearbyTrailAdapter(List<Hike> trails, OnTrailClickListener listener) {
-        this.trails = trails;
+    public NearbyTrailAdapter(OnTrailClickListener listener) {
         this.listener = listener;
+        setHasStableIds(true);
+    }
+    
+    /**
+     * Show the given trails, diffed against the current ones off the main thread.
+     * The list must not be modified after it is submitted.
+     */
+    public void submitList(List<Hike> trails) {
+        differ.submitList(trails);
     }
     
     @NonNull
@@ -42,13 +50,26 @@ public class NearbyTrailAdapter extends RecyclerView.Adapter<NearbyTrailAdapter.
     
     @Override
     public void onBindViewHolder(@NonNull TrailViewHolder holder, int position) {
-        Hike hike = trails.get(position);
+        Hike hike = differ.getCurrentList().get(position);
         holder.bind(hike);
     }
     
+    @Override
+    public void onBindViewHolder(@NonNull TrailViewHolder holder, int position, @NonNull List<Object> payloads) {
+        // The only payload is PAYLOAD_ACTIVE, and the trail card has no active badge
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        }
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getHikeID();
+    }
+    
     @Override
     public int getItemCount() {
-        return trails != null ? trails.size() : 0;
+        return differ.getCurrentList().size();
     }
     
     class TrailViewHolder extends RecyclerView.ViewHolder {
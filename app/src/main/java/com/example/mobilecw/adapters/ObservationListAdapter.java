@@ -1,6 +1,5 @@
 package com.example.mobilecw.adapters;
 
-import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -17,6 +16,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.mobilecw.R;
 import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.services.ThumbnailLoader;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
@@ -37,7 +37,7 @@ public class ObservationListAdapter extends ListAdapter<Observation, Observation
         this.listener = listener;
     }
 
-    private static final DiffUtil.ItemCallback<Observation> DIFF_CALLBACK = new DiffUtil.ItemCallback<Observation>() {
+    static final DiffUtil.ItemCallback<Observation> DIFF_CALLBACK = new DiffUtil.ItemCallback<Observation>() {
         @Override
         public boolean areItemsTheSame(@NonNull Observation oldItem, @NonNull Observation newItem) {
             return oldItem.getObservationID() == newItem.getObservationID();
@@ -119,8 +119,10 @@ public class ObservationListAdapter extends ListAdapter<Observation, Observation
             if (observation.getPicture() != null && !observation.getPicture().isEmpty()) {
                 try {
                     File imageFile = new File(observation.getPicture());
-                    if (imageFile.exists()) {
-                        observationPicture.setImageURI(Uri.fromFile(imageFile));
+                    // A picture with a content hash is in cloud storage; the loader fetches it
+                    if (imageFile.exists() || observation.getPictureHash() != null) {
+                        ThumbnailLoader.getInstance(itemView.getContext())
+                                .load(imageFile.getPath(), observation.getThumbnail(), observationPicture);
                         pictureCard.setVisibility(View.VISIBLE);
                     } else {
                         pictureCard.setVisibility(View.GONE);
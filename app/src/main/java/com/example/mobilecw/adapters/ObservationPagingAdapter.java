@@ -0,0 +1,44 @@
+package com.example.mobilecw.adapters;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+
+import com.example.mobilecw.R;
+import com.example.mobilecw.database.entities.Observation;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Paging-aware counterpart of ObservationListAdapter, sharing its view holder and diffing.
+ */
+public class ObservationPagingAdapter extends PagingDataAdapter<Observation, ObservationListAdapter.ObservationViewHolder> {
+
+    private final ObservationListAdapter.OnObservationClickListener listener;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
+
+    public ObservationPagingAdapter(ObservationListAdapter.OnObservationClickListener listener) {
+        super(ObservationListAdapter.DIFF_CALLBACK);
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public ObservationListAdapter.ObservationViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_observation_card, parent, false);
+        return new ObservationListAdapter.ObservationViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ObservationListAdapter.ObservationViewHolder holder, int position) {
+        Observation observation = getItem(position);
+        if (observation != null) {
+            holder.bind(observation, listener, dateFormat);
+        }
+    }
+}
@@ -1,40 +1,283 @@
 package com.example.mobilecw.database;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.example.mobilecw.database.dao.EmbeddingStateDao;
 import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.dao.HikeStatsDao;
+import com.example.mobilecw.database.dao.MediaTransferDao;
 import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.dao.QueryEmbeddingDao;
+import com.example.mobilecw.database.dao.SyncStateDao;
 import com.example.mobilecw.database.dao.UserDao;
+import com.example.mobilecw.database.entities.DirtyRowCount;
+import com.example.mobilecw.database.entities.EmbeddingState;
 import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.HikeFts;
+import com.example.mobilecw.database.entities.MediaTransfer;
 import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.database.entities.ObservationFts;
+import com.example.mobilecw.database.entities.QueryEmbedding;
+import com.example.mobilecw.database.entities.SyncState;
 import com.example.mobilecw.database.entities.User;
+import com.example.mobilecw.utils.EmbeddingCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Main Room Database class
  * Defines the database configuration and provides access to DAOs
  */
 @Database(
-        entities = {Hike.class, Observation.class, User.class},
-        version = 8,
-        exportSchema = false
+        entities = {Hike.class, Observation.class, User.class, HikeFts.class, ObservationFts.class,
+                SyncState.class, DirtyRowCount.class, EmbeddingState.class, QueryEmbedding.class,
+                MediaTransfer.class},
+        version = 18,
+        exportSchema = true
 )
 @TypeConverters({Converters.class})
 public abstract class AppDatabase extends RoomDatabase {
     
     // DAO access methods
     public abstract HikeDao hikeDao();
+    public abstract HikeStatsDao hikeStatsDao();
     public abstract ObservationDao observationDao();
     public abstract UserDao userDao();
+    public abstract SyncStateDao syncStateDao();
+    public abstract EmbeddingStateDao embeddingStateDao();
+    public abstract QueryEmbeddingDao queryEmbeddingDao();
+    public abstract MediaTransferDao mediaTransferDao();
     
     // Singleton instance
     private static volatile AppDatabase INSTANCE;
     private static final String DATABASE_NAME = "mhike_database";
     
+    /**
+     * 8 -> 9: add external-content FTS4 tables for hikes and observations,
+     * the triggers Room would generate for them, and index existing rows.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `hikes_fts` USING FTS4(`name` TEXT, `location` TEXT, `description` TEXT, `difficulty` TEXT, content=`hikes`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_hikes_fts_BEFORE_UPDATE BEFORE UPDATE ON `hikes` BEGIN DELETE FROM `hikes_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_hikes_fts_BEFORE_DELETE BEFORE DELETE ON `hikes` BEGIN DELETE FROM `hikes_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_hikes_fts_AFTER_UPDATE AFTER UPDATE ON `hikes` BEGIN INSERT INTO `hikes_fts`(`docid`, `name`, `location`, `description`, `difficulty`) VALUES (NEW.`rowid`, NEW.`name`, NEW.`location`, NEW.`description`, NEW.`difficulty`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_hikes_fts_AFTER_INSERT AFTER INSERT ON `hikes` BEGIN INSERT INTO `hikes_fts`(`docid`, `name`, `location`, `description`, `difficulty`) VALUES (NEW.`rowid`, NEW.`name`, NEW.`location`, NEW.`description`, NEW.`difficulty`); END");
+            db.execSQL("INSERT INTO `hikes_fts`(`hikes_fts`) VALUES ('rebuild')");
+
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `observations_fts` USING FTS4(`observationText` TEXT, `comments` TEXT, `location` TEXT, content=`observations`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_observations_fts_BEFORE_UPDATE BEFORE UPDATE ON `observations` BEGIN DELETE FROM `observations_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_observations_fts_BEFORE_DELETE BEFORE DELETE ON `observations` BEGIN DELETE FROM `observations_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_observations_fts_AFTER_UPDATE AFTER UPDATE ON `observations` BEGIN INSERT INTO `observations_fts`(`docid`, `observationText`, `comments`, `location`) VALUES (NEW.`rowid`, NEW.`observationText`, NEW.`comments`, NEW.`location`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_observations_fts_AFTER_INSERT AFTER INSERT ON `observations` BEGIN INSERT INTO `observations_fts`(`docid`, `observationText`, `comments`, `location`) VALUES (NEW.`rowid`, NEW.`observationText`, NEW.`comments`, NEW.`location`); END");
+            db.execSQL("INSERT INTO `observations_fts`(`observations_fts`) VALUES ('rebuild')");
+        }
+    };
+    
+    /**
+     * 9 -> 10: replace the single-column indexes (hikeID and observationID were
+     * already primary keys) with indexes matching the DAO predicates and sort order.
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("DROP INDEX IF EXISTS `index_hikes_hikeID`");
+            db.execSQL("DROP INDEX IF EXISTS `index_observations_hikeId`");
+            db.execSQL("DROP INDEX IF EXISTS `index_observations_observationID`");
+
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_hikes_userId_date_deleted` ON `hikes` (`userId` ASC, `date` DESC, `deleted` ASC)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_hikes_synced` ON `hikes` (`synced`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_hikes_isActive` ON `hikes` (`isActive`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_observations_hikeId_time_deleted` ON `observations` (`hikeId` ASC, `time` DESC, `deleted` ASC)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_observations_synced` ON `observations` (`synced`)");
+        }
+    };
+    
+    /**
+     * 10 -> 11: add the per-user pull cursors for delta sync. No row means the next
+     * download is a full one.
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `sync_state` (`firebaseUid` TEXT NOT NULL, `hikesPulledUpTo` INTEGER, `observationsPulledUpTo` INTEGER, PRIMARY KEY(`firebaseUid`))");
+        }
+    };
+    
+    /**
+     * 11 -> 12: index dirty hikes by user, and add the per-user dirty-row counters,
+     * seeded from the rows already waiting for upload.
+     */
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_hikes_userId_synced` ON `hikes` (`userId`, `synced`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `dirty_row_counts` (`userKey` INTEGER NOT NULL, `pendingRows` INTEGER NOT NULL, PRIMARY KEY(`userKey`))");
+            db.execSQL("INSERT INTO `dirty_row_counts` (`userKey`, `pendingRows`) "
+                    + "SELECT `userKey`, SUM(`rows`) FROM ("
+                    + "SELECT COALESCE(`userId`, -1) AS `userKey`, COUNT(*) AS `rows` FROM `hikes` "
+                    + "WHERE COALESCE(`synced`, 0) = 0 GROUP BY 1 "
+                    + "UNION ALL SELECT COALESCE(`hikes`.`userId`, -1), COUNT(*) FROM `observations` "
+                    + "LEFT JOIN `hikes` ON `hikes`.`hikeID` = `observations`.`hikeId` "
+                    + "WHERE COALESCE(`observations`.`synced`, 0) = 0 GROUP BY 1"
+                    + ") GROUP BY `userKey`");
+            createDirtyRowTriggers(db);
+        }
+    };
+    
+    /**
+     * 12 -> 13: add the per-chunk embedding state for vector sync. The table starts
+     * empty, so every chunk is embedded once more after upgrading.
+     */
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `embedding_state` (`chunkId` TEXT NOT NULL, `textHash` TEXT NOT NULL, `model` TEXT NOT NULL, `embeddedAt` INTEGER NOT NULL, PRIMARY KEY(`chunkId`))");
+        }
+    };
+    
+    /**
+     * 13 -> 14: keep the embedding vectors, and which hike or observation they belong to,
+     * for on-device semantic search. Existing rows have no vector, so they are
+     * cleared and every chunk is embedded once more after upgrading.
+     */
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `embedding_state` ADD COLUMN `hikeId` INTEGER");
+            db.execSQL("ALTER TABLE `embedding_state` ADD COLUMN `observationId` INTEGER");
+            db.execSQL("ALTER TABLE `embedding_state` ADD COLUMN `vector` BLOB");
+            db.execSQL("DELETE FROM `embedding_state`");
+        }
+    };
+    
+    /**
+     * 14 -> 15: no schema change; stored vectors, raw little-endian float32 until now,
+     * are re-encoded as tagged INT8 EmbeddingCodec blobs, a quarter of the size.
+     */
+    static final Migration MIGRATION_14_15 = new Migration(14, 15) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            Map<String, byte[]> encoded = new HashMap<>();
+            try (Cursor cursor = db.query("SELECT `chunkId`, `vector` FROM `embedding_state` WHERE `vector` IS NOT NULL")) {
+                while (cursor.moveToNext()) {
+                    byte[] raw = cursor.getBlob(1);
+                    float[] vector = new float[raw.length / Float.BYTES];
+                    ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+                    encoded.put(cursor.getString(0), EmbeddingCodec.encode(vector, EmbeddingCodec.Format.INT8));
+                }
+            }
+            for (Map.Entry<String, byte[]> entry : encoded.entrySet()) {
+                ContentValues values = new ContentValues();
+                values.put("vector", entry.getValue());
+                db.update("embedding_state", SQLiteDatabase.CONFLICT_NONE, values,
+                        "chunkId = ?", new Object[]{entry.getKey()});
+            }
+        }
+    };
+    
+    /**
+     * 15 -> 16: add the persistent cache of search-query embeddings.
+     */
+    static final Migration MIGRATION_15_16 = new Migration(15, 16) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `query_embeddings` (`firebaseUid` TEXT NOT NULL, `queryText` TEXT NOT NULL, `model` TEXT NOT NULL, `vector` BLOB NOT NULL, `lastUsedAt` INTEGER NOT NULL, PRIMARY KEY(`firebaseUid`, `queryText`))");
+        }
+    };
+    
+    /**
+     * 16 -> 17: observations record the thumbnail written when their picture is
+     * ingested. Existing pictures have none and are shown from the original.
+     */
+    static final Migration MIGRATION_16_17 = new Migration(16, 17) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `observations` ADD COLUMN `thumbnail` TEXT");
+        }
+    };
+    
+    /**
+     * 17 -> 18: observations record their picture's content hash, and uploads to
+     * Cloud Storage wait in media_transfers. Pictures ingested before have no hash
+     * and stay on the device.
+     */
+    static final Migration MIGRATION_17_18 = new Migration(17, 18) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `observations` ADD COLUMN `pictureHash` TEXT");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `media_transfers` (`firebaseUid` TEXT NOT NULL, `remoteName` TEXT NOT NULL, `localPath` TEXT NOT NULL, `sessionUri` TEXT, `bytesTransferred` INTEGER NOT NULL, `totalBytes` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, `enqueuedAt` INTEGER NOT NULL, PRIMARY KEY(`firebaseUid`, `remoteName`))");
+        }
+    };
+    
+    /**
+     * Triggers keeping dirty_row_counts in step with the synced flags, so sync can
+     * tell there is nothing to upload without scanning. A row counts as dirty while
+     * synced is 0 or NULL; observations count towards their hike's user, and move
+     * with the hike when its userId changes.
+     *
+     * Counter rows are created with INSERT ... WHERE NOT EXISTS rather than INSERT OR
+     * IGNORE: inside a trigger the outer statement's conflict policy wins, so Room's
+     * REPLACE inserts would turn OR IGNORE into a reset of the counter.
+     *
+     * Room does not know about these triggers, so they are (re)created on every open.
+     */
+    static void createDirtyRowTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS dirty_row_counts_hikes_AFTER_INSERT AFTER INSERT ON `hikes` WHEN COALESCE(NEW.`synced`, 0) = 0 BEGIN "
+                + "INSERT INTO `dirty_row_counts` (`userKey`, `pendingRows`) SELECT COALESCE(NEW.`userId`, -1), 0 WHERE NOT EXISTS (SELECT 1 FROM `dirty_row_counts` WHERE `userKey` = COALESCE(NEW.`userId`, -1)); "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` + 1 WHERE `userKey` = COALESCE(NEW.`userId`, -1); "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS dirty_row_counts_hikes_AFTER_DELETE AFTER DELETE ON `hikes` WHEN COALESCE(OLD.`synced`, 0) = 0 BEGIN "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` - 1 WHERE `userKey` = COALESCE(OLD.`userId`, -1); "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS dirty_row_counts_hikes_AFTER_UPDATE AFTER UPDATE OF `synced`, `userId` ON `hikes` BEGIN "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` - (COALESCE(OLD.`synced`, 0) = 0) - (CASE WHEN OLD.`userId` IS NOT NEW.`userId` THEN (SELECT COUNT(*) FROM `observations` WHERE `hikeId` = OLD.`hikeID` AND COALESCE(`synced`, 0) = 0) ELSE 0 END) WHERE `userKey` = COALESCE(OLD.`userId`, -1); "
+                + "INSERT INTO `dirty_row_counts` (`userKey`, `pendingRows`) SELECT COALESCE(NEW.`userId`, -1), 0 WHERE NOT EXISTS (SELECT 1 FROM `dirty_row_counts` WHERE `userKey` = COALESCE(NEW.`userId`, -1)); "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` + (COALESCE(NEW.`synced`, 0) = 0) + (CASE WHEN OLD.`userId` IS NOT NEW.`userId` THEN (SELECT COUNT(*) FROM `observations` WHERE `hikeId` = NEW.`hikeID` AND COALESCE(`synced`, 0) = 0) ELSE 0 END) WHERE `userKey` = COALESCE(NEW.`userId`, -1); "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS dirty_row_counts_observations_AFTER_INSERT AFTER INSERT ON `observations` WHEN COALESCE(NEW.`synced`, 0) = 0 BEGIN "
+                + "INSERT INTO `dirty_row_counts` (`userKey`, `pendingRows`) SELECT COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = NEW.`hikeId`), -1), 0 WHERE NOT EXISTS (SELECT 1 FROM `dirty_row_counts` WHERE `userKey` = COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = NEW.`hikeId`), -1)); "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` + 1 WHERE `userKey` = COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = NEW.`hikeId`), -1); "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS dirty_row_counts_observations_AFTER_DELETE AFTER DELETE ON `observations` WHEN COALESCE(OLD.`synced`, 0) = 0 BEGIN "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` - 1 WHERE `userKey` = COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = OLD.`hikeId`), -1); "
+                + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS dirty_row_counts_observations_AFTER_UPDATE AFTER UPDATE OF `synced`, `hikeId` ON `observations` BEGIN "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` - (COALESCE(OLD.`synced`, 0) = 0) WHERE `userKey` = COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = OLD.`hikeId`), -1); "
+                + "INSERT INTO `dirty_row_counts` (`userKey`, `pendingRows`) SELECT COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = NEW.`hikeId`), -1), 0 WHERE NOT EXISTS (SELECT 1 FROM `dirty_row_counts` WHERE `userKey` = COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = NEW.`hikeId`), -1)); "
+                + "UPDATE `dirty_row_counts` SET `pendingRows` = `pendingRows` + (COALESCE(NEW.`synced`, 0) = 0) WHERE `userKey` = COALESCE((SELECT `userId` FROM `hikes` WHERE `hikeID` = NEW.`hikeId`), -1); "
+                + "END");
+    }
+    
+    static final RoomDatabase.Callback DIRTY_ROW_TRIGGERS = new RoomDatabase.Callback() {
+        @Override
+        public void onOpen(SupportSQLiteDatabase db) {
+            createDirtyRowTriggers(db);
+        }
+    };
+    
+    /**
+     * Every migration from version 8 (the first shipped schema) to the current one.
+     * Schemas are exported to app/schemas; add a Migration here for every version bump.
+     */
+    static final Migration[] ALL_MIGRATIONS = {MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12,
+            MIGRATION_12_13, MIGRATION_13_14, MIGRATION_14_15,
+            MIGRATION_15_16, MIGRATION_16_17, MIGRATION_17_18};
+    
     /**
      * Get database instance (Singleton pattern)
      * @param context Application context
@@ -49,7 +292,10 @@ public abstract class AppDatabase extends RoomDatabase {
                             AppDatabase.class,
                             DATABASE_NAME
                     )
-                    .fallbackToDestructiveMigration() // For development - allows schema changes
+                    .addMigrations(ALL_MIGRATIONS)
+                    .addCallback(DIRTY_ROW_TRIGGERS)
+                    // Only pre-release development schemas may be dropped; later versions must migrate
+                    .fallbackToDestructiveMigrationFrom(1, 2, 3, 4, 5, 6, 7)
                     .build();
                 }
             }
@@ -64,6 +310,7 @@ public abstract class AppDatabase extends RoomDatabase {
         if (INSTANCE != null && INSTANCE.isOpen()) {
             INSTANCE.close();
             INSTANCE = null;
+            HikeRepository.clearInstance();
         }
     }
 }
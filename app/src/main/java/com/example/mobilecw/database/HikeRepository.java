@@ -0,0 +1,148 @@
+package com.example.mobilecw.database;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import androidx.lifecycle.LiveData;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+
+import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.dao.HikeStatsDao;
+import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.database.model.HikeStats;
+import com.example.mobilecw.database.paging.HikePagingSource;
+import com.example.mobilecw.database.paging.KeysetPagingSource;
+import com.example.mobilecw.database.paging.ObservationPagingSource;
+
+import java.util.List;
+
+/**
+ * HikeRepository hands out shared, observable snapshots of the hike tables.
+ *
+ * Every LiveData comes from Room and is backed by the InvalidationTracker:
+ * the query runs when the first observer attaches and again only after a write
+ * to one of its tables. Instances are cached per query, so screens that show the
+ * same data (e.g. the statistics on the home and profile screens) observe one
+ * snapshot instead of each materializing its own cursor in onResume. Keys carry
+ * parameters such as the user and the month, so the cache keeps only the
+ * {@link #MAX_CACHED_QUERIES} most recently requested; a screen still observing an
+ * evicted instance keeps working, it just stops being shared.
+ *
+ * Long lists are exposed as keyset-paginated PagingData instead.
+ */
+public class HikeRepository {
+
+    private static final int PAGE_SIZE = 30;
+    static final int MAX_CACHED_QUERIES = 16;
+
+    private static volatile HikeRepository INSTANCE;
+
+    private final AppDatabase database;
+    private final HikeDao hikeDao;
+    private final HikeStatsDao hikeStatsDao;
+    private final ObservationDao observationDao;
+
+    private final LruCache<String, LiveData<?>> liveQueries = new LruCache<>(MAX_CACHED_QUERIES);
+
+    private HikeRepository(AppDatabase database) {
+        this.database = database;
+        hikeDao = database.hikeDao();
+        hikeStatsDao = database.hikeStatsDao();
+        observationDao = database.observationDao();
+    }
+
+    public static HikeRepository getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (HikeRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new HikeRepository(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Drop cached queries, e.g. after the database instance was closed.
+     */
+    public static void clearInstance() {
+        INSTANCE = null;
+    }
+
+    /**
+     * All hikes that are not deleted, newest first.
+     */
+    public LiveData<List<Hike>> observeAllHikes() {
+        return cached("hikes:all", hikeDao::observeAllHikes);
+    }
+
+    /**
+     * The most recent hikes of a user (-1 for non-registered users).
+     */
+    public LiveData<List<Hike>> observeRecentHikes(int userId, int limit) {
+        return cached("recent:" + userId + ":" + limit, () -> userId == -1
+                ? hikeDao.observeRecentHikesForNonRegisteredUsers(limit)
+                : hikeDao.observeRecentHikesByUserId(userId, limit));
+    }
+
+    /**
+     * Aggregate statistics of a user (-1 for non-registered users) for the current month.
+     */
+    public LiveData<HikeStats> observeStats(int userId) {
+        long monthStart = HikeStatsDao.startOfMonth(0);
+        long monthEnd = HikeStatsDao.startOfMonth(1);
+        // The month is part of the key so a new month gets a fresh query
+        return cached("stats:" + userId + ":" + monthStart, () -> userId == -1
+                ? hikeStatsDao.observeStatsForNonRegisteredUsers(monthStart, monthEnd)
+                : hikeStatsDao.observeStatsForUser(userId, monthStart, monthEnd));
+    }
+
+    /**
+     * Hikes of a user (-1 for non-registered users) as keyset pages, newest first.
+     * Callers should cache the stream in their lifecycle with PagingLiveData.cachedIn.
+     */
+    public LiveData<PagingData<Hike>> hikePages(int userId) {
+        Pager<KeysetPagingSource.Key, Hike> pager = new Pager<>(pagingConfig(),
+                () -> new HikePagingSource(database, userId));
+        return PagingLiveData.getLiveData(pager);
+    }
+
+    /**
+     * Observations of a hike as keyset pages, newest first.
+     */
+    public LiveData<PagingData<Observation>> observationPages(int hikeId) {
+        Pager<KeysetPagingSource.Key, Observation> pager = new Pager<>(pagingConfig(),
+                () -> new ObservationPagingSource(database, hikeId));
+        return PagingLiveData.getLiveData(pager);
+    }
+
+    public LiveData<Integer> observeObservationCount(int hikeId) {
+        return observationDao.observeObservationCountByHikeId(hikeId);
+    }
+
+    private static PagingConfig pagingConfig() {
+        // No placeholders: keyset sources do not count the rows ahead
+        return new PagingConfig(PAGE_SIZE, PAGE_SIZE / 2, false, PAGE_SIZE * 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> LiveData<T> cached(String key, QueryFactory<T> factory) {
+        synchronized (liveQueries) {
+            LiveData<?> liveData = liveQueries.get(key);
+            if (liveData == null) {
+                liveData = factory.create();
+                liveQueries.put(key, liveData);
+            }
+            return (LiveData<T>) liveData;
+        }
+    }
+
+    private interface QueryFactory<T> {
+        LiveData<T> create();
+    }
+}
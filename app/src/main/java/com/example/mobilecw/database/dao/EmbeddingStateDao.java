@@ -0,0 +1,27 @@
+package com.example.mobilecw.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.mobilecw.database.entities.EmbeddingState;
+
+import java.util.List;
+
+@Dao
+public interface EmbeddingStateDao {
+    @Query("SELECT * FROM embedding_state")
+    List<EmbeddingState> getAllEmbeddingStates();
+
+    /**
+     * Stored hike-description vectors of the user's hikes that are not deleted.
+     */
+    @Query("SELECT embedding_state.* FROM embedding_state "
+            + "INNER JOIN hikes ON hikes.hikeID = embedding_state.hikeId "
+            + "WHERE hikes.userId = :userId AND (hikes.deleted IS NULL OR hikes.deleted = 0) "
+            + "AND embedding_state.observationId IS NULL AND embedding_state.vector IS NOT NULL")
+    List<EmbeddingState> getHikeVectorsForUser(int userId);
+
+    @Upsert
+    void upsertEmbeddingState(EmbeddingState state);
+}
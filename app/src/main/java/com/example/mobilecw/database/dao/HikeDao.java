@@ -1,13 +1,16 @@
 package com.example.mobilecw.database.dao;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.model.HikeSearchResult;
 
 import java.util.Date;
 import java.util.List;
@@ -20,6 +23,10 @@ public interface HikeDao {
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAllHikes(List<Hike> hikes);
+
+    // Updates rows in place: REPLACE would delete them first, cascading to their observations
+    @Upsert
+    void upsertHikes(List<Hike> hikes);
     
     // Query operations
     @Query("SELECT * FROM hikes WHERE deleted IS NULL OR deleted = 0 ORDER BY date DESC")
@@ -34,6 +41,48 @@ public interface HikeDao {
     @Query("SELECT * FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0) ORDER BY date DESC")
     List<Hike> getHikesForNonRegisteredUsers();
     
+    // Observable queries: Room's InvalidationTracker re-runs these only when the hikes table changes
+    @Query("SELECT * FROM hikes WHERE deleted IS NULL OR deleted = 0 ORDER BY date DESC")
+    LiveData<List<Hike>> observeAllHikes();
+    
+    @Query("SELECT * FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0) ORDER BY date DESC")
+    LiveData<List<Hike>> observeHikesByUserId(int userId);
+    
+    @Query("SELECT * FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0) ORDER BY date DESC")
+    LiveData<List<Hike>> observeHikesForNonRegisteredUsers();
+    
+    @Query("SELECT * FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0) ORDER BY date DESC LIMIT :limit")
+    LiveData<List<Hike>> observeRecentHikesByUserId(int userId, int limit);
+    
+    @Query("SELECT * FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0) ORDER BY date DESC LIMIT :limit")
+    LiveData<List<Hike>> observeRecentHikesForNonRegisteredUsers(int limit);
+    
+    // Keyset pages ordered by (date DESC, hikeID DESC), starting after (beforeDate, beforeId).
+    // A null beforeDate continues within the hikes without a date, which sort last.
+    @Query("SELECT * FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0) "
+            + "AND (date < :beforeDate OR (date = :beforeDate AND hikeID < :beforeId) "
+            + "OR (date IS NULL AND (:beforeDate IS NOT NULL OR hikeID < :beforeId))) "
+            + "ORDER BY date DESC, hikeID DESC LIMIT :limit")
+    List<Hike> getHikePageByUserId(int userId, Long beforeDate, int beforeId, int limit);
+    
+    @Query("SELECT * FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0) "
+            + "AND (date < :beforeDate OR (date = :beforeDate AND hikeID < :beforeId) "
+            + "OR (date IS NULL AND (:beforeDate IS NOT NULL OR hikeID < :beforeId))) "
+            + "ORDER BY date DESC, hikeID DESC LIMIT :limit")
+    List<Hike> getHikePageForNonRegisteredUsers(Long beforeDate, int beforeId, int limit);
+    
+    @Query("SELECT hikeID FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0)")
+    List<Integer> getHikeIdsByUserId(int userId);
+    
+    @Query("SELECT hikeID FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0)")
+    List<Integer> getHikeIdsForNonRegisteredUsers();
+    
+    @Query("SELECT * FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0) ORDER BY date DESC LIMIT :limit")
+    List<Hike> getRecentHikesByUserId(int userId, int limit);
+    
+    @Query("SELECT * FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0) ORDER BY date DESC LIMIT :limit")
+    List<Hike> getRecentHikesForNonRegisteredUsers(int limit);
+    
     // Search operations
     @Query("SELECT * FROM hikes WHERE (deleted IS NULL OR deleted = 0) AND name LIKE :searchQuery ORDER BY date DESC")
     List<Hike> searchHikesByName(String searchQuery);
@@ -44,6 +93,19 @@ public interface HikeDao {
     @Query("SELECT * FROM hikes WHERE (deleted IS NULL OR deleted = 0) AND date BETWEEN :startDate AND :endDate ORDER BY date DESC")
     List<Hike> searchHikesByDateRange(long startDate, long endDate);
     
+    // Full-text search operations (hikes_fts). matchQuery must be built with FtsSearchHelper.toMatchQuery
+    @Query("SELECT hikes.*, matchinfo(hikes_fts, 'pcnalx') AS matchInfo FROM hikes JOIN hikes_fts ON hikes.hikeID = hikes_fts.rowid WHERE hikes_fts MATCH :matchQuery AND (hikes.deleted IS NULL OR hikes.deleted = 0)")
+    List<HikeSearchResult> searchHikesFts(String matchQuery);
+    
+    @Query("SELECT hikes.*, matchinfo(hikes_fts, 'pcnalx') AS matchInfo FROM hikes JOIN hikes_fts ON hikes.hikeID = hikes_fts.rowid WHERE hikes_fts MATCH :matchQuery AND hikes.userId = :userId AND (hikes.deleted IS NULL OR hikes.deleted = 0)")
+    List<HikeSearchResult> searchHikesFtsByUserId(String matchQuery, Integer userId);
+    
+    @Query("SELECT hikes.*, matchinfo(hikes_fts, 'pcnalx') AS matchInfo FROM hikes JOIN hikes_fts ON hikes.hikeID = hikes_fts.rowid WHERE hikes_fts MATCH :matchQuery AND hikes.userId IS NULL AND (hikes.deleted IS NULL OR hikes.deleted = 0)")
+    List<HikeSearchResult> searchHikesFtsForNonRegisteredUsers(String matchQuery);
+    
+    @Query("SELECT hikes.*, matchinfo(hikes_fts, 'pcnalx') AS matchInfo FROM hikes JOIN hikes_fts ON hikes.hikeID = hikes_fts.rowid WHERE hikes_fts MATCH :matchQuery AND (hikes.deleted IS NULL OR hikes.deleted = 0) AND hikes.length BETWEEN :minLength AND :maxLength AND hikes.date BETWEEN :startDate AND :endDate")
+    List<HikeSearchResult> advancedSearchFts(String matchQuery, double minLength, double maxLength, long startDate, long endDate);
+    
     // Update operations
     @Update
     void updateHike(Hike hike);
@@ -73,6 +135,21 @@ public interface HikeDao {
     
     @Query("UPDATE hikes SET synced = 1 WHERE hikeID = :hikeId")
     void markHikeAsSynced(int hikeId);
+
+    // Two index range scans on (userId, synced); an OR over synced would make SQLite pick another index
+    @Query("SELECT * FROM hikes WHERE userId = :userId AND synced = 0 "
+            + "UNION ALL SELECT * FROM hikes WHERE userId = :userId AND synced IS NULL")
+    List<Hike> getUnsyncedHikesByUserId(int userId);
+
+    // Only if the row was not edited after the uploaded snapshot; returns 0 when it was, and it stays dirty
+    @Query("UPDATE hikes SET synced = 1 WHERE hikeID = :hikeId AND updatedAt IS :uploadedUpdatedAt")
+    int markHikeAsSyncedIfUnchanged(int hikeId, Long uploadedUpdatedAt);
+
+    @Query("SELECT * FROM hikes WHERE (synced = 0 OR synced IS NULL) AND hikeID IN (:hikeIds)")
+    List<Hike> getUnsyncedHikesByIds(List<Integer> hikeIds);
+
+    @Query("SELECT hikeID FROM hikes WHERE hikeID IN (:hikeIds)")
+    List<Integer> getExistingHikeIds(List<Integer> hikeIds);
     
     @Query("SELECT * FROM hikes WHERE userId = :userId ORDER BY date DESC")
     List<Hike> getAllHikesByUserIdIncludingDeleted(Integer userId);
@@ -85,8 +162,8 @@ public interface HikeDao {
     @Query("SELECT * FROM hikes WHERE isActive = 1 LIMIT 1")
     Hike getActiveHike();
     
-    @Query("UPDATE hikes SET isActive = 0, synced = 0 WHERE isActive = 1")
-    void deactivateAllHikes();
+    @Query("UPDATE hikes SET isActive = 0, updatedAt = :updatedAt, synced = 0 WHERE isActive = 1")
+    void deactivateAllHikes(long updatedAt);
     
     @Query("UPDATE hikes SET isActive = 1, startTime = :startTime, updatedAt = :updatedAt, synced = 0 WHERE hikeID = :hikeId")
     void startHike(int hikeId, long startTime, long updatedAt);
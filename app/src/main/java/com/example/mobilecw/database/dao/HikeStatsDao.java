@@ -0,0 +1,88 @@
+package com.example.mobilecw.database.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.example.mobilecw.database.model.HikeStats;
+import com.example.mobilecw.database.model.MonthlyHikeStats;
+
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Aggregate queries over hikes, so screens showing totals don't load every Hike row.
+ * Soft-deleted hikes are excluded, matching HikeDao.getHikesByUserId.
+ */
+@Dao
+public interface HikeStatsDao {
+
+    @Query("SELECT COUNT(*) AS hikeCount, TOTAL(length) AS totalLength, COALESCE(AVG(length), 0) AS averageLength, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'easy' THEN 1 ELSE 0 END) AS easyCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'medium' THEN 1 ELSE 0 END) AS mediumCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) IN ('hard', 'expert') THEN 1 ELSE 0 END) AS hardCount, "
+            + "SUM(CASE WHEN date >= :monthStart AND date < :monthEnd THEN 1 ELSE 0 END) AS thisMonthCount "
+            + "FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0)")
+    HikeStats getStatsForUser(int userId, long monthStart, long monthEnd);
+
+    @Query("SELECT COUNT(*) AS hikeCount, TOTAL(length) AS totalLength, COALESCE(AVG(length), 0) AS averageLength, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'easy' THEN 1 ELSE 0 END) AS easyCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'medium' THEN 1 ELSE 0 END) AS mediumCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) IN ('hard', 'expert') THEN 1 ELSE 0 END) AS hardCount, "
+            + "SUM(CASE WHEN date >= :monthStart AND date < :monthEnd THEN 1 ELSE 0 END) AS thisMonthCount "
+            + "FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0)")
+    HikeStats getStatsForNonRegisteredUsers(long monthStart, long monthEnd);
+
+    @Query("SELECT COUNT(*) AS hikeCount, TOTAL(length) AS totalLength, COALESCE(AVG(length), 0) AS averageLength, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'easy' THEN 1 ELSE 0 END) AS easyCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'medium' THEN 1 ELSE 0 END) AS mediumCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) IN ('hard', 'expert') THEN 1 ELSE 0 END) AS hardCount, "
+            + "SUM(CASE WHEN date >= :monthStart AND date < :monthEnd THEN 1 ELSE 0 END) AS thisMonthCount "
+            + "FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0)")
+    LiveData<HikeStats> observeStatsForUser(int userId, long monthStart, long monthEnd);
+
+    @Query("SELECT COUNT(*) AS hikeCount, TOTAL(length) AS totalLength, COALESCE(AVG(length), 0) AS averageLength, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'easy' THEN 1 ELSE 0 END) AS easyCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) = 'medium' THEN 1 ELSE 0 END) AS mediumCount, "
+            + "SUM(CASE WHEN LOWER(difficulty) IN ('hard', 'expert') THEN 1 ELSE 0 END) AS hardCount, "
+            + "SUM(CASE WHEN date >= :monthStart AND date < :monthEnd THEN 1 ELSE 0 END) AS thisMonthCount "
+            + "FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0)")
+    LiveData<HikeStats> observeStatsForNonRegisteredUsers(long monthStart, long monthEnd);
+
+    // Per-month series (oldest first); date is stored as epoch millis
+    @Query("SELECT strftime('%Y-%m', date / 1000, 'unixepoch', 'localtime') AS month, COUNT(*) AS hikeCount, TOTAL(length) AS totalLength "
+            + "FROM hikes WHERE userId = :userId AND (deleted IS NULL OR deleted = 0) AND date >= :since "
+            + "GROUP BY month ORDER BY month")
+    List<MonthlyHikeStats> getMonthlyStatsForUser(int userId, long since);
+
+    @Query("SELECT strftime('%Y-%m', date / 1000, 'unixepoch', 'localtime') AS month, COUNT(*) AS hikeCount, TOTAL(length) AS totalLength "
+            + "FROM hikes WHERE userId IS NULL AND (deleted IS NULL OR deleted = 0) AND date >= :since "
+            + "GROUP BY month ORDER BY month")
+    List<MonthlyHikeStats> getMonthlyStatsForNonRegisteredUsers(long since);
+
+    /**
+     * Stats for a registered user, or for non-registered hikes when userId is null,
+     * with "this month" taken from the device calendar.
+     */
+    default HikeStats getStats(Integer userId) {
+        long monthStart = startOfMonth(0);
+        long monthEnd = startOfMonth(1);
+        return userId == null
+                ? getStatsForNonRegisteredUsers(monthStart, monthEnd)
+                : getStatsForUser(userId, monthStart, monthEnd);
+    }
+
+    /**
+     * Local midnight on the first day of the current month, shifted by monthOffset months.
+     */
+    static long startOfMonth(int monthOffset) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.MONTH, monthOffset);
+        return calendar.getTimeInMillis();
+    }
+}
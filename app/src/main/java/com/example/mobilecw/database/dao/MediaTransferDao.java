@@ -0,0 +1,49 @@
+package com.example.mobilecw.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.mobilecw.database.entities.MediaTransfer;
+
+import java.util.List;
+
+@Dao
+public interface MediaTransferDao {
+    /**
+     * Queue a transfer; one already queued under the same name is kept as it is,
+     * with its session and progress.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void enqueue(MediaTransfer transfer);
+
+    @Query("SELECT * FROM media_transfers WHERE firebaseUid = :firebaseUid AND attempts < :maxAttempts "
+            + "ORDER BY enqueuedAt")
+    List<MediaTransfer> getPendingTransfers(String firebaseUid, int maxAttempts);
+
+    @Query("SELECT COUNT(*) FROM media_transfers WHERE firebaseUid = :firebaseUid AND attempts < :maxAttempts")
+    int countPendingTransfers(String firebaseUid, int maxAttempts);
+
+    @Query("UPDATE media_transfers SET sessionUri = :sessionUri, bytesTransferred = :bytesTransferred "
+            + "WHERE firebaseUid = :firebaseUid AND remoteName = :remoteName")
+    void updateProgress(String firebaseUid, String remoteName, String sessionUri, long bytesTransferred);
+
+    /**
+     * Count a failed attempt; a null sessionUri makes the next attempt open a new session.
+     */
+    @Query("UPDATE media_transfers SET attempts = attempts + 1, sessionUri = :sessionUri "
+            + "WHERE firebaseUid = :firebaseUid AND remoteName = :remoteName")
+    void recordFailure(String firebaseUid, String remoteName, String sessionUri);
+
+    /**
+     * Give a transfer that used up its attempts a fresh budget and session, for
+     * when its photo is queued again.
+     */
+    @Query("UPDATE media_transfers SET attempts = 0, sessionUri = NULL, bytesTransferred = 0 "
+            + "WHERE firebaseUid = :firebaseUid AND remoteName = :remoteName AND attempts >= :maxAttempts")
+    void retryExhausted(String firebaseUid, String remoteName, int maxAttempts);
+
+    @Query("DELETE FROM media_transfers WHERE firebaseUid = :firebaseUid AND remoteName = :remoteName")
+    void deleteTransfer(String firebaseUid, String remoteName);
+}
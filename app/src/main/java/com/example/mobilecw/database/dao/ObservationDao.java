@@ -1,13 +1,16 @@
 package com.example.mobilecw.database.dao;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 
 import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.database.model.ObservationSearchResult;
 
 import java.util.List;
 
@@ -19,6 +22,9 @@ public interface ObservationDao {
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAllObservations(List<Observation> observations);
+
+    @Upsert
+    void upsertObservations(List<Observation> observations);
     
     // Query operations
     @Query("SELECT * FROM observations WHERE deleted IS NULL OR deleted = 0 ORDER BY time DESC")
@@ -30,6 +36,27 @@ public interface ObservationDao {
     @Query("SELECT * FROM observations WHERE hikeId = :hikeId AND (deleted IS NULL OR deleted = 0) ORDER BY time DESC")
     List<Observation> getObservationsByHikeId(int hikeId);
     
+    @Query("SELECT * FROM observations WHERE hikeId = :hikeId AND (deleted IS NULL OR deleted = 0) ORDER BY time DESC")
+    LiveData<List<Observation>> observeObservationsByHikeId(int hikeId);
+    
+    // Keyset page ordered by (time DESC, observationID DESC), starting after (beforeTime, beforeId).
+    // Downloaded rows may have no time; they sort last, as in the full list, and a null beforeTime continues among them
+    @Query("SELECT * FROM observations WHERE hikeId = :hikeId AND (deleted IS NULL OR deleted = 0) "
+            + "AND (time < :beforeTime OR (time = :beforeTime AND observationID < :beforeId) "
+            + "OR (time IS NULL AND (:beforeTime IS NOT NULL OR observationID < :beforeId))) "
+            + "ORDER BY time DESC, observationID DESC LIMIT :limit")
+    List<Observation> getObservationPageByHikeId(int hikeId, Long beforeTime, int beforeId, int limit);
+    
+    @Query("SELECT COUNT(*) FROM observations WHERE hikeId = :hikeId AND (deleted IS NULL OR deleted = 0)")
+    LiveData<Integer> observeObservationCountByHikeId(int hikeId);
+    
+    // Full-text search operations (observations_fts). matchQuery must be built with FtsSearchHelper.toMatchQuery
+    @Query("SELECT observations.*, matchinfo(observations_fts, 'pcnalx') AS matchInfo FROM observations JOIN observations_fts ON observations.observationID = observations_fts.rowid WHERE observations_fts MATCH :matchQuery AND (observations.deleted IS NULL OR observations.deleted = 0)")
+    List<ObservationSearchResult> searchObservationsFts(String matchQuery);
+    
+    @Query("SELECT observations.*, matchinfo(observations_fts, 'pcnalx') AS matchInfo FROM observations JOIN observations_fts ON observations.observationID = observations_fts.rowid WHERE observations_fts MATCH :matchQuery AND observations.hikeId = :hikeId AND (observations.deleted IS NULL OR observations.deleted = 0)")
+    List<ObservationSearchResult> searchObservationsFtsByHikeId(String matchQuery, int hikeId);
+    
     // Update operations
     @Update
     void updateObservation(Observation observation);
@@ -62,5 +89,17 @@ public interface ObservationDao {
     
     @Query("UPDATE observations SET synced = 1 WHERE observationID = :observationId")
     void markObservationAsSynced(int observationId);
+
+    // CROSS JOIN keeps observations as the outer loop, so only dirty rows are read
+    @Query("SELECT observations.* FROM observations CROSS JOIN hikes ON hikes.hikeID = observations.hikeId "
+            + "WHERE (observations.synced = 0 OR observations.synced IS NULL) AND hikes.userId = :userId")
+    List<Observation> getUnsyncedObservationsByUserId(int userId);
+
+    // Only if the row was not edited after the uploaded snapshot; returns 0 when it was, and it stays dirty
+    @Query("UPDATE observations SET synced = 1 WHERE observationID = :observationId AND updatedAt IS :uploadedUpdatedAt")
+    int markObservationAsSyncedIfUnchanged(int observationId, Long uploadedUpdatedAt);
+
+    @Query("SELECT * FROM observations WHERE (synced = 0 OR synced IS NULL) AND observationID IN (:observationIds)")
+    List<Observation> getUnsyncedObservationsByIds(List<Integer> observationIds);
 }
 
@@ -0,0 +1,27 @@
+package com.example.mobilecw.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.mobilecw.database.entities.QueryEmbedding;
+
+@Dao
+public interface QueryEmbeddingDao {
+    @Query("SELECT * FROM query_embeddings WHERE firebaseUid = :firebaseUid AND queryText = :queryText")
+    QueryEmbedding getQueryEmbedding(String firebaseUid, String queryText);
+
+    @Query("UPDATE query_embeddings SET lastUsedAt = :lastUsedAt "
+            + "WHERE firebaseUid = :firebaseUid AND queryText = :queryText")
+    void touchQueryEmbedding(String firebaseUid, String queryText, long lastUsedAt);
+
+    @Upsert
+    void upsertQueryEmbedding(QueryEmbedding queryEmbedding);
+
+    /**
+     * Keep only the most recently used rows.
+     */
+    @Query("DELETE FROM query_embeddings WHERE rowid NOT IN "
+            + "(SELECT rowid FROM query_embeddings ORDER BY lastUsedAt DESC LIMIT :keep)")
+    void trimQueryEmbeddings(int keep);
+}
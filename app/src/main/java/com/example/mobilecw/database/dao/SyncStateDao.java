@@ -0,0 +1,29 @@
+package com.example.mobilecw.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.mobilecw.database.entities.SyncState;
+
+@Dao
+public interface SyncStateDao {
+    @Query("SELECT * FROM sync_state WHERE firebaseUid = :firebaseUid")
+    SyncState getSyncState(String firebaseUid);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertSyncState(SyncState syncState);
+
+    // Dirty-row counters (maintained by triggers)
+    @Query("SELECT COALESCE((SELECT pendingRows FROM dirty_row_counts WHERE userKey = :userId), 0)")
+    int getPendingRowCount(int userId);
+
+    // Resets a counter that drifted (e.g. rows replaced with REPLACE, whose implicit delete fires no trigger)
+    @Query("UPDATE dirty_row_counts SET pendingRows = "
+            + "(SELECT COUNT(*) FROM hikes WHERE userId = :userId AND (synced = 0 OR synced IS NULL)) + "
+            + "(SELECT COUNT(*) FROM observations CROSS JOIN hikes ON hikes.hikeID = observations.hikeId "
+            + "WHERE (observations.synced = 0 OR observations.synced IS NULL) AND hikes.userId = :userId) "
+            + "WHERE userKey = :userId")
+    void recountPendingRows(int userId);
+}
@@ -0,0 +1,34 @@
+package com.example.mobilecw.database.entities;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Number of hikes and observations per user still waiting to be uploaded.
+ *
+ * Rows are maintained by SQLite triggers (see AppDatabase), never written by DAOs
+ * directly; userKey is the hike's userId, or -1 for hikes without a user.
+ */
+@Entity(tableName = "dirty_row_counts")
+public class DirtyRowCount {
+    @PrimaryKey
+    private int userKey;
+
+    private int pendingRows;
+
+    public int getUserKey() {
+        return userKey;
+    }
+
+    public void setUserKey(int userKey) {
+        this.userKey = userKey;
+    }
+
+    public int getPendingRows() {
+        return pendingRows;
+    }
+
+    public void setPendingRows(int pendingRows) {
+        this.pendingRows = pendingRows;
+    }
+}
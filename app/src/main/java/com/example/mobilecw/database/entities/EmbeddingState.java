@@ -0,0 +1,116 @@
+package com.example.mobilecw.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * What was last embedded for one vector-sync chunk ("hike_12", "obs_40"): a hash
+ * of the chunk text and the embedding model. Vector sync skips a chunk while both
+ * still match, so only new or edited content is sent to the embeddings API.
+ *
+ * The vector itself is kept too (see EmbeddingCodec), so semantic search can run
+ * against an on-device index without the backend.
+ */
+@Entity(tableName = "embedding_state")
+public class EmbeddingState {
+    @PrimaryKey
+    @NonNull
+    private String chunkId;
+
+    @NonNull
+    private String textHash;
+
+    @NonNull
+    private String model;
+
+    private long embeddedAt;
+
+    private Integer hikeId;
+    private Integer observationId; // null for hike chunks
+
+    private byte[] vector; // null for rows embedded before vectors were stored
+
+    public EmbeddingState(@NonNull String chunkId, @NonNull String textHash, @NonNull String model, long embeddedAt) {
+        this.chunkId = chunkId;
+        this.textHash = textHash;
+        this.model = model;
+        this.embeddedAt = embeddedAt;
+    }
+
+    @Ignore
+    public EmbeddingState(@NonNull String chunkId, @NonNull String textHash, @NonNull String model, long embeddedAt,
+                          Integer hikeId, Integer observationId, byte[] vector) {
+        this(chunkId, textHash, model, embeddedAt);
+        this.hikeId = hikeId;
+        this.observationId = observationId;
+        this.vector = vector;
+    }
+
+    @NonNull
+    public String getChunkId() {
+        return chunkId;
+    }
+
+    public void setChunkId(@NonNull String chunkId) {
+        this.chunkId = chunkId;
+    }
+
+    @NonNull
+    public String getTextHash() {
+        return textHash;
+    }
+
+    public void setTextHash(@NonNull String textHash) {
+        this.textHash = textHash;
+    }
+
+    @NonNull
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(@NonNull String model) {
+        this.model = model;
+    }
+
+    public long getEmbeddedAt() {
+        return embeddedAt;
+    }
+
+    public void setEmbeddedAt(long embeddedAt) {
+        this.embeddedAt = embeddedAt;
+    }
+
+    public Integer getHikeId() {
+        return hikeId;
+    }
+
+    public void setHikeId(Integer hikeId) {
+        this.hikeId = hikeId;
+    }
+
+    public Integer getObservationId() {
+        return observationId;
+    }
+
+    public void setObservationId(Integer observationId) {
+        this.observationId = observationId;
+    }
+
+    public byte[] getVector() {
+        return vector;
+    }
+
+    public void setVector(byte[] vector) {
+        this.vector = vector;
+    }
+
+    /**
+     * True if a chunk with this hash, embedded with this model, needs no new embedding.
+     */
+    public boolean matches(String textHash, String model) {
+        return this.textHash.equals(textHash) && this.model.equals(model);
+    }
+}
@@ -7,8 +7,16 @@ import androidx.room.Index;
 
 import java.util.Date;
 
+// deleted is filtered with "IS NULL OR = 0" (not an equality), so it trails date:
+// the index then yields rows already sorted by date and is still covering for the filter
 @Entity(tableName = "hikes",
-        indices = {@Index("hikeID")})
+        indices = {
+                @Index(value = {"userId", "date", "deleted"},
+                        orders = {Index.Order.ASC, Index.Order.DESC, Index.Order.ASC}),
+                @Index("synced"),
+                @Index(value = {"userId", "synced"}),
+                @Index("isActive")
+        })
 public class Hike {
     @PrimaryKey(autoGenerate = true)
     private int hikeID;
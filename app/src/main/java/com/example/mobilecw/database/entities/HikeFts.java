@@ -0,0 +1,67 @@
+package com.example.mobilecw.database.entities;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text shadow table for {@link Hike}.
+ *
+ * Uses the hikes table as external content, so Room installs triggers that keep
+ * the index in sync on every insert/update/delete. Soft-deleted hikes stay in the
+ * index; search queries join back to hikes and filter on the deleted flag.
+ */
+@Fts4(contentEntity = Hike.class)
+@Entity(tableName = "hikes_fts")
+public class HikeFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+
+    private String name;
+    private String location;
+    private String description;
+    private String difficulty;
+
+    // Getters and Setters
+    public int getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(int rowId) {
+        this.rowId = rowId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(String difficulty) {
+        this.difficulty = difficulty;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.mobilecw.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * A photo waiting to be uploaded to Cloud Storage. Rows survive restarts; once a
+ * resumable session has been opened its URI and progress are kept, so the upload
+ * continues where it stopped instead of starting over.
+ *
+ * remoteName is derived from the picture's content hash, so the primary key also
+ * deduplicates: enqueueing the same photo twice keeps one row.
+ */
+@Entity(tableName = "media_transfers", primaryKeys = {"firebaseUid", "remoteName"})
+public class MediaTransfer {
+    @NonNull
+    private String firebaseUid;
+
+    @NonNull
+    private String remoteName;
+
+    @NonNull
+    private String localPath;
+
+    private String sessionUri; // resumable upload session, null until one is opened
+    private long bytesTransferred;
+    private long totalBytes;
+    private int attempts;
+    private long enqueuedAt;
+
+    public MediaTransfer(@NonNull String firebaseUid, @NonNull String remoteName, @NonNull String localPath,
+                         long totalBytes, long enqueuedAt) {
+        this.firebaseUid = firebaseUid;
+        this.remoteName = remoteName;
+        this.localPath = localPath;
+        this.totalBytes = totalBytes;
+        this.enqueuedAt = enqueuedAt;
+    }
+
+    @NonNull
+    public String getFirebaseUid() {
+        return firebaseUid;
+    }
+
+    public void setFirebaseUid(@NonNull String firebaseUid) {
+        this.firebaseUid = firebaseUid;
+    }
+
+    @NonNull
+    public String getRemoteName() {
+        return remoteName;
+    }
+
+    public void setRemoteName(@NonNull String remoteName) {
+        this.remoteName = remoteName;
+    }
+
+    @NonNull
+    public String getLocalPath() {
+        return localPath;
+    }
+
+    public void setLocalPath(@NonNull String localPath) {
+        this.localPath = localPath;
+    }
+
+    public String getSessionUri() {
+        return sessionUri;
+    }
+
+    public void setSessionUri(String sessionUri) {
+        this.sessionUri = sessionUri;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public void setBytesTransferred(long bytesTransferred) {
+        this.bytesTransferred = bytesTransferred;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    public void setEnqueuedAt(long enqueuedAt) {
+        this.enqueuedAt = enqueuedAt;
+    }
+}
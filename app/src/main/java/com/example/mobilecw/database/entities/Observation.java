@@ -14,7 +14,11 @@ import java.util.Date;
                 childColumns = "hikeId",
                 onDelete = ForeignKey.CASCADE
         ),
-        indices = {@Index("hikeId"), @Index("observationID")})
+        indices = {
+                @Index(value = {"hikeId", "time", "deleted"},
+                        orders = {Index.Order.ASC, Index.Order.DESC, Index.Order.ASC}),
+                @Index("synced")
+        })
 public class Observation {
     @PrimaryKey(autoGenerate = true)
     private int observationID;
@@ -24,6 +28,8 @@ public class Observation {
     private String comments; // Optional field
     private String location; // Optional field - GPS coordinates or location name
     private String picture; // Optional field - file path or URI to image
+    private String thumbnail; // Optional field - small copy of picture written at ingest
+    private String pictureHash; // SHA-256 of the ingested picture, names its Cloud Storage copies
     private int hikeId; // Foreign key to Hike
     
     // Timestamp for cloud sync
@@ -104,6 +110,22 @@ public class Observation {
         this.picture = picture;
     }
     
+    public String getThumbnail() {
+        return thumbnail;
+    }
+    
+    public void setThumbnail(String thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+    
+    public String getPictureHash() {
+        return pictureHash;
+    }
+    
+    public void setPictureHash(String pictureHash) {
+        this.pictureHash = pictureHash;
+    }
+    
     public int getHikeId() {
         return hikeId;
     }
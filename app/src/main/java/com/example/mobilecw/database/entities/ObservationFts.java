@@ -0,0 +1,57 @@
+package com.example.mobilecw.database.entities;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text shadow table for {@link Observation}.
+ *
+ * External-content FTS4 table over observations; Room-generated triggers keep it
+ * in sync with the content table.
+ */
+@Fts4(contentEntity = Observation.class)
+@Entity(tableName = "observations_fts")
+public class ObservationFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+
+    private String observationText;
+    private String comments;
+    private String location;
+
+    // Getters and Setters
+    public int getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(int rowId) {
+        this.rowId = rowId;
+    }
+
+    public String getObservationText() {
+        return observationText;
+    }
+
+    public void setObservationText(String observationText) {
+        this.observationText = observationText;
+    }
+
+    public String getComments() {
+        return comments;
+    }
+
+    public void setComments(String comments) {
+        this.comments = comments;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+}
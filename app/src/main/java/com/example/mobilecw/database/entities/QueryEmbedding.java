@@ -0,0 +1,78 @@
+package com.example.mobilecw.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * Embedding of a normalized search query, kept so repeating a search does not
+ * call the embeddings API again. lastUsedAt drives least-recently-used trimming.
+ */
+@Entity(tableName = "query_embeddings", primaryKeys = {"firebaseUid", "queryText"})
+public class QueryEmbedding {
+    @NonNull
+    private String firebaseUid;
+
+    @NonNull
+    private String queryText;
+
+    @NonNull
+    private String model;
+
+    @NonNull
+    private byte[] vector; // EmbeddingCodec blob
+
+    private long lastUsedAt;
+
+    public QueryEmbedding(@NonNull String firebaseUid, @NonNull String queryText, @NonNull String model,
+                          @NonNull byte[] vector, long lastUsedAt) {
+        this.firebaseUid = firebaseUid;
+        this.queryText = queryText;
+        this.model = model;
+        this.vector = vector;
+        this.lastUsedAt = lastUsedAt;
+    }
+
+    @NonNull
+    public String getFirebaseUid() {
+        return firebaseUid;
+    }
+
+    public void setFirebaseUid(@NonNull String firebaseUid) {
+        this.firebaseUid = firebaseUid;
+    }
+
+    @NonNull
+    public String getQueryText() {
+        return queryText;
+    }
+
+    public void setQueryText(@NonNull String queryText) {
+        this.queryText = queryText;
+    }
+
+    @NonNull
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(@NonNull String model) {
+        this.model = model;
+    }
+
+    @NonNull
+    public byte[] getVector() {
+        return vector;
+    }
+
+    public void setVector(@NonNull byte[] vector) {
+        this.vector = vector;
+    }
+
+    public long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    public void setLastUsedAt(long lastUsedAt) {
+        this.lastUsedAt = lastUsedAt;
+    }
+}
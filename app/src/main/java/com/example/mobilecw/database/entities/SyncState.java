@@ -0,0 +1,51 @@
+package com.example.mobilecw.database.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Pull cursors for one Firebase user: the newest server syncedAt already applied
+ * locally, per collection, in microseconds since the epoch.
+ *
+ * Kept in Room rather than preferences so it is wiped together with the rows it
+ * describes (logout, destructive migration).
+ */
+@Entity(tableName = "sync_state")
+public class SyncState {
+    @PrimaryKey
+    @NonNull
+    private String firebaseUid;
+
+    private Long hikesPulledUpTo;
+    private Long observationsPulledUpTo;
+
+    public SyncState(@NonNull String firebaseUid) {
+        this.firebaseUid = firebaseUid;
+    }
+
+    @NonNull
+    public String getFirebaseUid() {
+        return firebaseUid;
+    }
+
+    public void setFirebaseUid(@NonNull String firebaseUid) {
+        this.firebaseUid = firebaseUid;
+    }
+
+    public Long getHikesPulledUpTo() {
+        return hikesPulledUpTo;
+    }
+
+    public void setHikesPulledUpTo(Long hikesPulledUpTo) {
+        this.hikesPulledUpTo = hikesPulledUpTo;
+    }
+
+    public Long getObservationsPulledUpTo() {
+        return observationsPulledUpTo;
+    }
+
+    public void setObservationsPulledUpTo(Long observationsPulledUpTo) {
+        this.observationsPulledUpTo = observationsPulledUpTo;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.mobilecw.database.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+import com.example.mobilecw.database.entities.Hike;
+
+/**
+ * A hike returned from the full-text index together with its raw FTS4
+ * matchinfo blob (format "pcnalx"), used for BM25 ranking on the Java side.
+ */
+public class HikeSearchResult {
+    @Embedded
+    public Hike hike;
+
+    @ColumnInfo(name = "matchInfo")
+    public byte[] matchInfo;
+}
@@ -0,0 +1,19 @@
+package com.example.mobilecw.database.model;
+
+/**
+ * Aggregate hike statistics for one user, computed in a single SQL query by
+ * {@link com.example.mobilecw.database.dao.HikeStatsDao}.
+ */
+public class HikeStats {
+    public int hikeCount;
+    public double totalLength;
+    public double averageLength;
+
+    // Difficulty histogram (case-insensitive; "Expert" counts as hard)
+    public int easyCount;
+    public int mediumCount;
+    public int hardCount;
+
+    // Hikes dated in the current calendar month
+    public int thisMonthCount;
+}
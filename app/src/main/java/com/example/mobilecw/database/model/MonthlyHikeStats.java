@@ -0,0 +1,11 @@
+package com.example.mobilecw.database.model;
+
+/**
+ * One point of the per-month hike series returned by
+ * {@link com.example.mobilecw.database.dao.HikeStatsDao}.
+ */
+public class MonthlyHikeStats {
+    public String month; // yyyy-MM, local time
+    public int hikeCount;
+    public double totalLength;
+}
@@ -0,0 +1,18 @@
+package com.example.mobilecw.database.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+import com.example.mobilecw.database.entities.Observation;
+
+/**
+ * An observation returned from the full-text index together with its raw FTS4
+ * matchinfo blob (format "pcnalx").
+ */
+public class ObservationSearchResult {
+    @Embedded
+    public Observation observation;
+
+    @ColumnInfo(name = "matchInfo")
+    public byte[] matchInfo;
+}
@@ -0,0 +1,37 @@
+package com.example.mobilecw.database.paging;
+
+import androidx.annotation.Nullable;
+
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.entities.Hike;
+
+import java.util.List;
+
+/**
+ * Hikes of one user (or of non-registered users when userId is -1),
+ * newest first, one keyset page at a time.
+ */
+public class HikePagingSource extends KeysetPagingSource<Hike> {
+
+    private final HikeDao hikeDao;
+    private final int userId;
+
+    public HikePagingSource(AppDatabase database, int userId) {
+        super(database, "hikes");
+        this.hikeDao = database.hikeDao();
+        this.userId = userId;
+    }
+
+    @Override
+    protected List<Hike> loadPage(@Nullable Long beforeDate, int beforeId, int limit) {
+        return userId == -1
+                ? hikeDao.getHikePageForNonRegisteredUsers(beforeDate, beforeId, limit)
+                : hikeDao.getHikePageByUserId(userId, beforeDate, beforeId, limit);
+    }
+
+    @Override
+    protected Key keyOf(Hike hike) {
+        return Key.after(hike.getDate() != null ? hike.getDate().getTime() : null, hike.getHikeID());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.mobilecw.database.paging;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+import androidx.room.InvalidationTracker;
+import androidx.room.RoomDatabase;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Base PagingSource for lists sorted by (sort column DESC, primary key DESC).
+ *
+ * Pages are fetched with a keyset predicate ("rows after the last one shown")
+ * instead of LIMIT/OFFSET, so page N costs the same as page 1. The source
+ * invalidates itself when one of its tables changes; the refresh then reloads
+ * from the top, with enough rows to still cover the position the user was at.
+ *
+ * Subclasses provide the DAO call and how to read the key of a row.
+ */
+public abstract class KeysetPagingSource<T> extends ListenableFuturePagingSource<KeysetPagingSource.Key, T> {
+
+    private final RoomDatabase database;
+    private final InvalidationTracker.Observer tableObserver;
+    private final AtomicBoolean observerRegistered = new AtomicBoolean(false);
+
+    protected KeysetPagingSource(RoomDatabase database, String... tables) {
+        this.database = database;
+        this.tableObserver = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> changedTables) {
+                database.getInvalidationTracker().removeObserver(this);
+                invalidate();
+            }
+        };
+    }
+
+    /**
+     * Load up to limit rows strictly after (beforeSortValue, beforeId) in descending order.
+     */
+    protected abstract List<T> loadPage(@Nullable Long beforeSortValue, int beforeId, int limit);
+
+    /**
+     * Key of a row, i.e. the cursor to continue after it.
+     */
+    protected abstract Key keyOf(T item);
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Key, T>> loadFuture(@NonNull LoadParams<Key> params) {
+        ListenableFutureTask<LoadResult<Key, T>> task = ListenableFutureTask.create(() -> load(params));
+        database.getQueryExecutor().execute(task);
+        return task;
+    }
+
+    private LoadResult<Key, T> load(LoadParams<Key> params) {
+        // Register on the first load (off the main thread), like Room's own paging sources
+        if (observerRegistered.compareAndSet(false, true)) {
+            database.getInvalidationTracker().addObserver(tableObserver);
+        }
+        try {
+            Key key = params.getKey();
+            int limit = params.getLoadSize();
+            List<T> items;
+            if (key == null || key.isTop()) {
+                if (key != null) {
+                    limit = Math.max(limit, key.minimumCount);
+                }
+                items = loadPage(Long.MAX_VALUE, Integer.MAX_VALUE, limit);
+            } else {
+                items = loadPage(key.sortValue, key.id, limit);
+            }
+            Key nextKey = items.size() < limit ? null : keyOf(items.get(items.size() - 1));
+            // Pages only grow downwards: a refresh always restarts from the top
+            return new LoadResult.Page<>(items, null, nextKey);
+        } catch (RuntimeException e) {
+            return new LoadResult.Error<>(e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Key getRefreshKey(@NonNull PagingState<Key, T> state) {
+        Integer anchorPosition = state.getAnchorPosition();
+        if (anchorPosition == null) {
+            return null;
+        }
+        // Reload from the top, far enough to keep the visible rows in place
+        return Key.top(anchorPosition + state.getConfig().pageSize);
+    }
+
+    /**
+     * Cursor into a keyset-paginated list.
+     */
+    public static final class Key {
+        @Nullable
+        final Long sortValue;
+        final int id;
+        // Only for the top key: minimum rows to load on refresh
+        final int minimumCount;
+        private final boolean top;
+
+        private Key(@Nullable Long sortValue, int id, int minimumCount, boolean top) {
+            this.sortValue = sortValue;
+            this.id = id;
+            this.minimumCount = minimumCount;
+            this.top = top;
+        }
+
+        /**
+         * Continue after the row with this sort value (null sorts last) and id.
+         */
+        public static Key after(@Nullable Long sortValue, int id) {
+            return new Key(sortValue, id, 0, false);
+        }
+
+        static Key top(int minimumCount) {
+            return new Key(null, 0, minimumCount, true);
+        }
+
+        boolean isTop() {
+            return top;
+        }
+    }
+}
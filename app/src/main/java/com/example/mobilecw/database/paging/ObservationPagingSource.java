@@ -0,0 +1,36 @@
+package com.example.mobilecw.database.paging;
+
+import androidx.annotation.Nullable;
+
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.entities.Observation;
+
+import java.util.List;
+
+/**
+ * Observations of one hike, newest first, one keyset page at a time.
+ */
+public class ObservationPagingSource extends KeysetPagingSource<Observation> {
+
+    private final ObservationDao observationDao;
+    private final int hikeId;
+
+    public ObservationPagingSource(AppDatabase database, int hikeId) {
+        super(database, "observations");
+        this.observationDao = database.observationDao();
+        this.hikeId = hikeId;
+    }
+
+    @Override
+    protected List<Observation> loadPage(@Nullable Long beforeTime, int beforeId, int limit) {
+        return observationDao.getObservationPageByHikeId(hikeId, beforeTime, beforeId, limit);
+    }
+
+    @Override
+    protected Key keyOf(Observation observation) {
+        // The form always sets a time, but rows downloaded from Firestore may have none
+        Long time = observation.getTime() != null ? observation.getTime().getTime() : null;
+        return Key.after(time, observation.getObservationID());
+    }
+}
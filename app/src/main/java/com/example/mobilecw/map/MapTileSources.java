@@ -0,0 +1,82 @@
+package com.example.mobilecw.map;
+
+import android.text.TextUtils;
+
+import com.example.mobilecw.BuildConfig;
+
+import org.mapsforge.map.layer.download.tilesource.AbstractTileSource;
+import org.mapsforge.map.layer.download.tilesource.OnlineTileSource;
+import org.mapsforge.map.layer.download.tilesource.OpenStreetMapMapnik;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+
+/**
+ * The tile server maps draw from: OpenStreetMap, unless map.tileUrl in
+ * local.properties names another {z}/{x}/{y}.png server, such as one running on
+ * the development machine (http://10.0.2.2:8080/tiles/ from the emulator).
+ */
+public final class MapTileSources {
+
+    public static final String USER_AGENT = "MHike-Android-App";
+    // OpenStreetMap's tile usage policy asks bulk downloads to keep to two connections
+    static final int OSM_PARALLEL_REQUESTS = 2;
+    private static final int CUSTOM_PARALLEL_REQUESTS = 4;
+
+    private MapTileSources() {
+    }
+
+    public static AbstractTileSource get() {
+        if (!TextUtils.isEmpty(BuildConfig.MAP_TILE_URL)) {
+            try {
+                return fromUrl(BuildConfig.MAP_TILE_URL);
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException("map.tileUrl is not a URL: " + BuildConfig.MAP_TILE_URL, e);
+            }
+        }
+        OpenStreetMapMapnik osm = OpenStreetMapMapnik.INSTANCE;
+        osm.setUserAgent(USER_AGENT);
+        return osm;
+    }
+
+    /**
+     * A source serving {base}/{z}/{x}/{y}.png, e.g. from http://127.0.0.1:8080/tiles/.
+     */
+    public static OnlineTileSource fromUrl(String baseUrl) throws MalformedURLException {
+        URL url = new URL(baseUrl);
+        String path = url.getPath().endsWith("/") ? url.getPath() : url.getPath() + "/";
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        OnlineTileSource source = new OnlineTileSource(new String[]{url.getHost()}, port)
+                .setName(url.getHost() + "_" + port)
+                .setProtocol(url.getProtocol())
+                .setBaseUrl(path)
+                .setExtension("png")
+                .setAlpha(false)
+                .setZoomLevelMin((byte) 0)
+                .setZoomLevelMax((byte) 18)
+                .setParallelRequestsLimit(CUSTOM_PARALLEL_REQUESTS);
+        source.setUserAgent(USER_AGENT);
+        return source;
+    }
+
+    /**
+     * File name for the source's {@link TileStore}.
+     */
+    public static String storeName(AbstractTileSource source) {
+        if (source instanceof OnlineTileSource) {
+            return ((OnlineTileSource) source).getName().replaceAll("[^A-Za-z0-9_]", "_").toLowerCase(Locale.ROOT);
+        }
+        return source == OpenStreetMapMapnik.INSTANCE ? "osm_mapnik" : source.getClass().getSimpleName();
+    }
+
+    /**
+     * How many tiles a region download may request at once from the source.
+     */
+    static int parallelRequests(AbstractTileSource source) {
+        if (source == OpenStreetMapMapnik.INSTANCE) {
+            return OSM_PARALLEL_REQUESTS;
+        }
+        return Math.max(1, Math.min(CUSTOM_PARALLEL_REQUESTS, source.getParallelRequestsLimit()));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.mobilecw.map;
+
+import android.util.Log;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.TileBitmap;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.layer.cache.TileCache;
+import org.mapsforge.map.layer.queue.Job;
+import org.mapsforge.map.model.common.Observable;
+import org.mapsforge.map.model.common.Observer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Mapsforge {@link TileCache} over a {@link TileStore}, used as the second level
+ * behind an in-memory cache. Tiles keep the time they were downloaded, so the
+ * download layer refreshes stale ones when online and still draws them offline.
+ */
+public class PersistentTileCache implements TileCache {
+
+    private static final String TAG = "PersistentTileCache";
+
+    private final TileStore store;
+    private final GraphicFactory graphicFactory;
+    private final Observable observable = new Observable();
+
+    public PersistentTileCache(TileStore store, GraphicFactory graphicFactory) {
+        this.store = store;
+        this.graphicFactory = graphicFactory;
+    }
+
+    @Override
+    public boolean containsKey(Job key) {
+        Tile tile = key.tile;
+        return store.contains(tile.zoomLevel, tile.tileX, tile.tileY);
+    }
+
+    @Override
+    public TileBitmap get(Job key) {
+        Tile tile = key.tile;
+        TileStore.StoredTile stored = store.get(tile.zoomLevel, tile.tileX, tile.tileY);
+        if (stored == null) {
+            return null;
+        }
+        try {
+            TileBitmap bitmap = graphicFactory.createTileBitmap(
+                    new ByteArrayInputStream(stored.data), tile.tileSize, key.hasAlpha);
+            bitmap.setTimestamp(stored.fetchedAt);
+            return bitmap;
+        } catch (IOException e) {
+            // Treated as a miss, so the tile is downloaded again and replaced
+            Log.w(TAG, "Unreadable tile " + tile, e);
+            return null;
+        }
+    }
+
+    @Override
+    public TileBitmap getImmediately(Job key) {
+        return get(key);
+    }
+
+    @Override
+    public void put(Job key, TileBitmap bitmap) {
+        if (key == null || bitmap == null) {
+            throw new IllegalArgumentException("key and bitmap must not be null");
+        }
+        Tile tile = key.tile;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        try {
+            bitmap.compress(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not encode tile " + tile, e);
+            return;
+        }
+        store.put(tile.zoomLevel, tile.tileX, tile.tileY, out.toByteArray(), 0);
+        observable.notifyObservers();
+    }
+
+    @Override
+    public int getCapacity() {
+        return Integer.MAX_VALUE; // Bounded by bytes in TileStore, not by tile count
+    }
+
+    @Override
+    public int getCapacityFirstLevel() {
+        return getCapacity();
+    }
+
+    @Override
+    public void setWorkingSet(Set<Job> workingSet) {
+        // Everything on disk stays available; eviction is by last use
+    }
+
+    @Override
+    public void purge() {
+        store.clearUnpinned();
+    }
+
+    @Override
+    public void destroy() {
+        // The store is shared and stays open for other maps and region downloads
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+        observable.addObserver(observer);
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        observable.removeObserver(observer);
+    }
+}
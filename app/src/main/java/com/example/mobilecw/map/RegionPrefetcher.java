@@ -0,0 +1,193 @@
+package com.example.mobilecw.map;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.layer.download.tilesource.AbstractTileSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Downloads every tile of a bounding box over a range of zoom levels into a
+ * {@link TileStore}, pinned for {@link #PIN_DAYS} days so the area can be drawn
+ * on a trail without signal.
+ *
+ * At most {@link MapTileSources#parallelRequests} downloads run at once. Tiles
+ * already stored are pinned without being downloaded again, so running the same
+ * region after an interruption only fetches what is still missing.
+ */
+public class RegionPrefetcher {
+
+    private static final String TAG = "RegionPrefetcher";
+    static final int PIN_DAYS = 30;
+    /** Largest region, in tiles, one download may cover. */
+    public static final int MAX_REGION_TILES = 3000;
+    private static final int TILE_SIZE = 256;
+
+    public interface ProgressListener {
+        /** Called from download threads. */
+        void onProgress(int done, int total);
+    }
+
+    public static final class Result {
+        public final int total;
+        public final int downloaded;
+        public final int alreadyStored;
+        public final int failed;
+
+        Result(int total, int downloaded, int alreadyStored, int failed) {
+            this.total = total;
+            this.downloaded = downloaded;
+            this.alreadyStored = alreadyStored;
+            this.failed = failed;
+        }
+
+        public boolean isComplete() {
+            return downloaded + alreadyStored == total;
+        }
+    }
+
+    private final TileStore store;
+    private final AbstractTileSource tileSource;
+
+    public RegionPrefetcher(TileStore store, AbstractTileSource tileSource) {
+        this.store = store;
+        this.tileSource = tileSource;
+    }
+
+    /**
+     * Download the region, blocking until every tile was stored or failed.
+     *
+     * @param cancelled checked before each tile; remaining tiles count as failed
+     */
+    public Result fetch(BoundingBox box, byte minZoom, byte maxZoom,
+                        @Nullable ProgressListener listener, BooleanSupplier cancelled) throws InterruptedException {
+        minZoom = (byte) Math.max(minZoom, tileSource.getZoomLevelMin());
+        maxZoom = fitMaxZoom(box, minZoom, (byte) Math.min(maxZoom, tileSource.getZoomLevelMax()));
+        int total = (int) countTiles(box, minZoom, maxZoom);
+        long pinnedUntil = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(PIN_DAYS);
+        AtomicInteger downloaded = new AtomicInteger();
+        AtomicInteger alreadyStored = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(MapTileSources.parallelRequests(tileSource));
+        try {
+            for (byte zoom = minZoom; zoom <= maxZoom; zoom++) {
+                int minX = MercatorProjection.longitudeToTileX(box.minLongitude, zoom);
+                int maxX = MercatorProjection.longitudeToTileX(box.maxLongitude, zoom);
+                int minY = MercatorProjection.latitudeToTileY(box.maxLatitude, zoom);
+                int maxY = MercatorProjection.latitudeToTileY(box.minLatitude, zoom);
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        Tile tile = new Tile(x, y, zoom, TILE_SIZE);
+                        executor.execute(() -> {
+                            if (cancelled.getAsBoolean()) {
+                                failed.incrementAndGet();
+                            } else if (store.pin(tile.zoomLevel, tile.tileX, tile.tileY, pinnedUntil)) {
+                                alreadyStored.incrementAndGet();
+                            } else {
+                                try {
+                                    store.put(tile.zoomLevel, tile.tileX, tile.tileY, download(tile), pinnedUntil);
+                                    downloaded.incrementAndGet();
+                                } catch (IOException e) {
+                                    Log.w(TAG, "Could not download " + tile, e);
+                                    failed.incrementAndGet();
+                                }
+                            }
+                            if (listener != null) {
+                                listener.onProgress(done.incrementAndGet(), total);
+                            }
+                        });
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // Downloads time out on their own; keep waiting
+        }
+
+        Result result = new Result(total, downloaded.get(), alreadyStored.get(), failed.get());
+        Log.d(TAG, "Region z" + minZoom + "-" + maxZoom + ": " + result.downloaded + " downloaded, "
+                + result.alreadyStored + " already stored, " + result.failed + " failed in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return result;
+    }
+
+    private byte[] download(Tile tile) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) tileSource.getTileUrl(tile).openConnection();
+        try {
+            connection.setConnectTimeout(tileSource.getTimeoutConnect());
+            connection.setReadTimeout(tileSource.getTimeoutRead());
+            if (tileSource.getUserAgent() != null) {
+                connection.setRequestProperty("User-Agent", tileSource.getUserAgent());
+            }
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status + " for " + connection.getURL());
+            }
+            try (InputStream in = connection.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    public static long countTiles(BoundingBox box, byte minZoom, byte maxZoom) {
+        long count = 0;
+        for (byte zoom = minZoom; zoom <= maxZoom; zoom++) {
+            long columns = MercatorProjection.longitudeToTileX(box.maxLongitude, zoom)
+                    - MercatorProjection.longitudeToTileX(box.minLongitude, zoom) + 1;
+            long rows = MercatorProjection.latitudeToTileY(box.minLatitude, zoom)
+                    - MercatorProjection.latitudeToTileY(box.maxLatitude, zoom) + 1;
+            count += columns * rows;
+        }
+        return count;
+    }
+
+    /**
+     * The highest zoom up to maxZoom at which the region stays within
+     * {@link #MAX_REGION_TILES}; never below minZoom.
+     */
+    public static byte fitMaxZoom(BoundingBox box, byte minZoom, byte maxZoom) {
+        while (maxZoom > minZoom && countTiles(box, minZoom, maxZoom) > MAX_REGION_TILES) {
+            maxZoom--;
+        }
+        return maxZoom;
+    }
+
+    /**
+     * A square box reaching radiusKm from the point in each direction.
+     */
+    public static BoundingBox around(double latitude, double longitude, double radiusKm) {
+        double latDelta = radiusKm / 110.574;
+        double lonDelta = radiusKm / (111.320 * Math.cos(Math.toRadians(latitude)));
+        return new BoundingBox(
+                Math.max(latitude - latDelta, MercatorProjection.LATITUDE_MIN),
+                Math.max(longitude - lonDelta, -180),
+                Math.min(latitude + latDelta, MercatorProjection.LATITUDE_MAX),
+                Math.min(longitude + lonDelta, 180));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.mobilecw.map;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.map.layer.download.tilesource.AbstractTileSource;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link RegionPrefetcher} download in the background. The work survives
+ * process death and waits for a network; a run that leaves tiles missing is
+ * retried with backoff, and each retry only fetches the tiles still missing.
+ */
+public class TilePrefetchWorker extends Worker {
+
+    private static final String TAG = "TilePrefetchWorker";
+    static final String KEY_MIN_LAT = "minLat";
+    static final String KEY_MIN_LON = "minLon";
+    static final String KEY_MAX_LAT = "maxLat";
+    static final String KEY_MAX_LON = "maxLon";
+    static final String KEY_MIN_ZOOM = "minZoom";
+    static final String KEY_MAX_ZOOM = "maxZoom";
+    public static final String PROGRESS_DONE = "done";
+    public static final String PROGRESS_TOTAL = "total";
+    private static final int PROGRESS_STEP_TILES = 25;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_DELAY_SECONDS = 30;
+
+    public TilePrefetchWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Queue a download of the region. Asking for the same region again while it
+     * is queued or running does nothing.
+     *
+     * @return the unique work name, for observing progress
+     */
+    public static String enqueue(Context context, BoundingBox box, byte minZoom, byte maxZoom) {
+        String name = String.format(Locale.US, "tile-prefetch-%.4f,%.4f,%.4f,%.4f-z%d-%d",
+                box.minLatitude, box.minLongitude, box.maxLatitude, box.maxLongitude, minZoom, maxZoom);
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(name, ExistingWorkPolicy.KEEP, buildRequest(box, minZoom, maxZoom));
+        return name;
+    }
+
+    static OneTimeWorkRequest buildRequest(BoundingBox box, byte minZoom, byte maxZoom) {
+        Data input = new Data.Builder()
+                .putDouble(KEY_MIN_LAT, box.minLatitude)
+                .putDouble(KEY_MIN_LON, box.minLongitude)
+                .putDouble(KEY_MAX_LAT, box.maxLatitude)
+                .putDouble(KEY_MAX_LON, box.maxLongitude)
+                .putInt(KEY_MIN_ZOOM, minZoom)
+                .putInt(KEY_MAX_ZOOM, maxZoom)
+                .build();
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresStorageNotLow(true)
+                .build();
+        return new OneTimeWorkRequest.Builder(TilePrefetchWorker.class)
+                .setInputData(input)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        BoundingBox box = new BoundingBox(
+                input.getDouble(KEY_MIN_LAT, 0), input.getDouble(KEY_MIN_LON, 0),
+                input.getDouble(KEY_MAX_LAT, 0), input.getDouble(KEY_MAX_LON, 0));
+        byte minZoom = (byte) input.getInt(KEY_MIN_ZOOM, 0);
+        byte maxZoom = (byte) input.getInt(KEY_MAX_ZOOM, 0);
+
+        AbstractTileSource source = MapTileSources.get();
+        TileStore store = TileStore.forSource(getApplicationContext(), MapTileSources.storeName(source));
+        RegionPrefetcher.Result result;
+        try {
+            result = new RegionPrefetcher(store, source).fetch(box, minZoom, maxZoom, (done, total) -> {
+                if (done % PROGRESS_STEP_TILES == 0 || done == total) {
+                    setProgressAsync(new Data.Builder()
+                            .putInt(PROGRESS_DONE, done)
+                            .putInt(PROGRESS_TOTAL, total)
+                            .build());
+                }
+            }, this::isStopped);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+
+        if (result.isComplete()) {
+            return Result.success();
+        }
+        Log.w(TAG, "Attempt " + (getRunAttemptCount() + 1) + " left " + result.failed + " of "
+                + result.total + " tiles missing");
+        return getRunAttemptCount() + 1 < MAX_ATTEMPTS ? Result.retry() : Result.failure();
+    }
+}
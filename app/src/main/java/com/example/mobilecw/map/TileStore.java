@@ -0,0 +1,265 @@
+package com.example.mobilecw.map;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Map tiles on disk in an MBTiles file: a SQLite database with a
+ * tiles(zoom_level, tile_column, tile_row, tile_data) table, rows in TMS order.
+ * Callers use the XYZ tile numbers of the tile URLs; the row flip happens here.
+ *
+ * The store is kept under {@link #MAX_BYTES} by deleting the tiles drawn least
+ * recently. Tiles saved for an offline region are pinned until a date and are
+ * not evicted before it, so a prefetched area survives browsing elsewhere.
+ * Unlike the Mapsforge file cache the store lives in filesDir, which Android
+ * does not clear when storage runs low.
+ */
+public class TileStore {
+
+    private static final String TAG = "TileStore";
+    static final long MAX_BYTES = 128L * 1024 * 1024;
+    // last_used is only rewritten when older than this, so drawing a tile rarely writes
+    private static final long TOUCH_INTERVAL_MS = 60 * 60 * 1000L;
+    private static final int EVICTION_BATCH = 64;
+    private static final int DB_VERSION = 1;
+
+    private static final Map<String, TileStore> INSTANCES = new HashMap<>();
+
+    /** A stored tile image and when it was downloaded. */
+    public static final class StoredTile {
+        public final byte[] data;
+        public final long fetchedAt;
+
+        StoredTile(byte[] data, long fetchedAt) {
+            this.data = data;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private final Helper helper;
+    private final long maxBytes;
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    TileStore(Context context, @Nullable String fileName, long maxBytes) {
+        this.helper = new Helper(context, fileName);
+        this.maxBytes = maxBytes;
+        try (Cursor cursor = helper.getReadableDatabase()
+                .rawQuery("SELECT COALESCE(SUM(LENGTH(tile_data)), 0) FROM tiles", null)) {
+            cursor.moveToFirst();
+            totalBytes.set(cursor.getLong(0));
+        }
+    }
+
+    /**
+     * The store for one tile source, in filesDir/maps/{name}.mbtiles. Tiles from
+     * different servers never share a file.
+     */
+    public static TileStore forSource(Context context, String name) {
+        synchronized (INSTANCES) {
+            TileStore store = INSTANCES.get(name);
+            if (store == null) {
+                Context appContext = context.getApplicationContext();
+                File dir = new File(appContext.getFilesDir(), "maps");
+                if (!dir.exists() && !dir.mkdirs()) {
+                    Log.w(TAG, "Could not create " + dir);
+                }
+                store = new TileStore(appContext, new File(dir, name + ".mbtiles").getPath(), MAX_BYTES);
+                INSTANCES.put(name, store);
+            }
+            return store;
+        }
+    }
+
+    @Nullable
+    public StoredTile get(int zoom, int x, int y) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        String[] key = key(zoom, x, y);
+        byte[] data;
+        long fetchedAt;
+        long lastUsed;
+        try (Cursor cursor = db.rawQuery("SELECT tile_data, fetched_at, last_used FROM tiles "
+                + "WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?", key)) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            data = cursor.getBlob(0);
+            fetchedAt = cursor.getLong(1);
+            lastUsed = cursor.getLong(2);
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastUsed > TOUCH_INTERVAL_MS) {
+            ContentValues values = new ContentValues();
+            values.put("last_used", now);
+            db.update("tiles", values, "zoom_level = ? AND tile_column = ? AND tile_row = ?", key);
+        }
+        return new StoredTile(data, fetchedAt);
+    }
+
+    public boolean contains(int zoom, int x, int y) {
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery("SELECT 1 FROM tiles "
+                + "WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?", key(zoom, x, y))) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Save a downloaded tile, replacing any older copy but keeping its pin, then
+     * evict if the store went over budget.
+     *
+     * @param pinnedUntil keep the tile at least until this time, or 0
+     */
+    public void put(int zoom, int x, int y, byte[] data, long pinnedUntil) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        String[] key = key(zoom, x, y);
+        long now = System.currentTimeMillis();
+        long added = data.length;
+        db.beginTransaction();
+        try {
+            try (Cursor cursor = db.rawQuery("SELECT LENGTH(tile_data), pinned_until FROM tiles "
+                    + "WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?", key)) {
+                if (cursor.moveToFirst()) {
+                    added -= cursor.getLong(0);
+                    pinnedUntil = Math.max(pinnedUntil, cursor.getLong(1));
+                }
+            }
+            ContentValues values = new ContentValues();
+            values.put("zoom_level", zoom);
+            values.put("tile_column", x);
+            values.put("tile_row", tmsRow(zoom, y));
+            values.put("tile_data", data);
+            values.put("fetched_at", now);
+            values.put("last_used", now);
+            values.put("pinned_until", pinnedUntil);
+            db.insertWithOnConflict("tiles", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (totalBytes.addAndGet(added) > maxBytes) {
+            trim();
+        }
+    }
+
+    /**
+     * Pin a stored tile until the given time.
+     *
+     * @return false if the tile is not stored
+     */
+    public boolean pin(int zoom, int x, int y, long pinnedUntil) {
+        try (SQLiteStatement update = helper.getWritableDatabase().compileStatement(
+                "UPDATE tiles SET pinned_until = MAX(pinned_until, ?) "
+                        + "WHERE zoom_level = ? AND tile_column = ? AND tile_row = ?")) {
+            update.bindLong(1, pinnedUntil);
+            update.bindLong(2, zoom);
+            update.bindLong(3, x);
+            update.bindLong(4, tmsRow(zoom, y));
+            return update.executeUpdateDelete() > 0;
+        }
+    }
+
+    /**
+     * Delete least recently used, unpinned tiles until the store fits its budget.
+     */
+    synchronized void trim() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        int evicted = 0;
+        while (totalBytes.get() > maxBytes) {
+            long freed = 0;
+            int deleted = 0;
+            db.beginTransaction();
+            try {
+                try (Cursor cursor = db.rawQuery("SELECT rowid, LENGTH(tile_data) FROM tiles "
+                        + "WHERE pinned_until < ? ORDER BY last_used, rowid LIMIT " + EVICTION_BATCH,
+                        new String[]{String.valueOf(System.currentTimeMillis())})) {
+                    while (cursor.moveToNext()) {
+                        db.delete("tiles", "rowid = ?", new String[]{String.valueOf(cursor.getLong(0))});
+                        freed += cursor.getLong(1);
+                        deleted++;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (deleted == 0) {
+                break; // Everything left is pinned
+            }
+            totalBytes.addAndGet(-freed);
+            evicted += deleted;
+        }
+        if (evicted > 0) {
+            Log.d(TAG, "Evicted " + evicted + " tiles, " + totalBytes.get() / 1024 + " KB left");
+        }
+    }
+
+    /**
+     * Drop every tile that is not pinned.
+     */
+    public void clearUnpinned() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.delete("tiles", "pinned_until < ?", new String[]{String.valueOf(System.currentTimeMillis())});
+        try (Cursor cursor = db.rawQuery("SELECT COALESCE(SUM(LENGTH(tile_data)), 0) FROM tiles", null)) {
+            cursor.moveToFirst();
+            totalBytes.set(cursor.getLong(0));
+        }
+    }
+
+    public long sizeBytes() {
+        return totalBytes.get();
+    }
+
+    void close() {
+        helper.close();
+    }
+
+    private static String[] key(int zoom, int x, int y) {
+        return new String[]{String.valueOf(zoom), String.valueOf(x), String.valueOf(tmsRow(zoom, y))};
+    }
+
+    /** MBTiles numbers rows from the south edge, tile URLs from the north. */
+    static int tmsRow(int zoom, int y) {
+        return (1 << zoom) - 1 - y;
+    }
+
+    private static final class Helper extends SQLiteOpenHelper {
+
+        Helper(Context context, @Nullable String fileName) {
+            super(context, fileName, null, DB_VERSION);
+        }
+
+        @Override
+        public void onConfigure(SQLiteDatabase db) {
+            // Map threads read while downloads write
+            db.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE metadata (name TEXT PRIMARY KEY, value TEXT)");
+            db.execSQL("INSERT INTO metadata VALUES ('name', 'M-Hike map tiles'), ('format', 'png'), "
+                    + "('type', 'baselayer'), ('version', '1')");
+            db.execSQL("CREATE TABLE tiles (zoom_level INTEGER NOT NULL, tile_column INTEGER NOT NULL, "
+                    + "tile_row INTEGER NOT NULL, tile_data BLOB NOT NULL, fetched_at INTEGER NOT NULL, "
+                    + "last_used INTEGER NOT NULL, pinned_until INTEGER NOT NULL DEFAULT 0, "
+                    + "PRIMARY KEY (zoom_level, tile_column, tile_row))");
+            db.execSQL("CREATE INDEX tiles_eviction ON tiles (pinned_until, last_used)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // First version of the store; later ones add their steps here
+        }
+    }
+}
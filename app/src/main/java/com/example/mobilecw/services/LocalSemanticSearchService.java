@@ -0,0 +1,141 @@
+package com.example.mobilecw.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.InvalidationTracker;
+
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.dao.EmbeddingStateDao;
+import com.example.mobilecw.database.entities.EmbeddingState;
+import com.example.mobilecw.sync.GeminiEmbeddingService;
+import com.example.mobilecw.utils.SearchHelper;
+import com.example.mobilecw.utils.VectorIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Semantic hike search against the embeddings vector sync keeps in
+ * embedding_state, ranked on the device instead of by the backend.
+ *
+ * The index for the current user is built on the first search and reused until
+ * embedding_state or hikes change (InvalidationTracker), so typing a new query
+ * costs at most one query embedding (none for a repeated query, see
+ * {@link QueryEmbeddingCache}) and an in-memory top-k. Small collections are scanned
+ * in their stored INT8 form; large ones go through HNSW (see {@link VectorIndex#build}).
+ *
+ * All methods block and must be called off the main thread.
+ */
+public class LocalSemanticSearchService {
+
+    private static final String TAG = "LocalSemanticSearch";
+
+    private static volatile LocalSemanticSearchService INSTANCE;
+
+    private final AppDatabase database;
+    private final EmbeddingStateDao embeddingStateDao;
+    private final GeminiEmbeddingService embeddingService;
+    private final QueryEmbeddingCache queryEmbeddings;
+    private final InvalidationTracker.Observer tableObserver;
+    private final AtomicBoolean observerRegistered = new AtomicBoolean(false);
+
+    private volatile boolean stale = true;
+    private int indexedUserId = -1;
+    private VectorIndex index;
+
+    private LocalSemanticSearchService(AppDatabase database) {
+        this.database = database;
+        this.embeddingStateDao = database.embeddingStateDao();
+        this.embeddingService = new GeminiEmbeddingService();
+        this.queryEmbeddings = new QueryEmbeddingCache(database.queryEmbeddingDao(), embeddingService.getModelName());
+        this.tableObserver = new InvalidationTracker.Observer("embedding_state", "hikes") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                stale = true;
+            }
+        };
+    }
+
+    public static LocalSemanticSearchService getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (LocalSemanticSearchService.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new LocalSemanticSearchService(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * The user's hikes most similar to the query, best first; {@link VectorIndex.Match#id}
+     * is the hike id.
+     *
+     * @return null if there is nothing indexed yet or the query could not be embedded,
+     *         so the caller can fall back to the backend
+     */
+    @Nullable
+    public List<VectorIndex.Match> searchHikes(int userId, String firebaseUid, String query, int topK) {
+        // Register on the first search (off the main thread), like KeysetPagingSource
+        if (observerRegistered.compareAndSet(false, true)) {
+            database.getInvalidationTracker().addObserver(tableObserver);
+        }
+        VectorIndex hikeIndex = indexFor(userId);
+        if (hikeIndex.size() == 0 || !embeddingService.isConfigured()) {
+            return null;
+        }
+        String normalizedQuery = SearchHelper.normalizeQuery(query);
+        float[] queryVector = queryEmbeddings.get(firebaseUid, normalizedQuery);
+        if (queryVector == null) {
+            queryVector = embeddingService.fetchEmbedding(firebaseUid, "search_query", "query", normalizedQuery);
+            if (queryVector == null) {
+                return null;
+            }
+            queryEmbeddings.put(firebaseUid, normalizedQuery, queryVector);
+        }
+        try {
+            return hikeIndex.search(queryVector, topK);
+        } catch (IllegalArgumentException e) {
+            // Stored vectors have another dimension than the query, e.g. mid model change
+            Log.w(TAG, "Local index does not match the query embedding", e);
+            return null;
+        }
+    }
+
+    private synchronized VectorIndex indexFor(int userId) {
+        if (index == null || stale || indexedUserId != userId) {
+            // Clear first: a write during the rebuild marks the new index stale again
+            stale = false;
+            index = buildIndex(userId);
+            indexedUserId = userId;
+        }
+        return index;
+    }
+
+    private VectorIndex buildIndex(int userId) {
+        long start = System.nanoTime();
+        String model = embeddingService.getModelName();
+        List<EmbeddingState> states = embeddingStateDao.getHikeVectorsForUser(userId);
+        List<byte[]> vectors = new ArrayList<>(states.size());
+        List<Integer> hikeIds = new ArrayList<>(states.size());
+        for (EmbeddingState state : states) {
+            if (model.equals(state.getModel()) && state.getHikeId() != null) {
+                vectors.add(state.getVector());
+                hikeIds.add(state.getHikeId());
+            }
+        }
+        int[] ids = new int[hikeIds.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = hikeIds.get(i);
+        }
+        VectorIndex built = VectorIndex.build(ids, vectors.toArray(new byte[0][]));
+        Log.d(TAG, "Indexed " + ids.length + " hike vectors in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return built;
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.mobilecw.services;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Turns a picked or captured photo into the copies an observation stores: the
+ * picture, re-encoded as JPEG with its long edge at most {@link #MAX_EDGE}, and a
+ * thumbnail whose short edge covers a full-width card on this screen.
+ *
+ * Camera originals are 4-12 MB; every list bind, and any upload, would otherwise
+ * pay for them. The picture is decoded with a power-of-two inSampleSize, so the
+ * original is never held in memory at full size and its long edge ends up
+ * between MAX_EDGE / 2 and MAX_EDGE. The EXIF orientation is applied to the pixels
+ * and the rest of the EXIF block (GPS, camera and owner tags) is dropped, since
+ * Bitmap.compress writes none; the observation keeps its own time and location.
+ *
+ * Both files go to filesDir/observation_photos, which {@link #isIngested} uses to
+ * tell processed pictures from raw picker URIs. The source is never modified.
+ */
+public final class PhotoIngestor {
+
+    private static final String TAG = "PhotoIngestor";
+    private static final String PHOTO_DIR = "observation_photos";
+    static final int MAX_EDGE = 2048;
+    /** Thumbnails are never larger than this on the short edge, whatever the screen. */
+    static final int MAX_THUMBNAIL_SHORT_EDGE = 1080;
+    private static final int QUALITY = 85;
+    private static final int THUMBNAIL_QUALITY = 80;
+    private static final int INGEST_THREADS = 2;
+
+    private static volatile PhotoIngestor INSTANCE;
+
+    private final Context context;
+    private final File photoDir;
+    private final ExecutorService executor = Executors.newFixedThreadPool(INGEST_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Receives progress and the result on the main thread.
+     */
+    public interface Callback {
+        void onProgress(int percent);
+
+        /**
+         * @param result null if the photo could not be read or written; the caller
+         *               should keep the original
+         */
+        void onComplete(@Nullable Result result);
+    }
+
+    public static final class Result {
+        public final String picturePath;
+        public final String thumbnailPath;
+        /** SHA-256 of the picture file, hex encoded. */
+        public final String pictureHash;
+        /** Size of the source, or -1 if the provider does not report it. */
+        public final long originalBytes;
+        public final long pictureBytes;
+        public final long thumbnailBytes;
+        public final long elapsedMs;
+
+        Result(String picturePath, String thumbnailPath, String pictureHash, long originalBytes,
+               long pictureBytes, long thumbnailBytes, long elapsedMs) {
+            this.picturePath = picturePath;
+            this.thumbnailPath = thumbnailPath;
+            this.pictureHash = pictureHash;
+            this.originalBytes = originalBytes;
+            this.pictureBytes = pictureBytes;
+            this.thumbnailBytes = thumbnailBytes;
+            this.elapsedMs = elapsedMs;
+        }
+    }
+
+    private PhotoIngestor(Context context) {
+        this.context = context.getApplicationContext();
+        this.photoDir = new File(this.context.getFilesDir(), PHOTO_DIR);
+    }
+
+    public static PhotoIngestor getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (PhotoIngestor.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new PhotoIngestor(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Where ingested pictures live; copies fetched back from Cloud Storage go here too.
+     */
+    public File getPhotoDir() {
+        return photoDir;
+    }
+
+    /**
+     * Whether picture is a copy this class wrote, rather than a raw file or URI.
+     */
+    public boolean isIngested(@Nullable String picture) {
+        return picture != null && photoDir.getPath().equals(new File(picture).getParent());
+    }
+
+    /**
+     * Ingest source (a file path or a content:// URI string) on the background pool.
+     */
+    public void ingest(String source, Callback callback) {
+        executor.execute(() -> {
+            Result result = ingestBlocking(source,
+                    percent -> mainHandler.post(() -> callback.onProgress(percent)));
+            mainHandler.post(() -> callback.onComplete(result));
+        });
+    }
+
+    /**
+     * Delete the files of an ingested picture and its thumbnail; anything not
+     * written by this class is left alone.
+     */
+    public void deleteIngested(@Nullable String picture, @Nullable String thumbnail) {
+        if (isIngested(picture)) {
+            new File(picture).delete();
+        }
+        if (isIngested(thumbnail)) {
+            new File(thumbnail).delete();
+        }
+    }
+
+    @Nullable
+    Result ingestBlocking(String source, IntConsumer progress) {
+        long start = System.nanoTime();
+        progress.accept(0);
+        File picture = null;
+        File thumbnail = null;
+        Bitmap decoded = null;
+        Bitmap thumbnailBitmap = null;
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            try (InputStream in = open(source)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                Log.w(TAG, "Not an image: " + source);
+                return null;
+            }
+            int orientation = readOrientation(source);
+            progress.accept(10);
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = ingestSampleSize(options.outWidth, options.outHeight, MAX_EDGE);
+            try (InputStream in = open(source)) {
+                decoded = BitmapFactory.decodeStream(in, null, options);
+            }
+            if (decoded == null) {
+                Log.w(TAG, "Could not decode " + source);
+                return null;
+            }
+            decoded = orient(decoded, orientation);
+            progress.accept(50);
+
+            if (!photoDir.exists() && !photoDir.mkdirs()) {
+                Log.w(TAG, "Could not create " + photoDir);
+                return null;
+            }
+            String name = UUID.randomUUID().toString();
+            picture = new File(photoDir, name + ".jpg");
+            write(decoded, picture, QUALITY);
+            progress.accept(80);
+
+            int shortEdge = Math.min(context.getResources().getDisplayMetrics().widthPixels,
+                    MAX_THUMBNAIL_SHORT_EDGE);
+            int[] size = thumbnailSize(decoded.getWidth(), decoded.getHeight(), shortEdge);
+            thumbnailBitmap = Bitmap.createScaledBitmap(decoded, size[0], size[1], true);
+            thumbnail = new File(photoDir, name + "_thumb.jpg");
+            write(thumbnailBitmap, thumbnail, THUMBNAIL_QUALITY);
+            progress.accept(100);
+
+            Result result = new Result(picture.getPath(), thumbnail.getPath(), sha256(picture),
+                    sourceLength(source), picture.length(), thumbnail.length(),
+                    (System.nanoTime() - start) / 1_000_000);
+            Log.i(TAG, String.format(Locale.ROOT,
+                    "Ingested %dx%d photo: %d KB -> %d KB + %d KB thumbnail in %d ms",
+                    options.outWidth, options.outHeight, result.originalBytes / 1024,
+                    result.pictureBytes / 1024, result.thumbnailBytes / 1024, result.elapsedMs));
+            return result;
+        } catch (IOException | SecurityException | OutOfMemoryError e) {
+            Log.w(TAG, "Could not ingest " + source, e);
+            if (picture != null) {
+                picture.delete();
+            }
+            if (thumbnail != null) {
+                thumbnail.delete();
+            }
+            return null;
+        } finally {
+            if (thumbnailBitmap != null && thumbnailBitmap != decoded) {
+                thumbnailBitmap.recycle();
+            }
+            if (decoded != null) {
+                decoded.recycle();
+            }
+        }
+    }
+
+    private InputStream open(String source) throws IOException {
+        if (source.startsWith("content:")) {
+            InputStream in = context.getContentResolver().openInputStream(Uri.parse(source));
+            if (in == null) {
+                throw new IOException("No stream for " + source);
+            }
+            return in;
+        }
+        return new FileInputStream(source);
+    }
+
+    private long sourceLength(String source) {
+        if (!source.startsWith("content:")) {
+            return new File(source).length();
+        }
+        try (AssetFileDescriptor descriptor =
+                     context.getContentResolver().openAssetFileDescriptor(Uri.parse(source), "r")) {
+            return descriptor == null ? -1 : descriptor.getLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private int readOrientation(String source) {
+        try (InputStream in = open(source)) {
+            return new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            // No readable EXIF block: the pixels are stored upright
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    private static Bitmap orient(Bitmap bitmap, int orientation) {
+        int degrees = rotationDegrees(orientation);
+        boolean mirrored = isMirrored(orientation);
+        if (degrees == 0 && !mirrored) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        if (mirrored) {
+            matrix.postScale(-1, 1);
+        }
+        Bitmap oriented = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (oriented != bitmap) {
+            bitmap.recycle();
+        }
+        return oriented;
+    }
+
+    private static void write(Bitmap bitmap, File file, int quality) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("Could not encode " + file);
+            }
+        }
+    }
+
+    /**
+     * SHA-256 of the file, hex encoded.
+     */
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android runtime ships SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Smallest power of two that brings the long edge down to maxEdge or below.
+     */
+    static int ingestSampleSize(int width, int height, int maxEdge) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longEdge / sampleSize > maxEdge) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Width and height scaled so the short edge is at most shortEdge; never scales up.
+     */
+    static int[] thumbnailSize(int width, int height, int shortEdge) {
+        int current = Math.min(width, height);
+        if (current <= shortEdge) {
+            return new int[]{width, height};
+        }
+        double scale = (double) shortEdge / current;
+        return new int[]{
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))};
+    }
+
+    /**
+     * Clockwise rotation that makes a picture with this EXIF orientation upright,
+     * applied before {@link #isMirrored} flips it horizontally.
+     */
+    static int rotationDegrees(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    static boolean isMirrored(int orientation) {
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.mobilecw.services;
+
+import androidx.annotation.Nullable;
+
+import com.example.mobilecw.database.dao.QueryEmbeddingDao;
+import com.example.mobilecw.database.entities.QueryEmbedding;
+import com.example.mobilecw.utils.EmbeddingCodec;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Embeddings of search queries, persisted in query_embeddings so a repeated
+ * search, also after a restart, skips the embeddings API. Queries are keyed by
+ * their {@link com.example.mobilecw.utils.SearchHelper#normalizeQuery normalized}
+ * text, so near-repeats differing only in case, punctuation or spacing share an
+ * entry. Entries from another model are misses.
+ *
+ * Only the {@link #MAX_ENTRIES} most recently used queries are kept. Blocking;
+ * call off the main thread.
+ */
+public class QueryEmbeddingCache {
+
+    static final int MAX_ENTRIES = 500;
+
+    private final QueryEmbeddingDao dao;
+    private final String model;
+    private final LongSupplier clock;
+
+    public QueryEmbeddingCache(QueryEmbeddingDao dao, String model) {
+        this(dao, model, System::currentTimeMillis);
+    }
+
+    QueryEmbeddingCache(QueryEmbeddingDao dao, String model, LongSupplier clock) {
+        this.dao = dao;
+        this.model = model;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cached embedding, or null if there is none for this model
+     */
+    @Nullable
+    public float[] get(String firebaseUid, String normalizedQuery) {
+        QueryEmbedding cached = dao.getQueryEmbedding(firebaseUid, normalizedQuery);
+        if (cached == null || !model.equals(cached.getModel())) {
+            return null;
+        }
+        dao.touchQueryEmbedding(firebaseUid, normalizedQuery, clock.getAsLong());
+        return EmbeddingCodec.decode(cached.getVector());
+    }
+
+    public void put(String firebaseUid, String normalizedQuery, float[] embedding) {
+        // FLOAT16: queries are scored in float, where INT8 would cost ranking accuracy
+        dao.upsertQueryEmbedding(new QueryEmbedding(firebaseUid, normalizedQuery, model,
+                EmbeddingCodec.encode(embedding, EmbeddingCodec.Format.FLOAT16), clock.getAsLong()));
+        dao.trimQueryEmbeddings(MAX_ENTRIES);
+    }
+}
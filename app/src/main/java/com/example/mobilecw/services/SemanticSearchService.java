@@ -2,13 +2,18 @@ package com.example.mobilecw.services;
 
 import android.content.Context;
 import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
 
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.JsonObjectRequest;
-import com.android.volley.toolbox.Volley;
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.utils.SearchHelper;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -16,14 +21,27 @@ import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Service to handle semantic search API calls to the backend server.
+ *
+ * Requests go through the process-wide {@link SharedRequestQueue}. Results are kept
+ * in an LRU keyed by user, search type, top K and normalized query, and dropped
+ * whenever hikes, observations or embeddings change locally.
  */
 public class SemanticSearchService {
 
     private static final String TAG = "SemanticSearchService";
     private static final String BASE_URL = "http://206.189.93.77:8000";
+    private static final int RESULT_CACHE_SIZE = 32;
+
+    private static final LruCache<String, List<SearchResult>> RESULTS = new LruCache<>(RESULT_CACHE_SIZE);
+    /** Bumped on every invalidation, so a response that raced one is not cached. */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+    private static final AtomicBoolean OBSERVER_REGISTERED = new AtomicBoolean(false);
     
     public interface SearchCallback {
         void onSuccess(List<SearchResult> results);
@@ -69,14 +87,25 @@ public class SemanticSearchService {
             return;
         }
 
-        RequestQueue queue = Volley.newRequestQueue(context.getApplicationContext());
+        String type = searchType != null ? searchType : "hikes";
+        String cacheKey = firebaseUid + '\u0000' + type + '\u0000' + topK + '\u0000'
+                + SearchHelper.normalizeQuery(query);
+        watchForContentChanges(context);
+        List<SearchResult> cached = RESULTS.get(cacheKey);
+        if (cached != null) {
+            callback.onSuccess(new ArrayList<>(cached));
+            return;
+        }
+        int generation = GENERATION.get();
+
+        RequestQueue queue = SharedRequestQueue.get(context);
         String url = BASE_URL + "/search";
 
         JSONObject requestBody = new JSONObject();
         try {
             requestBody.put("query", query);
             requestBody.put("firebase_uid", firebaseUid);
-            requestBody.put("search_type", searchType != null ? searchType : "hikes");
+            requestBody.put("search_type", type);
             requestBody.put("top_k", topK);
         } catch (JSONException e) {
             callback.onError("Failed to create request: " + e.getMessage());
@@ -92,6 +121,9 @@ public class SemanticSearchService {
                 public void onResponse(JSONObject response) {
                     try {
                         List<SearchResult> results = parseSearchResponse(response);
+                        if (GENERATION.get() == generation) {
+                            RESULTS.put(cacheKey, new ArrayList<>(results));
+                        }
                         callback.onSuccess(results);
                     } catch (JSONException e) {
                         Log.e(TAG, "Failed to parse search response", e);
@@ -118,6 +150,33 @@ public class SemanticSearchService {
         queue.add(request);
     }
 
+    /**
+     * Drop every cached result; called when local content changes.
+     */
+    public static void invalidateCache() {
+        GENERATION.incrementAndGet();
+        RESULTS.evictAll();
+    }
+
+    /**
+     * Invalidate the cache on writes to the tables search results depend on. Room
+     * observers must be added off the main thread, so this is done on its query
+     * executor, once per process.
+     */
+    private static void watchForContentChanges(Context context) {
+        if (!OBSERVER_REGISTERED.compareAndSet(false, true)) {
+            return;
+        }
+        AppDatabase database = AppDatabase.getDatabase(context);
+        database.getQueryExecutor().execute(() -> database.getInvalidationTracker().addObserver(
+                new InvalidationTracker.Observer("hikes", "observations", "embedding_state") {
+                    @Override
+                    public void onInvalidated(@NonNull Set<String> tables) {
+                        invalidateCache();
+                    }
+                }));
+    }
+
     private static List<SearchResult> parseSearchResponse(JSONObject response) throws JSONException {
         List<SearchResult> results = new ArrayList<>();
         
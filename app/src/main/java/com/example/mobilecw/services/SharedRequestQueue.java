@@ -0,0 +1,33 @@
+package com.example.mobilecw.services;
+
+import android.content.Context;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.Volley;
+
+/**
+ * One Volley RequestQueue for the whole process.
+ *
+ * Volley.newRequestQueue starts a cache thread, four network threads and a disk
+ * cache each time it is called, so creating one per request or per screen leaks
+ * threads and throws away the HTTP cache. Callers tag their requests and cancel
+ * them by tag instead of stopping the queue.
+ */
+public final class SharedRequestQueue {
+
+    private static volatile RequestQueue INSTANCE;
+
+    private SharedRequestQueue() {
+    }
+
+    public static RequestQueue get(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SharedRequestQueue.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = Volley.newRequestQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+}
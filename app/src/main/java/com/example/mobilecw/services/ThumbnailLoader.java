@@ -0,0 +1,387 @@
+package com.example.mobilecw.services;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.Nullable;
+
+import com.example.mobilecw.auth.SessionManager;
+import com.example.mobilecw.sync.MediaSyncManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads observation pictures into ImageViews at the size they are shown at.
+ *
+ * setImageURI decodes the full camera JPEG on the main thread, a 12 MP photo
+ * being ~48 MB of ARGB_8888 for a 200dp card. Here the picture is decoded on a
+ * background pool with the largest power-of-two inSampleSize that still covers
+ * the target size, and the result is kept twice: in a memory LRU sized to an
+ * eighth of the heap, and as a JPEG in cacheDir/thumbnails so the next start
+ * skips the full decode too. Disk keys are the picture path, its mtime and the
+ * target size; the memory entry for a path and size remembers the mtime it was
+ * decoded at. The mtime is read on the decode pool, never while binding: a
+ * memory hit is shown at once and decoded again only if the file has changed.
+ *
+ * Recycled views are handled by remembering the request each view waits for: a result
+ * for a view that has been rebound meanwhile is cached but not shown, and the
+ * view's previous request is cancelled if it has not started yet.
+ *
+ * {@link #load} must be called on the main thread.
+ */
+public final class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final String DISK_DIR = "thumbnails";
+    static final long MAX_DISK_BYTES = 32L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+    private static final int DECODE_THREADS = 2;
+    /** Trim the disk cache after this many writes rather than after every one. */
+    private static final int TRIM_INTERVAL = 16;
+
+    private static volatile ThumbnailLoader INSTANCE;
+
+    private final Context context;
+    private final File diskDir;
+    private final LruCache<String, Thumbnail> memory;
+    private final ExecutorService decoder = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /** Main thread only. */
+    private final Map<ImageView, Request> pending = new WeakHashMap<>();
+    private final AtomicInteger writesSinceTrim = new AtomicInteger();
+
+    private ThumbnailLoader(Context context) {
+        this.context = context.getApplicationContext();
+        this.diskDir = new File(this.context.getCacheDir(), DISK_DIR);
+        int maxKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        this.memory = new LruCache<String, Thumbnail>(maxKb) {
+            @Override
+            protected int sizeOf(String key, Thumbnail thumbnail) {
+                return thumbnail.bitmap.getByteCount() / 1024;
+            }
+        };
+        // There is no Application subclass to forward onTrimMemory from
+        this.context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_BACKGROUND) {
+                    memory.evictAll();
+                } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                    memory.trimToSize(memory.maxSize() / 2);
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                memory.evictAll();
+            }
+        });
+    }
+
+    public static ThumbnailLoader getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (ThumbnailLoader.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ThumbnailLoader(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Show picture (a file path or a content:// URI string) in view, sized to the
+     * view. Before layout that is the view's layout params, else the screen width.
+     * A null or empty picture clears the view.
+     */
+    public void load(@Nullable String picture, ImageView view) {
+        load(picture, null, view);
+    }
+
+    /**
+     * Like {@link #load(String, ImageView)}, decoding from thumbnail (see
+     * {@link PhotoIngestor}) instead of picture whenever it covers the view.
+     */
+    public void load(@Nullable String picture, @Nullable String thumbnail, ImageView view) {
+        int width = targetDimension(view.getWidth(), view.getLayoutParams(), true);
+        int height = targetDimension(view.getHeight(), view.getLayoutParams(), false);
+        load(picture, thumbnail, view, width, height);
+    }
+
+    public void load(@Nullable String picture, @Nullable String thumbnail, ImageView view, int width, int height) {
+        Request previous = pending.remove(view);
+        if (previous != null) {
+            previous.future.cancel(false);
+        }
+        if (picture == null || picture.isEmpty()) {
+            view.setImageDrawable(null);
+            return;
+        }
+        String memoryKey = memoryKey(picture, width, height);
+        Thumbnail cached = memory.get(memoryKey);
+        if (cached != null) {
+            view.setImageBitmap(cached.bitmap);
+            if (isContentUri(picture)) {
+                return; // Immutable; nothing to check
+            }
+        } else {
+            view.setImageDrawable(null);
+        }
+        Request request = new Request();
+        pending.put(view, request);
+        request.future = decoder.submit(() -> {
+            long lastModified = lastModified(picture);
+            Bitmap bitmap = null;
+            if (cached == null || cached.lastModified != lastModified) {
+                bitmap = loadBitmap(cacheKey(picture, lastModified, width, height), picture, thumbnail,
+                        width, height);
+                if (bitmap != null) {
+                    memory.put(memoryKey, new Thumbnail(bitmap, lastModified));
+                }
+            }
+            Bitmap changed = bitmap;
+            mainHandler.post(() -> {
+                if (pending.get(view) == request) {
+                    pending.remove(view);
+                    if (changed != null) {
+                        view.setImageBitmap(changed);
+                    }
+                }
+            });
+        });
+    }
+
+    @Nullable
+    private Bitmap loadBitmap(String key, String picture, @Nullable String thumbnail, int width, int height) {
+        File diskFile = new File(diskDir, diskName(key));
+        Bitmap bitmap = null;
+        if (diskFile.exists()) {
+            bitmap = BitmapFactory.decodeFile(diskFile.getPath());
+            if (bitmap != null) {
+                // Keeps the trim least recently used rather than least recently written
+                diskFile.setLastModified(System.currentTimeMillis());
+            }
+        }
+        if (bitmap == null) {
+            long start = System.nanoTime();
+            // Photos restored from the cloud are fetched here: the thumbnail first, the
+            // full picture only if the thumbnail is too small for the view
+            MediaSyncManager mediaSync = MediaSyncManager.getInstance(context);
+            String firebaseUid = SessionManager.getCurrentFirebaseUid(context);
+            boolean fromThumbnail = thumbnail != null && mediaSync.fetchIfMissing(firebaseUid, thumbnail)
+                    && covers(thumbnail, width, height);
+            if (!fromThumbnail && !isContentUri(picture) && !mediaSync.fetchIfMissing(firebaseUid, picture)) {
+                return null;
+            }
+            bitmap = decodeSampled(fromThumbnail ? thumbnail : picture, width, height);
+            if (bitmap == null) {
+                return null;
+            }
+            Log.d(TAG, "Decoded " + bitmap.getWidth() + "x" + bitmap.getHeight() + " thumbnail from "
+                    + (fromThumbnail ? "ingested thumbnail" : "picture") + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            writeToDisk(bitmap, diskFile);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Whether the image at path is at least width x height, so centerCrop never scales it up.
+     */
+    private boolean covers(String path, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        return options.outWidth >= width && options.outHeight >= height;
+    }
+
+    @Nullable
+    private Bitmap decodeSampled(String picture, int width, int height) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try {
+            try (InputStream in = open(picture)) {
+                BitmapFactory.decodeStream(in, null, options);
+            }
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+            options.inJustDecodeBounds = false;
+            try (InputStream in = open(picture)) {
+                return BitmapFactory.decodeStream(in, null, options);
+            }
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "Could not decode " + picture, e);
+            return null;
+        }
+    }
+
+    private InputStream open(String picture) throws IOException {
+        if (isContentUri(picture)) {
+            InputStream in = context.getContentResolver().openInputStream(Uri.parse(picture));
+            if (in == null) {
+                throw new IOException("No stream for " + picture);
+            }
+            return in;
+        }
+        return new FileInputStream(picture);
+    }
+
+    private void writeToDisk(Bitmap bitmap, File diskFile) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) {
+            return;
+        }
+        // Write then rename, so a concurrent reader never sees half a JPEG
+        File temp = new File(diskDir, diskFile.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not cache thumbnail", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(diskFile)) {
+            temp.delete();
+        }
+        if (writesSinceTrim.incrementAndGet() >= TRIM_INTERVAL) {
+            writesSinceTrim.set(0);
+            trimDiskCache(diskDir, MAX_DISK_BYTES);
+        }
+    }
+
+    /**
+     * Delete the least recently used files until the directory fits in maxBytes.
+     */
+    static void trimDiskCache(File dir, long maxBytes) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    /**
+     * Largest power of two that keeps both decoded dimensions at or above the
+     * requested ones, as BitmapFactory rounds inSampleSize down to a power of two
+     * anyway.
+     */
+    static int calculateInSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int sampleSize = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= requestedWidth && height / (sampleSize * 2) >= requestedHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    static String memoryKey(String picture, int width, int height) {
+        return picture + '|' + width + 'x' + height;
+    }
+
+    static String cacheKey(String picture, long lastModified, int width, int height) {
+        return picture + '|' + lastModified + '|' + width + 'x' + height;
+    }
+
+    /**
+     * SHA-1 of the key, hex encoded: keys contain path separators and can be long.
+     */
+    static String diskName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2 + 4);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.append(".jpg").toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android runtime ships SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The file's mtime; content URIs from the picker point at immutable media and use 0.
+     */
+    private static long lastModified(String picture) {
+        return isContentUri(picture) ? 0 : new File(picture).lastModified();
+    }
+
+    private static boolean isContentUri(String picture) {
+        return picture.startsWith("content:");
+    }
+
+    private int targetDimension(int measured, @Nullable ViewGroup.LayoutParams params, boolean horizontal) {
+        if (measured > 0) {
+            return measured;
+        }
+        if (params != null) {
+            int size = horizontal ? params.width : params.height;
+            if (size > 0) {
+                return size;
+            }
+        }
+        return context.getResources().getDisplayMetrics().widthPixels;
+    }
+
+    private static final class Request {
+        Future<?> future;
+    }
+
+    private static final class Thumbnail {
+        final Bitmap bitmap;
+        final long lastModified;
+
+        Thumbnail(Bitmap bitmap, long lastModified) {
+            this.bitmap = bitmap;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.mobilecw.sync;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Groups document writes into batches of at most {@link #MAX_BATCH_OPERATIONS}
+ * and commits them with a bounded number of batches in flight.
+ *
+ * Committing goes through {@link BatchCommitter} so the pipeline can run against
+ * a fake in tests; {@link FirebaseSyncManager} backs it with a Firestore WriteBatch.
+ */
+final class BatchUploader {
+
+    private static final String TAG = "BatchUploader";
+
+    /** Firestore rejects a WriteBatch with more than 500 operations. */
+    static final int MAX_BATCH_OPERATIONS = 500;
+
+    enum Kind { HIKE, OBSERVATION }
+
+    /**
+     * One merge-write of a local row to the document at {@link #path}, taken from
+     * the row as it was at {@link #updatedAt}.
+     */
+    static final class PendingWrite {
+        final Kind kind;
+        final int localId;
+        final Long updatedAt;
+        final String path;
+        final Map<String, Object> data;
+
+        PendingWrite(Kind kind, int localId, Long updatedAt, String path, Map<String, Object> data) {
+            this.kind = kind;
+            this.localId = localId;
+            this.updatedAt = updatedAt;
+            this.path = path;
+            this.data = data;
+        }
+    }
+
+    interface BatchCommitter {
+        /**
+         * Commit all writes atomically.
+         */
+        Task<Void> commit(List<PendingWrite> writes);
+    }
+
+    interface BatchListener {
+        /**
+         * Called on the callback executor once a batch has been committed.
+         */
+        void onBatchCommitted(List<PendingWrite> batch);
+    }
+
+    private final BatchCommitter committer;
+    private final int batchSize;
+    private final int maxConcurrentBatches;
+    private final Executor callbackExecutor;
+
+    BatchUploader(BatchCommitter committer, int batchSize, int maxConcurrentBatches, Executor callbackExecutor) {
+        if (batchSize <= 0 || batchSize > MAX_BATCH_OPERATIONS) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_OPERATIONS);
+        }
+        if (maxConcurrentBatches <= 0) {
+            throw new IllegalArgumentException("maxConcurrentBatches must be positive");
+        }
+        this.committer = committer;
+        this.batchSize = batchSize;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Commit all writes in order of the list. Batches that fail are logged and left
+     * for the next sync; the returned task fails with the first error once every
+     * batch has finished, so the successful ones are still reported.
+     */
+    Task<Void> upload(List<PendingWrite> writes, BatchListener listener) {
+        if (writes.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+        Queue<List<PendingWrite>> batches = new ArrayDeque<>();
+        for (int start = 0; start < writes.size(); start += batchSize) {
+            batches.add(new ArrayList<>(writes.subList(start, Math.min(start + batchSize, writes.size()))));
+        }
+        Run run = new Run(batches, listener);
+        for (int i = 0; i < maxConcurrentBatches; i++) {
+            run.launchNext();
+        }
+        return run.result.getTask();
+    }
+
+    private final class Run {
+        private final Queue<List<PendingWrite>> pending;
+        private final BatchListener listener;
+        private final TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        private int inFlight;
+        private Exception firstFailure;
+
+        Run(Queue<List<PendingWrite>> pending, BatchListener listener) {
+            this.pending = pending;
+            this.listener = listener;
+        }
+
+        void launchNext() {
+            List<PendingWrite> batch;
+            synchronized (this) {
+                batch = pending.poll();
+                if (batch == null) {
+                    return;
+                }
+                inFlight++;
+            }
+
+            Task<Void> commit;
+            try {
+                commit = committer.commit(batch);
+            } catch (Exception e) {
+                commit = Tasks.forException(e);
+            }
+            commit.addOnCompleteListener(callbackExecutor, task -> {
+                try {
+                    if (!task.isSuccessful()) {
+                        Exception e = task.getException();
+                        throw e != null ? e : new IllegalStateException("Batch commit was cancelled");
+                    }
+                    if (listener != null) {
+                        listener.onBatchCommitted(batch);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to upload batch of " + batch.size() + " writes", e);
+                    recordFailure(e);
+                }
+                onBatchFinished();
+            });
+        }
+
+        private synchronized void recordFailure(Exception e) {
+            if (firstFailure == null) {
+                firstFailure = e;
+            }
+        }
+
+        private void onBatchFinished() {
+            boolean finished;
+            Exception failure;
+            synchronized (this) {
+                inFlight--;
+                finished = inFlight == 0 && pending.isEmpty();
+                failure = firstFailure;
+            }
+            if (!finished) {
+                launchNext();
+            } else if (failure != null) {
+                result.trySetException(failure);
+            } else {
+                result.trySetResult(null);
+            }
+        }
+    }
+}
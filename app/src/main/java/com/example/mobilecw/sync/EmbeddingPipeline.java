@@ -0,0 +1,328 @@
+package com.example.mobilecw.sync;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeds items in batches with several requests in flight, rate limited by a
+ * {@link TokenBucket}, and hands each vector to a {@link Sink} without waiting
+ * for the store to finish before the next request.
+ *
+ * Requests failing with 429, a 5xx or a network error are retried with full-jitter
+ * exponential backoff; other failures drop the batch, which is picked up again on
+ * the next sync. Concurrency is the size of the worker executor passed in.
+ */
+final class EmbeddingPipeline<T> {
+
+    private static final String TAG = "EmbeddingPipeline";
+
+    static final int DEFAULT_MAX_ATTEMPTS = 5;
+    static final long DEFAULT_BASE_BACKOFF_MILLIS = 500;
+    static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000;
+
+    interface Fetcher<T> {
+        /**
+         * One embedding request for the batch.
+         *
+         * @return one embedding per item, in order, null where none was produced
+         */
+        List<float[]> fetch(List<T> batch) throws IOException;
+    }
+
+    interface Sink<T> {
+        /**
+         * Store one embedding; the returned task completes once it is stored.
+         */
+        Task<Void> store(T item, float[] embedding);
+    }
+
+    /**
+     * Live counters, cumulative over the lifetime of the pipeline.
+     */
+    static final class Metrics {
+        private final AtomicInteger queuedBatches = new AtomicInteger();
+        private final AtomicInteger inFlightRequests = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong failedBatches = new AtomicLong();
+        private final AtomicLong embedded = new AtomicLong();
+        private final AtomicLong storeErrors = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        /** Batches waiting for a worker. */
+        int getQueueDepth() {
+            return queuedBatches.get();
+        }
+
+        int getInFlightRequests() {
+            return inFlightRequests.get();
+        }
+
+        /** Requests sent, including retries. */
+        long getRequests() {
+            return requests.get();
+        }
+
+        long getRetries() {
+            return retries.get();
+        }
+
+        /** Batches given up on after a non-retryable error or the last attempt. */
+        long getFailedBatches() {
+            return failedBatches.get();
+        }
+
+        long getEmbedded() {
+            return embedded.get();
+        }
+
+        long getStoreErrors() {
+            return storeErrors.get();
+        }
+
+        double getMeanLatencyMillis() {
+            long count = requests.get();
+            return count == 0 ? 0 : totalLatencyNanos.get() / 1e6 / count;
+        }
+
+        double getMaxLatencyMillis() {
+            return maxLatencyNanos.get() / 1e6;
+        }
+
+        private void recordLatency(long nanos) {
+            totalLatencyNanos.addAndGet(nanos);
+            maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "queued=%d inFlight=%d requests=%d retries=%d failedBatches=%d embedded=%d "
+                            + "storeErrors=%d latency mean=%.1fms max=%.1fms",
+                    getQueueDepth(), getInFlightRequests(), getRequests(), getRetries(), getFailedBatches(),
+                    getEmbedded(), getStoreErrors(), getMeanLatencyMillis(), getMaxLatencyMillis());
+        }
+    }
+
+    private final Fetcher<T> fetcher;
+    private final Sink<T> sink;
+    private final TokenBucket rateLimiter;
+    private final Executor workers;
+    private final Executor callbackExecutor;
+    private final TokenBucket.Sleeper backoffSleeper;
+    private final Random random = new Random();
+    private final Metrics metrics = new Metrics();
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long baseBackoffNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BASE_BACKOFF_MILLIS);
+    private long maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_BACKOFF_MILLIS);
+
+    EmbeddingPipeline(Fetcher<T> fetcher, Sink<T> sink, TokenBucket rateLimiter,
+                      Executor workers, Executor callbackExecutor) {
+        this(fetcher, sink, rateLimiter, workers, callbackExecutor, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    EmbeddingPipeline(Fetcher<T> fetcher, Sink<T> sink, TokenBucket rateLimiter,
+                      Executor workers, Executor callbackExecutor, TokenBucket.Sleeper backoffSleeper) {
+        this.fetcher = fetcher;
+        this.sink = sink;
+        this.rateLimiter = rateLimiter;
+        this.workers = workers;
+        this.callbackExecutor = callbackExecutor;
+        this.backoffSleeper = backoffSleeper;
+    }
+
+    /**
+     * @param maxAttempts     attempts per batch, including the first
+     * @param baseBackoffMillis backoff cap before the first retry; doubles per retry
+     * @param maxBackoffMillis  upper bound on the backoff cap
+     */
+    void setRetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = TimeUnit.MILLISECONDS.toNanos(baseBackoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+    }
+
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Embed and store all items, batchSize per request. The task completes once
+     * every batch has been fetched or given up on and every store has finished; it
+     * fails if anything failed, after the rest has been stored.
+     */
+    Task<Void> run(List<T> items, int batchSize) {
+        if (items.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+        List<List<T>> batches = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += batchSize) {
+            batches.add(new ArrayList<>(items.subList(start, Math.min(start + batchSize, items.size()))));
+        }
+        Run run = new Run(batches.size());
+        metrics.queuedBatches.addAndGet(batches.size());
+        for (List<T> batch : batches) {
+            workers.execute(() -> process(batch, run));
+        }
+        return run.result.getTask();
+    }
+
+    private void process(List<T> batch, Run run) {
+        metrics.queuedBatches.decrementAndGet();
+        List<float[]> embeddings = fetchWithRetry(batch, run);
+        if (embeddings != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                float[] embedding = embeddings.get(i);
+                if (embedding != null) {
+                    run.track(store(batch.get(i), embedding));
+                }
+            }
+        }
+        run.batchFinished();
+    }
+
+    private List<float[]> fetchWithRetry(List<T> batch, Run run) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                rateLimiter.acquire();
+                metrics.inFlightRequests.incrementAndGet();
+                long start = System.nanoTime();
+                try {
+                    List<float[]> embeddings = fetcher.fetch(batch);
+                    if (embeddings.size() != batch.size()) {
+                        throw new IOException("Got " + embeddings.size() + " embeddings for " + batch.size() + " items");
+                    }
+                    return embeddings;
+                } finally {
+                    metrics.recordLatency(System.nanoTime() - start);
+                    metrics.requests.incrementAndGet();
+                    metrics.inFlightRequests.decrementAndGet();
+                }
+            } catch (IOException e) {
+                if (!isRetryable(e) || attempt >= maxAttempts) {
+                    Log.e(TAG, "Giving up on batch of " + batch.size() + " after " + attempt + " attempts", e);
+                    metrics.failedBatches.incrementAndGet();
+                    run.fail(e);
+                    return null;
+                }
+                metrics.retries.incrementAndGet();
+                try {
+                    backoffSleeper.sleepNanos(backoffNanos(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    run.fail(interrupted);
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                run.fail(e);
+                return null;
+            }
+        }
+    }
+
+    private Task<Void> store(T item, float[] embedding) {
+        try {
+            return sink.store(item, embedding);
+        } catch (Exception e) {
+            return Tasks.forException(e);
+        }
+    }
+
+    /**
+     * Full jitter: uniform in [0, min(max, base * 2^(attempt-1))).
+     */
+    long backoffNanos(int attempt) {
+        long cap = baseBackoffNanos << Math.min(attempt - 1, 30);
+        if (cap <= 0 || cap > maxBackoffNanos) {
+            cap = maxBackoffNanos;
+        }
+        synchronized (random) {
+            return (long) (random.nextDouble() * cap);
+        }
+    }
+
+    private static boolean isRetryable(IOException e) {
+        if (e instanceof GeminiEmbeddingService.HttpStatusException) {
+            return ((GeminiEmbeddingService.HttpStatusException) e).isRetryable();
+        }
+        // Timeouts, resets and truncated responses
+        return true;
+    }
+
+    private final class Run {
+        private final TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        private int remainingBatches;
+        private int pendingStores;
+        private Exception firstFailure;
+
+        Run(int batches) {
+            this.remainingBatches = batches;
+        }
+
+        void track(Task<Void> store) {
+            synchronized (this) {
+                pendingStores++;
+            }
+            store.addOnCompleteListener(callbackExecutor, task -> {
+                if (task.isSuccessful()) {
+                    metrics.embedded.incrementAndGet();
+                } else {
+                    metrics.storeErrors.incrementAndGet();
+                    Exception e = task.getException();
+                    fail(e != null ? e : new IllegalStateException("Store was cancelled"));
+                }
+                synchronized (this) {
+                    pendingStores--;
+                }
+                finishIfDone();
+            });
+        }
+
+        synchronized void fail(Exception e) {
+            if (firstFailure == null) {
+                firstFailure = e;
+            }
+        }
+
+        void batchFinished() {
+            synchronized (this) {
+                remainingBatches--;
+            }
+            finishIfDone();
+        }
+
+        private void finishIfDone() {
+            Exception failure;
+            synchronized (this) {
+                if (remainingBatches > 0 || pendingStores > 0) {
+                    return;
+                }
+                failure = firstFailure;
+            }
+            if (failure != null) {
+                result.trySetException(failure);
+            } else {
+                result.trySetResult(null);
+            }
+        }
+    }
+}
@@ -9,28 +9,38 @@ import com.example.mobilecw.auth.SessionManager;
 import com.example.mobilecw.database.AppDatabase;
 import com.example.mobilecw.database.dao.HikeDao;
 import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.dao.SyncStateDao;
 import com.example.mobilecw.database.dao.UserDao;
 import com.example.mobilecw.database.entities.Hike;
 import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.database.entities.SyncState;
 import com.example.mobilecw.database.entities.User;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Handles pushing local Room data (per user) to Cloud Firestore.
@@ -42,28 +52,39 @@ import java.util.concurrent.Executors;
 public class FirebaseSyncManager {
 
     private static final String TAG = "FirebaseSyncManager";
+    static final int DEFAULT_DOWNLOAD_BATCH_SIZE = 500;
+    private static final int MAX_CONCURRENT_UPLOAD_BATCHES = 4;
     private static FirebaseSyncManager instance;
 
     private final Context appContext;
     private final FirebaseFirestore firestore;
+    private final AppDatabase database;
     private final HikeDao hikeDao;
     private final ObservationDao observationDao;
     private final UserDao userDao;
+    private final SyncStateDao syncStateDao;
     private final ExecutorService executorService;
     private final Executor mainThreadExecutor;
     private final VectorSyncManager vectorSyncManager;
+    private final MediaSyncManager mediaSyncManager;
+    private final BatchUploader uploader;
+    private volatile int downloadBatchSize = DEFAULT_DOWNLOAD_BATCH_SIZE;
 
     private FirebaseSyncManager(Context context) {
         this.appContext = context.getApplicationContext();
         FirebaseApp.initializeApp(this.appContext);
         this.firestore = FirebaseFirestore.getInstance();
-        AppDatabase database = AppDatabase.getDatabase(this.appContext);
+        this.database = AppDatabase.getDatabase(this.appContext);
         this.hikeDao = database.hikeDao();
         this.observationDao = database.observationDao();
         this.userDao = database.userDao();
+        this.syncStateDao = database.syncStateDao();
         this.executorService = Executors.newSingleThreadExecutor();
         this.mainThreadExecutor = ContextCompat.getMainExecutor(this.appContext);
         this.vectorSyncManager = new VectorSyncManager(this.appContext);
+        this.mediaSyncManager = MediaSyncManager.getInstance(this.appContext);
+        this.uploader = new BatchUploader(this::commitWriteBatch, BatchUploader.MAX_BATCH_OPERATIONS,
+                MAX_CONCURRENT_UPLOAD_BATCHES, executorService);
     }
 
     public static synchronized FirebaseSyncManager getInstance(Context context) {
@@ -78,6 +99,23 @@ public class FirebaseSyncManager {
         void onFailure(Exception exception);
     }
 
+    public interface DownloadProgressListener {
+        /**
+         * Called on the main thread after each batch is committed.
+         */
+        void onProgress(int rowsWritten, int rowsTotal, double rowsPerSecond);
+    }
+
+    /**
+     * Number of downloaded rows written per Room transaction.
+     */
+    public void setDownloadBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.downloadBatchSize = batchSize;
+    }
+
     /**
      * Push all unsynced hikes/observations that belong to the current logged-in user.
      */
@@ -99,18 +137,27 @@ public class FirebaseSyncManager {
             }
 
             List<Task<Void>> pendingTasks = new ArrayList<>();
+            // Every pass refreshes users/{uid} (name, email, lastSeen); login and signup rely on it
             Task<Void> profileTask = syncUserProfile(userId, firebaseUid);
             if (profileTask != null) {
                 pendingTasks.add(profileTask);
             }
-            pendingTasks.addAll(syncHikes(userId, firebaseUid));
-            pendingTasks.addAll(syncObservations(userId, firebaseUid));
-            pendingTasks.add(vectorSyncManager.syncUserVectors(userId, firebaseUid));
-
-            if (pendingTasks.isEmpty()) {
-                notifySuccess(callback);
-                return;
+            // Called after every save: a single counter lookup settles the common case of no dirty rows
+            if (syncStateDao.getPendingRowCount(userId) > 0) {
+                // Hikes and observations share batches; Firestore does not need a parent to exist first
+                List<BatchUploader.PendingWrite> writes = collectHikeWrites(userId, firebaseUid);
+                writes.addAll(collectObservationWrites(userId, firebaseUid));
+                if (writes.isEmpty()) {
+                    // The counter drifted; correct it so the next call can skip the scan again
+                    syncStateDao.recountPendingRows(userId);
+                } else {
+                    pendingTasks.add(uploader.upload(writes, this::markBatchSynced));
+                }
             }
+            // Both run even without dirty rows: embeddings that failed and photo uploads that were
+            // interrupted stay pending until a later pass. Neither makes a request when nothing is pending
+            pendingTasks.add(vectorSyncManager.syncUserVectors(userId, firebaseUid));
+            pendingTasks.add(mediaSyncManager.uploadPending(firebaseUid));
 
             Tasks.whenAllSuccess(pendingTasks)
                     .addOnSuccessListener(mainThreadExecutor, unused -> notifySuccess(callback))
@@ -148,75 +195,66 @@ public class FirebaseSyncManager {
                         Log.e(TAG, "Failed to sync user profile for userId=" + userId, e));
     }
 
-    private List<Task<Void>> syncHikes(int userId, String firebaseUid) {
-        List<Task<Void>> tasks = new ArrayList<>();
-        List<Hike> unsyncedHikes = hikeDao.getUnsyncedHikes();
-        if (unsyncedHikes == null || unsyncedHikes.isEmpty()) {
-            return tasks;
-        }
-
-        for (Hike hike : unsyncedHikes) {
-            if (hike.getUserId() == null || hike.getUserId() != userId) {
-                continue; // Only sync hikes owned by the active user
-            }
-
-            Map<String, Object> payload = buildHikePayload(hike);
-            Task<Void> task = firestore.collection("users")
-                    .document(firebaseUid)
-                    .collection("hikes")
-                    .document(String.valueOf(hike.getHikeID()))
-                    .set(payload, SetOptions.merge())
-                    .addOnSuccessListener(unused -> executorService.execute(() ->
-                            hikeDao.markHikeAsSynced(hike.getHikeID())))
-                    .addOnFailureListener(e ->
-                            Log.e(TAG, "Failed to sync hike " + hike.getHikeID(), e));
-            tasks.add(task);
+    private List<BatchUploader.PendingWrite> collectHikeWrites(int userId, String firebaseUid) {
+        List<BatchUploader.PendingWrite> writes = new ArrayList<>();
+        for (Hike hike : hikeDao.getUnsyncedHikesByUserId(userId)) {
+            writes.add(new BatchUploader.PendingWrite(BatchUploader.Kind.HIKE, hike.getHikeID(), hike.getUpdatedAt(),
+                    hikePath(firebaseUid, hike.getHikeID()), buildHikePayload(hike)));
         }
-
-        return tasks;
+        return writes;
     }
 
-    private List<Task<Void>> syncObservations(int userId, String firebaseUid) {
-        List<Task<Void>> tasks = new ArrayList<>();
-        List<Observation> unsyncedObservations = observationDao.getUnsyncedObservations();
-        if (unsyncedObservations == null || unsyncedObservations.isEmpty()) {
-            return tasks;
+    private List<BatchUploader.PendingWrite> collectObservationWrites(int userId, String firebaseUid) {
+        List<BatchUploader.PendingWrite> writes = new ArrayList<>();
+        for (Observation observation : observationDao.getUnsyncedObservationsByUserId(userId)) {
+            String path = hikePath(firebaseUid, observation.getHikeId())
+                    + "/observations/" + observation.getObservationID();
+            Map<String, Object> payload = buildObservationPayload(observation);
+            // Lets the delta download find the user's observations with one collection-group query
+            payload.put("ownerUid", firebaseUid);
+            mediaSyncManager.enqueueObservationPhotos(firebaseUid, observation);
+            writes.add(new BatchUploader.PendingWrite(BatchUploader.Kind.OBSERVATION,
+                    observation.getObservationID(), observation.getUpdatedAt(), path, payload));
         }
+        return writes;
+    }
 
-         List<Hike> userHikes = hikeDao.getAllHikesByUserIdIncludingDeleted(userId);
-        Set<Integer> allowedHikeIds = new HashSet<>();
-        for (Hike hike : userHikes) {
-            allowedHikeIds.add(hike.getHikeID());
-        }
+    private static String hikePath(String firebaseUid, int hikeId) {
+        return "users/" + firebaseUid + "/hikes/" + hikeId;
+    }
 
-        if (allowedHikeIds.isEmpty()) {
-            return tasks;
+    private Task<Void> commitWriteBatch(List<BatchUploader.PendingWrite> writes) {
+        WriteBatch batch = firestore.batch();
+        for (BatchUploader.PendingWrite write : writes) {
+            batch.set(firestore.document(write.path), write.data, SetOptions.merge());
         }
+        return batch.commit();
+    }
 
-        for (Observation observation : unsyncedObservations) {
-            if (!allowedHikeIds.contains(observation.getHikeId())) {
-                continue;
+    /**
+     * Mark the rows of a committed batch as synced, in one transaction. A row edited
+     * while its batch was in flight no longer has the uploaded updatedAt and stays
+     * dirty, so the edit goes up with the next sync. Runs on the sync executor.
+     */
+    private void markBatchSynced(List<BatchUploader.PendingWrite> batch) {
+        database.runInTransaction(() -> {
+            int editedSinceUpload = 0;
+            for (BatchUploader.PendingWrite write : batch) {
+                int marked = write.kind == BatchUploader.Kind.HIKE
+                        ? hikeDao.markHikeAsSyncedIfUnchanged(write.localId, write.updatedAt)
+                        : observationDao.markObservationAsSyncedIfUnchanged(write.localId, write.updatedAt);
+                if (marked == 0) {
+                    editedSinceUpload++;
+                }
             }
-
-            Map<String, Object> payload = buildObservationPayload(observation);
-            Task<Void> task = firestore.collection("users")
-                    .document(firebaseUid)
-                    .collection("hikes")
-                    .document(String.valueOf(observation.getHikeId()))
-                    .collection("observations")
-                    .document(String.valueOf(observation.getObservationID()))
-                    .set(payload, SetOptions.merge())
-                    .addOnSuccessListener(unused -> executorService.execute(() ->
-                            observationDao.markObservationAsSynced(observation.getObservationID())))
-                    .addOnFailureListener(e ->
-                            Log.e(TAG, "Failed to sync observation " + observation.getObservationID(), e));
-            tasks.add(task);
-        }
-
-        return tasks;
+            if (editedSinceUpload > 0) {
+                Log.d(TAG, editedSinceUpload + " rows changed during upload; left for the next sync");
+            }
+        });
     }
 
-    private Map<String, Object> buildHikePayload(Hike hike) {
+    // Payload builders are static and package-private so they can be benchmarked without Firebase
+    static Map<String, Object> buildHikePayload(Hike hike) {
         Map<String, Object> data = new HashMap<>();
         data.put("name", hike.getName());
         data.put("location", hike.getLocation());
@@ -237,13 +275,15 @@ public class FirebaseSyncManager {
         return data;
     }
 
-    private Map<String, Object> buildObservationPayload(Observation observation) {
+    static Map<String, Object> buildObservationPayload(Observation observation) {
         Map<String, Object> data = new HashMap<>();
         data.put("observationText", observation.getObservationText());
         data.put("time", observation.getTime() != null ? observation.getTime().getTime() : null);
         data.put("comments", observation.getComments());
         data.put("location", observation.getLocation());
         data.put("picture", observation.getPicture());
+        data.put("thumbnail", observation.getThumbnail());
+        data.put("pictureHash", observation.getPictureHash());
         data.put("createdAt", observation.getCreatedAt());
         data.put("updatedAt", observation.getUpdatedAt());
         data.put("deleted", observation.getDeleted());
@@ -251,7 +291,8 @@ public class FirebaseSyncManager {
         data.put("syncedAt", FieldValue.serverTimestamp());
         return data;
     }
-    private Map<String, Object> buildUserPayload(User user) {
+
+    static Map<String, Object> buildUserPayload(User user) {
         Map<String, Object> data = new HashMap<>();
         data.put("displayName", user.getUserName());
         data.put("email", user.getUserEmail());
@@ -263,11 +304,22 @@ public class FirebaseSyncManager {
     }
 
     /**
-     * Download all hikes (and their observations) for the current Firebase user
-     * from Firestore into the local Room database. This is intended to be used
-     * after a fresh login on a device where local tables were cleared on logout.
+     * Pull the current Firebase user's hikes and observations from Firestore into
+     * Room. The first download for a user (and the first after logout wiped the
+     * tables) fetches everything; later ones only fetch documents whose server
+     * syncedAt is past the stored cursor, tombstones included, and upsert them.
      */
     public void downloadUserData(SyncCallback callback) {
+        downloadUserData(callback, null);
+    }
+
+    /**
+     * Same as {@link #downloadUserData(SyncCallback)}, reporting progress after every
+     * committed batch. Documents are parsed first and written through the bulk upserts,
+     * {@link #setDownloadBatchSize(int) batchSize} rows per transaction, so a restore
+     * costs one commit per batch instead of one per row.
+     */
+    public void downloadUserData(SyncCallback callback, DownloadProgressListener progressListener) {
         int userId = SessionManager.getCurrentUserId(appContext);
         String firebaseUid = SessionManager.getCurrentFirebaseUid(appContext);
 
@@ -277,173 +329,378 @@ public class FirebaseSyncManager {
             return;
         }
 
-        // Fetch all hikes for this user from Firestore
-        firestore.collection("users")
-                .document(firebaseUid)
-                .collection("hikes")
-                .get()
-                .addOnSuccessListener(querySnapshot -> executorService.execute(() -> {
-                    try {
-                        // Clear local hikes/observations before re-populating
-                        hikeDao.deleteAllHikes();
-                        observationDao.deleteAllObservations();
-
-                        List<Task<QuerySnapshot>> observationTasks = new ArrayList<>();
-
-                        for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                            if (!doc.exists()) continue;
-
-                            // Parse hike fields defensively
-                            Hike hike = new Hike();
-                            try {
-                                String id = doc.getId();
-                                int hikeId = Integer.parseInt(id);
-                                hike.setHikeID(hikeId);
-                            } catch (NumberFormatException e) {
-                                // If ID is not an integer, skip this hike
-                                continue;
-                            }
-
-                            hike.setUserId(userId);
-                            hike.setName(doc.getString("name"));
-                            hike.setLocation(doc.getString("location"));
-
-                            Long dateMillis = doc.getLong("date");
-                            if (dateMillis != null) {
-                                hike.setDate(new java.util.Date(dateMillis));
-                            }
-
-                            Boolean parkingAvailable = doc.getBoolean("parkingAvailable");
-                            hike.setParkingAvailable(parkingAvailable != null && parkingAvailable);
-
-                            Double length = doc.getDouble("length");
-                            if (length != null) {
-                                hike.setLength(length);
-                            }
-
-                            hike.setDifficulty(doc.getString("difficulty"));
-                            hike.setDescription(doc.getString("description"));
-                            hike.setPurchaseParkingPass(doc.getString("purchaseParkingPass"));
-
-                            hike.setIsActive(doc.getBoolean("isActive"));
-                            Long startTime = doc.getLong("startTime");
-                            Long endTime = doc.getLong("endTime");
-                            hike.setStartTime(startTime);
-                            hike.setEndTime(endTime);
-
-                            Long createdAt = doc.getLong("createdAt");
-                            Long updatedAt = doc.getLong("updatedAt");
-                            hike.setCreatedAt(createdAt);
-                            hike.setUpdatedAt(updatedAt);
-                            Boolean deleted = doc.getBoolean("deleted");
-                            Long deletedAt = doc.getLong("deletedAt");
-                            hike.setDeleted(deleted != null && deleted);
-                            hike.setDeletedAt(deletedAt);
-                            hike.setSynced(true);
-
-                            // Skip inserting deleted hikes locally
-                            if (Boolean.TRUE.equals(hike.getDeleted())) {
-                                continue;
-                            }
-
-                            // Insert/replace hike locally
-                            hikeDao.insertHike(hike);
-
-                            // Also queue observation downloads for this hike
-                            Task<QuerySnapshot> obsTask = doc.getReference()
-                                    .collection("observations")
-                                    .get();
-                            observationTasks.add(obsTask);
-                        }
+        executorService.execute(() -> {
+            SyncState state = syncStateDao.getSyncState(firebaseUid);
+            Timestamp hikesSince = state != null ? fromMicros(state.getHikesPulledUpTo()) : null;
+            Timestamp observationsSince = state != null ? fromMicros(state.getObservationsPulledUpTo()) : null;
+
+            Task<QuerySnapshot> hikesTask;
+            Task<QuerySnapshot> observationsTask;
+            try {
+                // Server only: a cache answer can hold just some of the changes, and the
+                // cursors would then move past the ones it is missing
+                hikesTask = changedHikesQuery(firebaseUid, hikesSince).get(Source.SERVER);
+                observationsTask = changedObservationsQuery(firebaseUid, observationsSince).get(Source.SERVER);
+            } catch (RuntimeException e) {
+                // The SDK validates queries when they are built
+                Log.e(TAG, "downloadUserData: could not query changes for user " + firebaseUid, e);
+                notifyFailure(callback, e);
+                return;
+            }
 
-                        if (observationTasks.isEmpty()) {
+            Tasks.whenAllSuccess(hikesTask, observationsTask)
+                    .addOnSuccessListener(executorService, unused -> {
+                        try {
+                            applyPulledChanges(userId, firebaseUid, hikesTask.getResult(),
+                                    observationsTask.getResult(), progressListener);
                             notifySuccess(callback);
-                            return;
+                        } catch (Exception e) {
+                            Log.e(TAG, "downloadUserData: error while saving downloaded changes", e);
+                            notifyFailure(callback, e);
                         }
-
-                        // When all observation sub-collections have been fetched, write them to Room
-                        Tasks.whenAllSuccess(observationTasks)
-                                .addOnSuccessListener(mainThreadExecutor, unused -> executorService.execute(() -> {
-                                    try {
-                                        for (Task<QuerySnapshot> task : observationTasks) {
-                                            QuerySnapshot snapshot = null;
-                                            try {
-                                                snapshot = Tasks.await(task);
-                                            } catch (Exception e) {
-                                                Log.e(TAG, "Failed awaiting observation task", e);
-                                            }
-                                            if (snapshot == null) continue;
-
-                                            for (DocumentSnapshot obsDoc : snapshot.getDocuments()) {
-                                                if (!obsDoc.exists()) continue;
-
-                                                Observation obs = new Observation();
-                                                try {
-                                                    String obsId = obsDoc.getId();
-                                                    obs.setObservationID(Integer.parseInt(obsId));
-                                                } catch (NumberFormatException e) {
-                                                    continue;
-                                                }
-
-                                                // Parent hikeId from path
-                                                try {
-                                                    String parentId = obsDoc.getReference()
-                                                            .getParent() // observations
-                                                            .getParent() // hikes/{hikeId}
-                                                            .getId();
-                                                    obs.setHikeId(Integer.parseInt(parentId));
-                                                } catch (Exception e) {
-                                                    // If we can't parse hikeId, skip
-                                                    continue;
-                                                }
-
-                                                obs.setObservationText(obsDoc.getString("observationText"));
-
-                                                Long timeMillis = obsDoc.getLong("time");
-                                                if (timeMillis != null) {
-                                                    obs.setTime(new java.util.Date(timeMillis));
-                                                }
-
-                                                obs.setComments(obsDoc.getString("comments"));
-                                                obs.setLocation(obsDoc.getString("location"));
-                                                obs.setPicture(obsDoc.getString("picture"));
-
-                                                Long createdAt = obsDoc.getLong("createdAt");
-                                                Long updatedAt = obsDoc.getLong("updatedAt");
-                                                obs.setCreatedAt(createdAt);
-                                                obs.setUpdatedAt(updatedAt);
-                                                Boolean deleted = obsDoc.getBoolean("deleted");
-                                                Long deletedAt = obsDoc.getLong("deletedAt");
-                                                obs.setDeleted(deleted != null && deleted);
-                                                obs.setDeletedAt(deletedAt);
-                                                obs.setSynced(true);
-
-                                                if (!Boolean.TRUE.equals(obs.getDeleted())) {
-                                                    observationDao.insertObservation(obs);
-                                                }
-                                            }
-                                        }
-                                        notifySuccess(callback);
-                                    } catch (Exception e) {
-                                        Log.e(TAG, "Error while saving downloaded observations", e);
-                                        notifyFailure(callback, e);
-                                    }
-                                }))
-                                .addOnFailureListener(mainThreadExecutor, e -> {
-                                    Log.e(TAG, "Failed to download observations", e);
-                                    notifyFailure(callback, e);
-                                });
-
-                    } catch (Exception e) {
-                        Log.e(TAG, "downloadUserData: error while processing hikes", e);
+                    })
+                    .addOnFailureListener(e -> {
+                        Log.e(TAG, "Failed to download changes for user " + firebaseUid, e);
                         notifyFailure(callback, e);
-                    }
-                }))
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to download hikes for user " + firebaseUid, e);
-                    notifyFailure(callback, e);
-                });
+                    });
+        });
+    }
+
+    private Query changedHikesQuery(String firebaseUid, Timestamp since) {
+        Query query = firestore.collection("users")
+                .document(firebaseUid)
+                .collection("hikes");
+        return since != null ? query.whereGreaterThan("syncedAt", since) : query;
+    }
+
+    /**
+     * One collection-group query over every hike's observations, instead of one
+     * query per hike. The full download matches on the document path, so it also
+     * finds documents written before they carried ownerUid; every upload since
+     * sets ownerUid, so a delta query can filter on it.
+     * The delta query needs the collection-group index on (ownerUid, syncedAt)
+     * declared in firestore.indexes.json.
+     */
+    private Query changedObservationsQuery(String firebaseUid, Timestamp since) {
+        if (since != null) {
+            return firestore.collectionGroup("observations")
+                    .whereEqualTo("ownerUid", firebaseUid)
+                    .whereGreaterThan("syncedAt", since);
+        }
+        String[] range = userDocumentRange(firebaseUid);
+        return firestore.collectionGroup("observations")
+                .orderBy(FieldPath.documentId())
+                .startAt(range[0])
+                .endAt(range[1]);
+    }
+
+    /**
+     * Document-id bounds that take in every document under users/{uid}. Bounds of
+     * a collection-group query must be document paths (an even number of
+     * segments), so they are the user document itself and a sibling id sorting
+     * after every path below it. Firebase Auth UIDs all have the same length, so
+     * no other user's id starts with this one and falls between the two.
+     */
+    static String[] userDocumentRange(String firebaseUid) {
+        String userDocument = "users/" + firebaseUid;
+        return new String[]{userDocument, userDocument + "\uf8ff"};
+    }
+
+    /**
+     * Upsert the pulled documents, then advance the cursors to the newest syncedAt
+     * stored. Runs on the sync executor.
+     */
+    private void applyPulledChanges(int userId, String firebaseUid, QuerySnapshot hikeDocs,
+                                    QuerySnapshot observationDocs, DownloadProgressListener progressListener) {
+        SyncState state = syncStateDao.getSyncState(firebaseUid);
+        if (state == null) {
+            state = new SyncState(firebaseUid);
+        }
+
+        List<Hike> hikes = new ArrayList<>();
+        Long hikesUpTo = state.getHikesPulledUpTo();
+        for (DocumentSnapshot doc : hikeDocs.getDocuments()) {
+            Hike hike = parseHike(doc, userId);
+            if (hike != null) {
+                hikes.add(hike);
+                hikesUpTo = later(hikesUpTo, doc.getTimestamp("syncedAt"));
+            }
+        }
+
+        List<Observation> observations = new ArrayList<>();
+        Map<Integer, Long> observationSyncedAt = new HashMap<>();
+        for (DocumentSnapshot doc : observationDocs.getDocuments()) {
+            Observation observation = parseObservation(doc);
+            if (observation != null) {
+                observations.add(observation);
+                observationSyncedAt.put(observation.getObservationID(), later(null, doc.getTimestamp("syncedAt")));
+            }
+        }
+
+        DownloadProgress progress = new DownloadProgress(hikes.size() + observations.size(), progressListener);
+        // Hikes first: observations reference them
+        writeInBatches(hikes, this::upsertPulledHikes, progress);
+        List<Integer> withoutHike = new ArrayList<>();
+        writeInBatches(observations, batch -> upsertPulledObservations(batch, withoutHike), progress);
+        if (!withoutHike.isEmpty()) {
+            Log.d(TAG, "applyPulledChanges: " + withoutHike.size() + " observations wait for their hike");
+        }
+
+        // Only advance the cursors once everything up to them is stored
+        state.setHikesPulledUpTo(hikesUpTo);
+        state.setObservationsPulledUpTo(
+                storedUpTo(state.getObservationsPulledUpTo(), observationSyncedAt, withoutHike));
+        syncStateDao.upsertSyncState(state);
+        progress.logSummary();
+    }
+
+    /**
+     * Upsert a batch of pulled hikes, keeping local edits that are not uploaded yet
+     * unless the server copy is newer. Runs inside the batch transaction.
+     */
+    private void upsertPulledHikes(List<Hike> pulled) {
+        List<Integer> ids = new ArrayList<>();
+        for (Hike hike : pulled) {
+            ids.add(hike.getHikeID());
+        }
+        Map<Integer, Long> pendingEdits = new HashMap<>();
+        for (Hike local : hikeDao.getUnsyncedHikesByIds(ids)) {
+            pendingEdits.put(local.getHikeID(), local.getUpdatedAt());
+        }
+
+        List<Hike> accepted = new ArrayList<>();
+        for (Hike hike : pulled) {
+            if (!pendingEdits.containsKey(hike.getHikeID())
+                    || serverCopyWins(pendingEdits.get(hike.getHikeID()), hike.getUpdatedAt())) {
+                accepted.add(hike);
+            }
+        }
+        hikeDao.upsertHikes(accepted);
     }
-}
 
+    /**
+     * Same as {@link #upsertPulledHikes(List)} for observations, also skipping any
+     * whose hike is not stored locally; their ids are added to withoutHike.
+     */
+    private void upsertPulledObservations(List<Observation> pulled, List<Integer> withoutHike) {
+        List<Integer> ids = new ArrayList<>();
+        Set<Integer> hikeIds = new HashSet<>();
+        for (Observation observation : pulled) {
+            ids.add(observation.getObservationID());
+            hikeIds.add(observation.getHikeId());
+        }
+        Set<Integer> knownHikeIds = new HashSet<>(hikeDao.getExistingHikeIds(new ArrayList<>(hikeIds)));
+        Map<Integer, Long> pendingEdits = new HashMap<>();
+        for (Observation local : observationDao.getUnsyncedObservationsByIds(ids)) {
+            pendingEdits.put(local.getObservationID(), local.getUpdatedAt());
+        }
+
+        List<Observation> accepted = new ArrayList<>();
+        for (Observation observation : pulled) {
+            if (!knownHikeIds.contains(observation.getHikeId())) {
+                withoutHike.add(observation.getObservationID());
+                continue;
+            }
+            if (!pendingEdits.containsKey(observation.getObservationID())
+                    || serverCopyWins(pendingEdits.get(observation.getObservationID()), observation.getUpdatedAt())) {
+                mediaSyncManager.resolveLocalPaths(observation);
+                accepted.add(observation);
+            }
+        }
+        observationDao.upsertObservations(accepted);
+    }
+
+    /**
+     * A pending local edit is kept unless the server copy was updated later.
+     */
+    static boolean serverCopyWins(Long localUpdatedAt, Long serverUpdatedAt) {
+        if (serverUpdatedAt == null) {
+            return false;
+        }
+        return localUpdatedAt == null || serverUpdatedAt > localUpdatedAt;
+    }
+
+    /**
+     * The cursor moved up to syncedAt, in microseconds, if that is later.
+     */
+    static Long later(Long cursorMicros, Timestamp syncedAt) {
+        if (syncedAt == null) {
+            return cursorMicros;
+        }
+        long micros = syncedAt.getSeconds() * 1_000_000L + syncedAt.getNanoseconds() / 1_000;
+        return cursorMicros == null ? micros : Math.max(cursorMicros, micros);
+    }
 
+    /**
+     * The cursor moved up to the newest syncedAt (microseconds, by id) that has no
+     * skipped row at or before it, so the next delta query pulls the skipped rows
+     * again. Skipped rows without a syncedAt never match a delta query anyway.
+     */
+    static Long storedUpTo(Long cursorMicros, Map<Integer, Long> syncedAtById, Collection<Integer> skippedIds) {
+        Long firstSkipped = null;
+        for (Integer id : skippedIds) {
+            Long syncedAt = syncedAtById.get(id);
+            if (syncedAt != null && (firstSkipped == null || syncedAt < firstSkipped)) {
+                firstSkipped = syncedAt;
+            }
+        }
+        Long upTo = cursorMicros;
+        for (Long syncedAt : syncedAtById.values()) {
+            if (syncedAt != null && (firstSkipped == null || syncedAt < firstSkipped)
+                    && (upTo == null || syncedAt > upTo)) {
+                upTo = syncedAt;
+            }
+        }
+        return upTo;
+    }
+
+    static Timestamp fromMicros(Long micros) {
+        if (micros == null) {
+            return null;
+        }
+        return new Timestamp(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1_000);
+    }
+
+    /**
+     * Write rows through a bulk write, one transaction per batch. Batches keep each
+     * transaction (and the write lock it holds against UI reads) short.
+     */
+    private <T> void writeInBatches(List<T> rows, Consumer<List<T>> write, DownloadProgress progress) {
+        int batchSize = downloadBatchSize;
+        for (int start = 0; start < rows.size(); start += batchSize) {
+            List<T> batch = rows.subList(start, Math.min(start + batchSize, rows.size()));
+            database.runInTransaction(() -> write.accept(batch));
+            progress.onBatchWritten(batch.size());
+        }
+    }
+
+    /**
+     * Parse a hike document, or return null when its id is not a local integer id.
+     */
+    static Hike parseHike(DocumentSnapshot doc, int userId) {
+        if (!doc.exists()) {
+            return null;
+        }
+
+        Hike hike = new Hike();
+        try {
+            hike.setHikeID(Integer.parseInt(doc.getId()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        hike.setUserId(userId);
+        hike.setName(doc.getString("name"));
+        hike.setLocation(doc.getString("location"));
+
+        Long dateMillis = doc.getLong("date");
+        if (dateMillis != null) {
+            hike.setDate(new java.util.Date(dateMillis));
+        }
+
+        Boolean parkingAvailable = doc.getBoolean("parkingAvailable");
+        hike.setParkingAvailable(parkingAvailable != null && parkingAvailable);
+
+        Double length = doc.getDouble("length");
+        if (length != null) {
+            hike.setLength(length);
+        }
+
+        hike.setDifficulty(doc.getString("difficulty"));
+        hike.setDescription(doc.getString("description"));
+        hike.setPurchaseParkingPass(doc.getString("purchaseParkingPass"));
+
+        hike.setIsActive(doc.getBoolean("isActive"));
+        hike.setStartTime(doc.getLong("startTime"));
+        hike.setEndTime(doc.getLong("endTime"));
+
+        hike.setCreatedAt(doc.getLong("createdAt"));
+        hike.setUpdatedAt(doc.getLong("updatedAt"));
+        Boolean deleted = doc.getBoolean("deleted");
+        hike.setDeleted(deleted != null && deleted);
+        hike.setDeletedAt(doc.getLong("deletedAt"));
+        hike.setSynced(true);
+        return hike;
+    }
+
+    /**
+     * Parse an observation document, taking its hikeId from the parent path
+     * (users/{uid}/hikes/{hikeId}/observations/{id}), or return null when either id
+     * is not a local integer id.
+     */
+    static Observation parseObservation(DocumentSnapshot obsDoc) {
+        if (!obsDoc.exists()) {
+            return null;
+        }
+
+        Observation obs = new Observation();
+        try {
+            obs.setObservationID(Integer.parseInt(obsDoc.getId()));
+            String parentId = obsDoc.getReference()
+                    .getParent() // observations
+                    .getParent() // hikes/{hikeId}
+                    .getId();
+            obs.setHikeId(Integer.parseInt(parentId));
+        } catch (Exception e) {
+            return null;
+        }
+
+        obs.setObservationText(obsDoc.getString("observationText"));
+
+        Long timeMillis = obsDoc.getLong("time");
+        if (timeMillis != null) {
+            obs.setTime(new java.util.Date(timeMillis));
+        }
+
+        obs.setComments(obsDoc.getString("comments"));
+        obs.setLocation(obsDoc.getString("location"));
+        obs.setPicture(obsDoc.getString("picture"));
+        obs.setThumbnail(obsDoc.getString("thumbnail"));
+        obs.setPictureHash(obsDoc.getString("pictureHash"));
+
+        obs.setCreatedAt(obsDoc.getLong("createdAt"));
+        obs.setUpdatedAt(obsDoc.getLong("updatedAt"));
+        Boolean deleted = obsDoc.getBoolean("deleted");
+        obs.setDeleted(deleted != null && deleted);
+        obs.setDeletedAt(obsDoc.getLong("deletedAt"));
+        obs.setSynced(true);
+        return obs;
+    }
+
+    /**
+     * Running row count and throughput of one download, forwarded to the listener
+     * on the main thread.
+     */
+    private final class DownloadProgress {
+        private final DownloadProgressListener listener;
+        private final long startNanos = System.nanoTime();
+        private final int rowsTotal;
+        private int rowsWritten;
+
+        DownloadProgress(int rowsTotal, DownloadProgressListener listener) {
+            this.rowsTotal = rowsTotal;
+            this.listener = listener;
+        }
+
+        void onBatchWritten(int rows) {
+            rowsWritten += rows;
+            if (listener == null) {
+                return;
+            }
+            int written = rowsWritten;
+            int total = rowsTotal;
+            double rowsPerSecond = rowsPerSecond();
+            mainThreadExecutor.execute(() -> listener.onProgress(written, total, rowsPerSecond));
+        }
+
+        double rowsPerSecond() {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            return elapsedNanos > 0 ? rowsWritten * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+
+        void logSummary() {
+            Log.d(TAG, String.format(Locale.US, "downloadUserData: wrote %d rows in batches of %d (%.0f rows/s)",
+                    rowsWritten, downloadBatchSize, rowsPerSecond()));
+        }
+    }
+}
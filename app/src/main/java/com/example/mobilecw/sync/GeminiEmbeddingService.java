@@ -1,6 +1,7 @@
 package com.example.mobilecw.sync;
 
 import android.text.TextUtils;
+import android.util.JsonReader;
 import android.util.Log;
 
 import com.example.mobilecw.BuildConfig;
@@ -17,6 +18,10 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Lightweight HTTP client that talks to the Gemini embeddings API.
@@ -24,21 +29,74 @@ import java.nio.charset.StandardCharsets;
  * The call runs on a background thread (invoked by {@link VectorSyncManager}). The class
  * is intentionally synchronous to keep the implementation simple. Callers must never invoke
  * this from the main thread.
+ *
+ * Chunks are sent through batchEmbedContents, up to {@link #getBatchSize()} per request.
+ * Responses are read to the end and never disconnected, so HttpURLConnection keeps the
+ * connection alive and reuses it for the next batch.
  */
 public class GeminiEmbeddingService {
 
     private static final String TAG = "GeminiEmbeddingService";
-    // Use a dedicated embedding model that supports embedContent
+    // Use a dedicated embedding model that supports batchEmbedContents
     // See: https://ai.google.dev/gemini-api/docs/models/gemini
     private static final String MODEL_NAME = "models/text-embedding-004";
-    private static final String ENDPOINT =
-            "https://generativelanguage.googleapis.com/v1beta/" + MODEL_NAME + ":embedContent";
+    private static final String BASE_URL = "https://generativelanguage.googleapis.com/v1beta/";
     private static final int MAX_PROMPT_LENGTH = 2000;
+    /** Requests per batchEmbedContents call accepted by the API. */
+    static final int MAX_BATCH_SIZE = 100;
+    /** text-embedding-004 output size; only a starting capacity for parsing. */
+    private static final int EXPECTED_DIMENSIONS = 768;
+    private static final int CONNECT_TIMEOUT_MILLIS = 15_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * Non-2xx answer from the API.
+     */
+    static final class HttpStatusException extends IOException {
+        final int statusCode;
+
+        HttpStatusException(int statusCode, String body) {
+            super("Gemini API error (" + statusCode + "): " + body);
+            this.statusCode = statusCode;
+        }
+
+        /**
+         * Rate limiting and server errors are worth retrying; other 4xx are not.
+         */
+        boolean isRetryable() {
+            return statusCode == 429 || statusCode >= 500;
+        }
+    }
+
+    /**
+     * One piece of text to embed.
+     */
+    public static final class Chunk {
+        public final String chunkType;
+        public final String chunkId;
+        public final String text;
+
+        public Chunk(String chunkType, String chunkId, String text) {
+            this.chunkType = chunkType;
+            this.chunkId = chunkId;
+            this.text = text;
+        }
+    }
 
     private final String apiKey;
+    private final String batchEndpoint;
+    private volatile int batchSize = MAX_BATCH_SIZE;
 
     public GeminiEmbeddingService() {
-        this.apiKey = BuildConfig.GEMINI_API_KEY;
+        this(BuildConfig.GEMINI_API_KEY, BASE_URL);
+    }
+
+    /**
+     * @param baseUrl API root the model path is appended to; tests point this at a local server
+     */
+    GeminiEmbeddingService(String apiKey, String baseUrl) {
+        this.apiKey = apiKey;
+        this.batchEndpoint = baseUrl + MODEL_NAME + ":batchEmbedContents";
         if (TextUtils.isEmpty(apiKey)) {
             Log.w(TAG, "Gemini API key is empty in BuildConfig");
         } else {
@@ -52,6 +110,27 @@ public class GeminiEmbeddingService {
         return !TextUtils.isEmpty(apiKey);
     }
 
+    /**
+     * Model the embeddings come from; vectors from different models are not comparable.
+     */
+    public String getModelName() {
+        return MODEL_NAME;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Chunks sent per batchEmbedContents request, between 1 and {@link #MAX_BATCH_SIZE}.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.batchSize = batchSize;
+    }
+
     /**
      * Requests an embedding for the provided chunk of text.
      *
@@ -62,46 +141,104 @@ public class GeminiEmbeddingService {
      * @return float array representing the embedding or null if anything failed
      */
     public float[] fetchEmbedding(String firebaseUid, String chunkType, String chunkId, String text) {
+        return fetchEmbeddings(firebaseUid, Collections.singletonList(new Chunk(chunkType, chunkId, text))).get(0);
+    }
+
+    /**
+     * Requests embeddings for all chunks, {@link #getBatchSize()} chunks per request.
+     *
+     * @param firebaseUid active Firebase user (for context in the prompt)
+     * @return one entry per chunk, in order; null for chunks with empty text and for
+     *         every chunk of a batch that failed
+     */
+    public List<float[]> fetchEmbeddings(String firebaseUid, List<Chunk> chunks) {
+        List<float[]> results = new ArrayList<>(Collections.nCopies(chunks.size(), (float[]) null));
         if (!isConfigured()) {
             Log.w(TAG, "Gemini API key missing; cannot fetch embeddings");
-            return null;
+            return results;
         }
-        if (TextUtils.isEmpty(text)) {
-            return null;
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!TextUtils.isEmpty(chunks.get(i).text)) {
+                positions.add(i);
+            }
+        }
+        int size = batchSize;
+        for (int start = 0; start < positions.size(); start += size) {
+            List<Integer> batch = positions.subList(start, Math.min(start + size, positions.size()));
+            List<Chunk> batchChunks = new ArrayList<>(batch.size());
+            for (int position : batch) {
+                batchChunks.add(chunks.get(position));
+            }
+            List<float[]> embeddings;
+            try {
+                embeddings = embedBatch(firebaseUid, batchChunks);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to fetch embeddings for " + batchChunks.size() + " chunks", e);
+                continue;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                results.set(batch.get(i), embeddings.get(i));
+            }
         }
+        return results;
+    }
 
-        String prompt = buildPrompt(firebaseUid, chunkType, chunkId, text);
+    /**
+     * Sends one batchEmbedContents request for all chunks, without retrying.
+     *
+     * @return one embedding per chunk, in order
+     * @throws HttpStatusException if the API answered with a non-2xx status
+     * @throws IOException         on network errors and malformed responses
+     */
+    List<float[]> embedBatch(String firebaseUid, List<Chunk> chunks) throws IOException {
+        if (!isConfigured()) {
+            throw new IOException("Gemini API key missing");
+        }
+        byte[] payloadBytes;
+        try {
+            payloadBytes = buildBatchPayload(firebaseUid, chunks).getBytes(StandardCharsets.UTF_8);
+        } catch (JSONException e) {
+            throw new IOException("Failed to build embedding request", e);
+        }
         HttpURLConnection connection = null;
         try {
-            URL url = new URL(ENDPOINT + "?key=" + apiKey);
+            URL url = new URL(batchEndpoint + "?key=" + apiKey);
             connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod("POST");
             connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(READ_TIMEOUT_MILLIS);
             connection.setDoOutput(true);
-
-            byte[] payloadBytes = buildPayload(prompt).getBytes(StandardCharsets.UTF_8);
-            OutputStream os = connection.getOutputStream();
-            os.write(payloadBytes);
-            os.flush();
+            connection.setFixedLengthStreamingMode(payloadBytes.length);
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(payloadBytes);
+            }
 
             int statusCode = connection.getResponseCode();
-            InputStream inputStream = statusCode >= 200 && statusCode < 300
-                    ? connection.getInputStream()
-                    : connection.getErrorStream();
-            String responseBody = readFully(inputStream);
-
             if (statusCode < 200 || statusCode >= 300) {
-                Log.e(TAG, "Gemini API error (" + statusCode + "): " + responseBody);
-                return null;
+                throw new HttpStatusException(statusCode, readFully(connection.getErrorStream()));
+            }
+            List<float[]> embeddings;
+            try (InputStream inputStream = connection.getInputStream()) {
+                embeddings = parseEmbeddings(inputStream);
+                drain(inputStream);
+            }
+            if (embeddings.size() != chunks.size()) {
+                throw new IOException("Gemini returned " + embeddings.size() + " embeddings for "
+                        + chunks.size() + " chunks");
             }
-            return parseEmbedding(responseBody);
-        } catch (IOException | JSONException e) {
-            Log.e(TAG, "Failed to fetch embedding", e);
-            return null;
-        } finally {
+            return embeddings;
+        } catch (HttpStatusException e) {
+            // The error body was read to the end, so the connection can be reused
+            throw e;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // JsonReader reports malformed responses as IllegalStateException/NumberFormatException
             if (connection != null) {
+                // The stream is in an unknown state, so the connection must not be reused
                 connection.disconnect();
             }
+            throw e instanceof IOException ? (IOException) e : new IOException("Malformed embedding response", e);
         }
     }
 
@@ -118,35 +255,82 @@ public class GeminiEmbeddingService {
                 + trimmed;
     }
 
-    private String buildPayload(String promptText) throws JSONException {
-        // Gemini Embedding API format: { "model": "...", "content": { "parts": [{ "text": "..." }] } }
-        JSONObject textPart = new JSONObject().put("text", promptText);
-        JSONArray parts = new JSONArray().put(textPart);
-        JSONObject content = new JSONObject().put("parts", parts);
+    private String buildBatchPayload(String firebaseUid, List<Chunk> chunks) throws JSONException {
+        // { "requests": [ { "model": "...", "content": { "parts": [{ "text": "..." }] } }, ... ] }
+        JSONArray requests = new JSONArray();
+        for (Chunk chunk : chunks) {
+            String prompt = buildPrompt(firebaseUid, chunk.chunkType, chunk.chunkId, chunk.text);
+            JSONObject textPart = new JSONObject().put("text", prompt);
+            JSONObject content = new JSONObject().put("parts", new JSONArray().put(textPart));
+            requests.put(new JSONObject()
+                    .put("model", MODEL_NAME)
+                    .put("content", content));  // Note: "content" (singular), not "contents"
+        }
+        return new JSONObject().put("requests", requests).toString();
+    }
 
-        JSONObject body = new JSONObject();
-        body.put("model", MODEL_NAME);
-        body.put("content", content);  // Note: "content" (singular), not "contents"
-        return body.toString();
+    /**
+     * Streams { "embeddings": [ { "values": [...] }, ... ] } straight into float arrays,
+     * without materialising the body as a String or JSON tree. Does not close the stream.
+     */
+    static List<float[]> parseEmbeddings(InputStream inputStream) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        List<float[]> embeddings = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("embeddings".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    embeddings.add(readEmbedding(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return embeddings;
     }
 
-    private float[] parseEmbedding(String responseBody) throws JSONException {
-        JSONObject json = new JSONObject(responseBody);
-        if (!json.has("embedding")) {
-            Log.e(TAG, "Gemini response missing embedding: " + responseBody);
-            return null;
+    private static float[] readEmbedding(JsonReader reader) throws IOException {
+        float[] values = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("values".equals(reader.nextName())) {
+                values = readValues(reader);
+            } else {
+                reader.skipValue();
+            }
         }
-        JSONObject embeddingObject = json.getJSONObject("embedding");
-        JSONArray values = embeddingObject.optJSONArray("values");
+        reader.endObject();
         if (values == null) {
-            Log.e(TAG, "Gemini response missing values array");
-            return null;
+            throw new IllegalStateException("Gemini embedding missing values array");
         }
-        float[] embedding = new float[values.length()];
-        for (int i = 0; i < values.length(); i++) {
-            embedding[i] = (float) values.getDouble(i);
+        return values;
+    }
+
+    private static float[] readValues(JsonReader reader) throws IOException {
+        float[] values = new float[EXPECTED_DIMENSIONS];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = (float) reader.nextDouble();
+        }
+        reader.endArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a response to the end, so HttpURLConnection can return the connection to its pool.
+     */
+    private static void drain(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (inputStream.read(buffer) != -1) {
+            // discard
         }
-        return embedding;
     }
 
     private String readFully(InputStream inputStream) throws IOException {
@@ -163,5 +347,3 @@ public class GeminiEmbeddingService {
         return builder.toString();
     }
 }
-
-
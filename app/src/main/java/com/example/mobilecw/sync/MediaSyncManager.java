@@ -0,0 +1,325 @@
+package com.example.mobilecw.sync;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.dao.MediaTransferDao;
+import com.example.mobilecw.database.entities.MediaTransfer;
+import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.services.PhotoIngestor;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Moves observation photos between the device and Cloud Storage.
+ *
+ * Uploads: sync queues an ingested picture and its thumbnail in media_transfers
+ * when it uploads the observation, and {@link #uploadPending} drains the queue
+ * with at most {@link #MAX_CONCURRENT_TRANSFERS} transfers at a time. Each one is
+ * a resumable upload session, which Firebase Storage sends in chunks; the session
+ * URI and progress are saved as it goes, so after a crash or process death the
+ * next sync resumes the session instead of sending the file again. A transfer is
+ * given up after {@link #MAX_ATTEMPTS} failed attempts until its photo is queued
+ * again; attempts that never reached the server (offline) are not counted.
+ *
+ * Objects live at users/{uid}/photos/{sha256}.jpg and {sha256}_thumb.jpg, named by
+ * the picture's content hash: a photo already in storage, from this device or
+ * another, is not uploaded again.
+ *
+ * Downloads are lazy. Observations pulled onto a device without their files point
+ * at the hash-named paths in the photo directory, and {@link #fetchIfMissing}
+ * downloads a file the first time something needs to draw it: the thumbnail for
+ * lists, the full picture only when a view is larger than the thumbnail.
+ */
+public class MediaSyncManager {
+
+    private static final String TAG = "MediaSyncManager";
+    static final int MAX_CONCURRENT_TRANSFERS = 2;
+    static final int MAX_ATTEMPTS = 6;
+    /** Save upload progress at most once per this many bytes. */
+    private static final long PROGRESS_SAVE_BYTES = 256 * 1024;
+    private static final Pattern REMOTE_NAME = Pattern.compile("[0-9a-f]{64}(_thumb)?\\.jpg");
+
+    private static volatile MediaSyncManager INSTANCE;
+
+    private final FirebaseStorage storage;
+    private final MediaTransferDao transferDao;
+    private final File photoDir;
+    private final ExecutorService transferExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_TRANSFERS);
+    // Waits for a drain's transfers, so the pool threads only ever run transfers
+    private final ExecutorService drainExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService progressExecutor = Executors.newSingleThreadExecutor();
+    private final ConcurrentHashMap<String, Object> fetchLocks = new ConcurrentHashMap<>();
+
+    MediaSyncManager(FirebaseStorage storage, MediaTransferDao transferDao, File photoDir) {
+        this.storage = storage;
+        this.transferDao = transferDao;
+        this.photoDir = photoDir;
+    }
+
+    public static MediaSyncManager getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (MediaSyncManager.class) {
+                if (INSTANCE == null) {
+                    Context appContext = context.getApplicationContext();
+                    FirebaseApp.initializeApp(appContext);
+                    INSTANCE = new MediaSyncManager(FirebaseStorage.getInstance(),
+                            AppDatabase.getDatabase(appContext).mediaTransferDao(),
+                            PhotoIngestor.getInstance(appContext).getPhotoDir());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Queue the observation's picture and thumbnail for upload. Pictures without a
+     * content hash (not ingested) stay on the device.
+     */
+    public void enqueueObservationPhotos(String firebaseUid, Observation observation) {
+        String hash = observation.getPictureHash();
+        if (hash == null || Boolean.TRUE.equals(observation.getDeleted())) {
+            return;
+        }
+        enqueue(firebaseUid, pictureName(hash), observation.getPicture());
+        enqueue(firebaseUid, thumbnailName(hash), observation.getThumbnail());
+    }
+
+    private void enqueue(String firebaseUid, String remoteName, @Nullable String localPath) {
+        if (localPath == null) {
+            return;
+        }
+        File file = new File(localPath);
+        if (!file.exists()) {
+            return; // Restored from the cloud and never fetched: nothing new to send
+        }
+        transferDao.enqueue(new MediaTransfer(firebaseUid, remoteName, localPath, file.length(),
+                System.currentTimeMillis()));
+        // Still queued after giving up: start over rather than leave the photo behind
+        transferDao.retryExhausted(firebaseUid, remoteName, MAX_ATTEMPTS);
+    }
+
+    /**
+     * Upload everything queued for the user. Fails if any transfer failed, so the
+     * sync is retried with backoff; completed transfers are not repeated.
+     */
+    public Task<Void> uploadPending(String firebaseUid) {
+        return Tasks.call(drainExecutor, () -> {
+            List<MediaTransfer> pending = transferDao.getPendingTransfers(firebaseUid, MAX_ATTEMPTS);
+            if (pending.isEmpty()) {
+                return null;
+            }
+            List<Future<Boolean>> results = new ArrayList<>(pending.size());
+            for (MediaTransfer transfer : pending) {
+                results.add(transferExecutor.submit(() -> upload(transfer)));
+            }
+            int failed = 0;
+            for (Future<Boolean> result : results) {
+                if (!result.get()) {
+                    failed++;
+                }
+            }
+            if (failed > 0) {
+                throw new IOException(failed + " of " + pending.size() + " photo uploads failed");
+            }
+            return null;
+        });
+    }
+
+    private boolean upload(MediaTransfer transfer) {
+        String firebaseUid = transfer.getFirebaseUid();
+        String name = transfer.getRemoteName();
+        File file = new File(transfer.getLocalPath());
+        if (!file.exists()) {
+            Log.w(TAG, "Dropping upload of " + name + ": " + file + " is gone");
+            transferDao.deleteTransfer(firebaseUid, name);
+            return true;
+        }
+        StorageReference ref = storage.getReference(remotePath(firebaseUid, name));
+        String resumedSession = transfer.getSessionUri();
+        AtomicReference<String> session = new AtomicReference<>(resumedSession);
+        AtomicLong savedBytes = new AtomicLong(transfer.getBytesTransferred());
+        try {
+            if (resumedSession == null && exists(ref)) {
+                // Same content uploaded before, from here or another device
+                transferDao.deleteTransfer(firebaseUid, name);
+                return true;
+            }
+            StorageMetadata metadata = new StorageMetadata.Builder().setContentType("image/jpeg").build();
+            Uri source = Uri.fromFile(file);
+            UploadTask task = resumedSession != null
+                    ? ref.putFile(source, metadata, Uri.parse(resumedSession))
+                    : ref.putFile(source, metadata);
+            task.addOnProgressListener(progressExecutor, snapshot -> {
+                Uri sessionUri = snapshot.getUploadSessionUri();
+                if (sessionUri == null) {
+                    return;
+                }
+                String current = sessionUri.toString();
+                boolean newSession = !current.equals(session.getAndSet(current));
+                long bytes = snapshot.getBytesTransferred();
+                if (newSession || bytes - savedBytes.get() >= PROGRESS_SAVE_BYTES) {
+                    savedBytes.set(bytes);
+                    transferDao.updateProgress(firebaseUid, name, current, bytes);
+                }
+            });
+            Tasks.await(task);
+            transferDao.deleteTransfer(firebaseUid, name);
+            Log.d(TAG, "Uploaded " + name + " (" + file.length() / 1024 + " KB"
+                    + (resumedSession != null ? ", resumed at " + transfer.getBytesTransferred() / 1024 + " KB" : "")
+                    + ")");
+            return true;
+        } catch (ExecutionException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Log.w(TAG, "Upload of " + name + " failed", e);
+            if (isUnreachable(e)) {
+                // Not the transfer's fault; keep the session without using up an attempt
+                transferDao.updateProgress(firebaseUid, name, session.get(), savedBytes.get());
+            } else {
+                transferDao.recordFailure(firebaseUid, name, isSessionRejected(e) ? null : session.get());
+            }
+            return false;
+        }
+    }
+
+    private static boolean exists(StorageReference ref) throws ExecutionException, InterruptedException {
+        try {
+            Tasks.await(ref.getMetadata());
+            return true;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StorageException
+                    && ((StorageException) e.getCause()).getErrorCode() == StorageException.ERROR_OBJECT_NOT_FOUND) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A 4xx answer to a resumed upload means the session expired or was cancelled;
+     * anything else (offline, 5xx) keeps the session for the next attempt.
+     */
+    private static boolean isSessionRejected(Exception e) {
+        if (!(e.getCause() instanceof StorageException)) {
+            return false;
+        }
+        int status = ((StorageException) e.getCause()).getHttpResultCode();
+        return status >= 400 && status < 500;
+    }
+
+    /**
+     * The SDK gave up retrying without an answer from the server, as when offline.
+     */
+    private static boolean isUnreachable(Exception e) {
+        return e.getCause() instanceof StorageException
+                && ((StorageException) e.getCause()).getErrorCode() == StorageException.ERROR_RETRY_LIMIT_EXCEEDED;
+    }
+
+    /**
+     * Make sure the photo file at localPath exists, downloading it from the user's
+     * storage if it is a hash-named copy that has not been fetched yet. Blocks; call
+     * off the main thread.
+     *
+     * @return whether the file exists now
+     */
+    public boolean fetchIfMissing(@Nullable String firebaseUid, String localPath) {
+        File file = new File(localPath);
+        if (file.exists()) {
+            return true;
+        }
+        String name = file.getName();
+        if (firebaseUid == null || !photoDir.equals(file.getParentFile()) || !REMOTE_NAME.matcher(name).matches()) {
+            return false;
+        }
+        Object lock = fetchLocks.computeIfAbsent(name, key -> new Object());
+        synchronized (lock) {
+            try {
+                if (file.exists()) {
+                    return true; // Fetched by another caller meanwhile
+                }
+                if (!photoDir.exists() && !photoDir.mkdirs()) {
+                    return false;
+                }
+                // Download beside the target and rename, so a reader never sees half a file
+                File partial = new File(photoDir, name + ".part");
+                try {
+                    long start = System.nanoTime();
+                    Tasks.await(storage.getReference(remotePath(firebaseUid, name)).getFile(partial));
+                    if (!partial.renameTo(file)) {
+                        partial.delete();
+                        return false;
+                    }
+                    Log.d(TAG, "Fetched " + name + " (" + file.length() / 1024 + " KB) in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                    return true;
+                } catch (ExecutionException | InterruptedException e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    Log.w(TAG, "Could not fetch " + name, e);
+                    partial.delete();
+                    return false;
+                }
+            } finally {
+                fetchLocks.remove(name, lock);
+            }
+        }
+    }
+
+    /**
+     * Point a pulled observation at local copies of its photos: the paths it was
+     * saved with if they exist here (the device that took it), otherwise the
+     * hash-named paths {@link #fetchIfMissing} downloads to.
+     */
+    public void resolveLocalPaths(Observation observation) {
+        String hash = observation.getPictureHash();
+        if (hash == null) {
+            return;
+        }
+        String picture = observation.getPicture();
+        if (picture == null || !new File(picture).exists()) {
+            observation.setPicture(new File(photoDir, pictureName(hash)).getPath());
+        }
+        String thumbnail = observation.getThumbnail();
+        if (thumbnail == null || !new File(thumbnail).exists()) {
+            observation.setThumbnail(new File(photoDir, thumbnailName(hash)).getPath());
+        }
+    }
+
+    static String remotePath(String firebaseUid, String remoteName) {
+        return "users/" + firebaseUid + "/photos/" + remoteName;
+    }
+
+    static String pictureName(String pictureHash) {
+        return pictureHash + ".jpg";
+    }
+
+    static String thumbnailName(String pictureHash) {
+        return pictureHash + "_thumb.jpg";
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.mobilecw.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.example.mobilecw.auth.SessionManager;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules background uploads through WorkManager instead of syncing inline after
+ * every save.
+ *
+ * A request starts a debounce window; every request arriving before the sync runs
+ * is merged into it. At most one sync runs at a time: a request made while one is
+ * running queues a single follow-up behind it, so changes saved mid-sync are not
+ * missed. Pending work survives process death, waits for a network connection and
+ * is retried with exponential backoff.
+ *
+ * Callers that need to know when the upload finished (login, logout) still call
+ * {@link FirebaseSyncManager#syncNow(FirebaseSyncManager.SyncCallback)} directly.
+ */
+public final class SyncScheduler {
+
+    private static final String TAG = "SyncScheduler";
+    static final String UNIQUE_WORK_NAME = "firebase-sync";
+    static final long DEFAULT_DEBOUNCE_MILLIS = 5_000;
+    private static final long BACKOFF_DELAY_SECONDS = 30;
+
+    private static volatile long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+    // Serialises the check-then-enqueue below so two requests cannot both queue work
+    private static final ExecutorService requestExecutor = Executors.newSingleThreadExecutor();
+
+    private SyncScheduler() {
+    }
+
+    /**
+     * How long a sync waits for further requests before running.
+     */
+    public static void setDebounceWindow(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("debounce window must not be negative");
+        }
+        debounceMillis = millis;
+    }
+
+    /**
+     * Ask for the logged-in user's pending changes to be uploaded soon.
+     */
+    public static void requestSync(Context context) {
+        if (!SessionManager.isLoggedIn(context)) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        requestExecutor.execute(() -> enqueueIfNotWaiting(WorkManager.getInstance(appContext)));
+    }
+
+    static void enqueueIfNotWaiting(WorkManager workManager) {
+        try {
+            List<WorkInfo> infos = workManager.getWorkInfosForUniqueWork(UNIQUE_WORK_NAME).get();
+            for (WorkInfo info : infos) {
+                WorkInfo.State state = info.getState();
+                if (state == WorkInfo.State.ENQUEUED || state == WorkInfo.State.BLOCKED) {
+                    return; // A sync that has not started yet will pick these changes up
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read sync work state; enqueueing anyway", e);
+        }
+
+        // Runs after a sync already in flight, or replaces a failed one
+        workManager.enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, buildRequest());
+    }
+
+    static OneTimeWorkRequest buildRequest() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        return new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setInitialDelay(debounceMillis, TimeUnit.MILLISECONDS)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+}
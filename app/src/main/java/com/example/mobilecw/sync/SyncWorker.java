@@ -0,0 +1,61 @@
+package com.example.mobilecw.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs one {@link FirebaseSyncManager#syncNow} pass for {@link SyncScheduler}.
+ */
+public class SyncWorker extends Worker {
+
+    private static final String TAG = "SyncWorker";
+    private static final long SYNC_TIMEOUT_MINUTES = 10;
+    // After this many failed attempts the work fails; the next save schedules a fresh one
+    private static final int MAX_ATTEMPTS = 8;
+
+    public SyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        FirebaseSyncManager.getInstance(getApplicationContext()).syncNow(new FirebaseSyncManager.SyncCallback() {
+            @Override
+            public void onSuccess() {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                failure.set(exception);
+                done.countDown();
+            }
+        });
+
+        try {
+            if (!done.await(SYNC_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                failure.set(new IllegalStateException("Sync timed out"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+
+        if (failure.get() == null) {
+            return Result.success();
+        }
+        Log.w(TAG, "Sync attempt " + (getRunAttemptCount() + 1) + " failed", failure.get());
+        return getRunAttemptCount() + 1 < MAX_ATTEMPTS ? Result.retry() : Result.failure();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.mobilecw.sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking token-bucket rate limiter: permits refill at a steady rate up to a
+ * burst capacity, and {@link #acquire()} waits until a permit is available.
+ *
+ * A caller that finds the bucket empty reserves the next permit before sleeping,
+ * so concurrent callers queue up behind each other instead of all waking at once.
+ */
+final class TokenBucket {
+
+    interface Ticker {
+        long nanoTime();
+    }
+
+    interface Sleeper {
+        void sleepNanos(long nanos) throws InterruptedException;
+    }
+
+    private final double nanosPerPermit;
+    private final int capacity;
+    private final Ticker ticker;
+    private final Sleeper sleeper;
+
+    private double permits;
+    private long lastRefillNanos;
+
+    TokenBucket(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    TokenBucket(double permitsPerSecond, int capacity, Ticker ticker, Sleeper sleeper) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.capacity = capacity;
+        this.ticker = ticker;
+        this.sleeper = sleeper;
+        this.permits = capacity;
+        this.lastRefillNanos = ticker.nanoTime();
+    }
+
+    /**
+     * Take one permit, sleeping until it is available.
+     */
+    void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = ticker.nanoTime();
+            permits = Math.min(capacity, permits + (now - lastRefillNanos) / nanosPerPermit);
+            lastRefillNanos = now;
+            permits -= 1;
+            // A negative balance is the queue of callers that reserved a permit ahead of us
+            waitNanos = permits >= 0 ? 0 : (long) Math.ceil(-permits * nanosPerPermit);
+        }
+        if (waitNanos > 0) {
+            sleeper.sleepNanos(waitNanos);
+        }
+    }
+}
@@ -6,21 +6,29 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 
 import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.database.dao.EmbeddingStateDao;
 import com.example.mobilecw.database.dao.HikeDao;
 import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.entities.EmbeddingState;
 import com.example.mobilecw.database.entities.Hike;
 import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.utils.EmbeddingCodec;
 import com.example.mobilecw.utils.NetworkUtils;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.Blob;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.SetOptions;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -35,27 +43,43 @@ import java.util.concurrent.Executors;
  * The manager is intentionally conservative:
  * - Runs only when the device is online
  * - Requires a configured Gemini API key
- * - Processes hikes + observations sequentially to avoid overwhelming quotas
+ * - Embeds changed hikes + observations in batches through a rate-limited
+ *   {@link EmbeddingPipeline}, so bursts of edits stay within the API quota
+ * - Skips chunks whose text and model are unchanged since they were last embedded
+ *   (tracked per chunk in the embedding_state table)
  */
 public class VectorSyncManager {
 
     private static final String TAG = "VectorSyncManager";
 
+    /** Well under the per-minute request quota of the embeddings API. */
+    static final double MAX_REQUESTS_PER_SECOND = 5;
+    static final int MAX_CONCURRENT_REQUESTS = 4;
+
     private final Context appContext;
     private final HikeDao hikeDao;
     private final ObservationDao observationDao;
+    private final EmbeddingStateDao embeddingStateDao;
     private final FirebaseFirestore firestore;
     private final ExecutorService executorService;
     private final GeminiEmbeddingService embeddingService;
+    private final EmbeddingPipeline<PendingChunk> pipeline;
 
     public VectorSyncManager(Context context) {
         this.appContext = context.getApplicationContext();
         AppDatabase database = AppDatabase.getDatabase(this.appContext);
         this.hikeDao = database.hikeDao();
         this.observationDao = database.observationDao();
+        this.embeddingStateDao = database.embeddingStateDao();
         this.firestore = FirebaseFirestore.getInstance();
         this.executorService = Executors.newSingleThreadExecutor();
         this.embeddingService = new GeminiEmbeddingService();
+        this.pipeline = new EmbeddingPipeline<>(
+                this::fetchEmbeddings,
+                this::writeEmbedding,
+                new TokenBucket(MAX_REQUESTS_PER_SECOND, (int) MAX_REQUESTS_PER_SECOND),
+                Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS),
+                executorService);
     }
 
     public Task<Void> syncUserVectors(int userId, String firebaseUid) {
@@ -67,45 +91,84 @@ public class VectorSyncManager {
             Log.d(TAG, "Device offline; skipping vector sync");
             return Tasks.forResult(null);
         }
-        return Tasks.call(executorService, () -> {
-            performVectorSync(userId, firebaseUid);
-            return null;
-        });
+        return Tasks.call(executorService, () -> collectPendingChunks(userId, firebaseUid))
+                .onSuccessTask(executorService, pending -> {
+                    if (pending.isEmpty()) {
+                        Log.d(TAG, "All embeddings up to date");
+                        return Tasks.<Void>forResult(null);
+                    }
+                    return pipeline.run(pending, embeddingService.getBatchSize());
+                })
+                .continueWith(executorService, task -> {
+                    // Best effort: chunks that failed stay pending and are retried on the next sync
+                    if (!task.isSuccessful()) {
+                        Log.w(TAG, "Vector sync incomplete", task.getException());
+                    }
+                    Log.d(TAG, "Vector sync finished: " + pipeline.getMetrics());
+                    return null;
+                });
+    }
+
+    /**
+     * Queue depth, request latency and error counts of the embedding pipeline.
+     */
+    EmbeddingPipeline.Metrics getEmbeddingMetrics() {
+        return pipeline.getMetrics();
+    }
+
+    /**
+     * A chunk that is new or changed since it was last embedded, and the document
+     * its vector goes to.
+     */
+    private static final class PendingChunk {
+        final String firebaseUid;
+        final GeminiEmbeddingService.Chunk chunk;
+        final String textHash;
+        final int hikeId;
+        final Integer observationId; // null for the hike's own chunk
+
+        PendingChunk(String firebaseUid, GeminiEmbeddingService.Chunk chunk, String textHash,
+                     int hikeId, Integer observationId) {
+            this.firebaseUid = firebaseUid;
+            this.chunk = chunk;
+            this.textHash = textHash;
+            this.hikeId = hikeId;
+            this.observationId = observationId;
+        }
     }
 
-    private void performVectorSync(int userId, String firebaseUid) {
+    private List<PendingChunk> collectPendingChunks(int userId, String firebaseUid) {
+        List<PendingChunk> pending = new ArrayList<>();
         List<Hike> hikes = hikeDao.getHikesByUserId(userId);
         if (hikes == null || hikes.isEmpty()) {
-            return;
+            return pending;
+        }
+        Map<String, EmbeddingState> states = new HashMap<>();
+        for (EmbeddingState state : embeddingStateDao.getAllEmbeddingStates()) {
+            states.put(state.getChunkId(), state);
         }
         for (Hike hike : hikes) {
-            syncHikeVector(firebaseUid, hike);
-            syncObservationVectors(firebaseUid, hike.getHikeID());
+            collectHikeChunk(firebaseUid, hike, states, pending);
+            collectObservationChunks(firebaseUid, hike.getHikeID(), states, pending);
         }
+        return pending;
     }
 
-    private void syncHikeVector(String firebaseUid, Hike hike) {
+    private void collectHikeChunk(String firebaseUid, Hike hike, Map<String, EmbeddingState> states,
+                                  List<PendingChunk> pending) {
         if (hike == null) return;
-        StringBuilder builder = new StringBuilder();
-        builder.append("Hike: ").append(nullSafe(hike.getName())).append("\n");
-        builder.append("Location: ").append(nullSafe(hike.getLocation())).append("\n");
-        builder.append("Difficulty: ").append(nullSafe(hike.getDifficulty())).append("\n");
-        builder.append("LengthKm: ").append(hike.getLength()).append("\n");
-        if (hike.getDescription() != null) {
-            builder.append("Description: ").append(hike.getDescription());
-        }
-
-        String chunkType = "hike_description";
         String chunkId = "hike_" + hike.getHikeID();
-        float[] embedding = embeddingService.fetchEmbedding(firebaseUid, chunkType, chunkId, builder.toString());
-        if (embedding == null) {
+        String text = buildHikeChunk(hike);
+        String textHash = hashText(text);
+        if (isUpToDate(states.get(chunkId), textHash)) {
             return;
         }
-        // Store embedding directly in the hike document
-        writeEmbeddingToHike(firebaseUid, hike.getHikeID(), embedding);
+        pending.add(new PendingChunk(firebaseUid, new GeminiEmbeddingService.Chunk("hike_description", chunkId, text),
+                textHash, hike.getHikeID(), null));
     }
 
-    private void syncObservationVectors(String firebaseUid, int hikeId) {
+    private void collectObservationChunks(String firebaseUid, int hikeId, Map<String, EmbeddingState> states,
+                                          List<PendingChunk> pending) {
         List<Observation> observations = observationDao.getObservationsByHikeId(hikeId);
         if (observations == null || observations.isEmpty()) {
             return;
@@ -114,87 +177,115 @@ public class VectorSyncManager {
             if (observation == null || observation.getObservationText() == null) {
                 continue;
             }
-            String chunkType = "observation_note";
             String chunkId = "obs_" + observation.getObservationID();
             String text = buildObservationChunk(observation);
-            float[] embedding = embeddingService.fetchEmbedding(firebaseUid, chunkType, chunkId, text);
-            if (embedding == null) {
+            String textHash = hashText(text);
+            if (isUpToDate(states.get(chunkId), textHash)) {
                 continue;
             }
-            // Store embedding directly in the observation document
-            writeEmbeddingToObservation(firebaseUid, observation.getHikeId(), observation.getObservationID(), embedding);
+            pending.add(new PendingChunk(firebaseUid,
+                    new GeminiEmbeddingService.Chunk("observation_note", chunkId, text),
+                    textHash, observation.getHikeId(), observation.getObservationID()));
         }
     }
 
-    private String buildObservationChunk(@NonNull Observation observation) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("Observation: ").append(nullSafe(observation.getObservationText())).append("\n");
-        if (observation.getComments() != null) {
-            builder.append("Comments: ").append(observation.getComments()).append("\n");
+    /**
+     * One batchEmbedContents request; runs on a pipeline worker.
+     */
+    private List<float[]> fetchEmbeddings(List<PendingChunk> batch) throws IOException {
+        List<GeminiEmbeddingService.Chunk> chunks = new ArrayList<>(batch.size());
+        for (PendingChunk pendingChunk : batch) {
+            chunks.add(pendingChunk.chunk);
         }
-        if (observation.getLocation() != null) {
-            builder.append("Location: ").append(observation.getLocation()).append("\n");
+        return embeddingService.embedBatch(batch.get(0).firebaseUid, chunks);
+    }
+
+    private String buildHikeChunk(@NonNull Hike hike) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Hike: ").append(nullSafe(hike.getName())).append("\n");
+        builder.append("Location: ").append(nullSafe(hike.getLocation())).append("\n");
+        builder.append("Difficulty: ").append(nullSafe(hike.getDifficulty())).append("\n");
+        builder.append("LengthKm: ").append(hike.getLength()).append("\n");
+        if (hike.getDescription() != null) {
+            builder.append("Description: ").append(hike.getDescription());
         }
         return builder.toString();
     }
 
+    private boolean isUpToDate(EmbeddingState state, String textHash) {
+        return state != null && state.matches(textHash, embeddingService.getModelName());
+    }
+
     /**
-     * Writes the embedding vector directly to the hike document as "embedding_vector" field.
+     * Remembers what was embedded, with the vector for on-device search; only called
+     * once the vector is in Firestore, so a failed write is retried on the next sync.
      */
-    private void writeEmbeddingToHike(String firebaseUid, int hikeId, float[] embedding) {
-        try {
-            Map<String, Object> update = new HashMap<>();
-            update.put("embedding_vector", toDoubleList(embedding));
-            update.put("embedding_updatedAt", System.currentTimeMillis());
-            update.put("embedding_source", "gemini-2.5-flash");
-
-            Task<Void> writeTask = firestore.collection("users")
-                    .document(firebaseUid)
-                    .collection("hikes")
-                    .document(String.valueOf(hikeId))
-                    .set(update, SetOptions.merge());
-            Tasks.await(writeTask);
-            Log.d(TAG, "Successfully stored embedding_vector in hike " + hikeId);
-        } catch (ExecutionException | InterruptedException e) {
-            Log.e(TAG, "Failed to store embedding_vector in hike " + hikeId, e);
-            Thread.currentThread().interrupt();
-        }
+    private void recordEmbedded(PendingChunk pendingChunk, float[] embedding) {
+        embeddingStateDao.upsertEmbeddingState(new EmbeddingState(
+                pendingChunk.chunk.chunkId, pendingChunk.textHash, embeddingService.getModelName(),
+                System.currentTimeMillis(), pendingChunk.hikeId, pendingChunk.observationId,
+                EmbeddingCodec.encode(embedding, EmbeddingCodec.Format.INT8)));
     }
 
     /**
-     * Writes the embedding vector directly to the observation document as "embedding_vector" field.
+     * SHA-256 of the chunk text, hex encoded.
      */
-    private void writeEmbeddingToObservation(String firebaseUid, int hikeId, int observationId, float[] embedding) {
+    private static String hashText(String text) {
         try {
-            Map<String, Object> update = new HashMap<>();
-            update.put("embedding_vector", toDoubleList(embedding));
-            update.put("embedding_updatedAt", System.currentTimeMillis());
-            update.put("embedding_source", "gemini-2.5-flash");
-
-            Task<Void> writeTask = firestore.collection("users")
-                    .document(firebaseUid)
-                    .collection("hikes")
-                    .document(String.valueOf(hikeId))
-                    .collection("observations")
-                    .document(String.valueOf(observationId))
-                    .set(update, SetOptions.merge());
-            Tasks.await(writeTask);
-            Log.d(TAG, "Successfully stored embedding_vector in observation " + observationId);
-        } catch (ExecutionException | InterruptedException e) {
-            Log.e(TAG, "Failed to store embedding_vector in observation " + observationId, e);
-            Thread.currentThread().interrupt();
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android runtime ships SHA-256
+            throw new IllegalStateException(e);
         }
     }
 
-    private List<Double> toDoubleList(float[] embedding) {
-        List<Double> list = new ArrayList<>();
-        if (embedding == null) {
-            return list;
+    private String buildObservationChunk(@NonNull Observation observation) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Observation: ").append(nullSafe(observation.getObservationText())).append("\n");
+        if (observation.getComments() != null) {
+            builder.append("Comments: ").append(observation.getComments()).append("\n");
         }
-        for (float value : embedding) {
-            list.add((double) value);
+        if (observation.getLocation() != null) {
+            builder.append("Location: ").append(observation.getLocation()).append("\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the embedding vector directly to the hike or observation document as
+     * "embedding_vector" field, and records the chunk as embedded once the write is
+     * acknowledged. Does not wait for the write.
+     *
+     * The vector is a FLOAT16 {@link EmbeddingCodec} Blob: a quarter of the bytes of
+     * a list of doubles, and a single index entry instead of one per component.
+     */
+    private Task<Void> writeEmbedding(PendingChunk pendingChunk, float[] embedding) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("embedding_vector", Blob.fromBytes(EmbeddingCodec.encode(embedding, EmbeddingCodec.Format.FLOAT16)));
+        update.put("embedding_updatedAt", System.currentTimeMillis());
+        update.put("embedding_source", "gemini-2.5-flash");
+
+        DocumentReference document = firestore.collection("users")
+                .document(pendingChunk.firebaseUid)
+                .collection("hikes")
+                .document(String.valueOf(pendingChunk.hikeId));
+        if (pendingChunk.observationId != null) {
+            document = document.collection("observations").document(String.valueOf(pendingChunk.observationId));
         }
-        return list;
+        String chunkId = pendingChunk.chunk.chunkId;
+        return document.set(update, SetOptions.merge()).continueWith(executorService, task -> {
+            if (!task.isSuccessful()) {
+                Log.e(TAG, "Failed to store embedding_vector for " + chunkId, task.getException());
+                throw task.getException() != null ? task.getException() : new IllegalStateException("Write cancelled");
+            }
+            recordEmbedded(pendingChunk, embedding);
+            return null;
+        });
     }
 
     private String nullSafe(String value) {
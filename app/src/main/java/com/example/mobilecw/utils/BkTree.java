@@ -0,0 +1,122 @@
+package com.example.mobilecw.utils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * BK-tree (Burkhard-Keller tree) over a vocabulary of terms, keyed by
+ * Levenshtein distance.
+ *
+ * Every child edge is labelled with the distance between child and parent, so a
+ * lookup for terms within k of a query only descends into edges in
+ * [d - k, d + k] (triangle inequality) and skips most of the vocabulary.
+ * Terms are expected to be normalized (lower-cased) by the caller.
+ */
+public class BkTree {
+
+    private Node root;
+    private int size;
+
+    public interface MatchVisitor {
+        void onMatch(String term, int distance);
+    }
+
+    /**
+     * Add a term to the tree.
+     * @return false if the term was already present
+     */
+    public boolean add(String term) {
+        if (term == null) {
+            return false;
+        }
+        if (root == null) {
+            root = new Node(term);
+            size++;
+            return true;
+        }
+        Node node = root;
+        while (true) {
+            int distance = SearchHelper.levenshteinDistance(node.term, term);
+            if (distance == 0) {
+                return false;
+            }
+            Node child = node.child(distance);
+            if (child == null) {
+                node.setChild(distance, new Node(term));
+                size++;
+                return true;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Visit every term within maxDistance edits of the query.
+     */
+    public void search(String query, int maxDistance, MatchVisitor visitor) {
+        if (root == null || query == null) {
+            return;
+        }
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = SearchHelper.levenshteinDistance(node.term, query);
+            if (distance <= maxDistance) {
+                visitor.onMatch(node.term, distance);
+            }
+            if (node.children == null) continue;
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(node.children.length - 1, distance + maxDistance);
+            for (int edge = from; edge <= to; edge++) {
+                Node child = node.children[edge];
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect every term within maxDistance edits of the query with its distance.
+     */
+    public Map<String, Integer> search(String query, int maxDistance) {
+        Map<String, Integer> matches = new HashMap<>();
+        search(query, maxDistance, matches::put);
+        return matches;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+
+    private static final class Node {
+        final String term;
+        // Children indexed directly by edge distance; grown on demand
+        Node[] children;
+
+        Node(String term) {
+            this.term = term;
+        }
+
+        Node child(int distance) {
+            return children != null && distance < children.length ? children[distance] : null;
+        }
+
+        void setChild(int distance, Node child) {
+            if (children == null) {
+                children = new Node[Math.max(distance + 1, 4)];
+            } else if (distance >= children.length) {
+                children = Arrays.copyOf(children, Math.max(distance + 1, children.length * 2));
+            }
+            children[distance] = child;
+        }
+    }
+}
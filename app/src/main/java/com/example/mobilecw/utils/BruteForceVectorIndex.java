@@ -0,0 +1,83 @@
+package com.example.mobilecw.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Exact top-k by scanning every vector.
+ *
+ * Vectors live in one contiguous float array (row-major), so the scan walks
+ * memory sequentially, and {@link #dot} is a plain counted loop the JIT/ART
+ * compiler can unroll and vectorize.
+ */
+public final class BruteForceVectorIndex implements VectorIndex {
+
+    private final int[] ids;
+    private final float[] data;
+    private final int dimension;
+
+    public BruteForceVectorIndex(int[] ids, float[][] vectors) {
+        if (ids.length != vectors.length) {
+            throw new IllegalArgumentException("ids and vectors differ in length");
+        }
+        this.ids = ids.clone();
+        this.dimension = vectors.length == 0 ? 0 : vectors[0].length;
+        this.data = new float[vectors.length * dimension];
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i].length != dimension) {
+                throw new IllegalArgumentException("Vector " + i + " has dimension " + vectors[i].length
+                        + ", expected " + dimension);
+            }
+            System.arraycopy(VectorIndex.normalize(vectors[i]), 0, data, i * dimension, dimension);
+        }
+    }
+
+    @Override
+    public List<Match> search(float[] query, int k) {
+        if (k <= 0 || ids.length == 0) {
+            return Collections.emptyList();
+        }
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Query has dimension " + query.length + ", expected " + dimension);
+        }
+        float[] q = VectorIndex.normalize(query);
+        int n = Math.min(k, ids.length);
+        ScoreHeap best = new ScoreHeap(n, true);
+        for (int slot = 0, offset = 0; slot < ids.length; slot++, offset += dimension) {
+            best.offer(slot, dot(q, data, offset, dimension), n);
+        }
+        float[] scores = new float[best.size()];
+        int[] slots = best.drainBestFirst(scores);
+        List<Match> matches = new ArrayList<>(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            matches.add(new Match(ids[slots[i]], scores[i]));
+        }
+        return matches;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Dot product of q with data[offset, offset + length). Four independent
+     * accumulators break the dependency on a single running sum, so several
+     * multiply-adds can be in flight at once.
+     */
+    static float dot(float[] q, float[] data, int offset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += q[i] * data[offset + i];
+            s1 += q[i + 1] * data[offset + i + 1];
+            s2 += q[i + 2] * data[offset + i + 2];
+            s3 += q[i + 3] * data[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += q[i] * data[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
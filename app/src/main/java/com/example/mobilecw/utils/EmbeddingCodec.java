@@ -0,0 +1,261 @@
+package com.example.mobilecw.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Packs embedding vectors into compact byte arrays, for Room BLOBs and Firestore
+ * Blob fields.
+ *
+ * Every blob starts with a one-byte {@link Format} tag, followed by (little-endian):
+ * <ul>
+ *   <li>FLOAT32: dimension floats; exact, 4 bytes per dimension.</li>
+ *   <li>FLOAT16: dimension IEEE half floats; 2 bytes per dimension, about 3
+ *       significant digits.</li>
+ *   <li>INT8: float offset and float scale, then one unsigned byte code per
+ *       dimension with value = offset + scale * code; 1 byte per dimension plus 8.</li>
+ * </ul>
+ * A 768-dimension embedding is 3073, 1537 or 777 bytes.
+ *
+ * {@link #dot} scores a float query against any format without decoding; for INT8
+ * that is offset * sum(q) + scale * sum(q[i] * code[i]).
+ */
+public final class EmbeddingCodec {
+
+    public enum Format {
+        FLOAT32(1, 4),
+        FLOAT16(2, 2),
+        INT8(3, 1);
+
+        final byte tag;
+        final int bytesPerDimension;
+
+        Format(int tag, int bytesPerDimension) {
+            this.tag = (byte) tag;
+            this.bytesPerDimension = bytesPerDimension;
+        }
+
+        /**
+         * Encoded size of a vector of this dimension, header included.
+         */
+        public int encodedSize(int dimension) {
+            return HEADER_BYTES + (this == INT8 ? INT8_PARAMS_BYTES : 0) + dimension * bytesPerDimension;
+        }
+
+        static Format of(byte tag) {
+            for (Format format : values()) {
+                if (format.tag == tag) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown embedding format " + tag);
+        }
+    }
+
+    private static final int HEADER_BYTES = 1;
+    private static final int INT8_PARAMS_BYTES = 8;
+    private static final int INT8_CODES_OFFSET = HEADER_BYTES + INT8_PARAMS_BYTES;
+
+    private EmbeddingCodec() {
+    }
+
+    public static byte[] encode(float[] vector, Format format) {
+        ByteBuffer buffer = ByteBuffer.allocate(format.encodedSize(vector.length)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(format.tag);
+        switch (format) {
+            case FLOAT32:
+                for (float value : vector) {
+                    buffer.putFloat(value);
+                }
+                break;
+            case FLOAT16:
+                for (float value : vector) {
+                    buffer.putShort(toHalf(value));
+                }
+                break;
+            case INT8:
+                float min = Float.POSITIVE_INFINITY;
+                float max = Float.NEGATIVE_INFINITY;
+                for (float value : vector) {
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                if (vector.length == 0) {
+                    min = max = 0;
+                }
+                float scale = (max - min) / 255f;
+                buffer.putFloat(min);
+                buffer.putFloat(scale);
+                float inverse = scale == 0 ? 0 : 1 / scale;
+                for (float value : vector) {
+                    buffer.put((byte) Math.min(255, Math.round((value - min) * inverse)));
+                }
+                break;
+        }
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] blob) {
+        Format format = formatOf(blob);
+        int dimension = dimensionOf(blob);
+        ByteBuffer buffer = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[dimension];
+        switch (format) {
+            case FLOAT32:
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = buffer.getFloat(HEADER_BYTES + i * 4);
+                }
+                break;
+            case FLOAT16:
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = fromHalf(buffer.getShort(HEADER_BYTES + i * 2));
+                }
+                break;
+            case INT8:
+                float offset = buffer.getFloat(HEADER_BYTES);
+                float scale = buffer.getFloat(HEADER_BYTES + 4);
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = offset + scale * (blob[INT8_CODES_OFFSET + i] & 0xFF);
+                }
+                break;
+        }
+        return vector;
+    }
+
+    public static Format formatOf(byte[] blob) {
+        if (blob.length < HEADER_BYTES) {
+            throw new IllegalArgumentException("Empty embedding blob");
+        }
+        return Format.of(blob[0]);
+    }
+
+    public static int dimensionOf(byte[] blob) {
+        Format format = formatOf(blob);
+        int payload = blob.length - format.encodedSize(0);
+        if (payload < 0 || payload % format.bytesPerDimension != 0) {
+            throw new IllegalArgumentException("Truncated " + format + " embedding of " + blob.length + " bytes");
+        }
+        return payload / format.bytesPerDimension;
+    }
+
+    /**
+     * Dot product of a float query with an encoded vector, read in place.
+     *
+     * @param querySum sum of the query's components (see {@link #sum}), which the
+     *                 INT8 kernel needs; compute it once per query, not per vector
+     */
+    public static float dot(float[] query, float querySum, byte[] blob) {
+        if (dimensionOf(blob) != query.length) {
+            throw new IllegalArgumentException("Query has dimension " + query.length
+                    + ", expected " + dimensionOf(blob));
+        }
+        switch (formatOf(blob)) {
+            case INT8:
+                ByteBuffer params = ByteBuffer.wrap(blob, HEADER_BYTES, INT8_PARAMS_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                float offset = params.getFloat();
+                float scale = params.getFloat();
+                return offset * querySum + scale * dotCodes(query, blob, INT8_CODES_OFFSET, query.length);
+            default:
+                return BruteForceVectorIndex.dot(query, decode(blob), 0, query.length);
+        }
+    }
+
+    public static float sum(float[] vector) {
+        float sum = 0;
+        for (float value : vector) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * sum(q[i] * unsigned codes[offset + i]) with four accumulators, like
+     * {@link BruteForceVectorIndex#dot}.
+     */
+    static float dotCodes(float[] q, byte[] codes, int offset, int length) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += q[i] * (codes[offset + i] & 0xFF);
+            s1 += q[i + 1] * (codes[offset + i + 1] & 0xFF);
+            s2 += q[i + 2] * (codes[offset + i + 2] & 0xFF);
+            s3 += q[i + 3] * (codes[offset + i + 3] & 0xFF);
+        }
+        for (; i < length; i++) {
+            s0 += q[i] * (codes[offset + i] & 0xFF);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Offset and scale of an INT8 blob, written to params[0] and params[1].
+     */
+    static void int8Params(byte[] blob, float[] params) {
+        ByteBuffer buffer = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+        params[0] = buffer.getFloat(HEADER_BYTES);
+        params[1] = buffer.getFloat(HEADER_BYTES + 4);
+    }
+
+    static int int8CodesOffset() {
+        return INT8_CODES_OFFSET;
+    }
+
+    /**
+     * Float to IEEE 754 half precision, rounding to nearest even; android.util.Half
+     * needs API 26.
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xFF) - 127 + 15;
+        int mantissa = bits & 0x7FFFFF;
+        if (((bits >>> 23) & 0xFF) == 0xFF) {
+            // Infinity or NaN
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        if (exponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (exponent <= 0) {
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            // Subnormal: shift the implicit leading one into the mantissa
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >>> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int midpoint = 1 << (shift - 1);
+            if (remainder > midpoint || (remainder == midpoint && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (exponent << 10) | (mantissa >>> 13);
+        int remainder = mantissa & 0x1FFF;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            // May carry into the exponent, up to infinity, which is the right answer
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    static float fromHalf(short half) {
+        int bits = half & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // Subnormal: value = mantissa * 2^-24
+            float magnitude = mantissa * 0x1p-24f;
+            return sign != 0 ? -magnitude : magnitude;
+        }
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
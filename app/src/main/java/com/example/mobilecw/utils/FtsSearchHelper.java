@@ -0,0 +1,151 @@
+package com.example.mobilecw.utils;
+
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.database.model.HikeSearchResult;
+import com.example.mobilecw.database.model.ObservationSearchResult;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * FtsSearchHelper turns user input into FTS4 MATCH expressions and ranks
+ * full-text results with BM25 computed from SQLite's matchinfo('pcnalx') blob.
+ *
+ * FTS4 has no built-in ranking function, so the DAO returns the raw matchinfo
+ * for each row and the scoring is done here.
+ */
+public class FtsSearchHelper {
+
+    // BM25 tuning constants (standard defaults)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Column weights, in the same order as the fields of HikeFts / ObservationFts
+    private static final double[] HIKE_COLUMN_WEIGHTS = {3.0, 2.0, 1.0, 0.5}; // name, location, description, difficulty
+    private static final double[] OBSERVATION_COLUMN_WEIGHTS = {2.0, 1.0, 1.0}; // observationText, comments, location
+
+    /**
+     * Build a prefix-matching MATCH expression from free text.
+     * "snow  peak" becomes "snow* peak*" (implicit AND between terms).
+     * @return the expression, or null if the input has no searchable tokens
+     */
+    public static String toMatchQuery(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        StringBuilder token = new StringBuilder();
+        String lower = query.toLowerCase(Locale.ROOT);
+        for (int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c);
+            } else if (token.length() > 0) {
+                if (builder.length() > 0) {
+                    builder.append(' ');
+                }
+                builder.append(token).append('*');
+                token.setLength(0);
+            }
+        }
+        return builder.length() > 0 ? builder.toString() : null;
+    }
+
+    /**
+     * Rank hike FTS results by BM25 (highest first) and unwrap them.
+     */
+    public static List<Hike> rankHikes(List<HikeSearchResult> results) {
+        List<Scored<Hike>> scored = new ArrayList<>();
+        if (results != null) {
+            for (HikeSearchResult result : results) {
+                scored.add(new Scored<>(result.hike, bm25(result.matchInfo, HIKE_COLUMN_WEIGHTS)));
+            }
+        }
+        return unwrap(scored);
+    }
+
+    /**
+     * Rank observation FTS results by BM25 (highest first) and unwrap them.
+     */
+    public static List<Observation> rankObservations(List<ObservationSearchResult> results) {
+        List<Scored<Observation>> scored = new ArrayList<>();
+        if (results != null) {
+            for (ObservationSearchResult result : results) {
+                scored.add(new Scored<>(result.observation, bm25(result.matchInfo, OBSERVATION_COLUMN_WEIGHTS)));
+            }
+        }
+        return unwrap(scored);
+    }
+
+    /**
+     * Compute a BM25 score from a matchinfo('pcnalx') blob.
+     *
+     * Layout (32-bit native-order ints): p, c, n, a[c], l[c], x[3 * p * c]
+     * where x holds (hits in this row, hits in all rows, rows with hits)
+     * for every phrase/column pair.
+     */
+    public static double bm25(byte[] matchInfo, double[] weights) {
+        if (matchInfo == null || matchInfo.length < 12) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+        int totalDocs = buffer.getInt(8);
+
+        int avgLengthOffset = 3;
+        int docLengthOffset = avgLengthOffset + columnCount;
+        int hitsOffset = docLengthOffset + columnCount;
+
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                double weight = column < weights.length ? weights[column] : 1.0;
+                if (weight == 0) continue;
+
+                int x = hitsOffset + 3 * (phrase * columnCount + column);
+                int termFrequency = buffer.getInt(x * 4);
+                if (termFrequency == 0) continue;
+                int docsWithHits = buffer.getInt((x + 2) * 4);
+
+                double avgLength = Math.max(1, buffer.getInt((avgLengthOffset + column) * 4));
+                double docLength = buffer.getInt((docLengthOffset + column) * 4);
+
+                double idf = Math.log((totalDocs - docsWithHits + 0.5) / (docsWithHits + 0.5));
+                if (idf <= 0) idf = 1e-6; // very common terms still count a little
+
+                double denominator = termFrequency + K1 * (1 - B + B * docLength / avgLength);
+                score += weight * idf * (termFrequency * (K1 + 1)) / denominator;
+            }
+        }
+        return score;
+    }
+
+    private static <T> List<T> unwrap(List<Scored<T>> scored) {
+        // Stable sort keeps the DAO order for ties
+        Collections.sort(scored, (o1, o2) -> Double.compare(o2.score, o1.score));
+        List<T> items = new ArrayList<>(scored.size());
+        for (Scored<T> s : scored) {
+            items.add(s.item);
+        }
+        return items;
+    }
+
+    /**
+     * Helper class to hold an item and its BM25 score
+     */
+    private static class Scored<T> {
+        final T item;
+        final double score;
+
+        Scored(T item, double score) {
+            this.item = item;
+            this.score = score;
+        }
+    }
+}
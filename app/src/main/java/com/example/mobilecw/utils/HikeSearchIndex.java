@@ -0,0 +1,392 @@
+package com.example.mobilecw.utils;
+
+import com.example.mobilecw.database.entities.Hike;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over hikes that produces the same ranking as
+ * {@link SearchHelper#fuzzySearch(List, String)} without scoring every hike.
+ *
+ * Each searchable field keeps a term dictionary (whitespace tokens, lower-cased)
+ * mapping to postings lists of document slots stored as primitive int arrays.
+ * A query only touches the vocabulary and the postings of matching terms:
+ * - Exact / prefix / contains tiers: candidates are the hikes having a token that
+ *   contains every query word; only those are verified against the full field text
+ * - Word tier: the union of postings of terms containing each query word
+ * - Fuzzy tier: a BK-tree over name/location terms returns the terms within
+ *   FUZZY_THRESHOLD, so most of the vocabulary is never compared
+ *
+ * The index is updated incrementally with {@link #addOrUpdate(Hike)},
+ * {@link #remove(int)} or {@link #sync(List)}. All methods are synchronized so it
+ * can be shared between the UI and a background executor.
+ *
+ * Equally scored hikes come back in the order of the list last passed to
+ * {@link #build}, {@link #rebuild} or {@link #sync}, as fuzzySearch returns them.
+ * Each hike carries a rank for that order; an updated hike keeps its rank and a
+ * new one is ranked after every indexed hike.
+ */
+public class HikeSearchIndex {
+
+    private static final int FUZZY_THRESHOLD = SearchHelper.FUZZY_THRESHOLD;
+    private static final int MIN_FUZZY_TERM_LENGTH = 3;
+
+    // Field slots
+    private static final int NAME = 0;
+    private static final int LOCATION = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int DIFFICULTY = 3;
+    private static final int FIELD_COUNT = 4;
+
+    // Scores per field, same values as SearchHelper.calculateRelevanceScore
+    private static final int[] EXACT_SCORES = {100, 80, 0, 0};
+    private static final int[] PREFIX_SCORES = {50, 40, 0, 0};
+    private static final int[] CONTAINS_SCORES = {30, 25, 15, 10};
+    private static final int[] WORD_SCORES = {10, 8, 5, 0};
+    private static final int[] FUZZY_MULTIPLIERS = {5, 4, 0, 0};
+
+    private final FieldIndex[] fields = new FieldIndex[FIELD_COUNT];
+
+    // Document storage, indexed by slot. Removed hikes leave a null slot until compaction.
+    private final List<Hike> docs = new ArrayList<>();
+    private final List<String[]> docValues = new ArrayList<>();
+    private final List<Long> docUpdatedAt = new ArrayList<>();
+    private final List<Integer> docRanks = new ArrayList<>();
+    private final Map<Integer, Integer> slotByHikeId = new HashMap<>();
+    private int deadCount = 0;
+    private int nextRank = 0;
+
+    private int[] scores = new int[0];
+
+    public HikeSearchIndex() {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            fields[i] = new FieldIndex(FUZZY_MULTIPLIERS[i] > 0);
+        }
+    }
+
+    /**
+     * Build an index from a list of hikes. Ties in the ranking keep this list's order.
+     */
+    public static HikeSearchIndex build(List<Hike> hikes) {
+        HikeSearchIndex index = new HikeSearchIndex();
+        index.rebuild(hikes);
+        return index;
+    }
+
+    /**
+     * Drop everything and index the given hikes.
+     */
+    public synchronized void rebuild(List<Hike> hikes) {
+        for (FieldIndex field : fields) {
+            field.clear();
+        }
+        docs.clear();
+        docValues.clear();
+        docUpdatedAt.clear();
+        docRanks.clear();
+        slotByHikeId.clear();
+        deadCount = 0;
+        nextRank = 0;
+        if (hikes != null) {
+            for (Hike hike : hikes) {
+                addOrUpdate(hike);
+            }
+        }
+    }
+
+    /**
+     * Bring the index in line with a freshly loaded list: new hikes are added,
+     * hikes whose updatedAt changed are re-indexed and missing hikes are removed.
+     * Ties in the ranking then follow this list's order.
+     */
+    public synchronized void sync(List<Hike> hikes) {
+        Map<Integer, Hike> latest = new LinkedHashMap<>();
+        if (hikes != null) {
+            for (Hike hike : hikes) {
+                latest.put(hike.getHikeID(), hike);
+            }
+        }
+        for (Integer hikeId : new ArrayList<>(slotByHikeId.keySet())) {
+            if (!latest.containsKey(hikeId)) {
+                remove(hikeId);
+            }
+        }
+        for (Hike hike : latest.values()) {
+            Integer slot = slotByHikeId.get(hike.getHikeID());
+            if (slot == null || !Objects.equals(docUpdatedAt.get(slot), hike.getUpdatedAt())) {
+                addOrUpdate(hike);
+            }
+        }
+        int rank = 0;
+        for (Integer hikeId : latest.keySet()) {
+            docRanks.set(slotByHikeId.get(hikeId), rank++);
+        }
+        nextRank = rank;
+    }
+
+    /**
+     * Index a new hike, or re-index one that is already present in its current rank.
+     */
+    public synchronized void addOrUpdate(Hike hike) {
+        if (hike == null) {
+            return;
+        }
+        Integer previous = slotByHikeId.get(hike.getHikeID());
+        int rank = previous != null ? docRanks.get(previous) : nextRank++;
+        drop(hike.getHikeID());
+        insert(hike, rank);
+        compactIfSparse();
+    }
+
+    /**
+     * Remove a hike from the index. Its postings are dropped lazily on compaction.
+     */
+    public synchronized void remove(int hikeId) {
+        drop(hikeId);
+        compactIfSparse();
+    }
+
+    public synchronized int size() {
+        return slotByHikeId.size();
+    }
+
+    private void insert(Hike hike, int rank) {
+        int slot = docs.size();
+        String[] values = new String[FIELD_COUNT];
+        values[NAME] = normalize(hike.getName());
+        values[LOCATION] = normalize(hike.getLocation());
+        values[DESCRIPTION] = normalize(hike.getDescription());
+        values[DIFFICULTY] = normalize(hike.getDifficulty());
+        docs.add(hike);
+        docValues.add(values);
+        docUpdatedAt.add(hike.getUpdatedAt());
+        docRanks.add(rank);
+        slotByHikeId.put(hike.getHikeID(), slot);
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            fields[f].add(values[f], slot);
+        }
+    }
+
+    private void drop(int hikeId) {
+        Integer slot = slotByHikeId.remove(hikeId);
+        if (slot == null) {
+            return;
+        }
+        docs.set(slot, null);
+        docValues.set(slot, null);
+        docUpdatedAt.set(slot, null);
+        deadCount++;
+    }
+
+    private void compactIfSparse() {
+        if (deadCount > 64 && deadCount > slotByHikeId.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Search the index with the same relevance tiers as SearchHelper.fuzzySearch.
+     * @return matching hikes sorted by relevance, or every indexed hike for an empty query
+     */
+    public synchronized List<Hike> search(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return liveHikesInRankOrder();
+        }
+
+        String normalizedQuery = query.toLowerCase().trim();
+        String[] queryWords = normalizedQuery.split("\\s+");
+
+        if (scores.length < docs.size()) {
+            scores = new int[docs.size()];
+        } else {
+            Arrays.fill(scores, 0, docs.size(), 0);
+        }
+
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            FieldIndex field = fields[f];
+            Map<String, BitSet> containingCache = new HashMap<>();
+
+            // Exact / prefix / contains on the whole field: all imply the field contains
+            // every query word, so only those candidates need the string checks.
+            BitSet candidates = null;
+            for (String word : queryWords) {
+                BitSet containing = containingCache.get(word);
+                if (containing == null) {
+                    containing = field.slotsContaining(word);
+                    containingCache.put(word, containing);
+                }
+                if (candidates == null) {
+                    candidates = (BitSet) containing.clone();
+                } else {
+                    candidates.and(containing);
+                }
+            }
+            if (candidates != null) {
+                for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                    String[] values = docValues.get(slot);
+                    if (values == null) continue;
+                    String value = values[f];
+                    if (value.equals(normalizedQuery)) scores[slot] += EXACT_SCORES[f];
+                    if (value.startsWith(normalizedQuery)) scores[slot] += PREFIX_SCORES[f];
+                    if (value.contains(normalizedQuery)) scores[slot] += CONTAINS_SCORES[f];
+                }
+            }
+
+            // Word-by-word matching
+            if (WORD_SCORES[f] > 0) {
+                for (String word : queryWords) {
+                    if (word.length() < 2) continue;
+                    BitSet containing = containingCache.get(word);
+                    for (int slot = containing.nextSetBit(0); slot >= 0; slot = containing.nextSetBit(slot + 1)) {
+                        if (docs.get(slot) != null) scores[slot] += WORD_SCORES[f];
+                    }
+                }
+            }
+
+            // Fuzzy matching: the BK-tree yields the terms within FUZZY_THRESHOLD,
+            // and each bonus is applied to every occurrence of the term
+            if (field.fuzzyTerms != null) {
+                int multiplier = FUZZY_MULTIPLIERS[f];
+                field.fuzzyTerms.search(normalizedQuery, FUZZY_THRESHOLD, (term, distance) -> {
+                    int bonus = (FUZZY_THRESHOLD - distance) * multiplier;
+                    if (bonus == 0) return;
+                    IntList postings = field.terms.get(term);
+                    for (int i = 0; i < postings.size; i++) {
+                        int slot = postings.values[i];
+                        if (docs.get(slot) != null) scores[slot] += bonus;
+                    }
+                });
+            }
+        }
+
+        return collectRanked();
+    }
+
+    /**
+     * Collect hikes with a positive score, highest first; ties keep rank order.
+     */
+    private List<Hike> collectRanked() {
+        int count = 0;
+        long[] keys = new long[docs.size()];
+        int[] slotByRank = new int[nextRank];
+        for (int slot = 0; slot < docs.size(); slot++) {
+            if (scores[slot] > 0 && docs.get(slot) != null) {
+                int rank = docRanks.get(slot);
+                slotByRank[rank] = slot;
+                // Pack (descending score, ascending rank) into one sortable long
+                keys[count++] = ((long) (Integer.MAX_VALUE - scores[slot]) << 32) | rank;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        List<Hike> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(docs.get(slotByRank[(int) keys[i]]));
+        }
+        return results;
+    }
+
+    private List<Hike> liveHikesInRankOrder() {
+        Hike[] byRank = new Hike[nextRank];
+        for (int slot = 0; slot < docs.size(); slot++) {
+            if (docs.get(slot) != null) {
+                byRank[docRanks.get(slot)] = docs.get(slot);
+            }
+        }
+        List<Hike> live = new ArrayList<>(slotByHikeId.size());
+        for (Hike hike : byRank) {
+            if (hike != null) live.add(hike);
+        }
+        return live;
+    }
+
+    private void compact() {
+        // Ranks are renumbered from 0 in the same order
+        rebuild(liveHikesInRankOrder());
+    }
+
+    private static String normalize(String value) {
+        return value != null ? value.toLowerCase() : "";
+    }
+
+    /**
+     * Term dictionary for one field. Terms are kept sorted so prefix ranges are cheap.
+     * Fields that take part in fuzzy scoring also keep their terms in a BK-tree.
+     */
+    private static final class FieldIndex {
+        final TreeMap<String, IntList> terms = new TreeMap<>();
+        final BkTree fuzzyTerms;
+
+        FieldIndex(boolean fuzzy) {
+            this.fuzzyTerms = fuzzy ? new BkTree() : null;
+        }
+
+        void clear() {
+            terms.clear();
+            if (fuzzyTerms != null) fuzzyTerms.clear();
+        }
+
+        void add(String value, int slot) {
+            if (value.isEmpty()) return;
+            for (String token : value.split("\\s+")) {
+                if (token.isEmpty()) continue;
+                IntList postings = terms.get(token);
+                if (postings == null) {
+                    postings = new IntList();
+                    terms.put(token, postings);
+                    if (fuzzyTerms != null && token.length() >= MIN_FUZZY_TERM_LENGTH) {
+                        fuzzyTerms.add(token);
+                    }
+                }
+                postings.add(slot); // one entry per occurrence
+            }
+        }
+
+        /**
+         * Slots whose field text contains the (whitespace-free) word.
+         */
+        BitSet slotsContaining(String word) {
+            BitSet slots = new BitSet();
+            // Terms starting with the word form a contiguous range of the sorted dictionary
+            for (IntList postings : terms.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                postings.markAll(slots);
+            }
+            // Remaining terms can only contain it further in
+            for (Map.Entry<String, IntList> entry : terms.entrySet()) {
+                String term = entry.getKey();
+                if (term.length() > word.length() && !term.startsWith(word) && term.indexOf(word, 1) > 0) {
+                    entry.getValue().markAll(slots);
+                }
+            }
+            return slots;
+        }
+    }
+
+    /**
+     * Growable primitive int array used for postings lists.
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void markAll(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(values[i]);
+            }
+        }
+    }
+}
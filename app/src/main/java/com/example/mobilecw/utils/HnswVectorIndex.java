@@ -0,0 +1,274 @@
+package com.example.mobilecw.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Approximate top-k with a Hierarchical Navigable Small World graph
+ * (Malkov and Yashunin, 2016).
+ *
+ * Every vector is a node on layer 0 and, with exponentially decreasing
+ * probability, on higher layers too. A query descends greedily from the single
+ * top-layer entry point, then runs a best-first beam search of width efSearch
+ * on layer 0, so it visits a few hundred nodes instead of all of them.
+ *
+ * The graph is built once in the constructor (single-threaded, seeded, so the
+ * same input gives the same graph); queries only read it and may run
+ * concurrently.
+ */
+public final class HnswVectorIndex implements VectorIndex {
+
+    static final int DEFAULT_M = 16;
+    static final int DEFAULT_EF_CONSTRUCTION = 100;
+    static final int DEFAULT_EF_SEARCH = 100;
+    private static final long SEED = 42;
+
+    private final int[] ids;
+    private final float[] data;
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+
+    /**
+     * links[node][level] holds the neighbour count at index 0 followed by the
+     * neighbour slots; capacity is maxM0 on layer 0 and m above it.
+     */
+    private final int[][][] links;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswVectorIndex(int[] ids, float[][] vectors) {
+        this(ids, vectors, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    public HnswVectorIndex(int[] ids, float[][] vectors, int m, int efConstruction, int efSearch) {
+        if (ids.length != vectors.length) {
+            throw new IllegalArgumentException("ids and vectors differ in length");
+        }
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.ids = ids.clone();
+        this.dimension = vectors.length == 0 ? 0 : vectors[0].length;
+        this.data = new float[vectors.length * dimension];
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.links = new int[vectors.length][][];
+
+        Random random = new Random(SEED);
+        double levelMultiplier = 1 / Math.log(m);
+        for (int slot = 0; slot < vectors.length; slot++) {
+            if (vectors[slot].length != dimension) {
+                throw new IllegalArgumentException("Vector " + slot + " has dimension " + vectors[slot].length
+                        + ", expected " + dimension);
+            }
+            System.arraycopy(VectorIndex.normalize(vectors[slot]), 0, data, slot * dimension, dimension);
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            insert(slot, level);
+        }
+    }
+
+    @Override
+    public List<Match> search(float[] query, int k) {
+        if (k <= 0 || entryPoint < 0) {
+            return Collections.emptyList();
+        }
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Query has dimension " + query.length + ", expected " + dimension);
+        }
+        float[] q = VectorIndex.normalize(query);
+        int nearest = entryPoint;
+        for (int level = maxLevel; level > 0; level--) {
+            nearest = greedyClosest(q, 0, nearest, level);
+        }
+        ScoreHeap found = searchLayer(q, 0, nearest, Math.max(efSearch, k), 0);
+        float[] scores = new float[found.size()];
+        int[] slots = found.drainBestFirst(scores);
+        int n = Math.min(k, slots.length);
+        List<Match> matches = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            matches.add(new Match(ids[slots[i]], scores[i]));
+        }
+        return matches;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    private void insert(int slot, int level) {
+        links[slot] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[slot][l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = slot;
+            maxLevel = level;
+            return;
+        }
+        int offset = slot * dimension;
+        int nearest = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            nearest = greedyClosest(data, offset, nearest, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            ScoreHeap found = searchLayer(data, offset, nearest, efConstruction, l);
+            float[] scores = new float[found.size()];
+            int[] candidates = found.drainBestFirst(scores);
+            nearest = candidates[0];
+            int[] selected = selectNeighbours(candidates, scores, m);
+            int[] own = links[slot][l];
+            for (int neighbour : selected) {
+                own[++own[0]] = neighbour;
+                connect(neighbour, slot, l);
+            }
+        }
+        if (level > maxLevel) {
+            entryPoint = slot;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * Add the edge from node to newNeighbour, re-selecting node's neighbours
+     * if its list is full.
+     */
+    private void connect(int node, int newNeighbour, int level) {
+        int[] list = links[node][level];
+        int capacity = list.length - 1;
+        if (list[0] < capacity) {
+            list[++list[0]] = newNeighbour;
+            return;
+        }
+        int offset = node * dimension;
+        ScoreHeap ranked = new ScoreHeap(capacity + 1, false);
+        for (int i = 1; i <= list[0]; i++) {
+            ranked.push(list[i], similarity(data, offset, list[i]));
+        }
+        ranked.push(newNeighbour, similarity(data, offset, newNeighbour));
+        float[] scores = new float[ranked.size()];
+        int[] selected = selectNeighbours(ranked.drainBestFirst(scores), scores, capacity);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    /**
+     * Neighbour selection heuristic: walk the candidates best first and keep one
+     * only if it is closer to the base than to every neighbour kept so far, which
+     * spreads edges across clusters. Pruned candidates fill any remaining room.
+     *
+     * @param candidates slots ordered by similarity to the base, best first
+     * @param toBase     similarity of each candidate to the base
+     */
+    private int[] selectNeighbours(int[] candidates, float[] toBase, int max) {
+        if (candidates.length <= max) {
+            return candidates;
+        }
+        int[] selected = new int[max];
+        int count = 0;
+        BitSet pruned = new BitSet(candidates.length);
+        for (int i = 0; i < candidates.length && count < max; i++) {
+            int candidateOffset = candidates[i] * dimension;
+            boolean keep = true;
+            for (int j = 0; j < count && keep; j++) {
+                keep = similarity(data, candidateOffset, selected[j]) < toBase[i];
+            }
+            if (keep) {
+                selected[count++] = candidates[i];
+            } else {
+                pruned.set(i);
+            }
+        }
+        for (int i = pruned.nextSetBit(0); i >= 0 && count < max; i = pruned.nextSetBit(i + 1)) {
+            selected[count++] = candidates[i];
+        }
+        return count == max ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private int greedyClosest(float[] vectors, int offset, int start, int level) {
+        int current = start;
+        float best = similarity(vectors, offset, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = links[current][level];
+            for (int i = 1; i <= list[0]; i++) {
+                float score = similarity(vectors, offset, list[i]);
+                if (score > best) {
+                    best = score;
+                    current = list[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer.
+     *
+     * @return up to ef nearest slots found, worst first
+     */
+    private ScoreHeap searchLayer(float[] vectors, int offset, int start, int ef, int level) {
+        BitSet visited = new BitSet(ids.length);
+        ScoreHeap candidates = new ScoreHeap(ef, false);
+        ScoreHeap found = new ScoreHeap(ef + 1, true);
+        float startScore = similarity(vectors, offset, start);
+        visited.set(start);
+        candidates.push(start, startScore);
+        found.push(start, startScore);
+        while (!candidates.isEmpty()) {
+            int current = candidates.topSlot();
+            float currentScore = candidates.topScore();
+            candidates.pop();
+            if (found.size() >= ef && currentScore < found.topScore()) {
+                break;
+            }
+            int[] list = links[current][level];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbour = list[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float score = similarity(vectors, offset, neighbour);
+                if (found.size() < ef || score > found.topScore()) {
+                    candidates.push(neighbour, score);
+                    found.push(neighbour, score);
+                    if (found.size() > ef) {
+                        found.pop();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Similarity of vectors[offset, offset + dimension) to the stored vector of slot.
+     */
+    private float similarity(float[] vectors, int offset, int slot) {
+        int slotOffset = slot * dimension;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += vectors[offset + i] * data[slotOffset + i];
+            s1 += vectors[offset + i + 1] * data[slotOffset + i + 1];
+            s2 += vectors[offset + i + 2] * data[slotOffset + i + 2];
+            s3 += vectors[offset + i + 3] * data[slotOffset + i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += vectors[offset + i] * data[slotOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
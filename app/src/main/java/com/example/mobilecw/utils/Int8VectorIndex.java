@@ -0,0 +1,104 @@
+package com.example.mobilecw.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Top-k by scanning INT8-quantized vectors (see {@link EmbeddingCodec}) without
+ * decoding them: a quarter of the memory of {@link BruteForceVectorIndex} and of
+ * the bytes the scan streams through.
+ *
+ * Codes for all vectors live in one contiguous byte array; each vector keeps its
+ * offset, scale and inverse norm, so scores are cosine similarities up to the
+ * quantization error of half a scale step per component.
+ */
+public final class Int8VectorIndex implements VectorIndex {
+
+    private final int[] ids;
+    private final byte[] codes;
+    private final float[] offsets;
+    private final float[] scales;
+    private final float[] inverseNorms;
+    private final int dimension;
+
+    /**
+     * @param blobs encoded vectors of equal dimension, in any format; INT8 blobs are
+     *              used as they are, others are quantized first
+     */
+    public Int8VectorIndex(int[] ids, byte[][] blobs) {
+        if (ids.length != blobs.length) {
+            throw new IllegalArgumentException("ids and vectors differ in length");
+        }
+        this.ids = ids.clone();
+        this.dimension = blobs.length == 0 ? 0 : EmbeddingCodec.dimensionOf(blobs[0]);
+        this.codes = new byte[blobs.length * dimension];
+        this.offsets = new float[blobs.length];
+        this.scales = new float[blobs.length];
+        this.inverseNorms = new float[blobs.length];
+        int codesOffset = EmbeddingCodec.int8CodesOffset();
+        float[] params = new float[2];
+        for (int i = 0; i < blobs.length; i++) {
+            byte[] blob = blobs[i];
+            if (EmbeddingCodec.dimensionOf(blob) != dimension) {
+                throw new IllegalArgumentException("Vector " + i + " has dimension "
+                        + EmbeddingCodec.dimensionOf(blob) + ", expected " + dimension);
+            }
+            if (EmbeddingCodec.formatOf(blob) != EmbeddingCodec.Format.INT8) {
+                blob = EmbeddingCodec.encode(EmbeddingCodec.decode(blob), EmbeddingCodec.Format.INT8);
+            }
+            EmbeddingCodec.int8Params(blob, params);
+            offsets[i] = params[0];
+            scales[i] = params[1];
+            System.arraycopy(blob, codesOffset, codes, i * dimension, dimension);
+            double squares = 0;
+            for (int d = 0; d < dimension; d++) {
+                double value = params[0] + params[1] * (blob[codesOffset + d] & 0xFF);
+                squares += value * value;
+            }
+            inverseNorms[i] = squares == 0 ? 0 : (float) (1 / Math.sqrt(squares));
+        }
+    }
+
+    public Int8VectorIndex(int[] ids, float[][] vectors) {
+        this(ids, encodeAll(vectors));
+    }
+
+    @Override
+    public List<Match> search(float[] query, int k) {
+        if (k <= 0 || ids.length == 0) {
+            return Collections.emptyList();
+        }
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Query has dimension " + query.length + ", expected " + dimension);
+        }
+        float[] q = VectorIndex.normalize(query);
+        float querySum = EmbeddingCodec.sum(q);
+        int n = Math.min(k, ids.length);
+        ScoreHeap best = new ScoreHeap(n, true);
+        for (int slot = 0, offset = 0; slot < ids.length; slot++, offset += dimension) {
+            float dot = offsets[slot] * querySum + scales[slot] * EmbeddingCodec.dotCodes(q, codes, offset, dimension);
+            best.offer(slot, dot * inverseNorms[slot], n);
+        }
+        float[] scores = new float[best.size()];
+        int[] slots = best.drainBestFirst(scores);
+        List<Match> matches = new ArrayList<>(slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            matches.add(new Match(ids[slots[i]], scores[i]));
+        }
+        return matches;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    private static byte[][] encodeAll(float[][] vectors) {
+        byte[][] blobs = new byte[vectors.length][];
+        for (int i = 0; i < vectors.length; i++) {
+            blobs[i] = EmbeddingCodec.encode(VectorIndex.normalize(vectors[i]), EmbeddingCodec.Format.INT8);
+        }
+        return blobs;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.mobilecw.utils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Product quantization (Jegou et al., 2011): the vector is split into
+ * subspaces, and each sub-vector is replaced by the index of the nearest of 256
+ * centroids learned for that subspace with k-means. A vector then takes one byte
+ * per subspace.
+ *
+ * Queries stay in float. {@link #scoreTable} precomputes the dot product of each
+ * query sub-vector with every centroid once, after which scoring a vector is one
+ * table lookup and add per subspace ({@link #score}).
+ *
+ * The codebooks are dimension * 256 floats and are shared by every vector, so PQ
+ * only pays off for collections far larger than the codebooks; below that INT8
+ * in {@link EmbeddingCodec} is smaller in total and more accurate.
+ */
+public final class ProductQuantizer {
+
+    public static final int CENTROIDS = 256;
+    private static final int ITERATIONS = 12;
+
+    private final int dimension;
+    private final int subspaces;
+    private final int subDimension;
+    /** centroids[s] holds CENTROIDS sub-vectors of subDimension floats, row-major. */
+    private final float[][] centroids;
+
+    private ProductQuantizer(int dimension, int subspaces, float[][] centroids) {
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.subDimension = dimension / subspaces;
+        this.centroids = centroids;
+    }
+
+    /**
+     * Learn codebooks from sample vectors with k-means (seeded, so the same sample
+     * gives the same codebooks).
+     *
+     * @param subspaces bytes per encoded vector; must divide the dimension
+     */
+    public static ProductQuantizer train(float[][] sample, int subspaces, long seed) {
+        if (sample.length < CENTROIDS) {
+            throw new IllegalArgumentException("Need at least " + CENTROIDS + " sample vectors, got " + sample.length);
+        }
+        int dimension = sample[0].length;
+        if (subspaces <= 0 || dimension % subspaces != 0) {
+            throw new IllegalArgumentException(subspaces + " subspaces do not divide dimension " + dimension);
+        }
+        int subDimension = dimension / subspaces;
+        Random random = new Random(seed);
+        float[][] centroids = new float[subspaces][];
+        for (int s = 0; s < subspaces; s++) {
+            centroids[s] = kMeans(sample, s * subDimension, subDimension, random);
+        }
+        return new ProductQuantizer(dimension, subspaces, centroids);
+    }
+
+    public int getSubspaces() {
+        return subspaces;
+    }
+
+    /**
+     * One centroid index per subspace.
+     */
+    public byte[] encode(float[] vector) {
+        checkDimension(vector);
+        byte[] code = new byte[subspaces];
+        for (int s = 0; s < subspaces; s++) {
+            code[s] = (byte) nearest(centroids[s], vector, s * subDimension, subDimension);
+        }
+        return code;
+    }
+
+    public float[] decode(byte[] code) {
+        float[] vector = new float[dimension];
+        for (int s = 0; s < subspaces; s++) {
+            System.arraycopy(centroids[s], (code[s] & 0xFF) * subDimension, vector, s * subDimension, subDimension);
+        }
+        return vector;
+    }
+
+    /**
+     * Dot product of each query sub-vector with each centroid: subspaces * 256 floats.
+     */
+    public float[] scoreTable(float[] query) {
+        checkDimension(query);
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            float[] book = centroids[s];
+            for (int c = 0; c < CENTROIDS; c++) {
+                float dot = 0;
+                for (int d = 0; d < subDimension; d++) {
+                    dot += query[s * subDimension + d] * book[c * subDimension + d];
+                }
+                table[s * CENTROIDS + c] = dot;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Approximate dot product of the query behind table with the vector encoded at
+     * codes[offset, offset + subspaces).
+     */
+    public float score(float[] table, byte[] codes, int offset) {
+        float s0 = 0, s1 = 0;
+        int s = 0;
+        for (; s + 1 < subspaces; s += 2) {
+            s0 += table[s * CENTROIDS + (codes[offset + s] & 0xFF)];
+            s1 += table[(s + 1) * CENTROIDS + (codes[offset + s + 1] & 0xFF)];
+        }
+        if (s < subspaces) {
+            s0 += table[s * CENTROIDS + (codes[offset + s] & 0xFF)];
+        }
+        return s0 + s1;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector has dimension " + vector.length + ", expected " + dimension);
+        }
+    }
+
+    /**
+     * Lloyd's k-means on one subspace, seeded with distinct random samples.
+     */
+    private static float[] kMeans(float[][] sample, int from, int length, Random random) {
+        float[] book = new float[CENTROIDS * length];
+        int[] order = new int[sample.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int c = 0; c < CENTROIDS; c++) {
+            int pick = c + random.nextInt(order.length - c);
+            int chosen = order[pick];
+            order[pick] = order[c];
+            order[c] = chosen;
+            System.arraycopy(sample[chosen], from, book, c * length, length);
+        }
+        float[] sums = new float[CENTROIDS * length];
+        int[] counts = new int[CENTROIDS];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            Arrays.fill(sums, 0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < sample.length; i++) {
+                int c = nearest(book, sample[i], from, length);
+                counts[c]++;
+                for (int d = 0; d < length; d++) {
+                    sums[c * length + d] += sample[i][from + d];
+                }
+            }
+            for (int c = 0; c < CENTROIDS; c++) {
+                if (counts[c] == 0) {
+                    // Empty cluster: restart it on a random sample
+                    System.arraycopy(sample[random.nextInt(sample.length)], from, book, c * length, length);
+                    continue;
+                }
+                for (int d = 0; d < length; d++) {
+                    book[c * length + d] = sums[c * length + d] / counts[c];
+                }
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Centroid closest in Euclidean distance to vector[from, from + length).
+     */
+    private static int nearest(float[] book, float[] vector, int from, int length) {
+        int best = 0;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < CENTROIDS; c++) {
+            float distance = 0;
+            for (int d = 0; d < length; d++) {
+                float diff = vector[from + d] - book[c * length + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
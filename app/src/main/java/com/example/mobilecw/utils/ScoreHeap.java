@@ -0,0 +1,109 @@
+package com.example.mobilecw.utils;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (slot, score) pairs on primitive arrays, either worst-first
+ * (to keep the best n seen so far) or best-first (to expand candidates).
+ */
+final class ScoreHeap {
+
+    private final boolean worstFirst;
+    private int[] slots;
+    private float[] scores;
+    private int size;
+
+    ScoreHeap(int capacity, boolean worstFirst) {
+        this.worstFirst = worstFirst;
+        this.slots = new int[Math.max(capacity, 4)];
+        this.scores = new float[slots.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int topSlot() {
+        return slots[0];
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    void push(int slot, float score) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!above(score, scores[parent])) {
+                break;
+            }
+            slots[i] = slots[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        slots[i] = slot;
+        scores[i] = score;
+    }
+
+    void pop() {
+        int lastSlot = slots[--size];
+        float lastScore = scores[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && above(scores[child + 1], scores[child])) {
+                child++;
+            }
+            if (!above(scores[child], lastScore)) {
+                break;
+            }
+            slots[i] = slots[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        slots[i] = lastSlot;
+        scores[i] = lastScore;
+    }
+
+    /**
+     * Keep the best n of the scores offered so far; only for worst-first heaps.
+     */
+    void offer(int slot, float score, int n) {
+        if (size < n) {
+            push(slot, score);
+        } else if (score > scores[0]) {
+            pop();
+            push(slot, score);
+        }
+    }
+
+    /**
+     * Empty the heap into slots ordered best score first.
+     */
+    int[] drainBestFirst(float[] scoresOut) {
+        int[] ordered = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            int at = worstFirst ? i : ordered.length - 1 - i;
+            ordered[at] = slots[0];
+            if (scoresOut != null) {
+                scoresOut[at] = scores[0];
+            }
+            pop();
+        }
+        return ordered;
+    }
+
+    private boolean above(float a, float b) {
+        return worstFirst ? a < b : a > b;
+    }
+}
@@ -2,10 +2,13 @@ package com.example.mobilecw.utils;
 
 import com.example.mobilecw.database.entities.Hike;
 
+import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 /**
  * SearchHelper provides advanced search algorithms including:
@@ -16,7 +19,8 @@ import java.util.List;
  */
 public class SearchHelper {
     
-    private static final int FUZZY_THRESHOLD = 3; // Max edit distance for fuzzy match
+    static final int FUZZY_THRESHOLD = 3; // Max edit distance for fuzzy match
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
     
     /**
      * Search hikes with fuzzy matching and relevance scoring
@@ -120,7 +124,7 @@ public class SearchHelper {
         
         for (String nameWord : nameWords) {
             if (nameWord.length() >= 3) {
-                int distance = levenshteinDistance(nameWord, query);
+                int distance = levenshteinDistance(nameWord, query, FUZZY_THRESHOLD);
                 if (distance <= FUZZY_THRESHOLD) {
                     score += (FUZZY_THRESHOLD - distance) * 5;
                 }
@@ -129,7 +133,7 @@ public class SearchHelper {
         
         for (String locationWord : locationWords) {
             if (locationWord.length() >= 3) {
-                int distance = levenshteinDistance(locationWord, query);
+                int distance = levenshteinDistance(locationWord, query, FUZZY_THRESHOLD);
                 if (distance <= FUZZY_THRESHOLD) {
                     score += (FUZZY_THRESHOLD - distance) * 4;
                 }
@@ -139,53 +143,100 @@ public class SearchHelper {
         return score;
     }
     
+    /**
+     * Canonical form of a free-text query for caching: Unicode-normalized, lower
+     * case, punctuation dropped and whitespace collapsed, so "Lake trail?" and
+     * "  lake  TRAIL" share one cache entry.
+     */
+    public static String normalizeQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return NON_WORD.matcher(normalized).replaceAll(" ").trim();
+    }
+    
     /**
      * Calculate Levenshtein distance (edit distance) between two strings
      * This measures how many single-character edits are needed to change one word into another
+     *
+     * Uses two rows of the distance matrix (reused per thread) instead of a full matrix.
      */
     public static int levenshteinDistance(String s1, String s2) {
+        return levenshteinDistance(s1, s2, Integer.MAX_VALUE - 1);
+    }
+    
+    /**
+     * Bounded Levenshtein distance with early exit.
+     * Returns the exact distance if it is at most maxDistance, otherwise maxDistance + 1.
+     * Does not allocate once the per-thread row buffers are large enough.
+     */
+    public static int levenshteinDistance(String s1, String s2, int maxDistance) {
         int len1 = s1.length();
         int len2 = s2.length();
         
         // If one string is empty, distance is length of the other
-        if (len1 == 0) return len2;
-        if (len2 == 0) return len1;
+        if (len1 == 0) return Math.min(len2, maxDistance + 1);
+        if (len2 == 0) return Math.min(len1, maxDistance + 1);
+        // Length difference alone already exceeds the bound
+        if (Math.abs(len1 - len2) > maxDistance) return maxDistance + 1;
         
-        // Create distance matrix
-        int[][] dp = new int[len1 + 1][len2 + 1];
-        
-        // Initialize first row and column
-        for (int i = 0; i <= len1; i++) {
-            dp[i][0] = i;
+        int[][] rows = ROW_BUFFERS.get();
+        if (rows[0].length <= len2) {
+            rows[0] = new int[len2 + 1];
+            rows[1] = new int[len2 + 1];
         }
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        
+        // Initialize first row
         for (int j = 0; j <= len2; j++) {
-            dp[0][j] = j;
+            previous[j] = j;
         }
         
-        // Fill the matrix
+        // Fill row by row, keeping only the previous one
         for (int i = 1; i <= len1; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char c1 = s1.charAt(i - 1);
             for (int j = 1; j <= len2; j++) {
-                int cost = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
+                int cost = (c1 == s2.charAt(j - 1)) ? 0 : 1;
                 
-                dp[i][j] = Math.min(
+                int value = Math.min(
                     Math.min(
-                        dp[i - 1][j] + 1,      // deletion
-                        dp[i][j - 1] + 1       // insertion
+                        previous[j] + 1,      // deletion
+                        current[j - 1] + 1    // insertion
                     ),
-                    dp[i - 1][j - 1] + cost    // substitution
+                    previous[j - 1] + cost    // substitution
                 );
+                current[j] = value;
+                if (value < rowMin) rowMin = value;
             }
+            // Every later row is at least the minimum of this one
+            if (rowMin > maxDistance) return maxDistance + 1;
+            
+            int[] swap = previous;
+            previous = current;
+            current = swap;
         }
         
-        return dp[len1][len2];
+        return Math.min(previous[len2], maxDistance + 1);
     }
     
+    // Two reusable matrix rows per thread for levenshteinDistance
+    private static final ThreadLocal<int[][]> ROW_BUFFERS = new ThreadLocal<int[][]>() {
+        @Override
+        protected int[][] initialValue() {
+            return new int[][]{new int[32], new int[32]};
+        }
+    };
+    
     /**
      * Check if two strings are similar based on fuzzy matching
      */
     public static boolean isFuzzyMatch(String s1, String s2, int threshold) {
         if (s1 == null || s2 == null) return false;
-        return levenshteinDistance(s1.toLowerCase(), s2.toLowerCase()) <= threshold;
+        return levenshteinDistance(s1.toLowerCase(), s2.toLowerCase(), threshold) <= threshold;
     }
     
     /**
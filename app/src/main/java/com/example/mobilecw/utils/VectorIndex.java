@@ -0,0 +1,79 @@
+package com.example.mobilecw.utils;
+
+import java.util.List;
+
+/**
+ * Nearest-neighbour index over embedding vectors, ranked by cosine similarity.
+ *
+ * Vectors are L2-normalized when added, so similarity is a plain dot product.
+ * Implementations are immutable once built and safe to query from any thread.
+ */
+public interface VectorIndex {
+
+    /** Below this size an exact scan is both faster to build and fast enough to query. */
+    int HNSW_THRESHOLD = 5000;
+
+    final class Match {
+        public final int id;
+        public final float score;
+
+        public Match(int id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    /**
+     * The k vectors most similar to the query, best first.
+     */
+    List<Match> search(float[] query, int k);
+
+    int size();
+
+    /**
+     * Exact scan for small sets, HNSW for large ones.
+     *
+     * @param ids     caller's id for each vector, returned in {@link Match#id}
+     * @param vectors vectors of equal dimension; not modified
+     */
+    static VectorIndex build(int[] ids, float[][] vectors) {
+        return ids.length < HNSW_THRESHOLD
+                ? new BruteForceVectorIndex(ids, vectors)
+                : new HnswVectorIndex(ids, vectors);
+    }
+
+    /**
+     * Like {@link #build(int[], float[][])} for vectors encoded with
+     * {@link EmbeddingCodec}: small sets are scanned in INT8 form without decoding,
+     * large ones are decoded into HNSW.
+     */
+    static VectorIndex build(int[] ids, byte[][] blobs) {
+        if (ids.length < HNSW_THRESHOLD) {
+            return new Int8VectorIndex(ids, blobs);
+        }
+        float[][] vectors = new float[blobs.length][];
+        for (int i = 0; i < blobs.length; i++) {
+            vectors[i] = EmbeddingCodec.decode(blobs[i]);
+        }
+        return new HnswVectorIndex(ids, vectors);
+    }
+
+    /**
+     * Unit-length copy of the vector; the zero vector stays zero.
+     */
+    static float[] normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        float[] normalized = new float[vector.length];
+        if (sum == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+}
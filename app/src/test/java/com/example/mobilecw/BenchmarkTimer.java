@@ -0,0 +1,58 @@
+package com.example.mobilecw;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Minimal timing harness for Robolectric-hosted benchmarks.
+ *
+ * JMH cannot run against Android classes on the JVM, so these benchmarks use a
+ * warmup phase followed by measured runs and report the median. Numbers are for
+ * spotting regressions between commits, not absolute on-device latency.
+ *
+ * Plain test runs stay quiet and run each block once, so the queries are still
+ * exercised. Pass -Pbenchmark=true to gradle to time and print the numbers.
+ */
+public final class BenchmarkTimer {
+
+    /** Set by the benchmark gradle property, see app/build.gradle.kts. */
+    public static final boolean ENABLED = Boolean.getBoolean("benchmark");
+
+    private static final int WARMUP_RUNS = 5;
+
+    private BenchmarkTimer() {
+    }
+
+    /**
+     * Run the block warmup + measured times and print the median duration.
+     * When benchmarks are off the block runs once and that run is returned.
+     * @return median nanoseconds per run
+     */
+    public static long measure(String label, int runs, Runnable block) {
+        if (!ENABLED) {
+            long start = System.nanoTime();
+            block.run();
+            return System.nanoTime() - start;
+        }
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            block.run();
+        }
+        long[] samples = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            block.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        long median = samples[runs / 2];
+        report("%-45s median %,10d ns (p90 %,d ns, n=%d)", label, median, samples[(int) (runs * 0.9)], runs);
+        return median;
+    }
+
+    /** Print one formatted benchmark line, only when benchmarks are on. */
+    public static void report(String format, Object... args) {
+        if (ENABLED) {
+            System.out.println("[benchmark] " + String.format(Locale.ROOT, format, args));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mobilecw.adapters;
+
+import com.example.mobilecw.database.entities.Hike;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class HikeDiffCallbackTest {
+
+    private final HikeDiffCallback callback = HikeDiffCallback.INSTANCE;
+
+    @Test
+    public void startingAHikeOnlyRebindsTheBadge() {
+        Hike before = hike(1);
+        Hike after = hike(1);
+        after.setIsActive(true);
+        after.setUpdatedAt(before.getUpdatedAt() + 1000);
+
+        assertTrue(callback.areItemsTheSame(before, after));
+        assertFalse(callback.areContentsTheSame(before, after));
+        assertSame(HikeDiffCallback.PAYLOAD_ACTIVE, callback.getChangePayload(before, after));
+    }
+
+    @Test
+    public void editedFieldsRebindTheWholeCard() {
+        Hike before = hike(1);
+        Hike after = hike(1);
+        after.setName("Snowdon via Crib Goch");
+        after.setIsActive(true);
+
+        assertFalse(callback.areContentsTheSame(before, after));
+        assertNull(callback.getChangePayload(before, after));
+    }
+
+    @Test
+    public void unshownChangesAreNotRedrawn() {
+        Hike before = hike(1);
+        Hike after = hike(1);
+        after.setDescription("Take a head torch");
+        after.setUpdatedAt(before.getUpdatedAt() + 1000);
+
+        assertTrue(callback.areContentsTheSame(before, after));
+        assertFalse(callback.areItemsTheSame(before, hike(2)));
+    }
+
+    private static Hike hike(int id) {
+        Hike hike = new Hike("Snowdon Ridge", "Eryri", new Date(1700000000000L), true, 9.5, "Hard",
+                "Exposed ridge walk", null);
+        hike.setHikeID(id);
+        hike.setUpdatedAt(1700000000000L);
+        return hike;
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.mobilecw.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.dao.SyncStateDao;
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.Observation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * The trigger-maintained dirty-row counters must agree with the user-scoped
+ * dirty-row queries that sync uploads from.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DirtyRowCountTest {
+
+    private static final int USER_ID = 1;
+    private static final int NO_USER = -1;
+
+    private AppDatabase database;
+    private HikeDao hikeDao;
+    private ObservationDao observationDao;
+    private SyncStateDao syncStateDao;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .addCallback(AppDatabase.DIRTY_ROW_TRIGGERS)
+                .build();
+        hikeDao = database.hikeDao();
+        observationDao = database.observationDao();
+        syncStateDao = database.syncStateDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void countsNewRowsPerUser() {
+        // insertHike is a REPLACE insert, which must not reset the counter row it adds to
+        insertHike(1, USER_ID);
+        insertHike(2, USER_ID);
+        insertHike(3, null);
+        insertObservation(1, 1);
+        insertObservation(2, 3);
+
+        assertEquals(3, syncStateDao.getPendingRowCount(USER_ID));
+        assertEquals(2, syncStateDao.getPendingRowCount(NO_USER));
+        assertEquals(2, hikeDao.getUnsyncedHikesByUserId(USER_ID).size());
+        assertEquals(1, observationDao.getUnsyncedObservationsByUserId(USER_ID).size());
+    }
+
+    @Test
+    public void markingSyncedDrainsTheCounter() {
+        insertHike(1, USER_ID);
+        insertHike(2, USER_ID);
+        insertObservation(1, 1);
+
+        for (Hike hike : hikeDao.getUnsyncedHikesByUserId(USER_ID)) {
+            assertEquals(1, hikeDao.markHikeAsSyncedIfUnchanged(hike.getHikeID(), hike.getUpdatedAt()));
+        }
+        Observation observation = observationDao.getObservationById(1);
+        assertEquals(1, observationDao.markObservationAsSyncedIfUnchanged(1, observation.getUpdatedAt()));
+
+        assertEquals(0, syncStateDao.getPendingRowCount(USER_ID));
+        assertTrue(hikeDao.getUnsyncedHikesByUserId(USER_ID).isEmpty());
+    }
+
+    @Test
+    public void editDuringUploadKeepsTheRowDirty() {
+        insertHike(1, USER_ID);
+        insertObservation(1, 1);
+        Hike uploaded = hikeDao.getHikeById(1);
+        Observation uploadedObservation = observationDao.getObservationById(1);
+
+        // Edited after the upload snapshot was taken, before its batch committed
+        Hike edited = hikeDao.getHikeById(1);
+        edited.setName("Renamed");
+        edited.setUpdatedAt(uploaded.getUpdatedAt() + 1);
+        hikeDao.updateHike(edited);
+        Observation editedObservation = observationDao.getObservationById(1);
+        editedObservation.setComments("Muddy");
+        editedObservation.setUpdatedAt(uploadedObservation.getUpdatedAt() + 1);
+        observationDao.updateObservation(editedObservation);
+
+        assertEquals(0, hikeDao.markHikeAsSyncedIfUnchanged(1, uploaded.getUpdatedAt()));
+        assertEquals(0, observationDao.markObservationAsSyncedIfUnchanged(1, uploadedObservation.getUpdatedAt()));
+
+        assertEquals(2, syncStateDao.getPendingRowCount(USER_ID));
+        assertEquals("Renamed", hikeDao.getUnsyncedHikesByUserId(USER_ID).get(0).getName());
+    }
+
+    @Test
+    public void deactivationDuringUploadKeepsTheHikeDirty() {
+        insertHike(1, USER_ID);
+        Hike inserted = hikeDao.getHikeById(1);
+        hikeDao.startHike(1, inserted.getUpdatedAt(), inserted.getUpdatedAt() + 1);
+        Hike uploaded = hikeDao.getHikeById(1);
+
+        // Another hike was started after the upload snapshot was taken
+        hikeDao.deactivateAllHikes(uploaded.getUpdatedAt() + 1);
+
+        assertEquals(0, hikeDao.markHikeAsSyncedIfUnchanged(1, uploaded.getUpdatedAt()));
+        Hike dirty = hikeDao.getUnsyncedHikesByUserId(USER_ID).get(0);
+        assertFalse(dirty.getIsActive());
+        assertEquals(Long.valueOf(uploaded.getUpdatedAt() + 1), dirty.getUpdatedAt());
+    }
+
+    @Test
+    public void editingASyncedRowMakesItDirtyAgain() {
+        insertHike(1, USER_ID);
+        hikeDao.markHikeAsSynced(1);
+
+        Hike hike = hikeDao.getHikeById(1);
+        hike.setName("Renamed");
+        hike.setSynced(false);
+        hikeDao.updateHike(hike);
+
+        assertEquals(1, syncStateDao.getPendingRowCount(USER_ID));
+    }
+
+    @Test
+    public void migratingHikesToAUserMovesTheirObservations() {
+        insertHike(1, null);
+        insertObservation(1, 1);
+        insertObservation(2, 1);
+
+        hikeDao.migrateHikesToUser(USER_ID, System.currentTimeMillis());
+
+        assertEquals(3, syncStateDao.getPendingRowCount(USER_ID));
+        assertEquals(0, syncStateDao.getPendingRowCount(NO_USER));
+    }
+
+    @Test
+    public void recountRepairsDriftFromReplace() {
+        insertHike(1, USER_ID);
+        // REPLACE deletes the old row without firing the delete trigger, so it is counted twice
+        insertHike(1, USER_ID);
+        assertEquals(2, syncStateDao.getPendingRowCount(USER_ID));
+
+        syncStateDao.recountPendingRows(USER_ID);
+
+        assertEquals(1, syncStateDao.getPendingRowCount(USER_ID));
+    }
+
+    private void insertHike(int id, Integer userId) {
+        Hike hike = new Hike("Hike " + id, "Park", new Date(), false, 5, "Easy", "", "");
+        hike.setHikeID(id);
+        hike.setUserId(userId);
+        hikeDao.insertHike(hike);
+    }
+
+    private void insertObservation(int id, int hikeId) {
+        Observation observation = new Observation("Observation " + id, new Date(), null, hikeId);
+        observation.setObservationID(id);
+        observationDao.insertObservation(observation);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.mobilecw.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.mobilecw.BenchmarkTimer;
+import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.dao.HikeStatsDao;
+import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.utils.FtsSearchHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Robolectric-hosted benchmarks for the HikeDao/ObservationDao query paths used by
+ * the list, search, stats and sync screens.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HikeDaoBenchmarkTest {
+
+    private static final int HIKE_COUNT = 2000;
+    private static final int OBSERVATIONS_PER_HIKE = 5;
+    private static final int USER_ID = 1;
+    private static final int RUNS = 30;
+
+    private AppDatabase database;
+    private HikeDao hikeDao;
+    private ObservationDao observationDao;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        hikeDao = database.hikeDao();
+        observationDao = database.observationDao();
+
+        Random random = new Random(7);
+        String[] names = {"Mountain", "Forest", "River", "Ridge", "Summit", "Lake"};
+        String[] difficulties = {"Easy", "Medium", "Hard"};
+        List<Hike> hikes = new ArrayList<>();
+        for (int i = 1; i <= HIKE_COUNT; i++) {
+            Hike hike = new Hike(names[random.nextInt(names.length)] + " Trail " + i, "Park " + (i % 50),
+                    new Date(1700000000000L + i * 3600000L), random.nextBoolean(), 1 + random.nextInt(25),
+                    difficulties[random.nextInt(difficulties.length)], "Synthetic hike " + i, "");
+            hike.setHikeID(i);
+            hike.setUserId(i % 4 == 0 ? null : USER_ID);
+            hike.setSynced(random.nextInt(10) != 0);
+            hikes.add(hike);
+        }
+        hikeDao.insertAllHikes(hikes);
+
+        List<Observation> observations = new ArrayList<>();
+        for (int i = 1; i <= HIKE_COUNT; i++) {
+            for (int j = 0; j < OBSERVATIONS_PER_HIKE; j++) {
+                observations.add(new Observation("Saw a deer near marker " + j, new Date(), null, i));
+            }
+        }
+        observationDao.insertAllObservations(observations);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void hikeListQueries() {
+        BenchmarkTimer.measure("getHikesByUserId", RUNS, () -> hikeDao.getHikesByUserId(USER_ID));
+        BenchmarkTimer.measure("getHikesForNonRegisteredUsers", RUNS, () -> hikeDao.getHikesForNonRegisteredUsers());
+        BenchmarkTimer.measure("getAllHikes", RUNS, () -> hikeDao.getAllHikes());
+        BenchmarkTimer.measure("getActiveHike", RUNS, () -> hikeDao.getActiveHike());
+        assertFalse(hikeDao.getHikesByUserId(USER_ID).isEmpty());
+    }
+
+    @Test
+    public void searchQueries() {
+        BenchmarkTimer.measure("searchHikesByName (LIKE)", RUNS, () -> hikeDao.searchHikesByName("%summit%"));
+        BenchmarkTimer.measure("advancedSearch (LIKE)", RUNS, () ->
+                hikeDao.advancedSearch("%trail%", "%park%", 5, 20, 0, Long.MAX_VALUE));
+        String matchQuery = FtsSearchHelper.toMatchQuery("summit");
+        BenchmarkTimer.measure("searchHikesFts + BM25", RUNS, () ->
+                FtsSearchHelper.rankHikes(hikeDao.searchHikesFts(matchQuery)));
+    }
+
+    @Test
+    public void statsQueries() {
+        HikeStatsDao statsDao = database.hikeStatsDao();
+        BenchmarkTimer.measure("HikeStatsDao.getStats", RUNS, () -> statsDao.getStats(USER_ID));
+        BenchmarkTimer.measure("HikeStatsDao.getMonthlyStatsForUser", RUNS, () -> statsDao.getMonthlyStatsForUser(USER_ID, 0));
+        assertEquals(hikeDao.getHikesByUserId(USER_ID).size(), statsDao.getStats(USER_ID).hikeCount);
+    }
+
+    @Test
+    public void syncQueries() {
+        BenchmarkTimer.measure("getUnsyncedHikes", RUNS, () -> hikeDao.getUnsyncedHikes());
+        BenchmarkTimer.measure("getUnsyncedObservations", RUNS, () -> observationDao.getUnsyncedObservations());
+        BenchmarkTimer.measure("getAllHikesByUserIdIncludingDeleted", RUNS, () ->
+                hikeDao.getAllHikesByUserIdIncludingDeleted(USER_ID));
+    }
+
+    @Test
+    public void observationQueries() {
+        BenchmarkTimer.measure("getObservationsByHikeId", RUNS, () -> observationDao.getObservationsByHikeId(HIKE_COUNT / 2));
+        assertEquals(OBSERVATIONS_PER_HIKE, observationDao.getObservationsByHikeId(HIKE_COUNT / 2).size());
+    }
+}
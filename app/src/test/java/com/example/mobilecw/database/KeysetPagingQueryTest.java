@@ -0,0 +1,206 @@
+package com.example.mobilecw.database;
+
+import android.content.Context;
+
+import androidx.paging.PagingSource;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.dao.ObservationDao;
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.Observation;
+import com.example.mobilecw.database.paging.KeysetPagingSource;
+import com.example.mobilecw.database.paging.ObservationPagingSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Walking the keyset page queries must visit every row exactly once, in the
+ * same order as the full-list queries, including date ties and rows without a date or time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class KeysetPagingQueryTest {
+
+    private static final int USER_ID = 1;
+    private static final int PAGE_SIZE = 7;
+
+    private AppDatabase database;
+    private HikeDao hikeDao;
+    private ObservationDao observationDao;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        hikeDao = database.hikeDao();
+        observationDao = database.observationDao();
+
+        List<Hike> hikes = new ArrayList<>();
+        for (int i = 1; i <= 60; i++) {
+            // Every third hike shares a date with its neighbour, every tenth has none
+            Date date = i % 10 == 0 ? null : new Date(1700000000000L + (i / 3) * 86400000L);
+            Hike hike = new Hike("Hike " + i, "Park", date, false, 5, "Easy", "", "");
+            hike.setHikeID(i);
+            hike.setUserId(i % 4 == 0 ? null : USER_ID);
+            hikes.add(hike);
+        }
+        hikeDao.insertAllHikes(hikes);
+
+        List<Observation> observations = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            Observation observation = new Observation("Observation " + i,
+                    new Date(1700000000000L + (i / 4) * 60000L), null, 1);
+            observation.setObservationID(i);
+            if (i % 9 == 0) {
+                // Firestore downloads can store observations without a time
+                observation.setTime(null);
+            }
+            observations.add(observation);
+        }
+        observationDao.insertAllObservations(observations);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void hikePagesMatchFullListForUser() {
+        List<Hike> paged = new ArrayList<>();
+        Long beforeDate = Long.MAX_VALUE;
+        int beforeId = Integer.MAX_VALUE;
+        List<Hike> page;
+        do {
+            page = hikeDao.getHikePageByUserId(USER_ID, beforeDate, beforeId, PAGE_SIZE);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                Hike last = page.get(page.size() - 1);
+                beforeDate = last.getDate() != null ? last.getDate().getTime() : null;
+                beforeId = last.getHikeID();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        assertEquals(ids(hikeDao.getHikesByUserId(USER_ID)).size(), paged.size());
+        assertEquals(sortedIds(hikeDao.getHikesByUserId(USER_ID)), sortedIds(paged));
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue("page order broken at " + i, comesBefore(paged.get(i - 1), paged.get(i)));
+        }
+    }
+
+    @Test
+    public void hikePagesMatchFullListForNonRegisteredUsers() {
+        List<Hike> paged = new ArrayList<>();
+        Long beforeDate = Long.MAX_VALUE;
+        int beforeId = Integer.MAX_VALUE;
+        List<Hike> page;
+        do {
+            page = hikeDao.getHikePageForNonRegisteredUsers(beforeDate, beforeId, PAGE_SIZE);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                Hike last = page.get(page.size() - 1);
+                beforeDate = last.getDate() != null ? last.getDate().getTime() : null;
+                beforeId = last.getHikeID();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        assertEquals(sortedIds(hikeDao.getHikesForNonRegisteredUsers()), sortedIds(paged));
+        assertNull("hikes without a date sort last", paged.get(paged.size() - 1).getDate());
+    }
+
+    @Test
+    public void observationPagesMatchFullList() {
+        List<Observation> paged = new ArrayList<>();
+        Long beforeTime = Long.MAX_VALUE;
+        int beforeId = Integer.MAX_VALUE;
+        List<Observation> page;
+        do {
+            page = observationDao.getObservationPageByHikeId(1, beforeTime, beforeId, PAGE_SIZE);
+            paged.addAll(page);
+            if (!page.isEmpty()) {
+                Observation last = page.get(page.size() - 1);
+                beforeTime = last.getTime() != null ? last.getTime().getTime() : null;
+                beforeId = last.getObservationID();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        assertEquals(40, paged.size());
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue("page order broken at " + i, comesBefore(paged.get(i - 1), paged.get(i)));
+        }
+        assertNull("observations without a time sort last", paged.get(paged.size() - 1).getTime());
+    }
+
+    @Test
+    public void observationPagingSourceContinuesPastRowsWithoutATime() throws Exception {
+        ObservationPagingSource source = new ObservationPagingSource(database, 1);
+        List<Integer> pagedIds = new ArrayList<>();
+        PagingSource.LoadParams<KeysetPagingSource.Key> params =
+                new PagingSource.LoadParams.Refresh<>(null, PAGE_SIZE, false);
+        KeysetPagingSource.Key nextKey;
+        do {
+            PagingSource.LoadResult.Page<KeysetPagingSource.Key, Observation> page =
+                    (PagingSource.LoadResult.Page<KeysetPagingSource.Key, Observation>) source.loadFuture(params).get();
+            for (Observation observation : page.getData()) {
+                pagedIds.add(observation.getObservationID());
+            }
+            nextKey = page.getNextKey();
+            params = new PagingSource.LoadParams.Append<>(nextKey, PAGE_SIZE, false);
+        } while (nextKey != null);
+
+        assertEquals(40, pagedIds.size());
+        assertEquals(40, new HashSet<>(pagedIds).size());
+    }
+
+    private static boolean comesBefore(Observation a, Observation b) {
+        if (a.getTime() == null) {
+            return b.getTime() == null && a.getObservationID() > b.getObservationID();
+        }
+        if (b.getTime() == null) {
+            return true;
+        }
+        long ta = a.getTime().getTime();
+        long tb = b.getTime().getTime();
+        return ta > tb || (ta == tb && a.getObservationID() > b.getObservationID());
+    }
+
+    private static boolean comesBefore(Hike a, Hike b) {
+        if (a.getDate() == null) {
+            return b.getDate() == null && a.getHikeID() > b.getHikeID();
+        }
+        if (b.getDate() == null) {
+            return true;
+        }
+        long da = a.getDate().getTime();
+        long db = b.getDate().getTime();
+        return da > db || (da == db && a.getHikeID() > b.getHikeID());
+    }
+
+    private static List<Integer> ids(List<Hike> hikes) {
+        List<Integer> ids = new ArrayList<>();
+        for (Hike hike : hikes) {
+            ids.add(hike.getHikeID());
+        }
+        return ids;
+    }
+
+    private static List<Integer> sortedIds(List<Hike> hikes) {
+        List<Integer> ids = ids(hikes);
+        ids.sort(null);
+        return ids;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.mobilecw.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.mobilecw.database.dao.MediaTransferDao;
+import com.example.mobilecw.database.entities.MediaTransfer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The photo upload queue: one row per remote name, progress kept across
+ * re-enqueues, transfers past their attempt budget left out until retried.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MediaTransferDaoTest {
+
+    private static final String UID = "uid-1";
+    private static final int MAX_ATTEMPTS = 3;
+
+    private AppDatabase database;
+    private MediaTransferDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = database.mediaTransferDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void enqueueingTheSamePhotoAgainKeepsItsSession() {
+        dao.enqueue(new MediaTransfer(UID, "abc.jpg", "/photos/1.jpg", 1000, 1));
+        dao.updateProgress(UID, "abc.jpg", "https://upload/session", 512);
+
+        dao.enqueue(new MediaTransfer(UID, "abc.jpg", "/photos/2.jpg", 1000, 2));
+
+        List<MediaTransfer> pending = dao.getPendingTransfers(UID, MAX_ATTEMPTS);
+        assertEquals(1, pending.size());
+        assertEquals("/photos/1.jpg", pending.get(0).getLocalPath());
+        assertEquals("https://upload/session", pending.get(0).getSessionUri());
+        assertEquals(512, pending.get(0).getBytesTransferred());
+    }
+
+    @Test
+    public void pendingTransfersAreOldestFirstAndPerUser() {
+        dao.enqueue(new MediaTransfer(UID, "b.jpg", "/photos/b.jpg", 10, 20));
+        dao.enqueue(new MediaTransfer(UID, "a.jpg", "/photos/a.jpg", 10, 10));
+        dao.enqueue(new MediaTransfer("uid-2", "c.jpg", "/photos/c.jpg", 10, 5));
+
+        List<MediaTransfer> pending = dao.getPendingTransfers(UID, MAX_ATTEMPTS);
+
+        assertEquals(2, pending.size());
+        assertEquals("a.jpg", pending.get(0).getRemoteName());
+        assertEquals("b.jpg", pending.get(1).getRemoteName());
+        assertEquals(2, dao.countPendingTransfers(UID, MAX_ATTEMPTS));
+    }
+
+    @Test
+    public void failuresCountTowardsTheAttemptBudget() {
+        dao.enqueue(new MediaTransfer(UID, "a.jpg", "/photos/a.jpg", 10, 1));
+        dao.updateProgress(UID, "a.jpg", "https://upload/session", 5);
+
+        dao.recordFailure(UID, "a.jpg", null);
+        MediaTransfer transfer = dao.getPendingTransfers(UID, MAX_ATTEMPTS).get(0);
+        assertEquals(1, transfer.getAttempts());
+        assertNull("a rejected session is not resumed", transfer.getSessionUri());
+
+        dao.recordFailure(UID, "a.jpg", null);
+        dao.recordFailure(UID, "a.jpg", null);
+        assertEquals(0, dao.countPendingTransfers(UID, MAX_ATTEMPTS));
+
+        dao.deleteTransfer(UID, "a.jpg");
+        assertEquals(0, dao.countPendingTransfers(UID, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void retryExhaustedOnlyResetsTransfersPastTheBudget() {
+        dao.enqueue(new MediaTransfer(UID, "a.jpg", "/photos/a.jpg", 10, 1));
+        dao.enqueue(new MediaTransfer(UID, "b.jpg", "/photos/b.jpg", 10, 2));
+        dao.updateProgress(UID, "b.jpg", "https://upload/b", 5);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            dao.recordFailure(UID, "a.jpg", "https://upload/a");
+        }
+        dao.recordFailure(UID, "b.jpg", "https://upload/b");
+        assertEquals(1, dao.countPendingTransfers(UID, MAX_ATTEMPTS));
+
+        dao.retryExhausted(UID, "a.jpg", MAX_ATTEMPTS);
+        dao.retryExhausted(UID, "b.jpg", MAX_ATTEMPTS);
+
+        List<MediaTransfer> pending = dao.getPendingTransfers(UID, MAX_ATTEMPTS);
+        assertEquals(2, pending.size());
+        assertEquals(0, pending.get(0).getAttempts());
+        assertNull("an exhausted transfer starts a new session", pending.get(0).getSessionUri());
+        assertEquals(0, pending.get(0).getBytesTransferred());
+        assertEquals("a transfer still within budget is left alone", 1, pending.get(1).getAttempts());
+        assertEquals("https://upload/b", pending.get(1).getSessionUri());
+        assertEquals(5, pending.get(1).getBytesTransferred());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.mobilecw.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.mobilecw.database.dao.HikeDao;
+import com.example.mobilecw.database.dao.HikeStatsDao;
+import com.example.mobilecw.database.dao.ObservationDao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * EXPLAIN QUERY PLAN checks for the hot DAO queries.
+ *
+ * The SQL is captured from the DAO calls themselves through Room's query callback,
+ * so the assertions follow the queries as they change.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryPlanTest {
+
+    private static final String HIKES_BY_USER = "index_hikes_userId_date_deleted";
+    private static final String HIKES_SYNCED = "index_hikes_synced";
+    private static final String HIKES_DIRTY_BY_USER = "index_hikes_userId_synced";
+    private static final String HIKES_ACTIVE = "index_hikes_isActive";
+    private static final String OBSERVATIONS_BY_HIKE = "index_observations_hikeId_time_deleted";
+    private static final String OBSERVATIONS_SYNCED = "index_observations_synced";
+
+    private AppDatabase database;
+    private HikeDao hikeDao;
+    private HikeStatsDao hikeStatsDao;
+    private ObservationDao observationDao;
+
+    private final List<CapturedQuery> captured = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .setQueryCallback((sql, args) -> captured.add(new CapturedQuery(sql, args)), Runnable::run)
+                .build();
+        hikeDao = database.hikeDao();
+        hikeStatsDao = database.hikeStatsDao();
+        observationDao = database.observationDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void hikeListQueriesUseUserIndex() {
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getHikesByUserId(1));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getHikesForNonRegisteredUsers());
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getRecentHikesByUserId(1, 3));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getRecentHikesForNonRegisteredUsers(3));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getHikePageByUserId(1, 1700000000000L, 10, 30));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getHikePageForNonRegisteredUsers(null, 10, 30));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getHikeIdsByUserId(1));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getHikeIdsForNonRegisteredUsers());
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.getAllHikesByUserIdIncludingDeleted(1));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeDao.migrateHikesToUser(1, 0L));
+    }
+
+    @Test
+    public void hikeListQueriesNeedNoFullSort() {
+        // Rows come out of the index in date order; at most ties on date are sorted
+        assertNoFullSort(() -> hikeDao.getHikesByUserId(1));
+        assertNoFullSort(() -> hikeDao.getRecentHikesForNonRegisteredUsers(3));
+        assertNoFullSort(() -> hikeDao.getHikePageByUserId(1, 1700000000000L, 10, 30));
+        assertNoFullSort(() -> observationDao.getObservationsByHikeId(1));
+        assertNoFullSort(() -> observationDao.getObservationPageByHikeId(1, 1700000000000L, 10, 30));
+    }
+
+    @Test
+    public void statsQueriesUseUserIndex() {
+        assertUsesIndex(HIKES_BY_USER, () -> hikeStatsDao.getStatsForUser(1, 0L, 1L));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeStatsDao.getStatsForNonRegisteredUsers(0L, 1L));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeStatsDao.getMonthlyStatsForUser(1, 0L));
+        assertUsesIndex(HIKES_BY_USER, () -> hikeStatsDao.getMonthlyStatsForNonRegisteredUsers(0L));
+    }
+
+    @Test
+    public void syncAndActiveQueriesUseTheirIndexes() {
+        assertUsesIndex(HIKES_SYNCED, () -> hikeDao.getUnsyncedHikes());
+        assertUsesIndex(HIKES_ACTIVE, () -> hikeDao.getActiveHike());
+        assertUsesIndex(HIKES_ACTIVE, () -> hikeDao.deactivateAllHikes(1L));
+        assertUsesIndex(OBSERVATIONS_SYNCED, () -> observationDao.getUnsyncedObservations());
+    }
+
+    @Test
+    public void userScopedDirtyRowQueriesOnlyReadDirtyRows() {
+        assertUsesIndex(HIKES_DIRTY_BY_USER, () -> hikeDao.getUnsyncedHikesByUserId(1));
+        assertUsesIndex(OBSERVATIONS_SYNCED, () -> observationDao.getUnsyncedObservationsByUserId(1));
+    }
+
+    @Test
+    public void observationQueriesUseHikeIndex() {
+        assertUsesIndex(OBSERVATIONS_BY_HIKE, () -> observationDao.getObservationsByHikeId(1));
+        assertUsesIndex(OBSERVATIONS_BY_HIKE, () -> observationDao.getObservationPageByHikeId(1, 1700000000000L, 10, 30));
+        assertUsesIndex(OBSERVATIONS_BY_HIKE, () -> observationDao.softDeleteObservationsByHikeId(1, 0L, 0L));
+    }
+
+    private void assertUsesIndex(String indexName, Runnable daoCall) {
+        String plan = planOf(daoCall);
+        assertTrue("expected " + indexName + " in plan:\n" + plan, plan.contains(indexName));
+        assertFalse("full scan in plan:\n" + plan, plan.matches("(?s).*SCAN (TABLE )?(hikes|observations)\\b(?! USING).*"));
+    }
+
+    private void assertNoFullSort(Runnable daoCall) {
+        String plan = planOf(daoCall);
+        assertFalse("sort over all rows in plan:\n" + plan, plan.contains("USE TEMP B-TREE FOR ORDER BY"));
+    }
+
+    /**
+     * Run the DAO call, then EXPLAIN the last statement it issued.
+     */
+    private String planOf(Runnable daoCall) {
+        captured.clear();
+        daoCall.run();
+        CapturedQuery query = null;
+        synchronized (captured) {
+            for (CapturedQuery candidate : captured) {
+                String sql = candidate.sql.trim().toUpperCase();
+                if (sql.startsWith("SELECT") || sql.startsWith("UPDATE") || sql.startsWith("DELETE")) {
+                    query = candidate;
+                }
+            }
+        }
+        assertNotNull("no statement captured", query);
+
+        SupportSQLiteDatabase db = database.getOpenHelper().getReadableDatabase();
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + query.sql, query.args.toArray())) {
+            int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static final class CapturedQuery {
+        final String sql;
+        final List<Object> args;
+
+        CapturedQuery(String sql, List<Object> args) {
+            this.sql = sql;
+            this.args = new ArrayList<>(args);
+        }
+    }
+}
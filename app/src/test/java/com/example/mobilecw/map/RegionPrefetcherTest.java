@@ -0,0 +1,142 @@
+package com.example.mobilecw.map;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.layer.download.tilesource.OnlineTileSource;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Downloads regions from a local tile server whose tiles contain their own path.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RegionPrefetcherTest {
+
+    // About 2 x 2 km on Snowdon
+    private static final BoundingBox REGION = RegionPrefetcher.around(53.0685, -4.0763, 1);
+    private static final byte MIN_ZOOM = 13;
+    private static final byte MAX_ZOOM = 15;
+
+    private HttpServer server;
+    private OnlineTileSource tileSource;
+    private TileStore store;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<String> failingPaths = Collections.synchronizedSet(new HashSet<>());
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/tiles/", exchange -> {
+            requests.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+                String path = exchange.getRequestURI().getPath();
+                byte[] body = path.getBytes(StandardCharsets.UTF_8);
+                int status = failingPaths.contains(path) ? 503 : 200;
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+        tileSource = MapTileSources.fromUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/tiles");
+        store = new TileStore(ApplicationProvider.getApplicationContext(), null, TileStore.MAX_BYTES);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsEveryTileOfTheRegionWithBoundedParallelism() throws Exception {
+        long expected = RegionPrefetcher.countTiles(REGION, MIN_ZOOM, MAX_ZOOM);
+
+        RegionPrefetcher.Result result = new RegionPrefetcher(store, tileSource)
+                .fetch(REGION, MIN_ZOOM, MAX_ZOOM, null, () -> false);
+
+        assertTrue(result.isComplete());
+        assertEquals(expected, result.downloaded);
+        assertEquals(expected, requests.get());
+        assertTrue("at most " + MapTileSources.parallelRequests(tileSource) + " at once, saw " + maxInFlight.get(),
+                maxInFlight.get() <= MapTileSources.parallelRequests(tileSource));
+
+        int x = MercatorProjection.longitudeToTileX(-4.0763, MAX_ZOOM);
+        int y = MercatorProjection.latitudeToTileY(53.0685, MAX_ZOOM);
+        TileStore.StoredTile tile = store.get(MAX_ZOOM, x, y);
+        assertNotNull(tile);
+        assertEquals("/tiles/" + MAX_ZOOM + "/" + x + "/" + y + ".png", new String(tile.data, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void resumingOnlyFetchesTheMissingTiles() throws Exception {
+        int x = MercatorProjection.longitudeToTileX(-4.0763, MAX_ZOOM);
+        int y = MercatorProjection.latitudeToTileY(53.0685, MAX_ZOOM);
+        failingPaths.add("/tiles/" + MAX_ZOOM + "/" + x + "/" + y + ".png");
+        RegionPrefetcher prefetcher = new RegionPrefetcher(store, tileSource);
+
+        RegionPrefetcher.Result first = prefetcher.fetch(REGION, MIN_ZOOM, MAX_ZOOM, null, () -> false);
+        assertFalse(first.isComplete());
+        assertEquals(1, first.failed);
+
+        failingPaths.clear();
+        requests.set(0);
+        RegionPrefetcher.Result second = prefetcher.fetch(REGION, MIN_ZOOM, MAX_ZOOM, null, () -> false);
+
+        assertTrue(second.isComplete());
+        assertEquals(1, second.downloaded);
+        assertEquals(first.downloaded, second.alreadyStored);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void cancelledDownloadStopsRequesting() throws Exception {
+        AtomicInteger progress = new AtomicInteger();
+
+        RegionPrefetcher.Result result = new RegionPrefetcher(store, tileSource).fetch(REGION, MIN_ZOOM, MAX_ZOOM,
+                (done, total) -> progress.accumulateAndGet(done, Math::max), () -> true);
+
+        assertEquals(0, requests.get());
+        assertEquals(result.total, result.failed);
+        assertEquals(result.total, progress.get());
+    }
+
+    @Test
+    public void largeRegionsAreCappedByZoom() {
+        BoundingBox wales = new BoundingBox(51.3, -5.3, 53.5, -2.6);
+
+        byte maxZoom = RegionPrefetcher.fitMaxZoom(wales, (byte) 8, (byte) 16);
+
+        assertTrue(maxZoom < 16);
+        assertTrue(RegionPrefetcher.countTiles(wales, (byte) 8, maxZoom) <= RegionPrefetcher.MAX_REGION_TILES);
+        assertTrue(RegionPrefetcher.countTiles(wales, (byte) 8, (byte) (maxZoom + 1)) > RegionPrefetcher.MAX_REGION_TILES);
+    }
+}
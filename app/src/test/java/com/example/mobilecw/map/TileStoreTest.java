@@ -0,0 +1,106 @@
+package com.example.mobilecw.map;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * The on-disk tile store: TMS row numbering, least recently used eviction under
+ * the byte budget, and pinned tiles surviving it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TileStoreTest {
+
+    private static final int TILE_BYTES = 100;
+    private static final long FAR_FUTURE = Long.MAX_VALUE;
+
+    private TileStore store;
+
+    @Before
+    public void setUp() {
+        store = new TileStore(ApplicationProvider.getApplicationContext(), null, 3 * TILE_BYTES);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void rowsAreStoredInTmsOrder() {
+        assertEquals(3, TileStore.tmsRow(2, 0));
+        assertEquals(0, TileStore.tmsRow(2, 3));
+
+        store.put(2, 1, 0, tile(1), 0);
+
+        assertTrue(store.contains(2, 1, 0));
+        assertFalse(store.contains(2, 1, 3));
+        assertEquals(1, store.get(2, 1, 0).data[0]);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedUnpinnedTilesOverBudget() {
+        store.put(10, 0, 0, tile(1), FAR_FUTURE);
+        store.put(10, 1, 0, tile(2), 0);
+        store.put(10, 2, 0, tile(3), 0);
+        assertEquals(3 * TILE_BYTES, store.sizeBytes());
+
+        store.put(10, 3, 0, tile(4), 0);
+
+        assertTrue("pinned", store.contains(10, 0, 0));
+        assertFalse("oldest unpinned", store.contains(10, 1, 0));
+        assertTrue(store.contains(10, 2, 0));
+        assertTrue(store.contains(10, 3, 0));
+        assertEquals(3 * TILE_BYTES, store.sizeBytes());
+    }
+
+    @Test
+    public void pinnedTilesStayWhenEverythingIsPinned() {
+        for (int x = 0; x < 4; x++) {
+            store.put(10, x, 0, tile(x), FAR_FUTURE);
+        }
+
+        assertEquals("nothing to evict", 4 * TILE_BYTES, store.sizeBytes());
+        assertTrue(store.contains(10, 0, 0));
+    }
+
+    @Test
+    public void pinningNeedsAStoredTileAndSurvivesReplacement() {
+        assertFalse(store.pin(10, 0, 0, FAR_FUTURE));
+
+        store.put(10, 0, 0, tile(1), 0);
+        assertTrue(store.pin(10, 0, 0, FAR_FUTURE));
+        // Refreshed by the map, which never pins
+        store.put(10, 0, 0, tile(2), 0);
+        store.put(10, 1, 0, tile(3), 0);
+        store.put(10, 2, 0, tile(4), 0);
+        store.put(10, 3, 0, tile(5), 0);
+
+        assertEquals(2, store.get(10, 0, 0).data[0]);
+        assertFalse(store.contains(10, 1, 0));
+    }
+
+    @Test
+    public void clearingKeepsPinnedTiles() {
+        store.put(10, 0, 0, tile(1), FAR_FUTURE);
+        store.put(10, 1, 0, tile(2), 0);
+
+        store.clearUnpinned();
+
+        assertTrue(store.contains(10, 0, 0));
+        assertFalse(store.contains(10, 1, 0));
+        assertEquals(TILE_BYTES, store.sizeBytes());
+    }
+
+    private static byte[] tile(int marker) {
+        byte[] data = new byte[TILE_BYTES];
+        data[0] = (byte) marker;
+        return data;
+    }
+}
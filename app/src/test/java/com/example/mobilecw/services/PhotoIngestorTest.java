@@ -0,0 +1,45 @@
+package com.example.mobilecw.services;
+
+import android.media.ExifInterface;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PhotoIngestorTest {
+
+    @Test
+    public void sampleSizeBoundsTheLongEdge() {
+        // 12 MP phone sensors end up at 2016 px, 48 MP ones at 2000 px
+        assertEquals(2, PhotoIngestor.ingestSampleSize(4032, 3024, PhotoIngestor.MAX_EDGE));
+        assertEquals(4, PhotoIngestor.ingestSampleSize(6000, 8000, PhotoIngestor.MAX_EDGE));
+        assertEquals(1, PhotoIngestor.ingestSampleSize(2048, 1536, PhotoIngestor.MAX_EDGE));
+        assertEquals(1, PhotoIngestor.ingestSampleSize(640, 480, PhotoIngestor.MAX_EDGE));
+    }
+
+    @Test
+    public void thumbnailCoversTheShortEdgeWithoutUpscaling() {
+        assertArrayEquals(new int[]{1440, 1080}, PhotoIngestor.thumbnailSize(2016, 1512, 1080));
+        assertArrayEquals(new int[]{720, 960}, PhotoIngestor.thumbnailSize(1512, 2016, 720));
+        assertArrayEquals(new int[]{800, 600}, PhotoIngestor.thumbnailSize(800, 600, 1080));
+    }
+
+    @Test
+    public void exifOrientationMapsToRotationThenMirror() {
+        assertEquals(0, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_NORMAL));
+        assertEquals(0, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_UNDEFINED));
+        assertEquals(90, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_ROTATE_90));
+        assertEquals(180, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_ROTATE_180));
+        assertEquals(270, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_ROTATE_270));
+        assertFalse(PhotoIngestor.isMirrored(ExifInterface.ORIENTATION_ROTATE_90));
+
+        assertEquals(0, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_FLIP_HORIZONTAL));
+        assertEquals(180, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_FLIP_VERTICAL));
+        assertEquals(90, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_TRANSPOSE));
+        assertEquals(270, PhotoIngestor.rotationDegrees(ExifInterface.ORIENTATION_TRANSVERSE));
+        assertTrue(PhotoIngestor.isMirrored(ExifInterface.ORIENTATION_FLIP_HORIZONTAL));
+        assertTrue(PhotoIngestor.isMirrored(ExifInterface.ORIENTATION_FLIP_VERTICAL));
+        assertTrue(PhotoIngestor.isMirrored(ExifInterface.ORIENTATION_TRANSPOSE));
+        assertTrue(PhotoIngestor.isMirrored(ExifInterface.ORIENTATION_TRANSVERSE));
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.mobilecw.services;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.mobilecw.database.AppDatabase;
+import com.example.mobilecw.utils.SearchHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class QueryEmbeddingCacheTest {
+
+    private static final String UID = "uid-1";
+    private static final String MODEL = "models/text-embedding-004";
+
+    private AppDatabase database;
+    private long now = 1000;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    private QueryEmbeddingCache cache(String model) {
+        return new QueryEmbeddingCache(database.queryEmbeddingDao(), model, () -> now);
+    }
+
+    @Test
+    public void nearRepeatQueriesShareAnEntry() {
+        QueryEmbeddingCache cache = cache(MODEL);
+        cache.put(UID, SearchHelper.normalizeQuery("Lake trail?"), new float[]{0.5f, -0.25f});
+
+        assertArrayEquals(new float[]{0.5f, -0.25f},
+                cache.get(UID, SearchHelper.normalizeQuery("  lake   TRAIL ")), 1e-3f);
+        assertNull("queries are per user", cache.get("uid-2", SearchHelper.normalizeQuery("lake trail")));
+        assertNull(cache.get(UID, SearchHelper.normalizeQuery("lake trails")));
+    }
+
+    @Test
+    public void entriesFromAnotherModelAreMisses() {
+        cache("models/old").put(UID, "lake trail", new float[]{1f});
+
+        assertNull(cache(MODEL).get(UID, "lake trail"));
+    }
+
+    @Test
+    public void keepsTheMostRecentlyUsedEntries() {
+        QueryEmbeddingCache cache = cache(MODEL);
+        for (int i = 0; i < QueryEmbeddingCache.MAX_ENTRIES; i++) {
+            now++;
+            cache.put(UID, "query " + i, new float[]{i});
+        }
+        now++;
+        assertNotNull("reading refreshes the oldest entry", cache.get(UID, "query 0"));
+
+        now++;
+        cache.put(UID, "one more", new float[]{1f});
+
+        assertNotNull(cache.get(UID, "query 0"));
+        assertNull("the least recently used entry is dropped", cache.get(UID, "query 1"));
+        assertNotNull(cache.get(UID, "one more"));
+    }
+
+    @Test
+    public void normalizeQueryFoldsCasePunctuationAndSpacing() {
+        assertEquals("lake trail", SearchHelper.normalizeQuery("  Lake, trail!  "));
+        assertEquals("café 2", SearchHelper.normalizeQuery("CAFÉ\t２"));
+        assertEquals("", SearchHelper.normalizeQuery(null));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.mobilecw.services;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailLoaderTest {
+
+    @Test
+    public void sampleSizeKeepsTheTargetCovered() {
+        // 12 MP camera frame into a 1080 x 525 px card
+        assertEquals(2, ThumbnailLoader.calculateInSampleSize(4000, 3000, 1080, 525));
+        assertEquals(4, ThumbnailLoader.calculateInSampleSize(4000, 3000, 1000, 700));
+        assertEquals("never upsamples", 1, ThumbnailLoader.calculateInSampleSize(640, 480, 1080, 525));
+        assertEquals("both sides must stay covered", 1, ThumbnailLoader.calculateInSampleSize(4000, 600, 1080, 525));
+        assertEquals(1, ThumbnailLoader.calculateInSampleSize(4000, 3000, 0, 0));
+    }
+
+    @Test
+    public void keysChangeWithMtimeAndSize() {
+        String key = ThumbnailLoader.cacheKey("/data/pic.jpg", 1000, 1080, 525);
+
+        assertNotEquals(key, ThumbnailLoader.cacheKey("/data/pic.jpg", 2000, 1080, 525));
+        assertNotEquals(key, ThumbnailLoader.cacheKey("/data/pic.jpg", 1000, 540, 525));
+        assertEquals(ThumbnailLoader.diskName(key), ThumbnailLoader.diskName(key));
+        assertTrue(ThumbnailLoader.diskName(key).matches("[0-9a-f]{40}\\.jpg"));
+    }
+
+    @Test
+    public void memoryKeysOnlyChangeWithPathAndSize() {
+        String key = ThumbnailLoader.memoryKey("/data/pic.jpg", 1080, 525);
+
+        assertEquals(key, ThumbnailLoader.memoryKey("/data/pic.jpg", 1080, 525));
+        assertNotEquals(key, ThumbnailLoader.memoryKey("/data/pic.jpg", 540, 525));
+        assertNotEquals(key, ThumbnailLoader.memoryKey("/data/other.jpg", 1080, 525));
+    }
+
+    @Test
+    public void trimDeletesLeastRecentlyUsedFirst() throws IOException {
+        File dir = Files.createTempDirectory("thumbnails").toFile();
+        try {
+            File oldest = write(dir, "a.jpg", 100, 1000);
+            File middle = write(dir, "b.jpg", 100, 2000);
+            File newest = write(dir, "c.jpg", 100, 3000);
+
+            ThumbnailLoader.trimDiskCache(dir, 250);
+
+            assertFalse(oldest.exists());
+            assertTrue(middle.exists());
+            assertTrue(newest.exists());
+
+            ThumbnailLoader.trimDiskCache(dir, 250);
+            assertTrue("already within budget", middle.exists());
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static File write(File dir, String name, int bytes, long lastModified) throws IOException {
+        File file = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[bytes]);
+        }
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+}
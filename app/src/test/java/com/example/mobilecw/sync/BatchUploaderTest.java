@@ -0,0 +1,116 @@
+package com.example.mobilecw.sync;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the upload pipeline against a fake committer that completes batches by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BatchUploaderTest {
+
+    private final List<List<BatchUploader.PendingWrite>> committed = new ArrayList<>();
+    private final List<TaskCompletionSource<Void>> inFlight = new ArrayList<>();
+
+    private final BatchUploader.BatchCommitter fakeCommitter = writes -> {
+        committed.add(writes);
+        TaskCompletionSource<Void> source = new TaskCompletionSource<>();
+        inFlight.add(source);
+        return source.getTask();
+    };
+
+    @Test
+    public void splitsWritesIntoBatchesOfAtMost500() {
+        BatchUploader uploader = new BatchUploader(fakeCommitter,
+                BatchUploader.MAX_BATCH_OPERATIONS, 8, Runnable::run);
+        List<Integer> syncedIds = new ArrayList<>();
+
+        Task<Void> result = uploader.upload(writes(1201), batch -> syncedIds.addAll(ids(batch)));
+        completeAll();
+
+        assertEquals(3, committed.size());
+        assertEquals(500, committed.get(0).size());
+        assertEquals(500, committed.get(1).size());
+        assertEquals(201, committed.get(2).size());
+        assertTrue(result.isSuccessful());
+        Collections.sort(syncedIds);
+        assertEquals(ids(writes(1201)), syncedIds);
+    }
+
+    @Test
+    public void keepsAtMostMaxConcurrentBatchesInFlight() {
+        BatchUploader uploader = new BatchUploader(fakeCommitter, 10, 2, Runnable::run);
+
+        Task<Void> result = uploader.upload(writes(55), null);
+
+        assertEquals(2, committed.size());
+        inFlight.get(0).setResult(null);
+        assertEquals("a finished batch frees one slot", 3, committed.size());
+        completeAll();
+
+        assertEquals(6, committed.size());
+        assertTrue(result.isSuccessful());
+    }
+
+    @Test
+    public void failedBatchIsNotMarkedButOthersAre() {
+        BatchUploader uploader = new BatchUploader(fakeCommitter, 10, 1, Runnable::run);
+        List<Integer> syncedIds = new ArrayList<>();
+
+        Task<Void> result = uploader.upload(writes(30), batch -> syncedIds.addAll(ids(batch)));
+        inFlight.get(0).setResult(null);
+        inFlight.get(1).setException(new IllegalStateException("offline"));
+        inFlight.get(2).setResult(null);
+
+        assertEquals(3, committed.size());
+        assertEquals(20, syncedIds.size());
+        assertFalse(syncedIds.contains(11));
+        assertTrue(result.isComplete());
+        assertFalse(result.isSuccessful());
+        assertEquals("offline", result.getException().getMessage());
+    }
+
+    @Test
+    public void emptyUploadCompletesWithoutCommitting() {
+        BatchUploader uploader = new BatchUploader(fakeCommitter, 10, 1, Runnable::run);
+
+        Task<Void> result = uploader.upload(new ArrayList<>(), null);
+
+        assertTrue(result.isSuccessful());
+        assertTrue(committed.isEmpty());
+    }
+
+    private void completeAll() {
+        // Completing a batch may start the next one, so loop until nothing is pending
+        for (int i = 0; i < inFlight.size(); i++) {
+            inFlight.get(i).trySetResult(null);
+        }
+    }
+
+    private static List<BatchUploader.PendingWrite> writes(int count) {
+        List<BatchUploader.PendingWrite> writes = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            writes.add(new BatchUploader.PendingWrite(BatchUploader.Kind.HIKE, id, 1700000000000L,
+                    "users/uid/hikes/" + id, Collections.<String, Object>singletonMap("name", "Hike " + id)));
+        }
+        return writes;
+    }
+
+    private static List<Integer> ids(List<BatchUploader.PendingWrite> writes) {
+        List<Integer> ids = new ArrayList<>();
+        for (BatchUploader.PendingWrite write : writes) {
+            ids.add(write.localId);
+        }
+        return ids;
+    }
+}
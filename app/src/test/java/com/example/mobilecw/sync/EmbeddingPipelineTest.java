@@ -0,0 +1,172 @@
+package com.example.mobilecw.sync;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the embedding pipeline against scripted fetchers; backoff sleeps are
+ * recorded instead of slept.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EmbeddingPipelineTest {
+
+    private final List<Long> backoffs = new ArrayList<>();
+    private final List<Integer> stored = Collections.synchronizedList(new ArrayList<>());
+
+    private final EmbeddingPipeline.Sink<Integer> immediateSink = (item, embedding) -> {
+        stored.add(item);
+        return Tasks.forResult(null);
+    };
+
+    private EmbeddingPipeline<Integer> pipeline(EmbeddingPipeline.Fetcher<Integer> fetcher,
+                                                EmbeddingPipeline.Sink<Integer> sink) {
+        EmbeddingPipeline<Integer> pipeline = new EmbeddingPipeline<>(fetcher, sink,
+                new TokenBucket(1000, 1000), Runnable::run, Runnable::run, backoffs::add);
+        pipeline.setRetryPolicy(4, 100, 250);
+        return pipeline;
+    }
+
+    @Test
+    public void retriesRateLimitingWithGrowingJitteredBackoff() {
+        AtomicInteger calls = new AtomicInteger();
+        EmbeddingPipeline<Integer> pipeline = pipeline(batch -> {
+            if (calls.incrementAndGet() <= 3) {
+                throw new GeminiEmbeddingService.HttpStatusException(429, "quota");
+            }
+            return vectors(batch);
+        }, immediateSink);
+
+        Task<Void> result = pipeline.run(items(3), 10);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(items(3), stored);
+        assertEquals(3, backoffs.size());
+        long[] caps = {100, 200, 250};
+        for (int i = 0; i < caps.length; i++) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(backoffs.get(i));
+            assertTrue("backoff " + i + " was " + millis, millis >= 0 && millis < caps[i]);
+        }
+        assertEquals(4, pipeline.getMetrics().getRequests());
+        assertEquals(3, pipeline.getMetrics().getRetries());
+        assertEquals(3, pipeline.getMetrics().getEmbedded());
+    }
+
+    @Test
+    public void clientErrorDropsOnlyThatBatch() {
+        EmbeddingPipeline<Integer> pipeline = pipeline(batch -> {
+            if (batch.contains(0)) {
+                throw new GeminiEmbeddingService.HttpStatusException(400, "bad request");
+            }
+            return vectors(batch);
+        }, immediateSink);
+
+        Task<Void> result = pipeline.run(items(6), 2);
+
+        assertTrue(result.isComplete());
+        assertFalse(result.isSuccessful());
+        assertEquals(4, stored.size());
+        assertTrue(backoffs.isEmpty());
+        assertEquals(1, pipeline.getMetrics().getFailedBatches());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        EmbeddingPipeline<Integer> pipeline = pipeline(batch -> {
+            throw new IOException("connection reset");
+        }, immediateSink);
+
+        Task<Void> result = pipeline.run(items(1), 1);
+
+        assertFalse(result.isSuccessful());
+        assertEquals(4, pipeline.getMetrics().getRequests());
+        assertEquals(3, pipeline.getMetrics().getRetries());
+    }
+
+    @Test
+    public void storesArePipelinedAndTheRunWaitsForThem() {
+        List<TaskCompletionSource<Void>> writes = new ArrayList<>();
+        List<Integer> fetched = new ArrayList<>();
+        EmbeddingPipeline<Integer> pipeline = pipeline(batch -> {
+            fetched.addAll(batch);
+            return vectors(batch);
+        }, (item, embedding) -> {
+            TaskCompletionSource<Void> write = new TaskCompletionSource<>();
+            writes.add(write);
+            return write.getTask();
+        });
+
+        Task<Void> result = pipeline.run(items(4), 1);
+
+        assertEquals("every batch was fetched without waiting for a write", items(4), fetched);
+        assertFalse(result.isComplete());
+        for (TaskCompletionSource<Void> write : writes) {
+            write.setResult(null);
+        }
+        assertTrue(result.isSuccessful());
+        assertEquals(4, pipeline.getMetrics().getEmbedded());
+    }
+
+    @Test
+    public void inFlightRequestsAreBoundedByTheWorkerPool() throws Exception {
+        int workers = 3;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        EmbeddingPipeline<Integer> pipeline = new EmbeddingPipeline<>(batch -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            inFlight.decrementAndGet();
+            return vectors(batch);
+        }, immediateSink, new TokenBucket(1000, 1000), pool, Runnable::run);
+
+        CountDownLatch done = new CountDownLatch(1);
+        Task<Void> result = pipeline.run(items(40), 2);
+        result.addOnCompleteListener(Runnable::run, task -> done.countDown());
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(result.isSuccessful());
+        assertEquals(40, stored.size());
+        assertEquals(workers, maxInFlight.get());
+        assertEquals(0, pipeline.getMetrics().getQueueDepth());
+        assertEquals(0, pipeline.getMetrics().getInFlightRequests());
+        assertEquals(20, pipeline.getMetrics().getRequests());
+    }
+
+    private static List<Integer> items(int count) {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    private static List<float[]> vectors(List<Integer> batch) {
+        List<float[]> vectors = new ArrayList<>();
+        for (int item : batch) {
+            vectors.add(new float[]{item});
+        }
+        return vectors;
+    }
+}
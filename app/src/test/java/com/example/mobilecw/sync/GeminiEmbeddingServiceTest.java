@@ -0,0 +1,168 @@
+package com.example.mobilecw.sync;
+
+import com.example.mobilecw.BenchmarkTimer;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the batched embedding client against a local server that answers
+ * batchEmbedContents with vectors derived from each chunk's text.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GeminiEmbeddingServiceTest {
+
+    private static final int DIMENSIONS = 768;
+
+    private HttpServer server;
+    private GeminiEmbeddingService service;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<String> connections = Collections.synchronizedSet(new HashSet<>());
+    private volatile int failStatus;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            connections.add(exchange.getRemoteAddress().toString());
+            byte[] response;
+            int status = failStatus;
+            try {
+                response = status != 0
+                        ? "{\"error\":{\"message\":\"quota\"}}".getBytes(StandardCharsets.UTF_8)
+                        : respond(readBody(exchange.getRequestBody())).getBytes(StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                status = 400;
+                response = new byte[0];
+            }
+            exchange.sendResponseHeaders(status != 0 ? status : 200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+        service = new GeminiEmbeddingService("test-key",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1beta/");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void embedsChunksInOrderInBatchesOverOneConnection() {
+        service.setBatchSize(10);
+
+        List<float[]> embeddings = service.fetchEmbeddings("uid", chunks(25));
+
+        assertEquals(25, embeddings.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(DIMENSIONS, embeddings.get(i).length);
+            assertEquals(i, embeddings.get(i)[0], 0f);
+            assertEquals(-i / 2f, embeddings.get(i)[1], 0f);
+        }
+        assertEquals(3, requests.get());
+        assertEquals("keep-alive reuses the connection", 1, connections.size());
+    }
+
+    @Test
+    public void emptyTextIsSkippedAndKeepsItsPosition() {
+        List<GeminiEmbeddingService.Chunk> chunks = chunks(3);
+        chunks.set(1, new GeminiEmbeddingService.Chunk("observation_note", "obs_1", ""));
+
+        List<float[]> embeddings = service.fetchEmbeddings("uid", chunks);
+
+        assertEquals(0f, embeddings.get(0)[0], 0f);
+        assertNull(embeddings.get(1));
+        assertEquals(2f, embeddings.get(2)[0], 0f);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void failedBatchYieldsNullsAndConnectionStaysUsable() {
+        failStatus = 429;
+        List<float[]> failed = service.fetchEmbeddings("uid", chunks(2));
+        assertNull(failed.get(0));
+        assertNull(failed.get(1));
+
+        failStatus = 0;
+        assertNotNull(service.fetchEmbedding("uid", "hike_description", "hike_7", "chunk 7"));
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    public void throughputBatchedVersusOneChunkPerRequest() {
+        int count = 200;
+        List<GeminiEmbeddingService.Chunk> chunks = chunks(count);
+
+        service.setBatchSize(1);
+        long single = BenchmarkTimer.measure("fetchEmbeddings batch=1 x" + count, 5,
+                () -> service.fetchEmbeddings("uid", chunks));
+        service.setBatchSize(GeminiEmbeddingService.MAX_BATCH_SIZE);
+        long batched = BenchmarkTimer.measure("fetchEmbeddings batch=100 x" + count, 5,
+                () -> service.fetchEmbeddings("uid", chunks));
+
+        BenchmarkTimer.report("embedding throughput: %,.0f chunks/s batched, %,.0f chunks/s single",
+                count * 1e9 / batched, count * 1e9 / single);
+        assertNotNull(service.fetchEmbeddings("uid", chunks).get(count - 1));
+    }
+
+    private static List<GeminiEmbeddingService.Chunk> chunks(int count) {
+        List<GeminiEmbeddingService.Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            chunks.add(new GeminiEmbeddingService.Chunk("hike_description", "hike_" + i, "chunk " + i));
+        }
+        return chunks;
+    }
+
+    /**
+     * One embedding per request: [n, -n/2, 0, 0, ...] where the prompt ends in "chunk n".
+     */
+    private static String respond(String body) throws Exception {
+        JSONArray requestList = new JSONObject(body).getJSONArray("requests");
+        StringBuilder json = new StringBuilder("{\"embeddings\":[");
+        for (int i = 0; i < requestList.length(); i++) {
+            String text = requestList.getJSONObject(i).getJSONObject("content")
+                    .getJSONArray("parts").getJSONObject(0).getString("text");
+            int n = Integer.parseInt(text.substring(text.lastIndexOf(' ') + 1));
+            json.append(i == 0 ? "" : ",").append("{\"values\":[").append(n).append(',').append(-n / 2f);
+            for (int d = 2; d < DIMENSIONS; d++) {
+                json.append(",0.0");
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String readBody(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
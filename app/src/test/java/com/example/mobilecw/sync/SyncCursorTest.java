@@ -0,0 +1,120 @@
+package com.example.mobilecw.sync;
+
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * The download cursors (server syncedAt in microseconds), the rule that decides
+ * between a pending local edit and a pulled server copy, the cursor limit set by
+ * observations that could not be stored, and the document-id range of the full
+ * observation download.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncCursorTest {
+
+    @Test
+    public void pendingLocalEditWinsUnlessTheServerCopyIsNewer() {
+        assertTrue(FirebaseSyncManager.serverCopyWins(1000L, 1001L));
+        assertFalse("same time keeps the local edit", FirebaseSyncManager.serverCopyWins(1000L, 1000L));
+        assertFalse(FirebaseSyncManager.serverCopyWins(1000L, 999L));
+    }
+
+    @Test
+    public void missingUpdateTimes() {
+        assertTrue("local edit without a time", FirebaseSyncManager.serverCopyWins(null, 1000L));
+        assertFalse("server copy without a time", FirebaseSyncManager.serverCopyWins(1000L, null));
+        assertFalse(FirebaseSyncManager.serverCopyWins(null, null));
+    }
+
+    @Test
+    public void laterKeepsTheNewestSyncedAtInMicros() {
+        Timestamp syncedAt = new Timestamp(1_700_000_000L, 123_456_789);
+
+        assertEquals(Long.valueOf(1_700_000_000_123_456L), FirebaseSyncManager.later(null, syncedAt));
+        assertEquals(Long.valueOf(1_700_000_000_123_456L),
+                FirebaseSyncManager.later(1_700_000_000_000_000L, syncedAt));
+        assertEquals("an older document does not move the cursor back", Long.valueOf(1_800_000_000_000_000L),
+                FirebaseSyncManager.later(1_800_000_000_000_000L, syncedAt));
+    }
+
+    @Test
+    public void laterIgnoresDocumentsWithoutSyncedAt() {
+        assertNull(FirebaseSyncManager.later(null, null));
+        assertEquals(Long.valueOf(42L), FirebaseSyncManager.later(42L, null));
+    }
+
+    @Test
+    public void fromMicrosRoundTripsThroughLater() {
+        for (long micros : new long[]{0L, 1L, 999_999L, 1_000_000L, 1_700_000_000_123_456L, -1L, -1_000_001L}) {
+            Timestamp timestamp = FirebaseSyncManager.fromMicros(micros);
+
+            assertEquals("micros " + micros, Long.valueOf(micros), FirebaseSyncManager.later(null, timestamp));
+        }
+        assertNull(FirebaseSyncManager.fromMicros(null));
+    }
+
+    @Test
+    public void fromMicrosKeepsNanosInRangeBeforeTheEpoch() {
+        Timestamp timestamp = FirebaseSyncManager.fromMicros(-1L);
+
+        assertEquals(-1L, timestamp.getSeconds());
+        assertEquals(999_999_000, timestamp.getNanoseconds());
+    }
+
+    @Test
+    public void storedUpToIsTheNewestSyncedAtWhenNothingWasSkipped() {
+        Map<Integer, Long> syncedAt = new HashMap<>();
+        syncedAt.put(1, 300L);
+        syncedAt.put(2, 100L);
+        syncedAt.put(3, null);
+
+        assertEquals(Long.valueOf(300L), FirebaseSyncManager.storedUpTo(50L, syncedAt, Collections.emptyList()));
+        assertEquals("an older pull does not move the cursor back", Long.valueOf(400L),
+                FirebaseSyncManager.storedUpTo(400L, syncedAt, Collections.emptyList()));
+        assertNull(FirebaseSyncManager.storedUpTo(null, new HashMap<>(), Collections.emptyList()));
+    }
+
+    @Test
+    public void storedUpToStopsBeforeTheFirstSkippedRow() {
+        Map<Integer, Long> syncedAt = new HashMap<>();
+        syncedAt.put(1, 100L);
+        syncedAt.put(2, 200L);
+        syncedAt.put(3, 300L);
+        syncedAt.put(4, 400L);
+
+        assertEquals(Long.valueOf(100L), FirebaseSyncManager.storedUpTo(50L, syncedAt, Arrays.asList(4, 2)));
+        assertEquals("nothing stored before the skipped row", Long.valueOf(50L),
+                FirebaseSyncManager.storedUpTo(50L, syncedAt, Collections.singletonList(1)));
+        assertNull(FirebaseSyncManager.storedUpTo(null, syncedAt, Collections.singletonList(1)));
+    }
+
+    @Test
+    public void storedUpToIgnoresSkippedRowsWithoutSyncedAt() {
+        Map<Integer, Long> syncedAt = new HashMap<>();
+        syncedAt.put(1, 100L);
+        syncedAt.put(2, null);
+
+        assertEquals(Long.valueOf(100L), FirebaseSyncManager.storedUpTo(null, syncedAt, Collections.singletonList(2)));
+    }
+
+    @Test
+    public void userDocumentRangeBoundsAreDocumentPaths() {
+        String[] range = FirebaseSyncManager.userDocumentRange("uid123");
+
+        assertEquals("users/uid123", range[0]);
+        assertEquals("users/uid123\uf8ff", range[1]);
+        for (String bound : range) {
+            assertEquals("even number of segments in " + bound, 0, bound.split("/").length % 2);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.mobilecw.sync;
+
+import com.example.mobilecw.BenchmarkTimer;
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.database.entities.Observation;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks the Firestore payload builders in FirebaseSyncManager over a
+ * first-sync sized batch of rows.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncPayloadBenchmarkTest {
+
+    private static final int ROWS = 5000;
+    private static final int RUNS = 20;
+
+    @Test
+    public void hikePayloads() {
+        List<Hike> hikes = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            Hike hike = new Hike("Trail " + i, "Park " + i, new Date(), true, 5.5, "Medium", "Description " + i, "");
+            hike.setHikeID(i);
+            hikes.add(hike);
+        }
+        BenchmarkTimer.measure("buildHikePayload x" + ROWS, RUNS, () -> {
+            for (Hike hike : hikes) {
+                FirebaseSyncManager.buildHikePayload(hike);
+            }
+        });
+        Map<String, Object> payload = FirebaseSyncManager.buildHikePayload(hikes.get(0));
+        assertEquals("Trail 1", payload.get("name"));
+    }
+
+    @Test
+    public void observationPayloads() {
+        List<Observation> observations = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            Observation observation = new Observation("Observation " + i, new Date(), "Comment " + i, 1);
+            observation.setObservationID(i);
+            observations.add(observation);
+        }
+        BenchmarkTimer.measure("buildObservationPayload x" + ROWS, RUNS, () -> {
+            for (Observation observation : observations) {
+                FirebaseSyncManager.buildObservationPayload(observation);
+            }
+        });
+        Map<String, Object> payload = FirebaseSyncManager.buildObservationPayload(observations.get(0));
+        assertEquals("Observation 1", payload.get("observationText"));
+    }
+}
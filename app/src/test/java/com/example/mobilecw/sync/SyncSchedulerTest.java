@@ -0,0 +1,109 @@
+package com.example.mobilecw.sync;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.work.BackoffPolicy;
+import androidx.work.Configuration;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ListenableWorker;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.WorkRequest;
+import androidx.work.WorkerParameters;
+import androidx.work.testing.SynchronousExecutor;
+import androidx.work.testing.WorkManagerTestInitHelper;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scheduling side of SyncScheduler; the worker itself needs Firebase and is not run here.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncSchedulerTest {
+
+    private WorkManager workManager;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        Configuration config = new Configuration.Builder()
+                .setExecutor(new SynchronousExecutor())
+                .build();
+        WorkManagerTestInitHelper.initializeTestWorkManager(context, config);
+        workManager = WorkManager.getInstance(context);
+    }
+
+    @Test
+    public void burstOfRequestsIsCoalescedIntoOneSync() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            SyncScheduler.enqueueIfNotWaiting(workManager);
+        }
+
+        List<WorkInfo> infos = workManager.getWorkInfosForUniqueWork(SyncScheduler.UNIQUE_WORK_NAME).get();
+        assertEquals(1, infos.size());
+        assertEquals(WorkInfo.State.ENQUEUED, infos.get(0).getState());
+    }
+
+    @Test
+    public void requestDuringARunningSyncQueuesExactlyOneFollowUp() throws Exception {
+        // Stands in for a sync in flight: it starts and never finishes
+        workManager.enqueueUniqueWork(SyncScheduler.UNIQUE_WORK_NAME, ExistingWorkPolicy.REPLACE,
+                new OneTimeWorkRequest.Builder(NeverFinishingWorker.class).build()).getResult().get();
+        List<WorkInfo> running = workManager.getWorkInfosForUniqueWork(SyncScheduler.UNIQUE_WORK_NAME).get();
+        assertEquals(WorkInfo.State.RUNNING, running.get(0).getState());
+
+        for (int i = 0; i < 10; i++) {
+            SyncScheduler.enqueueIfNotWaiting(workManager);
+        }
+
+        List<WorkInfo> infos = workManager.getWorkInfosForUniqueWork(SyncScheduler.UNIQUE_WORK_NAME).get();
+        assertEquals(2, infos.size());
+        int runningCount = 0;
+        int waitingCount = 0;
+        for (WorkInfo info : infos) {
+            if (info.getState() == WorkInfo.State.RUNNING) {
+                runningCount++;
+            } else if (info.getState() == WorkInfo.State.BLOCKED) {
+                waitingCount++;
+            }
+        }
+        assertEquals("the running sync is left alone", 1, runningCount);
+        assertEquals("one follow-up waits for it", 1, waitingCount);
+    }
+
+    @Test
+    public void syncWaitsForDebounceAndNetwork() {
+        SyncScheduler.setDebounceWindow(SyncScheduler.DEFAULT_DEBOUNCE_MILLIS);
+
+        WorkRequest request = SyncScheduler.buildRequest();
+
+        assertEquals(SyncScheduler.DEFAULT_DEBOUNCE_MILLIS, request.getWorkSpec().initialDelay);
+        assertEquals(NetworkType.CONNECTED, request.getWorkSpec().constraints.getRequiredNetworkType());
+        assertEquals(BackoffPolicy.EXPONENTIAL, request.getWorkSpec().backoffPolicy);
+    }
+
+    public static class NeverFinishingWorker extends ListenableWorker {
+
+        public NeverFinishingWorker(Context context, WorkerParameters params) {
+            super(context, params);
+        }
+
+        @Override
+        public ListenableFuture<Result> startWork() {
+            return SettableFuture.create();
+        }
+    }
+}
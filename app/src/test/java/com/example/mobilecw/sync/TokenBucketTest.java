@@ -0,0 +1,65 @@
+package com.example.mobilecw.sync;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the limiter with a fake clock that advances when it sleeps.
+ */
+public class TokenBucketTest {
+
+    private long now;
+    private final List<Long> sleptMillis = new ArrayList<>();
+
+    private TokenBucket bucket(double permitsPerSecond, int capacity) {
+        return new TokenBucket(permitsPerSecond, capacity, () -> now, nanos -> {
+            sleptMillis.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+            now += nanos;
+        });
+    }
+
+    @Test
+    public void burstIsFreeThenPermitsArriveAtTheSteadyRate() throws Exception {
+        TokenBucket bucket = bucket(10, 2);
+
+        for (int i = 0; i < 5; i++) {
+            bucket.acquire();
+        }
+
+        assertEquals(Arrays.asList(100L, 100L, 100L), sleptMillis);
+    }
+
+    @Test
+    public void idleTimeRefillsOnlyUpToCapacity() throws Exception {
+        TokenBucket bucket = bucket(10, 2);
+        bucket.acquire();
+        bucket.acquire();
+
+        now += TimeUnit.SECONDS.toNanos(60);
+        bucket.acquire();
+        bucket.acquire();
+        bucket.acquire();
+
+        assertEquals(Arrays.asList(100L), sleptMillis);
+    }
+
+    @Test
+    public void concurrentCallersQueueBehindEachOther() throws Exception {
+        // Without sleeping in between, each caller reserves the next free slot
+        List<Long> waits = new ArrayList<>();
+        TokenBucket bucket = new TokenBucket(4, 1, () -> now,
+                nanos -> waits.add(TimeUnit.NANOSECONDS.toMillis(nanos)));
+
+        for (int i = 0; i < 4; i++) {
+            bucket.acquire();
+        }
+
+        assertEquals(Arrays.asList(250L, 500L, 750L), waits);
+    }
+}
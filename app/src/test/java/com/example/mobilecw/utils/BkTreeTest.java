@@ -0,0 +1,77 @@
+package com.example.mobilecw.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * BK-tree lookups must find exactly the terms a scan of the whole vocabulary finds.
+ */
+public class BkTreeTest {
+
+    @Test
+    public void findsTermsWithinTheTolerance() {
+        BkTree tree = new BkTree();
+        for (String term : Arrays.asList("lake", "lakes", "like", "bake", "trail", "snowdon")) {
+            tree.add(term);
+        }
+
+        Map<String, Integer> matches = tree.search("lake", 1);
+
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("lake", 0);
+        expected.put("lakes", 1);
+        expected.put("like", 1);
+        expected.put("bake", 1);
+        assertEquals(expected, matches);
+    }
+
+    @Test
+    public void duplicatesAndNullsAreNotAdded() {
+        BkTree tree = new BkTree();
+
+        assertTrue(tree.add("ridge"));
+        assertFalse(tree.add("ridge"));
+        assertFalse(tree.add(null));
+        assertEquals(1, tree.size());
+
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertTrue(tree.search("ridge", 3).isEmpty());
+    }
+
+    @Test
+    public void matchesABruteForceScanForSeveralTolerances() {
+        Random random = new Random(5);
+        List<String> vocabulary = new ArrayList<>();
+        BkTree tree = new BkTree();
+        for (int i = 0; i < 500; i++) {
+            String term = SearchHelperTest.randomWord(random, 1 + random.nextInt(8));
+            if (tree.add(term)) {
+                vocabulary.add(term);
+            }
+        }
+        assertEquals(vocabulary.size(), tree.size());
+
+        for (int q = 0; q < 50; q++) {
+            String query = SearchHelperTest.randomWord(random, random.nextInt(9));
+            for (int tolerance = 0; tolerance <= 4; tolerance++) {
+                Map<String, Integer> expected = new HashMap<>();
+                for (String term : vocabulary) {
+                    int distance = SearchHelperTest.fullMatrixDistance(term, query);
+                    if (distance <= tolerance) {
+                        expected.put(term, distance);
+                    }
+                }
+                assertEquals("\"" + query + "\" within " + tolerance, expected, tree.search(query, tolerance));
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.mobilecw.utils;
+
+import com.example.mobilecw.BenchmarkTimer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips and dot kernels of every embedding format, and how much recall@10
+ * each gives up against exact float cosine for how many bytes.
+ */
+public class EmbeddingCodecTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    public void encodedSizes() {
+        float[] embedding = new float[768];
+
+        assertEquals(3073, EmbeddingCodec.encode(embedding, EmbeddingCodec.Format.FLOAT32).length);
+        assertEquals(1537, EmbeddingCodec.encode(embedding, EmbeddingCodec.Format.FLOAT16).length);
+        assertEquals(777, EmbeddingCodec.encode(embedding, EmbeddingCodec.Format.INT8).length);
+        assertEquals(768, EmbeddingCodec.dimensionOf(EmbeddingCodec.encode(embedding, EmbeddingCodec.Format.INT8)));
+    }
+
+    @Test
+    public void float32RoundTripsExactly() {
+        float[] vector = {0f, -1.5f, 3.25e-7f, Float.MAX_VALUE};
+
+        byte[] blob = EmbeddingCodec.encode(vector, EmbeddingCodec.Format.FLOAT32);
+
+        assertEquals(EmbeddingCodec.Format.FLOAT32, EmbeddingCodec.formatOf(blob));
+        assertArrayEquals(vector, EmbeddingCodec.decode(blob), 0f);
+    }
+
+    @Test
+    public void halfPrecisionConversion() {
+        assertEquals(0x3C00, EmbeddingCodec.toHalf(1f) & 0xFFFF);
+        assertEquals(0xC000, EmbeddingCodec.toHalf(-2f) & 0xFFFF);
+        assertEquals(0x2E66, EmbeddingCodec.toHalf(0.1f) & 0xFFFF);
+        assertEquals("largest half", 0x7BFF, EmbeddingCodec.toHalf(65504f) & 0xFFFF);
+        assertEquals("overflow", 0x7C00, EmbeddingCodec.toHalf(70000f) & 0xFFFF);
+        assertEquals("smallest subnormal", 0x0001, EmbeddingCodec.toHalf(6e-8f) & 0xFFFF);
+        assertEquals("underflow", 0x0000, EmbeddingCodec.toHalf(2e-8f) & 0xFFFF);
+        assertTrue(Float.isNaN(EmbeddingCodec.fromHalf(EmbeddingCodec.toHalf(Float.NaN))));
+
+        for (int bits = 0; bits < 0x7C00; bits++) {
+            float value = EmbeddingCodec.fromHalf((short) bits);
+            assertEquals("every finite half survives a round trip", bits, EmbeddingCodec.toHalf(value) & 0xFFFF);
+        }
+    }
+
+    @Test
+    public void float16KeepsThreeSignificantDigits() {
+        float[] vector = gaussian(new Random(5), 768);
+
+        float[] decoded = EmbeddingCodec.decode(EmbeddingCodec.encode(vector, EmbeddingCodec.Format.FLOAT16));
+
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], decoded[i], Math.abs(vector[i]) * 1e-3f + 1e-7f);
+        }
+    }
+
+    @Test
+    public void int8ErrorIsAtMostHalfAStep() {
+        float[] vector = gaussian(new Random(6), 768);
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (float value : vector) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        float halfStep = (max - min) / 255f / 2;
+
+        float[] decoded = EmbeddingCodec.decode(EmbeddingCodec.encode(vector, EmbeddingCodec.Format.INT8));
+
+        for (int i = 0; i < vector.length; i++) {
+            assertEquals(vector[i], decoded[i], halfStep * 1.001f);
+        }
+        float[] constant = {0.25f, 0.25f, 0.25f};
+        assertArrayEquals(constant, EmbeddingCodec.decode(
+                EmbeddingCodec.encode(constant, EmbeddingCodec.Format.INT8)), 0f);
+    }
+
+    @Test
+    public void dotKernelMatchesTheDecodedVector() {
+        Random random = new Random(8);
+        float[] query = gaussian(random, 101);
+        float querySum = EmbeddingCodec.sum(query);
+        float[] vector = gaussian(random, 101);
+        for (EmbeddingCodec.Format format : EmbeddingCodec.Format.values()) {
+            byte[] blob = EmbeddingCodec.encode(vector, format);
+            float expected = BruteForceVectorIndex.dot(query, EmbeddingCodec.decode(blob), 0, query.length);
+
+            assertEquals(format.toString(), expected, EmbeddingCodec.dot(query, querySum, blob), 1e-3f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFormatIsRejected() {
+        EmbeddingCodec.decode(new byte[]{42, 0, 0, 0, 0});
+    }
+
+    @Test
+    public void productQuantizerRoundTripsCentroids() {
+        float[][] sample = VectorIndexTest.clustered(1000, DIMENSION, new Random(9));
+        ProductQuantizer quantizer = ProductQuantizer.train(sample, 16, 1);
+
+        byte[] code = quantizer.encode(sample[0]);
+        float[] decoded = quantizer.decode(code);
+
+        assertEquals(16, code.length);
+        assertArrayEquals("a centroid encodes to itself", code, quantizer.encode(decoded));
+        float[] table = quantizer.scoreTable(sample[1]);
+        assertEquals(BruteForceVectorIndex.dot(sample[1], decoded, 0, DIMENSION),
+                quantizer.score(table, code, 0), 1e-3f);
+    }
+
+    /**
+     * Bytes per 64-dimension vector against recall@10, 4000 vectors, 200 queries.
+     */
+    @Test
+    public void recallVersusSize() {
+        Random random = new Random(11);
+        int n = 4000;
+        float[][] vectors = VectorIndexTest.clustered(n, DIMENSION, random);
+        float[][] queries = VectorIndexTest.clustered(200, DIMENSION, random);
+        int[] ids = VectorIndexTest.sequentialIds(n);
+        VectorIndex exact = new BruteForceVectorIndex(ids, vectors);
+
+        float[][] halves = new float[n][];
+        for (int i = 0; i < n; i++) {
+            halves[i] = EmbeddingCodec.decode(EmbeddingCodec.encode(vectors[i], EmbeddingCodec.Format.FLOAT16));
+        }
+        double float16 = VectorIndexTest.recallAt10(exact, new BruteForceVectorIndex(ids, halves), queries);
+        double int8 = VectorIndexTest.recallAt10(exact, new Int8VectorIndex(ids, vectors), queries);
+        report("FLOAT32", EmbeddingCodec.Format.FLOAT32.encodedSize(DIMENSION), 1.0);
+        report("FLOAT16", EmbeddingCodec.Format.FLOAT16.encodedSize(DIMENSION), float16);
+        report("INT8", EmbeddingCodec.Format.INT8.encodedSize(DIMENSION), int8);
+
+        float[][] normalized = new float[n][];
+        for (int i = 0; i < n; i++) {
+            normalized[i] = VectorIndex.normalize(vectors[i]);
+        }
+        double pq16 = 0;
+        for (int subspaces : new int[]{8, 16, 32}) {
+            ProductQuantizer quantizer = ProductQuantizer.train(normalized, subspaces, 1);
+            double recall = recallAt10(exact, quantizer, normalized, queries);
+            report("PQ m=" + subspaces, subspaces, recall);
+            if (subspaces == 16) {
+                pq16 = recall;
+            }
+        }
+
+        assertTrue("float16 recall@10 was " + float16, float16 >= 0.99);
+        assertTrue("int8 recall@10 was " + int8, int8 >= 0.95);
+        assertTrue("pq m=16 recall@10 was " + pq16, pq16 >= 0.5);
+    }
+
+    private static double recallAt10(VectorIndex exact, ProductQuantizer quantizer, float[][] normalized,
+                                     float[][] queries) {
+        int m = quantizer.getSubspaces();
+        byte[] codes = new byte[normalized.length * m];
+        for (int i = 0; i < normalized.length; i++) {
+            System.arraycopy(quantizer.encode(normalized[i]), 0, codes, i * m, m);
+        }
+        int hits = 0;
+        for (float[] query : queries) {
+            float[] table = quantizer.scoreTable(VectorIndex.normalize(query));
+            ScoreHeap best = new ScoreHeap(10, true);
+            for (int i = 0; i < normalized.length; i++) {
+                best.offer(i, quantizer.score(table, codes, i * m), 10);
+            }
+            Set<Integer> found = new HashSet<>();
+            for (int slot : best.drainBestFirst(null)) {
+                found.add(slot);
+            }
+            for (VectorIndex.Match match : exact.search(query, 10)) {
+                if (found.contains(match.id)) {
+                    hits++;
+                }
+            }
+        }
+        return hits / (10.0 * queries.length);
+    }
+
+    private static void report(String format, int bytes, double recall) {
+        BenchmarkTimer.report("%-10s %4d bytes/vector  recall@10 %.3f", format, bytes, recall);
+    }
+
+    private static float[] gaussian(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.mobilecw.utils;
+
+import com.example.mobilecw.database.entities.Hike;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The index must return exactly what SearchHelper.fuzzySearch returns for the
+ * same list, order of equally scored hikes included, however it was updated.
+ */
+public class HikeSearchIndexTest {
+
+    private static final String[] WORDS = {
+            "lake", "lakes", "trail", "loop", "ridge", "river", "peak", "forest", "falls",
+            "old", "mill", "snowdon", "crib", "goch", "valley", "path", "hill", "moor"};
+    private static final String[] DIFFICULTIES = {"Easy", "Moderate", "Hard"};
+    private static final String[] QUERIES = {
+            "lake", "Lake Trail", "lak", "trial", "ridge loop", "snowdn", "old mill", "hard",
+            "moderate", "falls", "rivr", "p", "valley path", "xyz", "forest lakes"};
+
+    @Test
+    public void matchesFuzzySearchOnTheListItWasBuiltFrom() {
+        List<Hike> hikes = randomHikes(new Random(42), 0, 120);
+
+        assertSameResults(hikes, HikeSearchIndex.build(hikes));
+    }
+
+    @Test
+    public void equallyScoredHikesKeepListOrder() {
+        List<Hike> hikes = Arrays.asList(
+                hike(3, "Lake Loop", "Bala"),
+                hike(1, "Lake Loop", "Bala"),
+                hike(2, "Lake Loop", "Bala"));
+        HikeSearchIndex index = HikeSearchIndex.build(hikes);
+
+        assertEquals(Arrays.asList(3, 1, 2), ids(index.search("lake")));
+        assertEquals(Arrays.asList(3, 1, 2), ids(index.search("")));
+    }
+
+    @Test
+    public void updatedHikeKeepsItsPlaceAmongTies() {
+        List<Hike> hikes = new ArrayList<>(Arrays.asList(
+                hike(1, "Lake Loop", "Bala"),
+                hike(2, "Lake Loop", "Bala"),
+                hike(3, "Lake Loop", "Bala")));
+        HikeSearchIndex index = HikeSearchIndex.build(hikes);
+
+        Hike edited = hike(1, "Lake Loop", "Bala");
+        edited.setDescription("Muddy after rain");
+        edited.setUpdatedAt(edited.getUpdatedAt() + 1000);
+        hikes.set(0, edited);
+        index.addOrUpdate(edited);
+
+        assertEquals(Arrays.asList(1, 2, 3), ids(index.search("lake")));
+        assertSameResults(hikes, index);
+    }
+
+    @Test
+    public void matchesFuzzySearchAfterUpdatesAndRemovals() {
+        Random random = new Random(7);
+        List<Hike> hikes = randomHikes(random, 0, 80);
+        HikeSearchIndex index = HikeSearchIndex.build(hikes);
+
+        for (int round = 0; round < 5; round++) {
+            List<Hike> next = new ArrayList<>();
+            for (Hike hike : hikes) {
+                int roll = random.nextInt(10);
+                if (roll == 0) {
+                    continue; // deleted
+                }
+                if (roll == 1) {
+                    Hike edited = randomHike(random, hike.getHikeID());
+                    edited.setUpdatedAt(hike.getUpdatedAt() + 1000);
+                    next.add(edited);
+                } else {
+                    next.add(hike);
+                }
+            }
+            // New hikes show up first, as in the newest-first list the screen loads
+            next.addAll(0, randomHikes(random, 1000 * (round + 1), 10));
+            hikes = next;
+
+            index.sync(hikes);
+
+            assertEquals(hikes.size(), index.size());
+            assertSameResults(hikes, index);
+        }
+    }
+
+    @Test
+    public void matchesFuzzySearchAfterCompaction() {
+        List<Hike> hikes = randomHikes(new Random(3), 0, 200);
+        HikeSearchIndex index = HikeSearchIndex.build(hikes);
+
+        List<Hike> kept = new ArrayList<>();
+        for (Hike hike : hikes) {
+            if (hike.getHikeID() % 3 == 0) {
+                kept.add(hike);
+            } else {
+                index.remove(hike.getHikeID());
+            }
+        }
+
+        assertEquals(kept.size(), index.size());
+        assertSameResults(kept, index);
+    }
+
+    private static void assertSameResults(List<Hike> hikes, HikeSearchIndex index) {
+        for (String query : QUERIES) {
+            assertEquals("query \"" + query + "\"",
+                    ids(SearchHelper.fuzzySearch(hikes, query)), ids(index.search(query)));
+        }
+        assertEquals(ids(hikes), ids(index.search(" ")));
+    }
+
+    private static List<Hike> randomHikes(Random random, int firstId, int count) {
+        List<Hike> hikes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hikes.add(randomHike(random, firstId + i));
+        }
+        return hikes;
+    }
+
+    private static Hike randomHike(Random random, int id) {
+        Hike hike = hike(id, words(random, 1 + random.nextInt(3)), words(random, 1 + random.nextInt(2)));
+        hike.setDescription(random.nextBoolean() ? words(random, 4) : null);
+        hike.setDifficulty(DIFFICULTIES[random.nextInt(DIFFICULTIES.length)]);
+        return hike;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) text.append(' ');
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(random.nextInt(4) == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        return text.toString();
+    }
+
+    private static Hike hike(int id, String name, String location) {
+        Hike hike = new Hike(name, location, new Date(1700000000000L), true, 8.0, "Moderate", null, null);
+        hike.setHikeID(id);
+        hike.setUpdatedAt(1700000000000L);
+        return hike;
+    }
+
+    private static List<Integer> ids(List<Hike> hikes) {
+        List<Integer> ids = new ArrayList<>();
+        for (Hike hike : hikes) {
+            ids.add(hike.getHikeID());
+        }
+        return ids;
+    }
+}
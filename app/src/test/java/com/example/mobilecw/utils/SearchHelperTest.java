@@ -0,0 +1,105 @@
+package com.example.mobilecw.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The bounded edit distance must equal the full distance when it is within the
+ * bound, and report bound + 1 otherwise.
+ */
+public class SearchHelperTest {
+
+    @Test
+    public void boundedDistanceAtJustUnderAndJustOverTheBound() {
+        // kitten -> sitting takes 3 edits
+        assertEquals(3, SearchHelper.levenshteinDistance("kitten", "sitting", 4));
+        assertEquals(3, SearchHelper.levenshteinDistance("kitten", "sitting", 3));
+        assertEquals(3, SearchHelper.levenshteinDistance("kitten", "sitting", 2));
+        assertEquals(2, SearchHelper.levenshteinDistance("kitten", "sitting", 1));
+        assertEquals(1, SearchHelper.levenshteinDistance("kitten", "sitting", 0));
+    }
+
+    @Test
+    public void lengthDifferenceAloneExceedsTheBound() {
+        assertEquals(3, SearchHelper.levenshteinDistance("ab", "abcdef", 2));
+        assertEquals(4, SearchHelper.levenshteinDistance("ab", "abcdef", 4));
+    }
+
+    @Test
+    public void emptyStrings() {
+        assertEquals(0, SearchHelper.levenshteinDistance("", ""));
+        assertEquals(0, SearchHelper.levenshteinDistance("", "", 0));
+        assertEquals(3, SearchHelper.levenshteinDistance("", "abc"));
+        assertEquals(3, SearchHelper.levenshteinDistance("abc", "", 3));
+        assertEquals(2, SearchHelper.levenshteinDistance("", "abc", 1));
+        assertEquals(2, SearchHelper.levenshteinDistance("abc", "", 1));
+    }
+
+    @Test
+    public void identicalStringsAreAtDistanceZero() {
+        assertEquals(0, SearchHelper.levenshteinDistance("snowdon", "snowdon", 0));
+        assertEquals(0, SearchHelper.levenshteinDistance("snowdon", "snowdon"));
+    }
+
+    @Test
+    public void boundedDistanceAgreesWithTheFullMatrix() {
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            String a = randomWord(random, random.nextInt(12));
+            String b = randomWord(random, random.nextInt(12));
+            int expected = fullMatrixDistance(a, b);
+            int max = random.nextInt(6);
+
+            assertEquals(a + " / " + b, expected, SearchHelper.levenshteinDistance(a, b));
+            assertEquals(a + " / " + b + " max " + max, Math.min(expected, max + 1),
+                    SearchHelper.levenshteinDistance(a, b, max));
+        }
+    }
+
+    @Test
+    public void longStringsAfterShortOnesGrowTheRowBuffers() {
+        String a = repeat("ab", 40);
+        String b = repeat("ba", 40);
+
+        assertEquals(fullMatrixDistance(a, b), SearchHelper.levenshteinDistance(a, b));
+        assertEquals(1, SearchHelper.levenshteinDistance("ab", "abc"));
+    }
+
+    @Test
+    public void fuzzyMatchIgnoresCase() {
+        assertTrue(SearchHelper.isFuzzyMatch("Snowdon", "snowdn", 1));
+        assertFalse(SearchHelper.isFuzzyMatch("Snowdon", "snow", 2));
+        assertFalse(SearchHelper.isFuzzyMatch(null, "snow", 2));
+    }
+
+    static int fullMatrixDistance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // A small alphabet so nearby words are common
+            word.append((char) ('a' + random.nextInt(4)));
+        }
+        return word.toString();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < times; i++) out.append(s);
+        return out.toString();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.mobilecw.utils;
+
+import com.example.mobilecw.BenchmarkTimer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exactness of the brute-force index, recall of HNSW against it, and query
+ * latency of both on clustered data shaped like text embeddings.
+ */
+public class VectorIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    public void bruteForceReturnsTheExactTopKBestFirst() {
+        float[][] vectors = {
+                {1, 0, 0},
+                {0, 1, 0},
+                {0.9f, 0.1f, 0},
+                {-1, 0, 0},
+                {2, 2, 0},
+        };
+        VectorIndex index = new BruteForceVectorIndex(new int[]{10, 11, 12, 13, 14}, vectors);
+
+        List<VectorIndex.Match> matches = index.search(new float[]{3, 0, 0}, 3);
+
+        assertEquals(Arrays.asList(10, 12, 14), ids(matches));
+        assertEquals(1f, matches.get(0).score, 1e-6f);
+        assertEquals((float) Math.sqrt(0.5), matches.get(2).score, 1e-6f);
+    }
+
+    @Test
+    public void kLargerThanTheIndexReturnsEverything() {
+        VectorIndex index = new BruteForceVectorIndex(new int[]{1, 2}, new float[][]{{1, 0}, {0, 1}});
+
+        assertEquals(2, index.search(new float[]{1, 1}, 10).size());
+        assertTrue(new BruteForceVectorIndex(new int[0], new float[0][]).search(new float[]{1}, 5).isEmpty());
+    }
+
+    @Test
+    public void buildPicksTheIndexBySize() {
+        Random random = new Random(1);
+        assertTrue(VectorIndex.build(new int[]{1}, new float[][]{{1, 2}}) instanceof BruteForceVectorIndex);
+        int n = VectorIndex.HNSW_THRESHOLD;
+        assertTrue(VectorIndex.build(sequentialIds(n), clustered(n, 8, random)) instanceof HnswVectorIndex);
+
+        byte[][] blobs = {EmbeddingCodec.encode(new float[]{1, 2}, EmbeddingCodec.Format.INT8)};
+        assertTrue(VectorIndex.build(new int[]{1}, blobs) instanceof Int8VectorIndex);
+    }
+
+    @Test
+    public void hnswRecallAt10AgainstExactSearch() {
+        Random random = new Random(7);
+        int n = 4000;
+        float[][] vectors = clustered(n, DIMENSION, random);
+        int[] ids = sequentialIds(n);
+        VectorIndex exact = new BruteForceVectorIndex(ids, vectors);
+        VectorIndex hnsw = new HnswVectorIndex(ids, vectors);
+
+        float[][] queries = clustered(200, DIMENSION, random);
+        double recall = recallAt10(exact, hnsw, queries);
+
+        BenchmarkTimer.report("HNSW recall@10 n=%d: %.3f", n, recall);
+        assertTrue("recall@10 was " + recall, recall >= 0.95);
+    }
+
+    @Test
+    public void queryLatencyBruteForceVersusHnsw() {
+        Random random = new Random(3);
+        int n = 20000;
+        float[][] vectors = clustered(n, DIMENSION, random);
+        int[] ids = sequentialIds(n);
+        VectorIndex exact = new BruteForceVectorIndex(ids, vectors);
+        VectorIndex hnsw = new HnswVectorIndex(ids, vectors);
+        float[][] queries = clustered(50, DIMENSION, random);
+
+        BenchmarkTimer.measure("BruteForceVectorIndex top10 x50, n=" + n, 10, () -> {
+            for (float[] query : queries) {
+                exact.search(query, 10);
+            }
+        });
+        BenchmarkTimer.measure("HnswVectorIndex top10 x50, n=" + n, 10, () -> {
+            for (float[] query : queries) {
+                hnsw.search(query, 10);
+            }
+        });
+        assertTrue(recallAt10(exact, hnsw, queries) >= 0.9);
+    }
+
+    static double recallAt10(VectorIndex exact, VectorIndex approximate, float[][] queries) {
+        int hits = 0;
+        for (float[] query : queries) {
+            Set<Integer> truth = new HashSet<>(ids(exact.search(query, 10)));
+            for (int id : ids(approximate.search(query, 10))) {
+                if (truth.contains(id)) {
+                    hits++;
+                }
+            }
+        }
+        return hits / (10.0 * queries.length);
+    }
+
+    /**
+     * Points scattered around 50 random centres, like embeddings of related texts.
+     */
+    static float[][] clustered(int n, int dimension, Random random) {
+        Random centres = new Random(99);
+        float[][] centre = new float[50][dimension];
+        for (float[] c : centre) {
+            for (int d = 0; d < dimension; d++) {
+                c[d] = (float) centres.nextGaussian();
+            }
+        }
+        float[][] vectors = new float[n][dimension];
+        for (int i = 0; i < n; i++) {
+            float[] c = centre[random.nextInt(centre.length)];
+            for (int d = 0; d < dimension; d++) {
+                vectors[i][d] = c[d] + 2f * (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    static int[] sequentialIds(int n) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    private static List<Integer> ids(List<VectorIndex.Match> matches) {
+        List<Integer> ids = new ArrayList<>();
+        for (VectorIndex.Match match : matches) {
+            ids.add(match.id);
+        }
+        return ids;
+    }
+}
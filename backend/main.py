@@ -21,6 +21,7 @@ import numpy as np
 from math import sqrt
 import requests
 import json
+import struct
 
 # Load environment variables
 load_dotenv()
@@ -113,6 +114,26 @@ def cosine_similarity(vec1: List[float], vec2: List[float]) -> float:
     
     return float(dot_product / (norm1 * norm2))
 
+def decode_embedding(value) -> List[float]:
+    """Decode an embedding_vector field.
+
+    The app writes a Firestore Blob: a one-byte format tag (1 = float32,
+    2 = float16, 3 = int8 with float offset and scale), then little-endian
+    values. Older documents hold a plain list of numbers.
+    """
+    if not isinstance(value, (bytes, bytearray)):
+        return value
+    tag = value[0]
+    if tag == 1:
+        return np.frombuffer(value, dtype="<f4", offset=1).astype(np.float64)
+    if tag == 2:
+        return np.frombuffer(value, dtype="<f2", offset=1).astype(np.float64)
+    if tag == 3:
+        offset, scale = struct.unpack_from("<ff", value, 1)
+        codes = np.frombuffer(value, dtype=np.uint8, offset=9)
+        return offset + scale * codes.astype(np.float64)
+    raise ValueError(f"Unknown embedding format {tag}")
+
 def fetch_hikes_with_embeddings(firebase_uid: str) -> List[dict]:
     """Fetch all hikes with embeddings from Firebase."""
     hikes_ref = db.collection("users").document(firebase_uid).collection("hikes")
@@ -124,7 +145,7 @@ def fetch_hikes_with_embeddings(firebase_uid: str) -> List[dict]:
             hikes.append({
                 "id": doc.id,
                 "type": "hike",
-                "embedding": data["embedding_vector"],
+                "embedding": decode_embedding(data["embedding_vector"]),
                 "name": data.get("name", ""),
                 "location": data.get("location", ""),
                 "description": data.get("description", ""),
@@ -146,7 +167,7 @@ def fetch_observations_with_embeddings(firebase_uid: str) -> List[dict]:
                 observations.append({
                     "id": obs_doc.id,
                     "type": "observation",
-                    "embedding": data["embedding_vector"],
+                    "embedding": decode_embedding(data["embedding_vector"]),
                     "observation_text": data.get("observationText", ""),
                     "comments": data.get("comments", ""),
                     "location": data.get("location", ""),
@@ -189,7 +210,7 @@ async def search(request: SearchRequest):
         # 3. Calculate cosine similarity for each item
         scored_items = []
         for item in items:
-            if not item.get("embedding"):
+            if item.get("embedding") is None or len(item["embedding"]) == 0:
                 continue
             
             similarity = cosine_similarity(query_embedding, item["embedding"])
@@ -0,0 +1,49 @@
+// JVM-only JMH benchmarks for the pure-Java search code in :app.
+// Android modules cannot be consumed by a plain Java project, so the relevant
+// app sources are compiled directly into this module.
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/mobilecw/database/entities/Hike.java",
+                "com/example/mobilecw/utils/SearchHelper.java",
+                "com/example/mobilecw/utils/HikeSearchIndex.java",
+                "com/example/mobilecw/utils/BkTree.java",
+                "com/example/mobilecw/utils/VectorIndex.java",
+                "com/example/mobilecw/utils/ScoreHeap.java",
+                "com/example/mobilecw/utils/BruteForceVectorIndex.java",
+                "com/example/mobilecw/utils/HnswVectorIndex.java",
+                "com/example/mobilecw/utils/Int8VectorIndex.java",
+                "com/example/mobilecw/utils/EmbeddingCodec.java",
+                "com/example/mobilecw/utils/ProductQuantizer.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    // Room annotations on Hike; no runtime needed
+    compileOnly(libs.room.common)
+
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+}
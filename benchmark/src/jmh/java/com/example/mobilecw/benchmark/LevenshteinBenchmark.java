@@ -0,0 +1,56 @@
+package com.example.mobilecw.benchmark;
+
+import com.example.mobilecw.utils.SearchHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Edit distance of one query against a vocabulary, unbounded and bounded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LevenshteinBenchmark {
+
+    private static final String QUERY = "snowdn";
+    private static final int THRESHOLD = 3;
+
+    private final String[] vocabulary = buildVocabulary();
+
+    @Benchmark
+    public void unbounded(Blackhole blackhole) {
+        for (String term : vocabulary) {
+            blackhole.consume(SearchHelper.levenshteinDistance(term, QUERY));
+        }
+    }
+
+    @Benchmark
+    public void bounded(Blackhole blackhole) {
+        for (String term : vocabulary) {
+            blackhole.consume(SearchHelper.levenshteinDistance(term, QUERY, THRESHOLD));
+        }
+    }
+
+    private static String[] buildVocabulary() {
+        String[][] groups = {SyntheticHikes.NAME_WORDS, SyntheticHikes.PLACE_WORDS,
+                SyntheticHikes.DESCRIPTION_WORDS, SyntheticHikes.DIFFICULTIES};
+        int size = 0;
+        for (String[] group : groups) size += group.length;
+        String[] terms = new String[size];
+        int i = 0;
+        for (String[] group : groups) {
+            for (String word : group) {
+                terms[i++] = word.toLowerCase();
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.mobilecw.benchmark;
+
+import com.example.mobilecw.database.entities.Hike;
+import com.example.mobilecw.utils.HikeSearchIndex;
+import com.example.mobilecw.utils.SearchHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local search paths used by SearchActivity, over corpora of 100 to 100k hikes.
+ *
+ * Run with: ./gradlew :benchmark:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int corpusSize;
+
+    // Typo query (fuzzy tier), prefix query and multi-word query
+    @Param({"snowdn", "summ", "lake trail"})
+    public String query;
+
+    private List<Hike> hikes;
+    private HikeSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        hikes = SyntheticHikes.generate(corpusSize, 42L);
+        index = HikeSearchIndex.build(hikes);
+    }
+
+    @Benchmark
+    public List<Hike> fuzzySearch() {
+        return SearchHelper.fuzzySearch(hikes, query);
+    }
+
+    @Benchmark
+    public List<Hike> indexSearch() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public List<Hike> advancedFilter() {
+        return SearchHelper.advancedFilter(hikes, null, "district", 5.0, 20.0,
+                1710000000000L, 1900000000000L, "Medium", "yes");
+    }
+}
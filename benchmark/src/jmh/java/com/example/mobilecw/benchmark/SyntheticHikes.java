@@ -0,0 +1,66 @@
+package com.example.mobilecw.benchmark;
+
+import com.example.mobilecw.database.entities.Hike;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic hike corpora for benchmarks.
+ */
+final class SyntheticHikes {
+
+    static final String[] NAME_WORDS = {
+            "Mountain", "Forest", "River", "Ridge", "Valley", "Lake", "Summit", "Canyon",
+            "Meadow", "Falls", "Glacier", "Pass", "Coastal", "Heritage", "Loop", "Crest"
+    };
+    static final String[] PLACE_WORDS = {
+            "Rocky", "Greenwood", "Crystal", "Snowdon", "Eagle", "Pine", "Ben Nevis",
+            "Lake District", "Peak District", "Brecon", "Cairngorms", "Dartmoor"
+    };
+    static final String[] DIFFICULTIES = {"Easy", "Medium", "Hard", "Expert"};
+    static final String[] DESCRIPTION_WORDS = {
+            "scenic", "views", "steep", "climb", "wildlife", "waterfall", "rocky", "path",
+            "family", "friendly", "muddy", "after", "rain", "sunrise", "picnic", "spot"
+    };
+
+    private static final long BASE_DATE = 1700000000000L;
+    private static final long DAY_MILLIS = 86400000L;
+
+    private SyntheticHikes() {
+    }
+
+    static List<Hike> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Hike> hikes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Hike hike = new Hike(
+                    pick(random, NAME_WORDS) + " " + pick(random, NAME_WORDS) + " Trail",
+                    pick(random, PLACE_WORDS),
+                    new Date(BASE_DATE + (long) random.nextInt(3650) * DAY_MILLIS),
+                    random.nextBoolean(),
+                    1 + random.nextInt(300) / 10.0,
+                    pick(random, DIFFICULTIES),
+                    sentence(random, 4 + random.nextInt(8)),
+                    "");
+            hike.setHikeID(i + 1);
+            hikes.add(hike);
+        }
+        return hikes;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) builder.append(' ');
+            builder.append(pick(random, DESCRIPTION_WORDS));
+        }
+        return builder.toString();
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.mobilecw.benchmark;
+
+import com.example.mobilecw.utils.BruteForceVectorIndex;
+import com.example.mobilecw.utils.HnswVectorIndex;
+import com.example.mobilecw.utils.Int8VectorIndex;
+import com.example.mobilecw.utils.ProductQuantizer;
+import com.example.mobilecw.utils.VectorIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-10 semantic search over 768-dimension embeddings: exact float32 scan, INT8
+ * scan, product-quantized scan and HNSW. Recall of each is covered by
+ * EmbeddingCodecTest and VectorIndexTest in :app.
+ *
+ * Run with: ./gradlew :benchmark:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VectorSearchBenchmark {
+
+    private static final int DIMENSION = 768;
+
+    @Param({"1000", "10000"})
+    public int corpusSize;
+
+    private float[] query;
+    private VectorIndex float32;
+    private VectorIndex int8;
+    private VectorIndex hnsw;
+    private ProductQuantizer quantizer;
+    private byte[] pqCodes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42L);
+        float[][] vectors = new float[corpusSize][];
+        int[] ids = new int[corpusSize];
+        for (int i = 0; i < corpusSize; i++) {
+            vectors[i] = VectorIndex.normalize(gaussian(random));
+            ids[i] = i;
+        }
+        query = gaussian(random);
+        float32 = new BruteForceVectorIndex(ids, vectors);
+        int8 = new Int8VectorIndex(ids, vectors);
+        hnsw = new HnswVectorIndex(ids, vectors);
+        quantizer = ProductQuantizer.train(vectors, 96, 1L);
+        int m = quantizer.getSubspaces();
+        pqCodes = new byte[corpusSize * m];
+        for (int i = 0; i < corpusSize; i++) {
+            System.arraycopy(quantizer.encode(vectors[i]), 0, pqCodes, i * m, m);
+        }
+    }
+
+    @Benchmark
+    public List<VectorIndex.Match> float32Scan() {
+        return float32.search(query, 10);
+    }
+
+    @Benchmark
+    public List<VectorIndex.Match> int8Scan() {
+        return int8.search(query, 10);
+    }
+
+    @Benchmark
+    public List<VectorIndex.Match> hnswSearch() {
+        return hnsw.search(query, 10);
+    }
+
+    /** Scores only (no top-k), i.e. the cost of the table lookups per vector. */
+    @Benchmark
+    public float pqScan() {
+        float[] table = quantizer.scoreTable(query);
+        int m = quantizer.getSubspaces();
+        float best = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < corpusSize; i++) {
+            best = Math.max(best, quantizer.score(table, pqCodes, i * m));
+        }
+        return best;
+    }
+
+    private static float[] gaussian(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}